@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.benchmark;
+
+import com.google.common.io.ByteStreams;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.tools.OsmMarshaller;
+import de.uzl.itm.jaxb4osm.tools.OsmPbfMarshaller;
+import de.uzl.itm.jaxb4osm.tools.OsmUnmarshaller;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import de.uzl.itm.jaxb4osm.tools.WayTagFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link OsmMarshaller#marshal(OsmElement, OutputStream)},
+ * {@link OsmMarshaller#marshal(OsmElement, OutputStream, boolean)} (with and without indentation) and
+ * {@link OsmPbfMarshaller#marshal(OsmElement, OutputStream, java.util.concurrent.ExecutorService)} (in the calling
+ * thread). The output is written to a stream that
+ * discards all data, i.e. only the serialization itself is measured.
+ *
+ * @author Oliver Kleine
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class MarshalBenchmark {
+
+    @Param({"200"})
+    public int gridSize;
+
+    @Param({"STREETS", "ANY_WAY"})
+    public String filter;
+
+    private OsmElement osmElement;
+    private OutputStream outputStream;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File file = OsmFixture.create(this.gridSize);
+        try{
+            WayElementFilter wayElementFilter = (WayElementFilter) WayTagFilter.class.getField(this.filter).get(null);
+            this.osmElement = OsmUnmarshaller.unmarshal(file, wayElementFilter, true);
+        }
+        finally {
+            file.delete();
+        }
+
+        this.outputStream = ByteStreams.nullOutputStream();
+    }
+
+
+    @Benchmark
+    public void marshal() throws Exception {
+        OsmMarshaller.marshal(this.osmElement, this.outputStream);
+    }
+
+
+    @Benchmark
+    public void marshalStreaming() throws Exception {
+        OsmMarshaller.marshal(this.osmElement, this.outputStream, false);
+    }
+
+
+    @Benchmark
+    public void marshalStreamingIndented() throws Exception {
+        OsmMarshaller.marshal(this.osmElement, this.outputStream, true);
+    }
+
+
+    @Benchmark
+    public void marshalPbf() throws Exception {
+        OsmPbfMarshaller.marshal(this.osmElement, this.outputStream, null);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.benchmark;
+
+import de.uzl.itm.jaxb4osm.jaxb.MetadataMode;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.tools.OsmUnmarshaller;
+import de.uzl.itm.jaxb4osm.tools.UnmarshalOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the streaming unmarshalling of a {@link File} with each of the {@link MetadataMode}s. The metadata
+ * of the nodes is accessed afterwards, i.e. the costs to parse the metadata lazily are included.
+ *
+ * @author Oliver Kleine
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+
+    @Param({"200"})
+    public int gridSize;
+
+    @Param({"EAGER", "LAZY", "SKIP"})
+    public MetadataMode metadataMode;
+
+    private File file;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.file = OsmFixture.create(this.gridSize);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        this.file.delete();
+    }
+
+
+    @Benchmark
+    public OsmElement unmarshal() throws Exception {
+        return OsmUnmarshaller.unmarshal(this.file, UnmarshalOptions.create().setMetadataMode(this.metadataMode));
+    }
+
+
+    @Benchmark
+    public long unmarshalAndReadTimestamps() throws Exception {
+        OsmElement osmElement = unmarshal();
+
+        long result = 0;
+        for(NodeElement nodeElement : osmElement.getNodeElementsView()){
+            if(nodeElement.getTimestamp() != null){
+                result += nodeElement.getTimestamp().getTime();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.benchmark;
+
+import de.uzl.itm.jaxb4osm.jaxb.ElementVisitor;
+import de.uzl.itm.jaxb4osm.jaxb.NdElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.OsmUnmarshaller;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import de.uzl.itm.jaxb4osm.util.LongVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the lookups and iterations on an already unmarshalled {@link OsmElement}, i.e.
+ * {@link OsmElement#getReferencingWayIDs(long)}, {@link OsmElement#getNodeElement(long)},
+ * {@link OsmElement#getNodeElements()}, and {@link OsmElement#getWayElements()} compared to their counterparts that
+ * do not copy the elements, i.e. {@link OsmElement#getReferencingWayCount(long)},
+ * {@link OsmElement#forEachReferencingWayID(long, LongVisitor)}, {@link OsmElement#getNodeElementsView()},
+ * {@link OsmElement#getWayElementsView()} and {@link OsmElement#forEachNodeElement(ElementVisitor)}. The iteration
+ * over the references of the ways compares {@link WayElement#getNdElements()} to
+ * {@link WayElement#getNodeReference(int)}.
+ *
+ * @author Oliver Kleine
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class OsmElementBenchmark {
+
+    @Param({"200"})
+    public int gridSize;
+
+    private OsmElement osmElement;
+    private long[] nodeIDs;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File file = OsmFixture.create(this.gridSize);
+        try{
+            this.osmElement = OsmUnmarshaller.unmarshal(file, WayElementFilter.ANY_WAY, false);
+        }
+        finally {
+            file.delete();
+        }
+
+        this.nodeIDs = new long[this.osmElement.getNodeElementsView().size()];
+        int i = 0;
+        for(NodeElement nodeElement : this.osmElement.getNodeElementsView()){
+            this.nodeIDs[i++] = nodeElement.getID();
+        }
+    }
+
+
+    /**
+     * Looks up the referencing ways of all nodes (each grid node is referenced by two ways, the POI nodes by none)
+     */
+    @Benchmark
+    public int getReferencingWayIDs(){
+        int result = 0;
+        for(long nodeID : this.nodeIDs){
+            Set<Long> wayIDs = this.osmElement.getReferencingWayIDs(nodeID);
+            result += wayIDs.size();
+        }
+        return result;
+    }
+
+
+    @Benchmark
+    public int getReferencingWayCount(){
+        int result = 0;
+        for(long nodeID : this.nodeIDs){
+            result += this.osmElement.getReferencingWayCount(nodeID);
+        }
+        return result;
+    }
+
+
+    @Benchmark
+    public long forEachReferencingWayID(){
+        WayIDSum sum = new WayIDSum();
+        for(long nodeID : this.nodeIDs){
+            this.osmElement.forEachReferencingWayID(nodeID, sum);
+        }
+        return sum.result;
+    }
+
+
+    @Benchmark
+    public double getNodeElement(){
+        double result = 0;
+        for(long nodeID : this.nodeIDs){
+            result += this.osmElement.getNodeElement(nodeID).getLatitude();
+        }
+        return result;
+    }
+
+
+    @Benchmark
+    public double iterateNodeElements(){
+        double result = 0;
+        for(NodeElement nodeElement : this.osmElement.getNodeElements()){
+            result += nodeElement.getLatitude() + nodeElement.getLongitude();
+        }
+        return result;
+    }
+
+
+    @Benchmark
+    public double iterateNodeElementsView(){
+        double result = 0;
+        for(NodeElement nodeElement : this.osmElement.getNodeElementsView()){
+            result += nodeElement.getLatitude() + nodeElement.getLongitude();
+        }
+        return result;
+    }
+
+
+    @Benchmark
+    public double forEachNodeElement(){
+        CoordinateSum sum = new CoordinateSum();
+        this.osmElement.forEachNodeElement(sum);
+        return sum.result;
+    }
+
+
+    @Benchmark
+    public long iterateWayElements(){
+        long result = 0;
+        for(WayElement wayElement : this.osmElement.getWayElements()){
+            result += wayElement.getNdElements().size();
+        }
+        return result;
+    }
+
+
+    @Benchmark
+    public long iterateWayElementsView(){
+        long result = 0;
+        for(WayElement wayElement : this.osmElement.getWayElementsView()){
+            result += wayElement.getNdElements().size();
+        }
+        return result;
+    }
+
+
+    @Benchmark
+    public long iterateNdElements(){
+        long result = 0;
+        for(WayElement wayElement : this.osmElement.getWayElementsView()){
+            for(NdElement ndElement : wayElement.getNdElements()){
+                result += ndElement.getReference();
+            }
+        }
+        return result;
+    }
+
+
+    @Benchmark
+    public long iterateNodeReferences(){
+        long result = 0;
+        for(WayElement wayElement : this.osmElement.getWayElementsView()){
+            for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                result += wayElement.getNodeReference(i);
+            }
+        }
+        return result;
+    }
+
+
+    private static class WayIDSum extends LongVisitor {
+
+        private long result;
+
+        @Override
+        public boolean visit(long wayID) {
+            this.result += wayID;
+            return true;
+        }
+    }
+
+
+    private static class CoordinateSum extends ElementVisitor<NodeElement> {
+
+        private double result;
+
+        @Override
+        public boolean visit(NodeElement nodeElement) {
+            this.result += nodeElement.getLatitude() + nodeElement.getLongitude();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Synthesizes OSM files for the benchmarks. The generated map is a square grid of nodes with one way per row and one
+ * way per column. The ways carry a mix of "highway" values (including some that do not match any of the predefined
+ * street filters), names (including "Wallstraße" and "Große Burgstraße") and a few non-street ways (buildings). Every
+ * 10th node of the grid is an additional unreferenced POI node, so that <code>removeUnreferencedNodes</code> has work
+ * to do.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmFixture {
+
+    /**
+     * The ID of the first way in the generated files (the way with ID 191533107 is always contained)
+     */
+    public static final long FIRST_WAY_ID = 191533100L;
+
+    private static final String[] HIGHWAY_VALUES = new String[]{
+            "residential", "primary", "service", "footway", "motorway", "track", "living_street", "secondary",
+            "tertiary", "cycleway", "unclassified", "trunk_link"
+    };
+
+    private static final String[] NAMES = new String[]{
+            "Wallstraße", "Große Burgstraße", "Königstraße", "Mühlenstraße", "Beckergrube"
+    };
+
+    private static final String META = " version=\"2\" changeset=\"123\" visible=\"true\" " +
+            "timestamp=\"2014-06-15T10:00:00Z\" user=\"olli\" uid=\"42\"";
+
+    private OsmFixture(){}
+
+
+    /**
+     * Returns the ID of the (grid) node in the given row and column
+     *
+     * @param gridSize the number of rows and columns of the grid
+     * @param row the row of the node
+     * @param column the column of the node
+     *
+     * @return the ID of the (grid) node in the given row and column
+     */
+    public static long getNodeID(int gridSize, int row, int column){
+        return ((long) row) * gridSize + column + 1;
+    }
+
+
+    /**
+     * Writes a synthetic OSM file with a grid of <code>gridSize</code> x <code>gridSize</code> nodes into a temporary
+     * file that is deleted when the VM exits.
+     *
+     * @param gridSize the number of rows and columns of the grid
+     *
+     * @return the generated file
+     *
+     * @throws IOException if some error occurred while writing the file
+     */
+    public static File create(int gridSize) throws IOException {
+        File file = File.createTempFile("jaxb4osm-" + gridSize + "-", ".osm");
+        file.deleteOnExit();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")),
+                1 << 16);
+        try{
+            write(writer, gridSize);
+        }
+        finally {
+            writer.close();
+        }
+
+        return file;
+    }
+
+
+    private static void write(Writer writer, int gridSize) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<osm version=\"0.6\" generator=\"jaxb4osm-benchmark\" copyright=\"OpenStreetMap and " +
+                "contributors\" attribution=\"http://www.openstreetmap.org/copyright\" " +
+                "license=\"http://opendatacommons.org/licenses/odbl/1-0/\">\n");
+        writer.write(String.format(Locale.ENGLISH, " <bounds minlat=\"53.0\" minlon=\"10.0\" maxlat=\"%.7f\" " +
+                "maxlon=\"%.7f\"/>\n", 53.0 + gridSize * 0.001, 10.0 + gridSize * 0.001));
+
+        //grid nodes
+        long poiID = getNodeID(gridSize, gridSize - 1, gridSize - 1);
+        for(int row = 0; row < gridSize; row++){
+            for(int column = 0; column < gridSize; column++){
+                long nodeID = getNodeID(gridSize, row, column);
+                double latitude = 53.0 + row * 0.001;
+                double longitude = 10.0 + column * 0.001;
+
+                if(nodeID % 50 == 0){
+                    writer.write(String.format(Locale.ENGLISH, "  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"%s>\n" +
+                            "   <tag k=\"highway\" v=\"traffic_signals\"/>\n  </node>\n",
+                            nodeID, latitude, longitude, META));
+                }
+                else{
+                    writer.write(String.format(Locale.ENGLISH, "  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"%s/>\n",
+                            nodeID, latitude, longitude, META));
+                }
+
+                //unreferenced POI
+                if(nodeID % 10 == 0){
+                    writer.write(String.format(Locale.ENGLISH, "  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"%s>\n" +
+                            "   <tag k=\"amenity\" v=\"bench\"/>\n  </node>\n",
+                            ++poiID, latitude + 0.0005, longitude + 0.0005, META));
+                }
+            }
+        }
+
+        //one way per row and one way per column
+        long wayID = FIRST_WAY_ID;
+        for(int i = 0; i < gridSize; i++){
+            for(int horizontal = 0; horizontal < 2; horizontal++){
+                writer.write("  <way id=\"" + wayID + "\"" + META + ">\n");
+                for(int j = 0; j < gridSize; j++){
+                    long nodeID = horizontal == 1 ? getNodeID(gridSize, i, j) : getNodeID(gridSize, j, i);
+                    writer.write("   <nd ref=\"" + nodeID + "\"/>\n");
+                }
+
+                if(wayID % 11 == 0){
+                    writer.write("   <tag k=\"building\" v=\"yes\"/>\n");
+                }
+                else{
+                    writer.write("   <tag k=\"highway\" v=\"" +
+                            HIGHWAY_VALUES[(int) (wayID % HIGHWAY_VALUES.length)] + "\"/>\n");
+                    writer.write("   <tag k=\"name\" v=\"" + NAMES[(int) (wayID % NAMES.length)] + "\"/>\n");
+                    if(wayID % 3 == 0){
+                        writer.write("   <tag k=\"oneway\" v=\"yes\"/>\n");
+                    }
+                }
+
+                writer.write("  </way>\n");
+                wayID++;
+            }
+        }
+
+        writer.write("</osm>\n");
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.benchmark;
+
+import de.uzl.itm.jaxb4osm.graph.ContractionHierarchy;
+import de.uzl.itm.jaxb4osm.graph.RoadGraph;
+import de.uzl.itm.jaxb4osm.graph.Route;
+import de.uzl.itm.jaxb4osm.graph.Router;
+import de.uzl.itm.jaxb4osm.tools.OsmUnmarshaller;
+import de.uzl.itm.jaxb4osm.tools.WayTagFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the {@link Router}s on the street network of the fixture (i.e. the ways matching
+ * {@link WayTagFilter#STREETS}) and for the preprocessing of the {@link ContractionHierarchy}. The queries
+ * run between random pairs of vertices.
+ *
+ * @author Oliver Kleine
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"200"})
+    public int gridSize;
+
+    private RoadGraph graph;
+    private Router dijkstraRouter;
+    private Router aStarRouter;
+    private Router contractionHierarchyRouter;
+    private int[] sources;
+    private int[] targets;
+    private int query;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File file = OsmFixture.create(this.gridSize);
+        try{
+            this.graph = RoadGraph.create(OsmUnmarshaller.unmarshal(file, WayTagFilter.STREETS, false));
+        }
+        finally {
+            file.delete();
+        }
+
+        this.dijkstraRouter = Router.createDijkstraRouter(this.graph);
+        this.aStarRouter = Router.createAStarRouter(this.graph);
+        this.contractionHierarchyRouter =
+                Router.createContractionHierarchyRouter(ContractionHierarchy.create(this.graph));
+
+        Random random = new Random(42);
+        this.sources = new int[QUERIES];
+        this.targets = new int[QUERIES];
+        for(int i = 0; i < QUERIES; i++){
+            this.sources[i] = random.nextInt(this.graph.getVertexCount());
+            this.targets[i] = random.nextInt(this.graph.getVertexCount());
+        }
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ContractionHierarchy createContractionHierarchy(){
+        return ContractionHierarchy.create(this.graph);
+    }
+
+
+    @Benchmark
+    public Route routeDijkstra(){
+        this.query = (this.query + 1) % QUERIES;
+        return this.dijkstraRouter.route(this.sources[this.query], this.targets[this.query]);
+    }
+
+
+    @Benchmark
+    public Route routeAStar(){
+        this.query = (this.query + 1) % QUERIES;
+        return this.aStarRouter.route(this.sources[this.query], this.targets[this.query]);
+    }
+
+
+    @Benchmark
+    public Route routeContractionHierarchy(){
+        this.query = (this.query + 1) % QUERIES;
+        return this.contractionHierarchyRouter.route(this.sources[this.query], this.targets[this.query]);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.benchmark;
+
+import com.google.common.io.ByteStreams;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.store.HashNodeElementStore;
+import de.uzl.itm.jaxb4osm.tools.OsmSnapshot;
+import de.uzl.itm.jaxb4osm.tools.OsmUnmarshaller;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import de.uzl.itm.jaxb4osm.tools.WayTagFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for saving an {@link OsmElement} into an {@link OsmSnapshot} and loading it again. The snapshot is
+ * kept in memory, i.e. only the (de-)serialization itself is measured. Compare <code>loadSnapshot</code> with
+ * <code>UnmarshalBenchmark.unmarshalStreaming</code> for the same filter to see the gain at startup.
+ *
+ * @author Oliver Kleine
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    @Param({"200"})
+    public int gridSize;
+
+    @Param({"STREETS", "ANY_WAY"})
+    public String filter;
+
+    private OsmElement osmElement;
+    private byte[] snapshot;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File file = OsmFixture.create(this.gridSize);
+        try{
+            WayElementFilter wayElementFilter = (WayElementFilter) WayTagFilter.class.getField(this.filter).get(null);
+            this.osmElement = OsmUnmarshaller.unmarshal(file, wayElementFilter, true);
+        }
+        finally {
+            file.delete();
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        OsmSnapshot.save(this.osmElement, outputStream);
+        this.snapshot = outputStream.toByteArray();
+    }
+
+
+    @Benchmark
+    public void saveSnapshot() throws Exception {
+        OsmSnapshot.save(this.osmElement, ByteStreams.nullOutputStream());
+    }
+
+
+    @Benchmark
+    public OsmElement loadSnapshot() throws Exception {
+        return OsmSnapshot.load(new ByteArrayInputStream(this.snapshot), new HashNodeElementStore());
+    }
+}
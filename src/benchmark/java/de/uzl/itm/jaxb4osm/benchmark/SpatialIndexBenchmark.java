@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.benchmark;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.tools.OsmUnmarshaller;
+import de.uzl.itm.jaxb4osm.tools.SpatialIndex;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the creation of a {@link SpatialIndex} and its queries. The range queries use bounds of about
+ * 10 x 10 grid cells of the fixture (i.e. a viewport of about 1.1 km x 0.7 km) at random positions.
+ *
+ * @author Oliver Kleine
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SpatialIndexBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"200"})
+    public int gridSize;
+
+    private OsmElement osmElement;
+    private SpatialIndex spatialIndex;
+    private BoundsElement[] bounds;
+    private int query;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File file = OsmFixture.create(this.gridSize);
+        try{
+            this.osmElement = OsmUnmarshaller.unmarshal(file, WayElementFilter.ANY_WAY, false);
+        }
+        finally {
+            file.delete();
+        }
+
+        this.spatialIndex = SpatialIndex.create(this.osmElement);
+
+        Random random = new Random(42);
+        this.bounds = new BoundsElement[QUERIES];
+        for(int i = 0; i < QUERIES; i++){
+            double latitude = 53.0 + random.nextDouble() * this.gridSize * 0.001;
+            double longitude = 10.0 + random.nextDouble() * this.gridSize * 0.001;
+            this.bounds[i] = new BoundsElement(latitude, latitude + 0.01, longitude, longitude + 0.01);
+        }
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SpatialIndex create(){
+        return SpatialIndex.create(this.osmElement);
+    }
+
+
+    @Benchmark
+    public long[] getNodeIDs(){
+        return this.spatialIndex.getNodeIDs(nextBounds());
+    }
+
+
+    @Benchmark
+    public long[] getWayIDs(){
+        return this.spatialIndex.getWayIDs(nextBounds());
+    }
+
+
+    @Benchmark
+    public long[] getNearestNodeIDs(){
+        BoundsElement bounds = nextBounds();
+        return this.spatialIndex.getNearestNodeIDs(bounds.getMinLatitude(), bounds.getMinLongitude(), 10);
+    }
+
+
+    private BoundsElement nextBounds(){
+        this.query = (this.query + 1) % QUERIES;
+        return this.bounds[this.query];
+    }
+}
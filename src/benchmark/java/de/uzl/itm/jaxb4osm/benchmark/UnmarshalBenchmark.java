@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.benchmark;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.tools.OsmPbfMarshaller;
+import de.uzl.itm.jaxb4osm.tools.OsmPbfUnmarshaller;
+import de.uzl.itm.jaxb4osm.tools.OsmUnmarshaller;
+import de.uzl.itm.jaxb4osm.tools.UnmarshalOptions;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import de.uzl.itm.jaxb4osm.tools.WayTagFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link OsmUnmarshaller} with each of the predefined {@link WayElementFilter}s, with and without
+ * removal of unreferenced nodes. Both, the JAXB based unmarshalling of an {@link InputStream} and the streaming
+ * unmarshalling of a {@link File} are measured as well as the unmarshalling of the same data from a PBF file (in the
+ * calling thread).
+ *
+ * @author Oliver Kleine
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class UnmarshalBenchmark {
+
+    @Param({"200"})
+    public int gridSize;
+
+    @Param({"ALL_STREETS", "STREETS", "HIGHWAYS", "LUEBECK_WALLSTR", "LUEBECK_GROSSE_BURGSTR", "ID_191533107",
+            "ANY_WAY"})
+    public String filter;
+
+    @Param({"false", "true"})
+    public boolean removeUnreferencedNodes;
+
+    private File file;
+    private File pbfFile;
+    private WayElementFilter wayElementFilter;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.file = OsmFixture.create(this.gridSize);
+        this.wayElementFilter = (WayElementFilter) WayTagFilter.class.getField(this.filter).get(null);
+
+        this.pbfFile = File.createTempFile("jaxb4osm-" + this.gridSize + "-", ".osm.pbf");
+        this.pbfFile.deleteOnExit();
+        OutputStream outputStream = new FileOutputStream(this.pbfFile);
+        try{
+            OsmPbfMarshaller.marshal(OsmUnmarshaller.unmarshal(this.file, WayElementFilter.ANY_WAY, false),
+                    outputStream, null);
+        }
+        finally {
+            outputStream.close();
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        this.file.delete();
+        this.pbfFile.delete();
+    }
+
+
+    @Benchmark
+    public OsmElement unmarshalJaxb() throws Exception {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(this.file));
+        try{
+            return OsmUnmarshaller.unmarshal(inputStream, this.wayElementFilter, this.removeUnreferencedNodes);
+        }
+        finally {
+            inputStream.close();
+        }
+    }
+
+
+    @Benchmark
+    public OsmElement unmarshalStreaming() throws Exception {
+        return OsmUnmarshaller.unmarshal(this.file, this.wayElementFilter, this.removeUnreferencedNodes);
+    }
+
+
+    @Benchmark
+    public OsmElement unmarshalPbf() throws Exception {
+        return OsmPbfUnmarshaller.unmarshal(this.pbfFile, UnmarshalOptions.create()
+                .setFilter(this.wayElementFilter)
+                .setRemoveUnreferencedNodes(this.removeUnreferencedNodes)
+                .setExecutorService(MoreExecutors.sameThreadExecutor()));
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+/**
+ * A {@link Router} running A* searches from the source to the target. The key of a vertex in the queue is its
+ * distance from the source plus the great-circle distance to the target. As the length of every edge is at least
+ * the great-circle distance between its vertices, the first settled path to the target is the shortest one.
+ *
+ * @author Oliver Kleine
+ */
+class AStarRouter extends Router {
+
+    //guards the lower bound against rounding errors of the edge lengths
+    private static final double HEURISTIC_FACTOR = 1 - 1e-9;
+
+    private final ThreadLocal<SearchSpace> searchSpaces;
+
+
+    AStarRouter(final RoadGraph graph){
+        super(graph);
+        this.searchSpaces = new ThreadLocal<SearchSpace>(){
+            @Override
+            protected SearchSpace initialValue() {
+                return new SearchSpace(graph.getVertexCount());
+            }
+        };
+    }
+
+
+    @Override
+    public Route route(int sourceVertex, int targetVertex){
+        RoadGraph graph = getGraph();
+        SearchSpace forward = this.searchSpaces.get();
+        double targetLatitude = graph.getLatitude(targetVertex);
+        double targetLongitude = graph.getLongitude(targetVertex);
+
+        forward.reset();
+        forward.update(sourceVertex, 0, -1, 0);
+
+        while(!forward.queue.isEmpty()){
+            int vertex = forward.queue.poll();
+            if(!forward.settle(vertex))
+                continue;
+
+            if(vertex == targetVertex)
+                return createRoute(sourceVertex, forward, targetVertex, null);
+
+            double distance = forward.getDistance(vertex);
+            for(int edge = graph.getFirstEdge(vertex); edge < graph.getFirstEdge(vertex + 1); edge++){
+                int target = graph.getTarget(edge);
+                double targetDistance = distance + graph.getLength(edge);
+                if(targetDistance < forward.getDistance(target) && !forward.isSettled(target)){
+                    double estimate = HEURISTIC_FACTOR * RoadGraph.distance(graph.getLatitude(target),
+                            graph.getLongitude(target), targetLatitude, targetLongitude);
+                    forward.update(target, targetDistance, edge, targetDistance + estimate);
+                }
+            }
+        }
+
+        return null;
+    }
+}
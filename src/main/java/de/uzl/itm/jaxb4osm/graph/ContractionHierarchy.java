@@ -0,0 +1,725 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+import de.uzl.itm.jaxb4osm.util.IntMinHeap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A contraction hierarchy of a {@link RoadGraph}, i.e. the result of a preprocessing step that enables shortest
+ * path queries settling only a small fraction of the vertices (see
+ * {@link Router#createContractionHierarchyRouter(ContractionHierarchy)}).
+ *
+ * The preprocessing contracts the vertices one by one in the order of their (lazily updated) priority, i.e. twice
+ * the number of shortcuts needed to contract a vertex minus twice the number of its edges plus the number of its
+ * already contracted neighbors. Contracting a vertex <code>v</code> adds a shortcut <code>u -&gt; w</code> for every
+ * pair of edges <code>u -&gt; v</code> and <code>v -&gt; w</code> unless a witness search finds a path from
+ * <code>u</code> to <code>w</code> that avoids <code>v</code> and is not longer. The witness searches are limited by
+ * the number of settled vertices and hops (i.e. edges), i.e. they may miss witnesses and add superfluous shortcuts
+ * which does not affect the correctness of queries. After a contraction, the priorities of only a few neighbors are
+ * updated right away, the others when they are polled from the queue. The rank of a vertex is its position in the
+ * contraction order. Queries then only follow edges towards vertices of a higher rank.
+ *
+ * The preprocessing takes a while for large graphs, so a contraction hierarchy can be saved and loaded again for
+ * the same {@link RoadGraph}. Like {@link de.uzl.itm.jaxb4osm.tools.OsmSnapshot}s, the saved files start with a
+ * magic and the version of the format and end with a CRC32 checksum. They also contain a fingerprint of the
+ * {@link RoadGraph}, i.e. loading fails if the graph differs from the one the hierarchy was created for.
+ *
+ * <b>Note:</b> Instances of {@link ContractionHierarchy} are immutable and thus thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class ContractionHierarchy {
+
+    /**
+     * The version of the format written by {@link #save(java.io.OutputStream)}
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = {'J', '4', 'C', 'H'};
+
+    //magic, version, vertex count, edge count and fingerprint of the graph
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+    //source, target, weight and both children
+    private static final int SHORTCUT_SIZE = 4 + 4 + 8 + 4 + 4;
+    private static final int INITIAL_SHORTCUT_CAPACITY = 1 << 16;
+
+    private final RoadGraph graph;
+    private final int[] ranks;
+
+    //the edges of the graph (with the same indexes) followed by the shortcuts
+    private final int[] sources;
+    private final int[] targets;
+    private final double[] weights;
+    private final int[] firstChildren;
+    private final int[] secondChildren;
+
+    //the edges from a vertex to a vertex of higher rank (ordered by source)
+    private final int[] firstUpwardEdge;
+    private final int[] upwardEdges;
+
+    //the edges to a vertex from a vertex of higher rank (ordered by target)
+    private final int[] firstDownwardEdge;
+    private final int[] downwardEdges;
+
+
+    private ContractionHierarchy(RoadGraph graph, int[] ranks, int[] sources, int[] targets, double[] weights,
+                                 int[] firstChildren, int[] secondChildren){
+
+        this.graph = graph;
+        this.ranks = ranks;
+        this.sources = sources;
+        this.targets = targets;
+        this.weights = weights;
+        this.firstChildren = firstChildren;
+        this.secondChildren = secondChildren;
+
+        int vertexCount = graph.getVertexCount();
+        this.firstUpwardEdge = new int[vertexCount + 1];
+        this.firstDownwardEdge = new int[vertexCount + 1];
+        for(int edge = 0; edge < sources.length; edge++){
+            if(ranks[sources[edge]] < ranks[targets[edge]]){
+                this.firstUpwardEdge[sources[edge] + 1]++;
+            }
+            else{
+                this.firstDownwardEdge[targets[edge] + 1]++;
+            }
+        }
+        for(int vertex = 0; vertex < vertexCount; vertex++){
+            this.firstUpwardEdge[vertex + 1] += this.firstUpwardEdge[vertex];
+            this.firstDownwardEdge[vertex + 1] += this.firstDownwardEdge[vertex];
+        }
+
+        this.upwardEdges = new int[this.firstUpwardEdge[vertexCount]];
+        this.downwardEdges = new int[this.firstDownwardEdge[vertexCount]];
+        int[] upwardPositions = Arrays.copyOf(this.firstUpwardEdge, vertexCount);
+        int[] downwardPositions = Arrays.copyOf(this.firstDownwardEdge, vertexCount);
+        for(int edge = 0; edge < sources.length; edge++){
+            if(ranks[sources[edge]] < ranks[targets[edge]]){
+                this.upwardEdges[upwardPositions[sources[edge]]++] = edge;
+            }
+            else{
+                this.downwardEdges[downwardPositions[targets[edge]]++] = edge;
+            }
+        }
+    }
+
+
+    /**
+     * Creates a new {@link ContractionHierarchy} for the given {@link RoadGraph}
+     *
+     * @param graph the {@link RoadGraph} to create the {@link ContractionHierarchy} for
+     *
+     * @return a new {@link ContractionHierarchy} for the given {@link RoadGraph}
+     */
+    public static ContractionHierarchy create(RoadGraph graph){
+        return new Contractor(graph).contract();
+    }
+
+    /**
+     * Returns the {@link RoadGraph} this {@link ContractionHierarchy} was created for
+     *
+     * @return the {@link RoadGraph} this {@link ContractionHierarchy} was created for
+     */
+    public RoadGraph getGraph(){
+        return this.graph;
+    }
+
+    /**
+     * Returns the number of shortcuts added by the preprocessing
+     *
+     * @return the number of shortcuts added by the preprocessing
+     */
+    public int getShortcutCount(){
+        return this.sources.length - this.graph.getEdgeCount();
+    }
+
+    /**
+     * Returns the rank of the given vertex, i.e. its position in the contraction order
+     *
+     * @param vertex the vertex to return the rank of
+     *
+     * @return the rank of the given vertex
+     */
+    public int getRank(int vertex){
+        return this.ranks[vertex];
+    }
+
+    /**
+     * Saves this {@link ContractionHierarchy} into the given file.
+     *
+     * @param file the file to write into
+     *
+     * @throws Exception if some error occurred
+     */
+    public void save(File file) throws Exception{
+        try(OutputStream outputStream = new FileOutputStream(file)){
+            save(outputStream);
+        }
+    }
+
+    /**
+     * Saves this {@link ContractionHierarchy} on the given {@link java.io.OutputStream}, i.e. the ranks and the
+     * shortcuts (the edges of the {@link RoadGraph} are not saved). The {@link java.io.OutputStream} is not closed.
+     *
+     * @param outputStream the {@link java.io.OutputStream} to write on
+     *
+     * @throws Exception if some error occurred
+     */
+    public void save(OutputStream outputStream) throws Exception{
+        CRC32 checksum = new CRC32();
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(outputStream, checksum), 1 << 16));
+
+        output.write(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(this.graph.getVertexCount());
+        output.writeInt(this.graph.getEdgeCount());
+        output.writeLong(fingerprint(this.graph));
+
+        for(int rank : this.ranks){
+            output.writeInt(rank);
+        }
+
+        output.writeInt(getShortcutCount());
+        for(int edge = this.graph.getEdgeCount(); edge < this.sources.length; edge++){
+            output.writeInt(this.sources[edge]);
+            output.writeInt(this.targets[edge]);
+            output.writeDouble(this.weights[edge]);
+            output.writeInt(this.firstChildren[edge]);
+            output.writeInt(this.secondChildren[edge]);
+        }
+        output.flush();
+
+        //the checksum is written behind the checked stream
+        new DataOutputStream(outputStream).writeInt((int) checksum.getValue());
+        outputStream.flush();
+    }
+
+    /**
+     * Loads a {@link ContractionHierarchy} for the given {@link RoadGraph} from the given file.
+     *
+     * @param file the file to read from
+     * @param graph the {@link RoadGraph} the {@link ContractionHierarchy} was created for
+     *
+     * @return the loaded {@link ContractionHierarchy}
+     *
+     * @throws Exception if some error occurred, e.g. if the file was saved for another {@link RoadGraph}
+     */
+    public static ContractionHierarchy load(File file, RoadGraph graph) throws Exception{
+        try(InputStream inputStream = new FileInputStream(file)){
+            return load(inputStream, graph, file.length());
+        }
+    }
+
+    /**
+     * Loads a {@link ContractionHierarchy} for the given {@link RoadGraph} from the given
+     * {@link java.io.InputStream}. The {@link java.io.InputStream} is not closed.
+     *
+     * @param inputStream the {@link java.io.InputStream} to read from
+     * @param graph the {@link RoadGraph} the {@link ContractionHierarchy} was created for
+     *
+     * @return the loaded {@link ContractionHierarchy}
+     *
+     * @throws Exception if some error occurred, e.g. if the data was saved for another {@link RoadGraph}
+     */
+    public static ContractionHierarchy load(InputStream inputStream, RoadGraph graph) throws Exception{
+        return load(inputStream, graph, Long.MAX_VALUE);
+    }
+
+
+    //the length is used to reject invalid counts before allocating arrays (Long.MAX_VALUE if unknown)
+    private static ContractionHierarchy load(InputStream inputStream, RoadGraph graph, long length)
+            throws Exception{
+
+        CRC32 checksum = new CRC32();
+        DataInputStream input = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(inputStream, 1 << 16), checksum));
+
+        byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+        if(!Arrays.equals(magic, MAGIC)){
+            throw new IOException("No contraction hierarchy!");
+        }
+
+        int formatVersion = input.readInt();
+        if(formatVersion != FORMAT_VERSION){
+            throw new IOException("Unsupported contraction hierarchy version: " + formatVersion);
+        }
+
+        int vertexCount = graph.getVertexCount();
+        int edgeCount = graph.getEdgeCount();
+        if(input.readInt() != vertexCount || input.readInt() != edgeCount || input.readLong() != fingerprint(graph)){
+            throw new IOException("Contraction hierarchy does not belong to the given road graph!");
+        }
+
+        int[] ranks = new int[vertexCount];
+        boolean[] assigned = new boolean[vertexCount];
+        for(int vertex = 0; vertex < vertexCount; vertex++){
+            ranks[vertex] = input.readInt();
+            if(ranks[vertex] < 0 || ranks[vertex] >= vertexCount || assigned[ranks[vertex]]){
+                throw new IOException("Invalid rank in contraction hierarchy: " + ranks[vertex]);
+            }
+            assigned[ranks[vertex]] = true;
+        }
+
+        //the header, the ranks and the shortcut count precede the shortcuts, the checksum follows them
+        int shortcutCount = input.readInt();
+        long remaining = length - HEADER_SIZE - 4L * vertexCount - 4 - 4;
+        if(shortcutCount < 0 || shortcutCount > Integer.MAX_VALUE - 8 - edgeCount ||
+                (long) shortcutCount * SHORTCUT_SIZE > remaining){
+            throw new IOException("Invalid shortcut count in contraction hierarchy: " + shortcutCount);
+        }
+
+        //the arrays grow with the shortcuts actually read, i.e. a corrupt count of a stream fails with an EOF
+        int capacity = edgeCount + Math.min(shortcutCount, INITIAL_SHORTCUT_CAPACITY);
+        int[] sources = new int[capacity];
+        int[] targets = new int[capacity];
+        double[] weights = new double[capacity];
+        int[] firstChildren = new int[capacity];
+        int[] secondChildren = new int[capacity];
+        for(int edge = 0; edge < edgeCount; edge++){
+            sources[edge] = graph.getSource(edge);
+            targets[edge] = graph.getTarget(edge);
+            weights[edge] = graph.getLength(edge);
+            firstChildren[edge] = -1;
+            secondChildren[edge] = -1;
+        }
+        for(int edge = edgeCount; edge < edgeCount + shortcutCount; edge++){
+            if(edge == sources.length){
+                capacity = (int) Math.min(edgeCount + (long) shortcutCount, 2L * capacity);
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                secondChildren = Arrays.copyOf(secondChildren, capacity);
+            }
+
+            sources[edge] = input.readInt();
+            targets[edge] = input.readInt();
+            weights[edge] = input.readDouble();
+            firstChildren[edge] = input.readInt();
+            secondChildren[edge] = input.readInt();
+
+            //children must precede their shortcut, otherwise unpacking a route might not terminate
+            if(sources[edge] < 0 || sources[edge] >= vertexCount || targets[edge] < 0 ||
+                    targets[edge] >= vertexCount || firstChildren[edge] < 0 || firstChildren[edge] >= edge ||
+                    secondChildren[edge] < 0 || secondChildren[edge] >= edge){
+                throw new IOException("Invalid shortcut in contraction hierarchy: " + edge);
+            }
+        }
+
+        long expectedChecksum = checksum.getValue();
+        if(input.readInt() != (int) expectedChecksum){
+            throw new IOException("Contraction hierarchy is corrupt (checksum mismatch)!");
+        }
+
+        return new ContractionHierarchy(graph, ranks, sources, targets, weights, firstChildren, secondChildren);
+    }
+
+
+    private static long fingerprint(RoadGraph graph){
+        long result = 1;
+        for(int vertex = 0; vertex < graph.getVertexCount(); vertex++){
+            result = 31 * result + graph.getNodeID(vertex);
+        }
+        for(int edge = 0; edge < graph.getEdgeCount(); edge++){
+            result = 31 * result + graph.getSource(edge);
+            result = 31 * result + graph.getTarget(edge);
+            result = 31 * result + Double.doubleToLongBits(graph.getLength(edge));
+        }
+        return result;
+    }
+
+
+    int getSource(int edge){
+        return this.sources[edge];
+    }
+
+
+    int getTarget(int edge){
+        return this.targets[edge];
+    }
+
+
+    double getWeight(int edge){
+        return this.weights[edge];
+    }
+
+
+    int getFirstUpwardEdge(int vertex){
+        return this.firstUpwardEdge[vertex];
+    }
+
+
+    int getUpwardEdge(int position){
+        return this.upwardEdges[position];
+    }
+
+
+    int getFirstDownwardEdge(int vertex){
+        return this.firstDownwardEdge[vertex];
+    }
+
+
+    int getDownwardEdge(int position){
+        return this.downwardEdges[position];
+    }
+
+
+    /**
+     * Adds the edges of the {@link RoadGraph} represented by the given edge (i.e. the edge itself or the unpacked
+     * edges of a shortcut) to the given stack
+     */
+    void unpack(int edge, Router.EdgeStack result, Router.EdgeStack pending){
+        pending.push(edge);
+        while(!pending.isEmpty()){
+            int current = pending.pop();
+            if(this.firstChildren[current] < 0){
+                result.push(current);
+            }
+            else{
+                pending.push(this.secondChildren[current]);
+                pending.push(this.firstChildren[current]);
+            }
+        }
+    }
+
+
+    /**
+     * Performs the contraction of all vertices of a {@link RoadGraph}
+     */
+    private static class Contractor {
+
+        //the maximum number of vertices settled by a witness search (less while just computing priorities)
+        private static final int WITNESS_SEARCH_LIMIT = 256;
+        private static final int SIMULATION_WITNESS_SEARCH_LIMIT = 32;
+
+        //the maximum number of edges of a witness found while contracting a vertex (lower limits, in particular
+        //for the simulated contractions, miss too many witnesses and result in more shortcuts and longer runs)
+        private static final int HOP_LIMIT = 12;
+
+        //the maximum number of neighbors of a contracted vertex whose priorities are updated by a simulated
+        //contraction (the others are updated when they are polled from the queue)
+        private static final int NEIGHBOR_UPDATE_LIMIT = 8;
+
+        private final RoadGraph graph;
+        private final int vertexCount;
+
+        //all edges (growing with every shortcut)
+        private int[] sources;
+        private int[] targets;
+        private double[] weights;
+        private int[] firstChildren;
+        private int[] secondChildren;
+        private int edgeCount;
+
+        //the edges of the remaining graph, i.e. between vertices that are not yet contracted
+        private final int[][] outgoingEdges;
+        private final int[] outgoingCounts;
+        private final int[][] incomingEdges;
+        private final int[] incomingCounts;
+
+        private final boolean[] contracted;
+        private final int[] contractedNeighbors;
+        private final int[] priorities;
+        private final int[] neighborStamps;
+        private final SearchSpace witnessSearch;
+        private final int[] hops;
+        private int neighborUpdates;
+
+
+        private Contractor(RoadGraph graph){
+            this.graph = graph;
+            this.vertexCount = graph.getVertexCount();
+
+            int capacity = Math.max(16, graph.getEdgeCount() * 2);
+            this.sources = new int[capacity];
+            this.targets = new int[capacity];
+            this.weights = new double[capacity];
+            this.firstChildren = new int[capacity];
+            this.secondChildren = new int[capacity];
+
+            this.outgoingEdges = new int[this.vertexCount][];
+            this.outgoingCounts = new int[this.vertexCount];
+            this.incomingEdges = new int[this.vertexCount][];
+            this.incomingCounts = new int[this.vertexCount];
+            for(int vertex = 0; vertex < this.vertexCount; vertex++){
+                this.outgoingEdges[vertex] = new int[graph.getFirstEdge(vertex + 1) - graph.getFirstEdge(vertex) + 2];
+                this.incomingEdges[vertex] = new int[graph.getFirstIncomingEdge(vertex + 1) -
+                        graph.getFirstIncomingEdge(vertex) + 2];
+            }
+            for(int edge = 0; edge < graph.getEdgeCount(); edge++){
+                addEdge(graph.getSource(edge), graph.getTarget(edge), graph.getLength(edge), -1, -1);
+            }
+
+            this.contracted = new boolean[this.vertexCount];
+            this.contractedNeighbors = new int[this.vertexCount];
+            this.priorities = new int[this.vertexCount];
+            this.neighborStamps = new int[this.vertexCount];
+            this.witnessSearch = new SearchSpace(this.vertexCount);
+            this.hops = new int[this.vertexCount];
+        }
+
+
+        private ContractionHierarchy contract(){
+            IntMinHeap queue = new IntMinHeap();
+            for(int vertex = 0; vertex < this.vertexCount; vertex++){
+                this.priorities[vertex] = getPriority(vertex);
+                queue.add(this.priorities[vertex], vertex);
+            }
+
+            int[] ranks = new int[this.vertexCount];
+            int rank = 0;
+            while(!queue.isEmpty()){
+                double key = queue.peekKey();
+                int vertex = queue.poll();
+                if(this.contracted[vertex] || key != this.priorities[vertex])
+                    continue;
+
+                //the number of shortcuts might have changed by the contraction of other vertices
+                int priority = getPriority(vertex);
+                if(!queue.isEmpty() && priority > queue.peekKey()){
+                    this.priorities[vertex] = priority;
+                    queue.add(priority, vertex);
+                    continue;
+                }
+
+                contract(vertex, false);
+                this.contracted[vertex] = true;
+                ranks[vertex] = rank++;
+                removeEdges(vertex);
+
+                //update the priorities of the neighbors (once per neighbor)
+                this.neighborUpdates = 0;
+                updateNeighbors(this.outgoingEdges[vertex], this.outgoingCounts[vertex], true, rank, queue);
+                updateNeighbors(this.incomingEdges[vertex], this.incomingCounts[vertex], false, rank, queue);
+            }
+
+            return new ContractionHierarchy(this.graph, ranks, Arrays.copyOf(this.sources, this.edgeCount),
+                    Arrays.copyOf(this.targets, this.edgeCount), Arrays.copyOf(this.weights, this.edgeCount),
+                    Arrays.copyOf(this.firstChildren, this.edgeCount), Arrays.copyOf(this.secondChildren,
+                    this.edgeCount));
+        }
+
+
+        /**
+         * Updates the priorities of the neighbors of a contracted vertex. Beyond the limit of simulated contractions,
+         * only the number of contracted neighbors is added and the update of the edge difference is deferred until
+         * the neighbor is polled from the queue.
+         */
+        private void updateNeighbors(int[] edges, int count, boolean outgoing, int stamp, IntMinHeap queue){
+            for(int i = 0; i < count; i++){
+                int neighbor = outgoing ? this.targets[edges[i]] : this.sources[edges[i]];
+                if(this.contracted[neighbor] || this.neighborStamps[neighbor] == stamp)
+                    continue;
+
+                this.neighborStamps[neighbor] = stamp;
+                this.contractedNeighbors[neighbor]++;
+                if(++this.neighborUpdates <= NEIGHBOR_UPDATE_LIMIT){
+                    this.priorities[neighbor] = getPriority(neighbor);
+                }
+                else{
+                    this.priorities[neighbor]++;
+                }
+                queue.add(this.priorities[neighbor], neighbor);
+            }
+        }
+
+
+        private int getPriority(int vertex){
+            int edgeDifference = contract(vertex, true) - this.outgoingCounts[vertex] - this.incomingCounts[vertex];
+            return 2 * edgeDifference + this.contractedNeighbors[vertex];
+        }
+
+
+        /**
+         * Returns the number of shortcuts needed to contract the given vertex and adds them if the contraction is
+         * not just simulated
+         */
+        private int contract(int vertex, boolean simulate){
+            int shortcuts = 0;
+            for(int i = 0; i < this.incomingCounts[vertex]; i++){
+                int incomingEdge = this.incomingEdges[vertex][i];
+                int source = this.sources[incomingEdge];
+
+                double maxWeight = -1;
+                for(int j = 0; j < this.outgoingCounts[vertex]; j++){
+                    int outgoingEdge = this.outgoingEdges[vertex][j];
+                    if(this.targets[outgoingEdge] != source){
+                        maxWeight = Math.max(maxWeight, this.weights[outgoingEdge]);
+                    }
+                }
+                if(maxWeight < 0)
+                    continue;
+
+                double incomingWeight = this.weights[incomingEdge];
+                searchWitnesses(source, vertex, incomingWeight + maxWeight,
+                        simulate ? SIMULATION_WITNESS_SEARCH_LIMIT : WITNESS_SEARCH_LIMIT, simulate ? -1 : HOP_LIMIT);
+
+                for(int j = 0; j < this.outgoingCounts[vertex]; j++){
+                    int outgoingEdge = this.outgoingEdges[vertex][j];
+                    int target = this.targets[outgoingEdge];
+                    double weight = incomingWeight + this.weights[outgoingEdge];
+                    if(target != source && this.witnessSearch.getDistance(target) > weight){
+                        shortcuts++;
+                        if(!simulate){
+                            addShortcut(source, target, weight, incomingEdge, outgoingEdge);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+
+        /**
+         * Runs a (bounded) Dijkstra search from the given source that avoids the given vertex and (unless the hop
+         * limit is negative) follows paths of at most the given number of edges
+         */
+        private void searchWitnesses(int source, int avoidedVertex, double maxDistance, int limit, int hopLimit){
+            SearchSpace search = this.witnessSearch;
+            search.reset();
+            search.update(source, 0, -1, 0);
+            this.hops[source] = 0;
+
+            int settled = 0;
+            while(!search.queue.isEmpty() && search.queue.peekKey() <= maxDistance){
+                int vertex = search.queue.poll();
+                if(!search.settle(vertex))
+                    continue;
+
+                if(++settled > limit)
+                    break;
+
+                if(this.hops[vertex] == hopLimit)
+                    continue;
+
+                double distance = search.getDistance(vertex);
+                for(int i = 0; i < this.outgoingCounts[vertex]; i++){
+                    int edge = this.outgoingEdges[vertex][i];
+                    int target = this.targets[edge];
+                    double targetDistance = distance + this.weights[edge];
+                    if(target != avoidedVertex && targetDistance < search.getDistance(target)){
+                        search.update(target, targetDistance, edge, targetDistance);
+                        this.hops[target] = this.hops[vertex] + 1;
+                    }
+                }
+            }
+        }
+
+
+        /**
+         * Adds a shortcut unless there is already a shorter edge between the same vertices (i.e. a witness beyond
+         * the limit of the witness search) and replaces longer ones
+         */
+        private void addShortcut(int source, int target, double weight, int firstChild, int secondChild){
+            int[] edges = this.outgoingEdges[source];
+            for(int i = 0; i < this.outgoingCounts[source]; i++){
+                if(this.targets[edges[i]] == target && this.weights[edges[i]] <= weight)
+                    return;
+            }
+
+            //the replaced edges remain part of the hierarchy (e.g. as children of other shortcuts)
+            this.outgoingCounts[source] = retainEdges(edges, this.outgoingCounts[source], target, true);
+            this.incomingCounts[target] = retainEdges(this.incomingEdges[target], this.incomingCounts[target],
+                    source, false);
+
+            addEdge(source, target, weight, firstChild, secondChild);
+        }
+
+
+        private void addEdge(int source, int target, double weight, int firstChild, int secondChild){
+            if(this.edgeCount == this.sources.length){
+                int capacity = this.edgeCount << 1;
+                this.sources = Arrays.copyOf(this.sources, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+                this.weights = Arrays.copyOf(this.weights, capacity);
+                this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+                this.secondChildren = Arrays.copyOf(this.secondChildren, capacity);
+            }
+
+            int edge = this.edgeCount++;
+            this.sources[edge] = source;
+            this.targets[edge] = target;
+            this.weights[edge] = weight;
+            this.firstChildren[edge] = firstChild;
+            this.secondChildren[edge] = secondChild;
+
+            if(this.outgoingCounts[source] == this.outgoingEdges[source].length){
+                this.outgoingEdges[source] = Arrays.copyOf(this.outgoingEdges[source], this.outgoingCounts[source] * 2);
+            }
+            this.outgoingEdges[source][this.outgoingCounts[source]++] = edge;
+
+            if(this.incomingCounts[target] == this.incomingEdges[target].length){
+                this.incomingEdges[target] = Arrays.copyOf(this.incomingEdges[target], this.incomingCounts[target] * 2);
+            }
+            this.incomingEdges[target][this.incomingCounts[target]++] = edge;
+        }
+
+
+        /**
+         * Removes the edges of the given (contracted) vertex from the lists of its neighbors
+         */
+        private void removeEdges(int vertex){
+            for(int i = 0; i < this.incomingCounts[vertex]; i++){
+                int source = this.sources[this.incomingEdges[vertex][i]];
+                this.outgoingCounts[source] = retainEdges(this.outgoingEdges[source], this.outgoingCounts[source],
+                        vertex, true);
+            }
+            for(int i = 0; i < this.outgoingCounts[vertex]; i++){
+                int target = this.targets[this.outgoingEdges[vertex][i]];
+                this.incomingCounts[target] = retainEdges(this.incomingEdges[target], this.incomingCounts[target],
+                        vertex, false);
+            }
+        }
+
+
+        private int retainEdges(int[] edges, int count, int removedVertex, boolean outgoing){
+            int result = 0;
+            for(int i = 0; i < count; i++){
+                int neighbor = outgoing ? this.targets[edges[i]] : this.sources[edges[i]];
+                if(neighbor != removedVertex){
+                    edges[result++] = edges[i];
+                }
+            }
+            return result;
+        }
+    }
+}
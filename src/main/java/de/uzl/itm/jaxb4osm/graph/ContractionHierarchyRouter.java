@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+/**
+ * A {@link Router} running bidirectional searches on a {@link ContractionHierarchy}, i.e. the forward search from
+ * the source only follows edges to vertices of a higher rank and the backward search from the target only follows
+ * edges from vertices of a higher rank. A vertex is not expanded if it can be reached on a shorter path via a
+ * vertex of higher rank (stall-on-demand). The shortcuts of the resulting path are unpacked into the edges of the
+ * {@link RoadGraph}.
+ *
+ * @author Oliver Kleine
+ */
+class ContractionHierarchyRouter extends Router {
+
+    private final ContractionHierarchy hierarchy;
+    private final ThreadLocal<SearchSpace[]> searchSpaces;
+
+
+    ContractionHierarchyRouter(ContractionHierarchy hierarchy){
+        super(hierarchy.getGraph());
+        this.hierarchy = hierarchy;
+
+        final int vertexCount = hierarchy.getGraph().getVertexCount();
+        this.searchSpaces = new ThreadLocal<SearchSpace[]>(){
+            @Override
+            protected SearchSpace[] initialValue() {
+                return new SearchSpace[]{new SearchSpace(vertexCount), new SearchSpace(vertexCount)};
+            }
+        };
+    }
+
+
+    @Override
+    public Route route(int sourceVertex, int targetVertex){
+        ContractionHierarchy hierarchy = this.hierarchy;
+        SearchSpace[] searchSpaces = this.searchSpaces.get();
+        SearchSpace forward = searchSpaces[0];
+        SearchSpace backward = searchSpaces[1];
+
+        forward.reset();
+        backward.reset();
+        forward.update(sourceVertex, 0, -1, 0);
+        backward.update(targetVertex, 0, -1, 0);
+
+        double shortest = sourceVertex == targetVertex ? 0 : Double.POSITIVE_INFINITY;
+        int meetingVertex = sourceVertex;
+
+        while(true){
+            //in contrast to plain Dijkstra, each search continues until its own key reaches the shortest path
+            boolean forwardDone = forward.queue.isEmpty() || forward.queue.peekKey() >= shortest;
+            boolean backwardDone = backward.queue.isEmpty() || backward.queue.peekKey() >= shortest;
+            if(forwardDone && backwardDone)
+                break;
+
+            if(!forwardDone && (backwardDone || forward.queue.peekKey() <= backward.queue.peekKey())){
+                int vertex = forward.queue.poll();
+                if(!forward.settle(vertex))
+                    continue;
+
+                double distance = forward.getDistance(vertex);
+                if(isStalled(vertex, distance, forward, true))
+                    continue;
+
+                for(int i = hierarchy.getFirstUpwardEdge(vertex); i < hierarchy.getFirstUpwardEdge(vertex + 1); i++){
+                    int edge = hierarchy.getUpwardEdge(i);
+                    int target = hierarchy.getTarget(edge);
+                    double targetDistance = distance + hierarchy.getWeight(edge);
+                    if(targetDistance < forward.getDistance(target)){
+                        forward.update(target, targetDistance, edge, targetDistance);
+                        if(targetDistance + backward.getDistance(target) < shortest){
+                            shortest = targetDistance + backward.getDistance(target);
+                            meetingVertex = target;
+                        }
+                    }
+                }
+            }
+            else{
+                int vertex = backward.queue.poll();
+                if(!backward.settle(vertex))
+                    continue;
+
+                double distance = backward.getDistance(vertex);
+                if(isStalled(vertex, distance, backward, false))
+                    continue;
+
+                for(int i = hierarchy.getFirstDownwardEdge(vertex); i < hierarchy.getFirstDownwardEdge(vertex + 1);
+                        i++){
+                    int edge = hierarchy.getDownwardEdge(i);
+                    int source = hierarchy.getSource(edge);
+                    double sourceDistance = distance + hierarchy.getWeight(edge);
+                    if(sourceDistance < backward.getDistance(source)){
+                        backward.update(source, sourceDistance, edge, sourceDistance);
+                        if(sourceDistance + forward.getDistance(source) < shortest){
+                            shortest = sourceDistance + forward.getDistance(source);
+                            meetingVertex = source;
+                        }
+                    }
+                }
+            }
+        }
+
+        if(shortest == Double.POSITIVE_INFINITY)
+            return null;
+
+        return createRoute(sourceVertex, forward, meetingVertex, backward);
+    }
+
+
+    /**
+     * Returns <code>true</code> if the given vertex is reached on a shorter path via a vertex of higher rank, i.e.
+     * the vertex is not on a shortest path of the search
+     */
+    private boolean isStalled(int vertex, double distance, SearchSpace searchSpace, boolean forward){
+        ContractionHierarchy hierarchy = this.hierarchy;
+        if(forward){
+            for(int i = hierarchy.getFirstDownwardEdge(vertex); i < hierarchy.getFirstDownwardEdge(vertex + 1); i++){
+                int edge = hierarchy.getDownwardEdge(i);
+                if(searchSpace.getDistance(hierarchy.getSource(edge)) + hierarchy.getWeight(edge) < distance)
+                    return true;
+            }
+        }
+        else{
+            for(int i = hierarchy.getFirstUpwardEdge(vertex); i < hierarchy.getFirstUpwardEdge(vertex + 1); i++){
+                int edge = hierarchy.getUpwardEdge(i);
+                if(searchSpace.getDistance(hierarchy.getTarget(edge)) + hierarchy.getWeight(edge) < distance)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+
+    @Override
+    Route createRoute(int sourceVertex, SearchSpace forward, int meetingVertex, SearchSpace backward){
+        EdgeStack shortcuts = new EdgeStack();
+        for(int vertex = meetingVertex; vertex != sourceVertex; ){
+            int edge = forward.getParentEdge(vertex);
+            shortcuts.push(edge);
+            vertex = this.hierarchy.getSource(edge);
+        }
+        shortcuts.reverse();
+        for(int vertex = meetingVertex; backward.getParentEdge(vertex) >= 0; ){
+            int edge = backward.getParentEdge(vertex);
+            shortcuts.push(edge);
+            vertex = this.hierarchy.getTarget(edge);
+        }
+
+        EdgeStack edges = new EdgeStack();
+        EdgeStack pending = new EdgeStack();
+        for(int edge : shortcuts.toArray()){
+            this.hierarchy.unpack(edge, edges, pending);
+        }
+
+        return new Route(getGraph(), sourceVertex, edges.toArray());
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+/**
+ * A {@link Router} running bidirectional Dijkstra searches, i.e. a forward search from the source (along the
+ * outgoing edges) and a backward search from the target (along the incoming edges). The search with the smaller
+ * queue key is continued until the sum of both keys reaches the length of the shortest path found so far.
+ *
+ * @author Oliver Kleine
+ */
+class DijkstraRouter extends Router {
+
+    private final ThreadLocal<SearchSpace[]> searchSpaces;
+
+
+    DijkstraRouter(final RoadGraph graph){
+        super(graph);
+        this.searchSpaces = new ThreadLocal<SearchSpace[]>(){
+            @Override
+            protected SearchSpace[] initialValue() {
+                return new SearchSpace[]{
+                        new SearchSpace(graph.getVertexCount()), new SearchSpace(graph.getVertexCount())
+                };
+            }
+        };
+    }
+
+
+    @Override
+    public Route route(int sourceVertex, int targetVertex){
+        RoadGraph graph = getGraph();
+        SearchSpace[] searchSpaces = this.searchSpaces.get();
+        SearchSpace forward = searchSpaces[0];
+        SearchSpace backward = searchSpaces[1];
+
+        forward.reset();
+        backward.reset();
+        forward.update(sourceVertex, 0, -1, 0);
+        backward.update(targetVertex, 0, -1, 0);
+
+        double shortest = sourceVertex == targetVertex ? 0 : Double.POSITIVE_INFINITY;
+        int meetingVertex = sourceVertex;
+
+        while(true){
+            boolean forwardDone = forward.queue.isEmpty();
+            boolean backwardDone = backward.queue.isEmpty();
+            if(forwardDone && backwardDone)
+                break;
+
+            //no shorter path can be found if the keys of both queues sum up to the shortest path found so far
+            double forwardKey = forwardDone ? 0 : forward.queue.peekKey();
+            double backwardKey = backwardDone ? 0 : backward.queue.peekKey();
+            if(forwardKey + backwardKey >= shortest)
+                break;
+
+            if(!forwardDone && (backwardDone || forwardKey <= backwardKey)){
+                int vertex = forward.queue.poll();
+                if(!forward.settle(vertex))
+                    continue;
+
+                double distance = forward.getDistance(vertex);
+                for(int edge = graph.getFirstEdge(vertex); edge < graph.getFirstEdge(vertex + 1); edge++){
+                    int target = graph.getTarget(edge);
+                    double targetDistance = distance + graph.getLength(edge);
+                    if(targetDistance < forward.getDistance(target)){
+                        forward.update(target, targetDistance, edge, targetDistance);
+                        if(targetDistance + backward.getDistance(target) < shortest){
+                            shortest = targetDistance + backward.getDistance(target);
+                            meetingVertex = target;
+                        }
+                    }
+                }
+            }
+            else{
+                int vertex = backward.queue.poll();
+                if(!backward.settle(vertex))
+                    continue;
+
+                double distance = backward.getDistance(vertex);
+                for(int i = graph.getFirstIncomingEdge(vertex); i < graph.getFirstIncomingEdge(vertex + 1); i++){
+                    int edge = graph.getIncomingEdge(i);
+                    int source = graph.getSource(edge);
+                    double sourceDistance = distance + graph.getLength(edge);
+                    if(sourceDistance < backward.getDistance(source)){
+                        backward.update(source, sourceDistance, edge, sourceDistance);
+                        if(sourceDistance + forward.getDistance(source) < shortest){
+                            shortest = sourceDistance + forward.getDistance(source);
+                            meetingVertex = source;
+                        }
+                    }
+                }
+            }
+        }
+
+        if(shortest == Double.POSITIVE_INFINITY)
+            return null;
+
+        return createRoute(sourceVertex, forward, meetingVertex, backward);
+    }
+}
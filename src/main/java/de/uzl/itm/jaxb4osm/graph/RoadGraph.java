@@ -0,0 +1,425 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.util.LongHashSet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A routable road graph built from the {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s of an (already filtered)
+ * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}. The vertices are the junctions (i.e. nodes referenced by more than
+ * one way or more than once by the same way) and the endpoints of the ways. The edges are the sections of the
+ * ways between two consecutive vertices. Every edge has a length (in meters, along all nodes of the section) and
+ * the ID of its way. Ways are traversable in both directions unless {@link WayElement#isOneWay()} is
+ * <code>true</code>, in which case there are only edges in the direction of the way (or in the opposite direction
+ * for ways tagged with <code>oneway=-1</code>).
+ *
+ * All data is kept in primitive arrays in compressed sparse row (CSR) layout, i.e. the outgoing edges of a vertex
+ * <code>v</code> are the edges <code>getFirstEdge(v)</code> (inclusive) to <code>getFirstEdge(v + 1)</code>
+ * (exclusive), and the incoming edges of <code>v</code> are <code>getIncomingEdge(i)</code> for <code>i</code> from
+ * <code>getFirstIncomingEdge(v)</code> (inclusive) to <code>getFirstIncomingEdge(v + 1)</code> (exclusive).
+ *
+ * <b>Note:</b> A way section with a node that is not contained in the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+ * is not part of the graph, i.e. the nodes next to such a gap are endpoints. Instances of {@link RoadGraph} are
+ * immutable and thus thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class RoadGraph {
+
+    /**
+     * The mean radius of the earth in meters
+     */
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    //the vertices (ordered by node ID)
+    private final long[] nodeIDs;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    //the edges ordered by source vertex
+    private final int[] firstEdge;
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    private final double[] edgeLengths;
+    private final long[] edgeWayIDs;
+
+    //the indexes of the edges ordered by target vertex
+    private final int[] firstIncomingEdge;
+    private final int[] incomingEdges;
+
+
+    RoadGraph(long[] nodeIDs, double[] latitudes, double[] longitudes, int[] edgeSources, int[] edgeTargets,
+            double[] edgeLengths, long[] edgeWayIDs){
+
+        this.nodeIDs = nodeIDs;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+
+        int vertexCount = nodeIDs.length;
+        int edgeCount = edgeSources.length;
+
+        //sort the edges by source vertex (counting sort)
+        this.firstEdge = new int[vertexCount + 1];
+        for(int edge = 0; edge < edgeCount; edge++){
+            this.firstEdge[edgeSources[edge] + 1]++;
+        }
+        for(int vertex = 0; vertex < vertexCount; vertex++){
+            this.firstEdge[vertex + 1] += this.firstEdge[vertex];
+        }
+
+        this.edgeSources = new int[edgeCount];
+        this.edgeTargets = new int[edgeCount];
+        this.edgeLengths = new double[edgeCount];
+        this.edgeWayIDs = new long[edgeCount];
+        int[] nextEdge = Arrays.copyOf(this.firstEdge, vertexCount);
+        for(int edge = 0; edge < edgeCount; edge++){
+            int position = nextEdge[edgeSources[edge]]++;
+            this.edgeSources[position] = edgeSources[edge];
+            this.edgeTargets[position] = edgeTargets[edge];
+            this.edgeLengths[position] = edgeLengths[edge];
+            this.edgeWayIDs[position] = edgeWayIDs[edge];
+        }
+
+        //index the edges by target vertex (counting sort)
+        this.firstIncomingEdge = new int[vertexCount + 1];
+        for(int edge = 0; edge < edgeCount; edge++){
+            this.firstIncomingEdge[this.edgeTargets[edge] + 1]++;
+        }
+        for(int vertex = 0; vertex < vertexCount; vertex++){
+            this.firstIncomingEdge[vertex + 1] += this.firstIncomingEdge[vertex];
+        }
+
+        this.incomingEdges = new int[edgeCount];
+        nextEdge = Arrays.copyOf(this.firstIncomingEdge, vertexCount);
+        for(int edge = 0; edge < edgeCount; edge++){
+            this.incomingEdges[nextEdge[this.edgeTargets[edge]]++] = edge;
+        }
+    }
+
+    /**
+     * Creates a new {@link RoadGraph} from the {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s currently contained in
+     * the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}. To build a graph of the street network, the
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} is supposed to be unmarshalled with a suitable
+     * {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} (e.g.
+     * {@link de.uzl.itm.jaxb4osm.tools.WayTagFilter#STREETS}).
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to build the graph from
+     *
+     * @return a new {@link RoadGraph} built from the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     */
+    public static RoadGraph create(OsmElement osmElement){
+        List<WayElement> wayElements = osmElement.getWayElements();
+
+        //vertices are nodes referenced more than once, endpoints of ways and nodes next to gaps
+        LongHashSet referencedNodeIDs = new LongHashSet();
+        LongHashSet vertexNodeIDs = new LongHashSet();
+        for(WayElement wayElement : wayElements){
+            int referenceCount = wayElement.getNodeReferenceCount();
+            boolean previousMissing = true;
+            long previousReference = 0;
+            for(int i = 0; i < referenceCount; i++){
+                long reference = wayElement.getNodeReference(i);
+                boolean missing = osmElement.getNodeElement(reference) == null;
+                if(!missing){
+                    if(!referencedNodeIDs.add(reference) || previousMissing || i == referenceCount - 1){
+                        vertexNodeIDs.add(reference);
+                    }
+                }
+                else if(!previousMissing){
+                    vertexNodeIDs.add(previousReference);
+                }
+                previousMissing = missing;
+                previousReference = reference;
+            }
+        }
+
+        long[] nodeIDs = vertexNodeIDs.toArray();
+        Arrays.sort(nodeIDs);
+        double[] latitudes = new double[nodeIDs.length];
+        double[] longitudes = new double[nodeIDs.length];
+        for(int vertex = 0; vertex < nodeIDs.length; vertex++){
+            NodeElement nodeElement = osmElement.getNodeElement(nodeIDs[vertex]);
+            latitudes[vertex] = nodeElement.getLatitude();
+            longitudes[vertex] = nodeElement.getLongitude();
+        }
+
+        //split the ways into edges between consecutive vertices
+        EdgeList edges = new EdgeList();
+        for(WayElement wayElement : wayElements){
+            boolean oneWay = wayElement.isOneWay();
+            boolean reverse = oneWay && "-1".equals(wayElement.getTagValue("oneway"));
+
+            int source = -1;
+            double length = 0;
+            NodeElement previous = null;
+            for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                long reference = wayElement.getNodeReference(i);
+                NodeElement nodeElement = osmElement.getNodeElement(reference);
+                if(nodeElement == null){
+                    source = -1;
+                    previous = null;
+                    continue;
+                }
+
+                if(previous != null){
+                    length += distance(previous.getLatitude(), previous.getLongitude(), nodeElement.getLatitude(),
+                            nodeElement.getLongitude());
+                }
+                previous = nodeElement;
+
+                int vertex = Arrays.binarySearch(nodeIDs, reference);
+                if(vertex < 0)
+                    continue;
+
+                //self-loops never shorten a path
+                if(source >= 0 && source != vertex){
+                    if(!oneWay || !reverse){
+                        edges.add(source, vertex, length, wayElement.getID());
+                    }
+                    if(!oneWay || reverse){
+                        edges.add(vertex, source, length, wayElement.getID());
+                    }
+                }
+
+                source = vertex;
+                length = 0;
+            }
+        }
+
+        return new RoadGraph(nodeIDs, latitudes, longitudes, edges.getSources(), edges.getTargets(),
+                edges.getLengths(), edges.getWayIDs());
+    }
+
+    /**
+     * Returns the great-circle distance (in meters) between the given positions.
+     *
+     * @param latitude1 the latitude of the first position
+     * @param longitude1 the longitude of the first position
+     * @param latitude2 the latitude of the second position
+     * @param longitude2 the longitude of the second position
+     *
+     * @return the great-circle distance (in meters) between the given positions
+     */
+    public static double distance(double latitude1, double longitude1, double latitude2, double longitude2){
+        double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinLatitude * sinLatitude + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return the number of vertices
+     */
+    public int getVertexCount(){
+        return this.nodeIDs.length;
+    }
+
+    /**
+     * Returns the number of (directed) edges.
+     *
+     * @return the number of (directed) edges
+     */
+    public int getEdgeCount(){
+        return this.edgeTargets.length;
+    }
+
+    /**
+     * Returns the vertex of the node with the given ID.
+     *
+     * @param nodeID the ID of the node
+     *
+     * @return the vertex of the node with the given ID or <code>-1</code> if the node is no vertex
+     */
+    public int getVertex(long nodeID){
+        int vertex = Arrays.binarySearch(this.nodeIDs, nodeID);
+        return vertex < 0 ? -1 : vertex;
+    }
+
+    /**
+     * Returns the ID of the node of the given vertex.
+     *
+     * @param vertex the vertex
+     *
+     * @return the ID of the node of the given vertex
+     */
+    public long getNodeID(int vertex){
+        return this.nodeIDs[vertex];
+    }
+
+    /**
+     * Returns the latitude of the given vertex.
+     *
+     * @param vertex the vertex
+     *
+     * @return the latitude of the given vertex
+     */
+    public double getLatitude(int vertex){
+        return this.latitudes[vertex];
+    }
+
+    /**
+     * Returns the longitude of the given vertex.
+     *
+     * @param vertex the vertex
+     *
+     * @return the longitude of the given vertex
+     */
+    public double getLongitude(int vertex){
+        return this.longitudes[vertex];
+    }
+
+    /**
+     * Returns the index of the first outgoing edge of the given vertex. The outgoing edges of the vertex end before
+     * <code>getFirstEdge(vertex + 1)</code>, i.e. <code>getFirstEdge(getVertexCount())</code> is the number of edges.
+     *
+     * @param vertex the vertex (or the number of vertices)
+     *
+     * @return the index of the first outgoing edge of the given vertex
+     */
+    public int getFirstEdge(int vertex){
+        return this.firstEdge[vertex];
+    }
+
+    /**
+     * Returns the source vertex of the given edge.
+     *
+     * @param edge the index of the edge
+     *
+     * @return the source vertex of the given edge
+     */
+    public int getSource(int edge){
+        return this.edgeSources[edge];
+    }
+
+    /**
+     * Returns the target vertex of the given edge.
+     *
+     * @param edge the index of the edge
+     *
+     * @return the target vertex of the given edge
+     */
+    public int getTarget(int edge){
+        return this.edgeTargets[edge];
+    }
+
+    /**
+     * Returns the length (in meters) of the given edge.
+     *
+     * @param edge the index of the edge
+     *
+     * @return the length (in meters) of the given edge
+     */
+    public double getLength(int edge){
+        return this.edgeLengths[edge];
+    }
+
+    /**
+     * Returns the ID of the way the given edge is a section of.
+     *
+     * @param edge the index of the edge
+     *
+     * @return the ID of the way the given edge is a section of
+     */
+    public long getWayID(int edge){
+        return this.edgeWayIDs[edge];
+    }
+
+    /**
+     * Returns the position of the first incoming edge of the given vertex (see {@link #getIncomingEdge(int)}). The
+     * incoming edges of the vertex end before <code>getFirstIncomingEdge(vertex + 1)</code>.
+     *
+     * @param vertex the vertex (or the number of vertices)
+     *
+     * @return the position of the first incoming edge of the given vertex
+     */
+    public int getFirstIncomingEdge(int vertex){
+        return this.firstIncomingEdge[vertex];
+    }
+
+    /**
+     * Returns the index of the edge at the given position of the incoming edges.
+     *
+     * @param position the position of the incoming edge
+     *
+     * @return the index of the edge at the given position of the incoming edges
+     */
+    public int getIncomingEdge(int position){
+        return this.incomingEdges[position];
+    }
+
+
+    /**
+     * A growable list of edges in primitive arrays
+     */
+    private static class EdgeList {
+
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private double[] lengths = new double[1024];
+        private long[] wayIDs = new long[1024];
+        private int size;
+
+        private void add(int source, int target, double length, long wayID){
+            if(this.size == this.sources.length){
+                int capacity = this.size << 1;
+                this.sources = Arrays.copyOf(this.sources, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+                this.lengths = Arrays.copyOf(this.lengths, capacity);
+                this.wayIDs = Arrays.copyOf(this.wayIDs, capacity);
+            }
+
+            this.sources[this.size] = source;
+            this.targets[this.size] = target;
+            this.lengths[this.size] = length;
+            this.wayIDs[this.size] = wayID;
+            this.size++;
+        }
+
+        private int[] getSources(){
+            return Arrays.copyOf(this.sources, this.size);
+        }
+
+        private int[] getTargets(){
+            return Arrays.copyOf(this.targets, this.size);
+        }
+
+        private double[] getLengths(){
+            return Arrays.copyOf(this.lengths, this.size);
+        }
+
+        private long[] getWayIDs(){
+            return Arrays.copyOf(this.wayIDs, this.size);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+import java.util.Arrays;
+
+/**
+ * A route between two vertices of a {@link RoadGraph} as returned by a {@link Router}. A route consists of the
+ * edges from the source to the target vertex, i.e. {@link #getNodeIDs()} returns the IDs of the vertices along the
+ * route (not all nodes of the ways) and {@link #getWayIDs()} returns the IDs of the ways of the edges.
+ *
+ * <b>Note:</b> Instances of {@link Route} are immutable and thus thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class Route {
+
+    private final double distance;
+    private final int[] edges;
+    private final long[] nodeIDs;
+    private final long[] wayIDs;
+
+
+    Route(RoadGraph graph, int sourceVertex, int[] edges){
+        this.edges = edges;
+        this.nodeIDs = new long[edges.length + 1];
+        this.wayIDs = new long[edges.length];
+
+        this.nodeIDs[0] = graph.getNodeID(sourceVertex);
+        double distance = 0;
+        for(int i = 0; i < edges.length; i++){
+            distance += graph.getLength(edges[i]);
+            this.nodeIDs[i + 1] = graph.getNodeID(graph.getTarget(edges[i]));
+            this.wayIDs[i] = graph.getWayID(edges[i]);
+        }
+        this.distance = distance;
+    }
+
+    /**
+     * Returns the length of this route in meters
+     *
+     * @return the length of this route in meters
+     */
+    public double getDistance(){
+        return this.distance;
+    }
+
+    /**
+     * Returns the edges (of the {@link RoadGraph}) of this route in the order of traversal
+     *
+     * @return the edges (of the {@link RoadGraph}) of this route in the order of traversal
+     */
+    public int[] getEdges(){
+        return Arrays.copyOf(this.edges, this.edges.length);
+    }
+
+    /**
+     * Returns the IDs of the vertices along this route starting with the source and ending with the target, i.e.
+     * the returned array is one element longer than the array returned by {@link #getWayIDs()}.
+     *
+     * @return the IDs of the vertices along this route
+     */
+    public long[] getNodeIDs(){
+        return Arrays.copyOf(this.nodeIDs, this.nodeIDs.length);
+    }
+
+    /**
+     * Returns the IDs of the ways of the edges of this route (one ID per edge, i.e. consecutive edges of the same way
+     * lead to repeated IDs).
+     *
+     * @return the IDs of the ways of the edges of this route
+     */
+    public long[] getWayIDs(){
+        return Arrays.copyOf(this.wayIDs, this.wayIDs.length);
+    }
+
+    @Override
+    public String toString(){
+        return "[Route: distance=" + this.distance + ", edges=" + this.edges.length + "]";
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Router} computes shortest {@link Route}s between two vertices of a {@link RoadGraph}. The edges are
+ * only traversed in their direction, i.e. one-way streets are respected (see {@link RoadGraph}). There are three
+ * implementations:
+ *
+ * <ul>
+ *     <li>{@link #createDijkstraRouter(RoadGraph)} runs a bidirectional Dijkstra search, i.e. one search from the
+ *     source and one (backwards) from the target until both searches meet.</li>
+ *     <li>{@link #createAStarRouter(RoadGraph)} runs an A* search directed towards the target by the great-circle
+ *     distance, which is a lower bound of the length of every path.</li>
+ *     <li>{@link #createContractionHierarchyRouter(ContractionHierarchy)} runs a bidirectional search on a
+ *     (preprocessed) {@link ContractionHierarchy} which settles only a few hundred vertices even on large
+ *     networks.</li>
+ * </ul>
+ *
+ * All implementations keep their queues and distances in primitive arrays. These arrays are allocated once per
+ * thread (with the size of the graph) and reused for all subsequent queries of the same thread, i.e. instances of
+ * {@link Router} are thread-safe and may be shared by any number of threads.
+ *
+ * @author Oliver Kleine
+ */
+public abstract class Router {
+
+    private final RoadGraph graph;
+
+
+    Router(RoadGraph graph){
+        this.graph = graph;
+    }
+
+    /**
+     * Creates a new {@link Router} running bidirectional Dijkstra searches on the given {@link RoadGraph}
+     *
+     * @param graph the {@link RoadGraph} to compute routes on
+     *
+     * @return a new {@link Router} running bidirectional Dijkstra searches
+     */
+    public static Router createDijkstraRouter(RoadGraph graph){
+        return new DijkstraRouter(graph);
+    }
+
+    /**
+     * Creates a new {@link Router} running A* searches on the given {@link RoadGraph}
+     *
+     * @param graph the {@link RoadGraph} to compute routes on
+     *
+     * @return a new {@link Router} running A* searches
+     */
+    public static Router createAStarRouter(RoadGraph graph){
+        return new AStarRouter(graph);
+    }
+
+    /**
+     * Creates a new {@link Router} running searches on the given {@link ContractionHierarchy}
+     *
+     * @param contractionHierarchy the {@link ContractionHierarchy} to compute routes on
+     *
+     * @return a new {@link Router} running searches on the given {@link ContractionHierarchy}
+     */
+    public static Router createContractionHierarchyRouter(ContractionHierarchy contractionHierarchy){
+        return new ContractionHierarchyRouter(contractionHierarchy);
+    }
+
+    /**
+     * Returns the {@link RoadGraph} this {@link Router} computes routes on
+     *
+     * @return the {@link RoadGraph} this {@link Router} computes routes on
+     */
+    public RoadGraph getGraph(){
+        return this.graph;
+    }
+
+    /**
+     * Returns the shortest {@link Route} from the vertex with the given source node ID to the vertex with the given
+     * target node ID or <code>null</code> if the target is not reachable from the source.
+     *
+     * @param sourceNodeID the ID of the node to start at
+     * @param targetNodeID the ID of the node to arrive at
+     *
+     * @return the shortest {@link Route} from the source to the target or <code>null</code> if there is none
+     *
+     * @throws java.lang.IllegalArgumentException if one of the nodes is no vertex of the {@link RoadGraph}
+     */
+    public Route route(long sourceNodeID, long targetNodeID){
+        return route(toVertex(sourceNodeID), toVertex(targetNodeID));
+    }
+
+    /**
+     * Returns the shortest {@link Route} from the given source vertex to the given target vertex or
+     * <code>null</code> if the target is not reachable from the source.
+     *
+     * @param sourceVertex the vertex to start at
+     * @param targetVertex the vertex to arrive at
+     *
+     * @return the shortest {@link Route} from the source to the target or <code>null</code> if there is none
+     */
+    public abstract Route route(int sourceVertex, int targetVertex);
+
+    /**
+     * Computes the shortest {@link Route}s between the given pairs of node IDs (i.e.
+     * <code>sourceNodeIDs[i]</code> to <code>targetNodeIDs[i]</code>) using the given
+     * {@link java.util.concurrent.ExecutorService}.
+     *
+     * @param sourceNodeIDs the IDs of the nodes to start at
+     * @param targetNodeIDs the IDs of the nodes to arrive at
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to compute the routes
+     *
+     * @return the (future) results of {@link #route(long, long)} in the order of the given pairs
+     */
+    public List<Future<Route>> route(long[] sourceNodeIDs, long[] targetNodeIDs, ExecutorService executorService){
+        if(sourceNodeIDs.length != targetNodeIDs.length){
+            throw new IllegalArgumentException("Number of sources (" + sourceNodeIDs.length + ") and targets (" +
+                    targetNodeIDs.length + ") differ!");
+        }
+
+        List<Future<Route>> result = new ArrayList<>(sourceNodeIDs.length);
+        for(int i = 0; i < sourceNodeIDs.length; i++){
+            final long sourceNodeID = sourceNodeIDs[i];
+            final long targetNodeID = targetNodeIDs[i];
+            result.add(executorService.submit(new Callable<Route>() {
+                @Override
+                public Route call() throws Exception {
+                    return route(sourceNodeID, targetNodeID);
+                }
+            }));
+        }
+
+        return result;
+    }
+
+
+    private int toVertex(long nodeID){
+        int vertex = this.graph.getVertex(nodeID);
+        if(vertex < 0){
+            throw new IllegalArgumentException("Node " + nodeID + " is no vertex of the road graph!");
+        }
+        return vertex;
+    }
+
+
+    /**
+     * Returns the {@link Route} given by the parent edges of the given search spaces, i.e. from the source via the
+     * given vertex (where both searches met) to the target.
+     */
+    Route createRoute(int sourceVertex, SearchSpace forward, int meetingVertex, SearchSpace backward){
+        EdgeStack edges = new EdgeStack();
+
+        //the forward parents lead back to the source, i.e. the edges are collected in reverse order
+        for(int vertex = meetingVertex; vertex != sourceVertex; ){
+            int edge = forward.getParentEdge(vertex);
+            edges.push(edge);
+            vertex = this.graph.getSource(edge);
+        }
+        edges.reverse();
+
+        if(backward != null){
+            for(int vertex = meetingVertex; backward.getParentEdge(vertex) >= 0; ){
+                int edge = backward.getParentEdge(vertex);
+                edges.push(edge);
+                vertex = this.graph.getTarget(edge);
+            }
+        }
+
+        return new Route(this.graph, sourceVertex, edges.toArray());
+    }
+
+
+    /**
+     * A growable array of edges
+     */
+    static class EdgeStack {
+
+        private int[] edges = new int[64];
+        private int size;
+
+        void push(int edge){
+            if(this.size == this.edges.length){
+                this.edges = Arrays.copyOf(this.edges, this.size << 1);
+            }
+            this.edges[this.size++] = edge;
+        }
+
+        int pop(){
+            return this.edges[--this.size];
+        }
+
+        boolean isEmpty(){
+            return this.size == 0;
+        }
+
+        void reverse(){
+            for(int i = 0, j = this.size - 1; i < j; i++, j--){
+                int edge = this.edges[i];
+                this.edges[i] = this.edges[j];
+                this.edges[j] = edge;
+            }
+        }
+
+        int[] toArray(){
+            return Arrays.copyOf(this.edges, this.size);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+import de.uzl.itm.jaxb4osm.util.IntMinHeap;
+
+import java.util.Arrays;
+
+/**
+ * The state of one direction of a shortest path search, i.e. the tentative distances and parent edges of the
+ * reached vertices and the queue of vertices to be settled. The arrays are allocated once per thread and are
+ * invalidated between two searches by incrementing a stamp instead of being refilled.
+ *
+ * @author Oliver Kleine
+ */
+class SearchSpace {
+
+    final IntMinHeap queue;
+
+    private final double[] distances;
+    private final int[] parentEdges;
+    private final int[] reached;
+    private final int[] settled;
+    private int stamp;
+
+
+    SearchSpace(int vertexCount){
+        this.queue = new IntMinHeap();
+        this.distances = new double[vertexCount];
+        this.parentEdges = new int[vertexCount];
+        this.reached = new int[vertexCount];
+        this.settled = new int[vertexCount];
+    }
+
+
+    void reset(){
+        this.queue.clear();
+        if(++this.stamp == Integer.MAX_VALUE){
+            Arrays.fill(this.reached, 0);
+            Arrays.fill(this.settled, 0);
+            this.stamp = 1;
+        }
+    }
+
+
+    boolean isReached(int vertex){
+        return this.reached[vertex] == this.stamp;
+    }
+
+
+    double getDistance(int vertex){
+        return this.reached[vertex] == this.stamp ? this.distances[vertex] : Double.POSITIVE_INFINITY;
+    }
+
+
+    int getParentEdge(int vertex){
+        return this.parentEdges[vertex];
+    }
+
+
+    /**
+     * Sets the distance and the parent edge of the given vertex and adds it to the queue with the given key
+     */
+    void update(int vertex, double distance, int parentEdge, double key){
+        this.reached[vertex] = this.stamp;
+        this.distances[vertex] = distance;
+        this.parentEdges[vertex] = parentEdge;
+        this.queue.add(key, vertex);
+    }
+
+
+    /**
+     * Marks the given vertex as settled and returns <code>false</code> if it was already settled before (i.e. the
+     * polled entry is outdated)
+     */
+    boolean settle(int vertex){
+        if(this.settled[vertex] == this.stamp)
+            return false;
+
+        this.settled[vertex] = this.stamp;
+        return true;
+    }
+
+
+    boolean isSettled(int vertex){
+        return this.settled[vertex] == this.stamp;
+    }
+}
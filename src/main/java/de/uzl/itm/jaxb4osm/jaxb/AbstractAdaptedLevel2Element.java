@@ -27,9 +27,14 @@ package de.uzl.itm.jaxb4osm.jaxb;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * Abstract base class for unmarshalled XML elements from OSM files (node, way, relation) after unmarshalling resp.
@@ -38,21 +43,31 @@ import java.util.Map;
  * In simple terms: Classes extending {@link AbstractAdaptedLevel2Element} are
  * the classes that represent layer 2 elements from OSM files to JAVA applications.
  *
+ * The tags are kept in a compact <code>String[]</code> (alternating keys and values). Keys and common values (like
+ * "highway" or "residential") are the shared instances of the {@link TagDictionary}, i.e. these strings are not
+ * kept once per element.
+ *
  * @author Oliver Kleine
  */
 public abstract class AbstractAdaptedLevel2Element extends AbstractLevel2Element{
 
     private static Logger log = LoggerFactory.getLogger(AbstractAdaptedLevel2Element.class.getName());
 
-    private Map<String, String> tags;
+    private static final String[] NO_TAGS = new String[0];
+
+    private String[] tags;
 
 
     AbstractAdaptedLevel2Element(AbstractPlainLevel2Element abstractPlainLevel2Element){
         super(abstractPlainLevel2Element);
 
-        this.tags = new HashMap<>();
+        this.tags = NO_TAGS;
         for(TagElement tagElement : abstractPlainLevel2Element.getTagElements()){
-            if(this.tags.put(tagElement.getKey(), tagElement.getValue()) != null){
+            if(tagElement.getKey() == null || tagElement.getValue() == null){
+                log.warn("Element with ID {} contains incomplete tag (k={}, v={})!", new Object[]{
+                    abstractPlainLevel2Element.getID(), tagElement.getKey(), tagElement.getValue()});
+            }
+            else if(putTag(tagElement.getKey(), tagElement.getValue()) != null){
                 log.warn("Node with ID {} contains multiple tags with key {}!", abstractPlainLevel2Element.getID(),
                     tagElement.getKey());
             }
@@ -75,7 +90,34 @@ public abstract class AbstractAdaptedLevel2Element extends AbstractLevel2Element
                                            String user, String userID){
 
         super(ID, version, changeset, visible, timestamp, user, userID);
-        this.tags = new HashMap<>();
+        this.tags = NO_TAGS;
+    }
+
+
+    /**
+     * Creates a new instance of {@link AbstractAdaptedLevel2Element} from the raw values of the metadata attributes
+     * (as contained in OSM files) which are handled according to the given {@link MetadataMode}.
+     *
+     * @param ID the value of the elements attribute "id"
+     * @param metadataMode the {@link MetadataMode} for the following attributes
+     * @param version the raw value of the elements attribute "version"
+     * @param changeset the raw value of the elements attribute "changeset"
+     * @param visible the raw value of the elements attribute "visible"
+     * @param timestamp the raw value of the elements attribute "timestamp"
+     * @param user the value of the elements attribute "user"
+     * @param userID the value of the elements attribute "userID"
+     */
+    protected AbstractAdaptedLevel2Element(Long ID, MetadataMode metadataMode, String version, String changeset,
+                                           String visible, String timestamp, String user, String userID){
+
+        super(ID, metadataMode, version, changeset, visible, timestamp, user, userID);
+        this.tags = NO_TAGS;
+    }
+
+
+    AbstractAdaptedLevel2Element(AbstractAdaptedLevel2Element other){
+        super(other);
+        this.tags = other.tags.length == 0 ? NO_TAGS : other.tags.clone();
     }
 
     /**
@@ -83,10 +125,14 @@ public abstract class AbstractAdaptedLevel2Element extends AbstractLevel2Element
      * elements from the original OSM file (<code><tag k="key" v="value"/></code>) are contained in this map with
      * the value of the "k" attribute as key and the value of the "v" attribute as the value.
      *
+     * <b>Note:</b> The returned {@link java.util.Map} is a view on the tags, i.e. modifications of the map modify
+     * the tags of this element. Neither keys nor values may be <code>null</code>. The (lightweight) view is created
+     * on every invocation and not cached, i.e. it does not take any memory per element.
+     *
      * @return a {@link java.util.Map} containing the tags of the respective parent element.
      */
     public Map<String, String> getTags(){
-        return this.tags;
+        return new TagMap();
     }
 
 
@@ -100,6 +146,211 @@ public abstract class AbstractAdaptedLevel2Element extends AbstractLevel2Element
      * if the parent element did not contain a tag child with such a "k" attribute.
      */
     public String getTagValue(String tagKey){
-        return this.tags.get(tagKey);
+        int index = indexOf(tagKey);
+        return index < 0 ? null : this.tags[index + 1];
+    }
+
+
+    /**
+     * Returns the {@link TagDictionary} code of the value of the tag with the given key code or
+     * {@link TagDictionary#UNKNOWN} if the parent element did not contain such a tag (or if the value is not
+     * contained in the {@link TagDictionary}). This allows to compare tag values as <code>int</code>s.
+     *
+     * @param tagKeyCode the {@link TagDictionary} code of the value of the "k" attribute
+     *
+     * @return the {@link TagDictionary} code of the value of the tag with the given key code or
+     * {@link TagDictionary#UNKNOWN} if the parent element did not contain such a tag.
+     */
+    public int getTagValueCode(int tagKeyCode){
+        if(tagKeyCode == TagDictionary.UNKNOWN)
+            return TagDictionary.UNKNOWN;
+
+        int index = indexOf(TagDictionary.decode(tagKeyCode));
+        return index < 0 ? TagDictionary.UNKNOWN : TagDictionary.lookup(this.tags[index + 1]);
+    }
+
+
+    private int indexOf(String tagKey){
+        if(tagKey == null)
+            return -1;
+
+        for(int i = 0; i < this.tags.length; i += 2){
+            if(this.tags[i].equals(tagKey))
+                return i;
+        }
+
+        return -1;
+    }
+
+
+    private String putTag(String tagKey, String tagValue){
+        if(tagKey == null || tagValue == null)
+            throw new NullPointerException("Tag keys and values must not be null!");
+
+        String key = TagDictionary.internKey(tagKey);
+        String value = TagDictionary.internValue(key, tagValue);
+
+        int index = indexOf(key);
+        if(index >= 0){
+            String previous = this.tags[index + 1];
+            this.tags[index + 1] = value;
+            return previous;
+        }
+
+        this.tags = Arrays.copyOf(this.tags, this.tags.length + 2);
+        this.tags[this.tags.length - 2] = key;
+        this.tags[this.tags.length - 1] = value;
+        return null;
+    }
+
+
+    private void removeTagAt(int index){
+        String[] result = new String[this.tags.length - 2];
+        System.arraycopy(this.tags, 0, result, 0, index);
+        System.arraycopy(this.tags, index + 2, result, index, this.tags.length - index - 2);
+        this.tags = result.length == 0 ? NO_TAGS : result;
+    }
+
+
+    /**
+     * A {@link java.util.Map} view on the tag codes of the element.
+     */
+    private class TagMap extends AbstractMap<String, String> {
+
+        @Override
+        public int size() {
+            return tags.length / 2;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && indexOf((String) key) >= 0;
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof String ? getTagValue((String) key) : null;
+        }
+
+        @Override
+        public String put(String key, String value) {
+            return putTag(key, value);
+        }
+
+        @Override
+        public String remove(Object key) {
+            if(!(key instanceof String))
+                return null;
+
+            int index = indexOf((String) key);
+            if(index < 0)
+                return null;
+
+            String previous = tags[index + 1];
+            removeTagAt(index);
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            tags = NO_TAGS;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new TagIterator();
+                }
+
+                @Override
+                public int size() {
+                    return tags.length / 2;
+                }
+            };
+        }
+    }
+
+
+    private class TagIterator implements Iterator<Map.Entry<String, String>> {
+
+        private int index = 0;
+        private int lastIndex = -1;
+
+        @Override
+        public boolean hasNext() {
+            return this.index < tags.length;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if(this.index >= tags.length)
+                throw new NoSuchElementException();
+
+            this.lastIndex = this.index;
+            this.index += 2;
+
+            return new TagEntry(tags[this.lastIndex], tags[this.lastIndex + 1]);
+        }
+
+        @Override
+        public void remove() {
+            if(this.lastIndex < 0)
+                throw new IllegalStateException();
+
+            removeTagAt(this.lastIndex);
+            this.index = this.lastIndex;
+            this.lastIndex = -1;
+        }
+    }
+
+
+    //writes changes of the value through to the tags of the element
+    private class TagEntry implements Map.Entry<String, String> {
+
+        private final String key;
+        private String value;
+
+        private TagEntry(String key, String value){
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public String getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String setValue(String value) {
+            this.value = value;
+            return putTag(this.key, value);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if(!(object instanceof Map.Entry))
+                return false;
+
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) object;
+            return this.key.equals(other.getKey()) &&
+                    (this.value == null ? other.getValue() == null : this.value.equals(other.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.key.hashCode() ^ (this.value == null ? 0 : this.value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + this.value;
+        }
     }
 }
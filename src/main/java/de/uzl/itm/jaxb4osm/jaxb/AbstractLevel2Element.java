@@ -25,12 +25,22 @@
 package de.uzl.itm.jaxb4osm.jaxb;
 
 
+import javax.xml.bind.DatatypeConverter;
 import javax.xml.bind.annotation.XmlAttribute;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 /**
  * Abstract base class for unmarshalled XML elements from OSM files (node, way, relation).
  *
+ * The metadata attributes (<code>version</code>, <code>changeset</code>, <code>visible</code>,
+ * <code>timestamp</code>, <code>user</code>, and <code>uid</code>) of elements created with
+ * {@link MetadataMode#LAZY} are kept as raw values and parsed on the first access of one of the corresponding getters.
+ * Hence, malformed values (i.e. a <code>version</code> or <code>changeset</code> that is not an integer or a
+ * <code>timestamp</code> that is not a valid <code>xsd:dateTime</code>) are not detected while reading but cause an
+ * {@link IllegalArgumentException} on the first invocation of any of these getters (including {@link #isVisible()},
+ * which is used by the writers). The <code>visible</code> and <code>uid</code> attributes never cause errors.
+ *
  * @author Oliver Kleine
  */
 public abstract class AbstractLevel2Element {
@@ -56,6 +66,10 @@ public abstract class AbstractLevel2Element {
     @XmlAttribute(name = "uid")
     private String userID;
 
+    //the raw metadata attributes (length prefixed) until they were parsed (volatile to publish the parsed values
+    //safely, as elements may be shared by several threads, e.g. via ConcurrentOsmElement)
+    private volatile byte[] rawMetadata;
+
     protected AbstractLevel2Element(){}
 
     protected AbstractLevel2Element(Long ID, Integer version, Integer changeset, Boolean visible, Date timestamp,
@@ -71,36 +85,218 @@ public abstract class AbstractLevel2Element {
     }
 
 
+    protected AbstractLevel2Element(Long ID, MetadataMode metadataMode, String version, String changeset,
+                                    String visible, String timestamp, String user, String userID){
+
+        this.ID = ID;
+
+        if(metadataMode == MetadataMode.EAGER){
+            setMetadata(version, changeset, visible, timestamp, user, userID);
+        }
+        else if(metadataMode == MetadataMode.LAZY){
+            this.rawMetadata = encode(version, changeset, visible, timestamp, user, userID);
+        }
+    }
+
+
+    //copies the raw metadata as well, i.e. the metadata of the copy is parsed (and fails) like the original one
     protected AbstractLevel2Element(AbstractLevel2Element other){
-        this(other.getID(), other.getVersion(), other.getChangeset(), other.isVisible(), other.getTimestamp(),
-                other.getUser(), other.getUserID());
+        this.ID = other.ID;
+
+        byte[] raw = other.rawMetadata;
+        if(raw != null){
+            this.rawMetadata = raw;
+        }
+        else{
+            this.version = other.version;
+            this.changeset = other.changeset;
+            this.visible = other.visible;
+            this.timestamp = other.timestamp == null ? null : new Date(other.timestamp.getTime());
+            this.user = other.user;
+            this.userID = other.userID;
+        }
     }
 
     public Long getID() {
         return ID;
     }
 
+    /**
+     * @throws IllegalArgumentException if this element was created with {@link MetadataMode#LAZY} and its raw
+     * metadata attributes are malformed (see {@link MetadataMode#LAZY})
+     */
     public Integer getVersion() {
+        parseRawMetadata();
         return version;
     }
 
+    /**
+     * @throws IllegalArgumentException if this element was created with {@link MetadataMode#LAZY} and its raw
+     * metadata attributes are malformed (see {@link MetadataMode#LAZY})
+     */
     public Integer getChangeset() {
+        parseRawMetadata();
         return changeset;
     }
 
+    /**
+     * @throws IllegalArgumentException if this element was created with {@link MetadataMode#LAZY} and its raw
+     * metadata attributes are malformed (see {@link MetadataMode#LAZY})
+     */
     public Date getTimestamp() {
+        parseRawMetadata();
         return timestamp;
     }
 
+    /**
+     * @throws IllegalArgumentException if this element was created with {@link MetadataMode#LAZY} and its raw
+     * metadata attributes are malformed (see {@link MetadataMode#LAZY})
+     */
     public String getUser() {
+        parseRawMetadata();
         return user;
     }
 
+    /**
+     * @throws IllegalArgumentException if this element was created with {@link MetadataMode#LAZY} and its raw
+     * metadata attributes are malformed (see {@link MetadataMode#LAZY})
+     */
     public String getUserID() {
+        parseRawMetadata();
         return userID;
     }
 
+    /**
+     * Elements without the attribute <code>visible</code> (e.g. in extracts) are visible.
+     *
+     * @throws IllegalArgumentException if this element was created with {@link MetadataMode#LAZY} and its raw
+     * metadata attributes are malformed (see {@link MetadataMode#LAZY})
+     */
     public boolean isVisible() {
-        return visible;
+        parseRawMetadata();
+        return visible == null || visible;
+    }
+
+
+    private void setMetadata(String version, String changeset, String visible, String timestamp, String user,
+                             String userID){
+
+        this.version = version == null ? null : Integer.valueOf(version);
+        this.changeset = changeset == null ? null : Integer.valueOf(changeset);
+        this.visible = visible == null ? null : Boolean.valueOf(visible);
+        this.timestamp = timestamp == null ? null : DatatypeConverter.parseDateTime(timestamp).getTime();
+        this.user = user;
+        this.userID = userID;
+    }
+
+
+    private void parseRawMetadata(){
+        byte[] raw = this.rawMetadata;
+        if(raw == null)
+            return;
+
+        //concurrent threads may parse the same values, which is harmless as the results are equal
+        String[] values = decode(raw, 6);
+        try{
+            setMetadata(values[0], values[1], values[2], values[3], values[4], values[5]);
+        }
+        catch(IllegalArgumentException ex){
+            //the raw values are kept, i.e. every subsequent access fails the same way
+            throw new IllegalArgumentException("Malformed metadata of element " + this.ID + " (version: " +
+                    values[0] + ", changeset: " + values[1] + ", timestamp: " + values[3] + ")", ex);
+        }
+        this.rawMetadata = null;
+    }
+
+
+    //every value is prefixed by its length + 1 (as varint), i.e. 0 for null
+    private static byte[] encode(String... values){
+        //the values are ASCII in almost all cases, i.e. there is no need to encode them as UTF-8 first
+        byte[][] encodedValues = null;
+        int length = 0;
+        for(int i = 0; i < values.length; i++){
+            int valueLength = 0;
+            if(values[i] != null){
+                valueLength = values[i].length();
+                if(!isAscii(values[i])){
+                    if(encodedValues == null){
+                        encodedValues = new byte[values.length][];
+                    }
+                    encodedValues[i] = values[i].getBytes(StandardCharsets.UTF_8);
+                    valueLength = encodedValues[i].length;
+                }
+                length += valueLength;
+            }
+            length += getVarintLength(values[i] == null ? 0 : valueLength + 1);
+        }
+
+        byte[] result = new byte[length];
+        int position = 0;
+        for(int i = 0; i < values.length; i++){
+            String value = values[i];
+            byte[] encodedValue = encodedValues == null ? null : encodedValues[i];
+            int valueLength = value == null ? 0 : encodedValue == null ? value.length() : encodedValue.length;
+
+            int prefix = value == null ? 0 : valueLength + 1;
+            while((prefix & ~0x7F) != 0){
+                result[position++] = (byte) ((prefix & 0x7F) | 0x80);
+                prefix >>>= 7;
+            }
+            result[position++] = (byte) prefix;
+
+            if(encodedValue != null){
+                System.arraycopy(encodedValue, 0, result, position, valueLength);
+            }
+            else{
+                for(int j = 0; j < valueLength; j++){
+                    result[position + j] = (byte) value.charAt(j);
+                }
+            }
+            position += valueLength;
+        }
+
+        return result;
+    }
+
+
+    private static boolean isAscii(String value){
+        for(int i = 0; i < value.length(); i++){
+            if(value.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+
+    private static int getVarintLength(int value){
+        int result = 1;
+        while((value & ~0x7F) != 0){
+            value >>>= 7;
+            result++;
+        }
+        return result;
+    }
+
+
+    private static String[] decode(byte[] raw, int count){
+        String[] result = new String[count];
+        int position = 0;
+        for(int i = 0; i < count; i++){
+            int prefix = 0;
+            int shift = 0;
+            byte b;
+            do{
+                b = raw[position++];
+                prefix |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while(b < 0);
+
+            if(prefix > 0){
+                result[i] = new String(raw, position, prefix - 1, StandardCharsets.UTF_8);
+                position += prefix - 1;
+            }
+        }
+        return result;
     }
 }
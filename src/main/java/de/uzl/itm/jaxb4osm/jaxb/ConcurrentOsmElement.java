@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.jaxb;
+
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link ConcurrentOsmElement} holds a sequence of versions of an {@link OsmElement} and allows an arbitrary number
+ * of threads to read the current version while another thread prepares the next one. Readers obtain the current
+ * version by {@link #getSnapshot()} without any locking. A snapshot never changes, i.e. all subsequent queries
+ * (including {@link OsmElement#getReferencingWayIDs(long)}) refer to the same consistent state, no matter how many
+ * updates are published in the meantime.
+ *
+ * Writers obtain a modifiable copy of the current version by {@link #beginUpdate()}, apply an arbitrary batch of
+ * changes to it (e.g. by {@link de.uzl.itm.jaxb4osm.tools.OsmChangeReader}) and make the changes visible to all readers
+ * at once by {@link #publish(OsmElement)}. The copy shares all unmodified data with its predecessor, so preparing an
+ * update costs about as much as the modified elements plus their neighbours in the same segments.
+ *
+ * <b>Note:</b> The {@link NodeElement}s and {@link WayElement}s are shared between the versions. Thus, they are copied
+ * into read-only elements when they are added to a version (once per element), i.e. the tags and references of
+ * contained elements cannot be modified in place (not even in an update) but elements must be replaced by updates.
+ *
+ * @author Oliver Kleine
+ */
+public class ConcurrentOsmElement {
+
+    private final AtomicReference<CopyOnWriteOsmElement> snapshot;
+
+    /**
+     * Creates a new instance of {@link ConcurrentOsmElement} with an empty initial version.
+     */
+    public ConcurrentOsmElement(){
+        this(0);
+    }
+
+    /**
+     * Creates a new instance of {@link ConcurrentOsmElement} with an empty initial version that is organized to hold
+     * about the given number of nodes. The number only affects the costs of updates, i.e. the model may grow larger.
+     *
+     * @param expectedNodes the expected number of {@link NodeElement}s
+     */
+    public ConcurrentOsmElement(int expectedNodes){
+        CopyOnWriteOsmElement initialVersion = new CopyOnWriteOsmElement(this, expectedNodes);
+        initialVersion.freeze();
+        this.snapshot = new AtomicReference<>(initialVersion);
+    }
+
+    /**
+     * Creates a new instance of {@link ConcurrentOsmElement} with an initial version that contains the header, the
+     * bounds, the nodes and the ways of the given {@link OsmElement}. The given {@link OsmElement} is not modified, as
+     * its elements are copied (see {@link #getSnapshot()}).
+     *
+     * @param osmElement the {@link OsmElement} to copy the initial version from
+     */
+    public ConcurrentOsmElement(OsmElement osmElement){
+        Collection<NodeElement> nodeElements = osmElement.getNodeElementsView();
+        CopyOnWriteOsmElement initialVersion = new CopyOnWriteOsmElement(this, nodeElements.size());
+
+        initialVersion.setVersion(osmElement.getVersion());
+        initialVersion.setGenerator(osmElement.getGenerator());
+        initialVersion.setCopyright(osmElement.getCopyright());
+        initialVersion.setAttribution(osmElement.getAttribution());
+        initialVersion.setLicense(osmElement.getLicense());
+        initialVersion.setBoundsElement(osmElement.getBoundsElement());
+
+        initialVersion.addNodeElements(nodeElements);
+        initialVersion.addWayElements(osmElement.getWayElementsView());
+
+        initialVersion.freeze();
+        this.snapshot = new AtomicReference<>(initialVersion);
+    }
+
+    /**
+     * Returns the most recently published version. The returned {@link OsmElement} is read-only, i.e. all modifying
+     * methods throw an {@link java.lang.UnsupportedOperationException} (including the modifying methods of the
+     * maps and lists returned by its elements), and may be shared by any number of threads.
+     *
+     * @return the most recently published version
+     */
+    public OsmElement getSnapshot(){
+        return this.snapshot.get();
+    }
+
+    /**
+     * Returns a modifiable copy of the most recently published version. The changes applied to the copy are not
+     * visible to other threads before the copy was passed to {@link #publish(OsmElement)}.
+     *
+     * <b>Note:</b> The returned {@link OsmElement} is not thread-safe, i.e. it is supposed to be modified by a single
+     * thread.
+     *
+     * @return a modifiable copy of the most recently published version
+     */
+    public OsmElement beginUpdate(){
+        return new CopyOnWriteOsmElement(this.snapshot.get());
+    }
+
+    /**
+     * Makes the given update (returned by {@link #beginUpdate()}) the current version. The update becomes read-only,
+     * i.e. it must not be modified anymore.
+     *
+     * @param update the modified copy returned by {@link #beginUpdate()}
+     *
+     * @return the published version (which is the given update)
+     *
+     * @throws java.lang.IllegalArgumentException if the given {@link OsmElement} was not returned by
+     * {@link #beginUpdate()} of this instance
+     * @throws java.lang.IllegalStateException if the given update was already published
+     * @throws java.util.ConcurrentModificationException if another update was published since the given update was
+     * begun (the changes of the given update are discarded then)
+     */
+    public OsmElement publish(OsmElement update){
+        if(!(update instanceof CopyOnWriteOsmElement) || ((CopyOnWriteOsmElement) update).getOwner() != this)
+            throw new IllegalArgumentException("Given element is not an update of this element!");
+
+        CopyOnWriteOsmElement version = (CopyOnWriteOsmElement) update;
+        if(version.isFrozen())
+            throw new IllegalStateException("Given update was already published!");
+
+        CopyOnWriteOsmElement base = version.getBase();
+        version.freeze();
+
+        if(!this.snapshot.compareAndSet(base, version))
+            throw new ConcurrentModificationException("Another update was published since this update was begun!");
+
+        return version;
+    }
+
+    /**
+     * Applies the given {@link Update} to a copy of the most recently published version and publishes the result. If
+     * another thread published an update in the meantime, the {@link Update} is applied again to the new version,
+     * i.e. the given {@link Update} may be invoked more than once.
+     *
+     * @param update the {@link Update} to be applied
+     *
+     * @return the published version
+     *
+     * @throws Exception if the given {@link Update} threw an exception (nothing is published then)
+     */
+    public OsmElement update(Update update) throws Exception{
+        while(true){
+            OsmElement version = beginUpdate();
+            update.apply(version);
+            try{
+                return publish(version);
+            }
+            catch(ConcurrentModificationException ex){
+                //another writer was faster, so try again on top of its version
+            }
+        }
+    }
+
+
+    /**
+     * An {@link Update} is a batch of changes to be applied on a modifiable copy of the current version by
+     * {@link ConcurrentOsmElement#update(Update)}.
+     */
+    public static abstract class Update{
+
+        /**
+         * Applies the changes of this {@link Update} to the given {@link OsmElement}.
+         *
+         * @param osmElement the modifiable copy of the current version
+         *
+         * @throws Exception if some error occurred
+         */
+        public abstract void apply(OsmElement osmElement) throws Exception;
+    }
+}
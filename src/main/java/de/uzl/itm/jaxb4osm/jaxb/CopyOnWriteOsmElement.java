@@ -0,0 +1,485 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.jaxb;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import de.uzl.itm.jaxb4osm.util.LongLongMultimap;
+import de.uzl.itm.jaxb4osm.util.LongObjectHashMap;
+import de.uzl.itm.jaxb4osm.util.LongVisitor;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link OsmElement} that keeps its nodes, ways and references in segments, i.e. small primitive maps selected by
+ * a hash of the ID. A new version of an instance shares all segments with its predecessor and copies a segment on
+ * the first write access, so the costs of an update depend on the number of modified elements rather than on the
+ * size of the model. Once an instance was frozen, all modifying methods throw an
+ * {@link java.lang.UnsupportedOperationException} and the instance is safe to be read by several threads.
+ *
+ * The {@link NodeElement}s and {@link WayElement}s are shared between the versions. Thus, they are copied into
+ * read-only elements when they are added, i.e. modifying the tags or references of a contained element throws an
+ * {@link java.lang.UnsupportedOperationException} instead of changing published versions. The elements passed to
+ * the adding methods remain modifiable and are not contained themselves.
+ *
+ * Instances are only created by {@link ConcurrentOsmElement}.
+ *
+ * @author Oliver Kleine
+ */
+class CopyOnWriteOsmElement extends OsmElement{
+
+    private static final int MIN_SEGMENT_BITS = 6;
+    private static final int MAX_SEGMENT_BITS = 16;
+
+    //the number of nodes per segment aimed at, i.e. the amount of data to be copied on the first write access
+    private static final int NODES_PER_SEGMENT = 1024;
+
+    private final ConcurrentOsmElement owner;
+    private CopyOnWriteOsmElement base;
+
+    private final int segmentBits;
+    private final LongObjectHashMap<NodeElement>[] nodeSegments;
+    private final LongObjectHashMap<WayElement>[] waySegments;
+    private final LongLongMultimap[] referenceSegments;
+
+    //the segments created by this instance, i.e. the segments that may be modified in place
+    private final boolean[] ownNodeSegments;
+    private final boolean[] ownWaySegments;
+    private final boolean[] ownReferenceSegments;
+
+    private int nodeCount;
+    private int wayCount;
+    private boolean frozen;
+
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    CopyOnWriteOsmElement(ConcurrentOsmElement owner, int expectedNodes){
+        this.owner = owner;
+        this.base = null;
+
+        int segmentBits = MIN_SEGMENT_BITS;
+        while(segmentBits < MAX_SEGMENT_BITS && (NODES_PER_SEGMENT << segmentBits) < expectedNodes){
+            segmentBits++;
+        }
+        this.segmentBits = segmentBits;
+
+        int segments = 1 << segmentBits;
+        this.nodeSegments = (LongObjectHashMap<NodeElement>[]) new LongObjectHashMap[segments];
+        this.waySegments = (LongObjectHashMap<WayElement>[]) new LongObjectHashMap[segments];
+        this.referenceSegments = new LongLongMultimap[segments];
+
+        this.ownNodeSegments = new boolean[segments];
+        this.ownWaySegments = new boolean[segments];
+        this.ownReferenceSegments = new boolean[segments];
+    }
+
+
+    CopyOnWriteOsmElement(CopyOnWriteOsmElement base){
+        this.owner = base.owner;
+        this.base = base;
+
+        this.segmentBits = base.segmentBits;
+        this.nodeSegments = base.nodeSegments.clone();
+        this.waySegments = base.waySegments.clone();
+        this.referenceSegments = base.referenceSegments.clone();
+
+        int segments = 1 << this.segmentBits;
+        this.ownNodeSegments = new boolean[segments];
+        this.ownWaySegments = new boolean[segments];
+        this.ownReferenceSegments = new boolean[segments];
+
+        this.nodeCount = base.nodeCount;
+        this.wayCount = base.wayCount;
+
+        this.setVersion(base.getVersion());
+        this.setGenerator(base.getGenerator());
+        this.setCopyright(base.getCopyright());
+        this.setAttribution(base.getAttribution());
+        this.setLicense(base.getLicense());
+        this.setBoundsElement(base.getBoundsElement());
+    }
+
+
+    ConcurrentOsmElement getOwner(){
+        return this.owner;
+    }
+
+
+    CopyOnWriteOsmElement getBase(){
+        return this.base;
+    }
+
+
+    boolean isFrozen(){
+        return this.frozen;
+    }
+
+
+    void freeze(){
+        this.frozen = true;
+        //a published version must not keep its predecessors reachable
+        this.base = null;
+    }
+
+
+    @Override
+    public void addNodeElement(NodeElement nodeElement){
+        LongObjectHashMap<NodeElement> segment = getWritableNodeSegment(nodeElement.getID());
+        if(segment.put(nodeElement.getID(), ReadOnlyNodeElement.of(nodeElement)) == null){
+            this.nodeCount++;
+        }
+    }
+
+
+    @Override
+    public boolean removeNodeElement(long nodeID){
+        if(getNodeElement(nodeID) == null){
+            checkModifiable();
+            return false;
+        }
+
+        getWritableNodeSegment(nodeID).remove(nodeID);
+        this.nodeCount--;
+        return true;
+    }
+
+
+    @Override
+    public ImmutableList<NodeElement> getNodeElements(){
+        return ImmutableList.copyOf(getNodeElementsView());
+    }
+
+
+    @Override
+    public Collection<NodeElement> getNodeElementsView(){
+        return new AbstractCollection<NodeElement>() {
+            @Override
+            public Iterator<NodeElement> iterator() {
+                return new SegmentIterator<>(CopyOnWriteOsmElement.this.nodeSegments);
+            }
+
+            @Override
+            public int size() {
+                return CopyOnWriteOsmElement.this.nodeCount;
+            }
+        };
+    }
+
+
+    @Override
+    public NodeElement getNodeElement(long nodeID){
+        LongObjectHashMap<NodeElement> segment = this.nodeSegments[getSegment(nodeID)];
+        return segment == null ? null : segment.get(nodeID);
+    }
+
+
+    @Override
+    public boolean addWayElement(WayElement wayElement){
+        checkModifiable();
+
+        if(getWayElement(wayElement.getID()) != null)
+            return false;
+
+        wayElement = ReadOnlyWayElement.of(wayElement);
+        getWritableWaySegment(wayElement.getID()).put(wayElement.getID(), wayElement);
+        this.wayCount++;
+
+        for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+            long nodeID = wayElement.getNodeReference(i);
+            getWritableReferenceSegment(nodeID).put(nodeID, wayElement.getID());
+        }
+
+        return true;
+    }
+
+
+    @Override
+    public boolean removeWayElement(long wayID){
+        checkModifiable();
+
+        WayElement wayElement = getWayElement(wayID);
+        if(wayElement == null)
+            return false;
+
+        getWritableWaySegment(wayID).remove(wayID);
+        this.wayCount--;
+
+        for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+            long nodeID = wayElement.getNodeReference(i);
+            getWritableReferenceSegment(nodeID).remove(nodeID, wayID);
+        }
+
+        return true;
+    }
+
+
+    @Override
+    public ImmutableList<WayElement> getWayElements(){
+        return ImmutableList.copyOf(getWayElementsView());
+    }
+
+
+    @Override
+    public Collection<WayElement> getWayElementsView(){
+        return new AbstractCollection<WayElement>() {
+            @Override
+            public Iterator<WayElement> iterator() {
+                return new SegmentIterator<>(CopyOnWriteOsmElement.this.waySegments);
+            }
+
+            @Override
+            public int size() {
+                return CopyOnWriteOsmElement.this.wayCount;
+            }
+        };
+    }
+
+
+    @Override
+    public WayElement getWayElement(long wayID){
+        LongObjectHashMap<WayElement> segment = this.waySegments[getSegment(wayID)];
+        return segment == null ? null : segment.get(wayID);
+    }
+
+
+    @Override
+    public ImmutableSet<Long> getReferencingWayIDs(long nodeID){
+        LongLongMultimap segment = this.referenceSegments[getSegment(nodeID)];
+        if(segment == null)
+            return ImmutableSet.of();
+
+        ImmutableSet.Builder<Long> builder = new ImmutableSet.Builder<>();
+        for(long wayID : segment.get(nodeID)){
+            builder.add(wayID);
+        }
+
+        return builder.build();
+    }
+
+
+    @Override
+    public int getReferencingWayCount(long nodeID){
+        LongLongMultimap segment = this.referenceSegments[getSegment(nodeID)];
+        return segment == null ? 0 : segment.count(nodeID);
+    }
+
+
+    @Override
+    public boolean forEachReferencingWayID(long nodeID, LongVisitor visitor){
+        LongLongMultimap segment = this.referenceSegments[getSegment(nodeID)];
+        return segment == null || segment.forEach(nodeID, visitor);
+    }
+
+
+    @Override
+    public void setVersion(String version){
+        checkModifiable();
+        super.setVersion(version);
+    }
+
+
+    @Override
+    public void setGenerator(String generator){
+        checkModifiable();
+        super.setGenerator(generator);
+    }
+
+
+    @Override
+    public void setCopyright(String copyright){
+        checkModifiable();
+        super.setCopyright(copyright);
+    }
+
+
+    @Override
+    public void setAttribution(String attribution){
+        checkModifiable();
+        super.setAttribution(attribution);
+    }
+
+
+    @Override
+    public void setLicense(String license){
+        checkModifiable();
+        super.setLicense(license);
+    }
+
+
+    @Override
+    public void setBoundsElement(BoundsElement boundsElement){
+        checkModifiable();
+        super.setBoundsElement(boundsElement);
+    }
+
+
+    private void checkModifiable(){
+        if(this.frozen)
+            throw new UnsupportedOperationException("Published versions are read-only (use beginUpdate())!");
+    }
+
+
+    private int getSegment(long id){
+        //Fibonacci hashing, i.e. the upper bits of the product are well distributed for consecutive IDs
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> (64 - this.segmentBits));
+    }
+
+
+    private LongObjectHashMap<NodeElement> getWritableNodeSegment(long nodeID){
+        checkModifiable();
+
+        int index = getSegment(nodeID);
+        if(!this.ownNodeSegments[index]){
+            LongObjectHashMap<NodeElement> segment = this.nodeSegments[index];
+            this.nodeSegments[index] = segment == null ? new LongObjectHashMap<NodeElement>() :
+                    new LongObjectHashMap<>(segment);
+            this.ownNodeSegments[index] = true;
+        }
+
+        return this.nodeSegments[index];
+    }
+
+
+    private LongObjectHashMap<WayElement> getWritableWaySegment(long wayID){
+        int index = getSegment(wayID);
+        if(!this.ownWaySegments[index]){
+            LongObjectHashMap<WayElement> segment = this.waySegments[index];
+            this.waySegments[index] = segment == null ? new LongObjectHashMap<WayElement>() :
+                    new LongObjectHashMap<>(segment);
+            this.ownWaySegments[index] = true;
+        }
+
+        return this.waySegments[index];
+    }
+
+
+    private LongLongMultimap getWritableReferenceSegment(long nodeID){
+        int index = getSegment(nodeID);
+        if(!this.ownReferenceSegments[index]){
+            LongLongMultimap segment = this.referenceSegments[index];
+            this.referenceSegments[index] = segment == null ? new LongLongMultimap() : new LongLongMultimap(segment);
+            this.ownReferenceSegments[index] = true;
+        }
+
+        return this.referenceSegments[index];
+    }
+
+
+    private static class ReadOnlyNodeElement extends NodeElement{
+
+        private ReadOnlyNodeElement(NodeElement nodeElement){
+            super(nodeElement);
+        }
+
+        private static NodeElement of(NodeElement nodeElement){
+            return nodeElement instanceof ReadOnlyNodeElement ? nodeElement : new ReadOnlyNodeElement(nodeElement);
+        }
+
+        @Override
+        public Map<String, String> getTags(){
+            return Collections.unmodifiableMap(super.getTags());
+        }
+
+        @Override
+        public Date getTimestamp(){
+            Date timestamp = super.getTimestamp();
+            return timestamp == null ? null : new Date(timestamp.getTime());
+        }
+    }
+
+
+    private static class ReadOnlyWayElement extends WayElement{
+
+        private ReadOnlyWayElement(WayElement wayElement){
+            super(wayElement);
+        }
+
+        private static WayElement of(WayElement wayElement){
+            return wayElement instanceof ReadOnlyWayElement ? wayElement : new ReadOnlyWayElement(wayElement);
+        }
+
+        @Override
+        public Map<String, String> getTags(){
+            return Collections.unmodifiableMap(super.getTags());
+        }
+
+        @Override
+        public Date getTimestamp(){
+            Date timestamp = super.getTimestamp();
+            return timestamp == null ? null : new Date(timestamp.getTime());
+        }
+
+        @Override
+        public List<NdElement> getNdElements(){
+            return Collections.unmodifiableList(super.getNdElements());
+        }
+
+        @Override
+        public void addNodeReference(long nodeID){
+            throw new UnsupportedOperationException("Elements of published versions are read-only!");
+        }
+
+        @Override
+        public void addNodeReferences(long[] nodeIDs, int offset, int length){
+            throw new UnsupportedOperationException("Elements of published versions are read-only!");
+        }
+    }
+
+
+    //iterates over the values of all segments without copying them
+    private static class SegmentIterator<V> extends AbstractIterator<V>{
+
+        private final LongObjectHashMap<V>[] segments;
+        private int index;
+        private Iterator<V> iterator;
+
+        private SegmentIterator(LongObjectHashMap<V>[] segments){
+            this.segments = segments;
+            this.iterator = Collections.emptyIterator();
+        }
+
+        @Override
+        protected V computeNext() {
+            while(!this.iterator.hasNext()){
+                if(this.index == this.segments.length)
+                    return endOfData();
+
+                LongObjectHashMap<V> segment = this.segments[this.index++];
+                if(segment != null){
+                    this.iterator = segment.values().iterator();
+                }
+            }
+
+            return this.iterator.next();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.jaxb;
+
+/**
+ * The {@link MetadataMode} defines how the metadata attributes of nodes and ways (<code>version</code>,
+ * <code>changeset</code>, <code>visible</code>, <code>timestamp</code>, <code>user</code>, and <code>uid</code>) are
+ * handled while reading an OSM file. Parsing the timestamps is among the most expensive parts of reading OSM files
+ * while many applications (e.g. routing) never access any of these attributes.
+ *
+ * @author Oliver Kleine
+ */
+public enum MetadataMode {
+
+    /**
+     * The metadata attributes are parsed while reading the file (default).
+     */
+    EAGER,
+
+    /**
+     * The raw values of the metadata attributes are kept in a compact byte array and parsed on the first access of
+     * any of the corresponding getters (e.g. {@link AbstractLevel2Element#getTimestamp()}).
+     *
+     * <b>Note:</b> Malformed values are not detected while reading. Instead, the first invocation of any of the
+     * getters (including {@link AbstractLevel2Element#isVisible()}, e.g. when writing the element) throws an
+     * {@link IllegalArgumentException} naming the element. Use {@link #EAGER} to reject malformed files while
+     * reading.
+     */
+    LAZY,
+
+    /**
+     * The metadata attributes are ignored, i.e. the corresponding getters return <code>null</code> (and
+     * {@link AbstractLevel2Element#isVisible()} returns <code>true</code>).
+     */
+    SKIP
+}
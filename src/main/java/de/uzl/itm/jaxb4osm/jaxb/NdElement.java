@@ -43,5 +43,15 @@ public class NdElement{
     public long getReference(){
         return this.reference;
     }
+
+    @Override
+    public boolean equals(Object object){
+        return object instanceof NdElement && ((NdElement) object).reference == this.reference;
+    }
+
+    @Override
+    public int hashCode(){
+        return (int) (this.reference ^ (this.reference >>> 32));
+    }
 }
 
@@ -30,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -60,6 +61,59 @@ public class NodeElement extends AbstractAdaptedLevel2Element {
     }
 
 
+    /**
+     * Creates a new instance of {@link NodeElement}
+     *
+     * @param ID the value of the elements attribute "id"
+     * @param version the value of the elements attribute "version"
+     * @param changeset the value of the elements attribute "changeset"
+     * @param visible the value of the elements attribute "visible"
+     * @param timestamp the value of the elements attribute "timestamp"
+     * @param user the value of the elements attribute "user"
+     * @param userID the value of the elements attribute "userID"
+     * @param latitude the value of the elements attribute "lat"
+     * @param longitude the value of the elements attribute "lon"
+     */
+    public NodeElement(Long ID, Integer version, Integer changeset, Boolean visible, Date timestamp,
+                       String user, String userID, double latitude, double longitude){
+
+        super(ID, version, changeset, visible, timestamp, user, userID);
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+
+    /**
+     * Creates a new instance of {@link NodeElement} from the raw values of the metadata attributes (as contained in
+     * OSM files) which are parsed immediately, on the first access, or ignored according to the given
+     * {@link MetadataMode}.
+     *
+     * @param ID the value of the elements attribute "id"
+     * @param metadataMode the {@link MetadataMode} for the following metadata attributes
+     * @param version the raw value of the elements attribute "version" (e.g. <code>"3"</code>)
+     * @param changeset the raw value of the elements attribute "changeset"
+     * @param visible the raw value of the elements attribute "visible" (e.g. <code>"true"</code>)
+     * @param timestamp the raw value of the elements attribute "timestamp" (e.g.
+     *                  <code>"2014-06-15T12:00:00Z"</code>)
+     * @param user the value of the elements attribute "user"
+     * @param userID the value of the elements attribute "userID"
+     * @param latitude the value of the elements attribute "lat"
+     * @param longitude the value of the elements attribute "lon"
+     */
+    public NodeElement(Long ID, MetadataMode metadataMode, String version, String changeset, String visible,
+                       String timestamp, String user, String userID, double latitude, double longitude){
+
+        super(ID, metadataMode, version, changeset, visible, timestamp, user, userID);
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+
+    NodeElement(NodeElement other){
+        super(other);
+        this.latitude = other.latitude;
+        this.longitude = other.longitude;
+    }
 
 
     /**
@@ -24,11 +24,14 @@
  */
 package de.uzl.itm.jaxb4osm.jaxb;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimap;
+import de.uzl.itm.jaxb4osm.store.HashNodeElementStore;
+import de.uzl.itm.jaxb4osm.store.NodeElementStore;
 import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import de.uzl.itm.jaxb4osm.util.LongLongMultimap;
+import de.uzl.itm.jaxb4osm.util.LongObjectHashMap;
+import de.uzl.itm.jaxb4osm.util.LongVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,22 +52,33 @@ public class OsmElement extends AbstractOsmElement{
 
     private static Logger log = LoggerFactory.getLogger(OsmElement.class.getName());
 
-    private Map<Long, NodeElement> nodeElements;
+    private NodeElementStore nodeElements;
 
-    private Map<Long, WayElement> wayElements;
-    private Multimap<Long, Long> nodeReferences;
+    private LongObjectHashMap<WayElement> wayElements;
+    private LongLongMultimap nodeReferences;
 
     /**
      * Creates a new empty instance of {@link OsmElement}
      */
     public OsmElement(){
-        initialze();
+        this(new HashNodeElementStore());
+    }
+
+    /**
+     * Creates a new empty instance of {@link OsmElement} that keeps its {@link NodeElement}s in the given
+     * {@link de.uzl.itm.jaxb4osm.store.NodeElementStore}.
+     *
+     * @param nodeElementStore the {@link de.uzl.itm.jaxb4osm.store.NodeElementStore} to keep the
+     *                         {@link NodeElement}s in
+     */
+    public OsmElement(NodeElementStore nodeElementStore){
+        initialze(nodeElementStore);
     }
 
 
     private OsmElement(PlainOsmElement plainOsmElement, WayElementFilter filter){
         super(plainOsmElement);
-        initialze();
+        initialze(new HashNodeElementStore());
 
         //Add <node> elements
         this.addNodeElements(plainOsmElement.getNodeElements());
@@ -77,10 +91,10 @@ public class OsmElement extends AbstractOsmElement{
         }
     }
 
-    private void initialze(){
-        this.nodeElements = new HashMap<>();
-        this.nodeReferences = HashMultimap.create();
-        this.wayElements = new HashMap<>();
+    private void initialze(NodeElementStore nodeElementStore){
+        this.nodeElements = nodeElementStore;
+        this.nodeReferences = new LongLongMultimap();
+        this.wayElements = new LongObjectHashMap<>();
     }
 
 
@@ -92,12 +106,12 @@ public class OsmElement extends AbstractOsmElement{
 
 
     public void addNodeElement(NodeElement nodeElement){
-        this.nodeElements.put(nodeElement.getID(), nodeElement);
+        this.nodeElements.put(nodeElement);
     }
 
 
     public boolean removeNodeElement(long nodeID){
-        return this.nodeElements.remove(nodeID) != null;
+        return this.nodeElements.remove(nodeID);
     }
 
     /**
@@ -112,6 +126,37 @@ public class OsmElement extends AbstractOsmElement{
     }
 
 
+    /**
+     * Returns an unmodifiable {@link java.util.Collection} view on the contained {@link NodeElement}s. In contrast to
+     * {@link #getNodeElements()} the {@link NodeElement}s are not copied, i.e. the view reflects subsequent
+     * modifications but is not supposed to be iterated while this {@link OsmElement} is modified.
+     *
+     * @return an unmodifiable {@link java.util.Collection} view on the contained {@link NodeElement}s
+     */
+    public Collection<NodeElement> getNodeElementsView(){
+        return this.nodeElements.values();
+    }
+
+
+    /**
+     * Calls the given {@link ElementVisitor} for each contained {@link NodeElement} (in no particular order) without
+     * copying the {@link NodeElement}s.
+     *
+     * @param visitor the {@link ElementVisitor} to be called for each {@link NodeElement}
+     *
+     * @return <code>true</code> if all {@link NodeElement}s were visited or <code>false</code> if the
+     * {@link ElementVisitor} stopped the iteration
+     */
+    public boolean forEachNodeElement(ElementVisitor<? super NodeElement> visitor){
+        for(NodeElement nodeElement : getNodeElementsView()){
+            if(!visitor.visit(nodeElement))
+                return false;
+        }
+
+        return true;
+    }
+
+
     /**
      * Returns the {@link NodeElement} that has the given ID or
      * <code>null</code> if no such node was found.
@@ -168,8 +213,8 @@ public class OsmElement extends AbstractOsmElement{
 
         this.wayElements.put(wayElement.getID(), wayElement);
 
-        for(NdElement ndElement : wayElement.getNdElements()){
-            this.nodeReferences.put(ndElement.getReference(), wayElement.getID());
+        for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+            this.nodeReferences.put(wayElement.getNodeReference(i), wayElement.getID());
         }
 
         return true;
@@ -191,8 +236,8 @@ public class OsmElement extends AbstractOsmElement{
         if(wayElement == null)
             return false;
 
-        for(NdElement ndElement : wayElement.getNdElements()){
-            this.nodeReferences.remove(ndElement.getReference(), wayElement.getID());
+        for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+            this.nodeReferences.remove(wayElement.getNodeReference(i), wayElement.getID());
         }
 
         return true;
@@ -213,6 +258,37 @@ public class OsmElement extends AbstractOsmElement{
     }
 
 
+    /**
+     * Returns an unmodifiable {@link java.util.Collection} view on the contained {@link WayElement}s. In contrast to
+     * {@link #getWayElements()} the {@link WayElement}s are not copied, i.e. the view reflects subsequent
+     * modifications but is not supposed to be iterated while this {@link OsmElement} is modified.
+     *
+     * @return an unmodifiable {@link java.util.Collection} view on the contained {@link WayElement}s
+     */
+    public Collection<WayElement> getWayElementsView(){
+        return this.wayElements.values();
+    }
+
+
+    /**
+     * Calls the given {@link ElementVisitor} for each contained {@link WayElement} (in no particular order) without
+     * copying the {@link WayElement}s.
+     *
+     * @param visitor the {@link ElementVisitor} to be called for each {@link WayElement}
+     *
+     * @return <code>true</code> if all {@link WayElement}s were visited or <code>false</code> if the
+     * {@link ElementVisitor} stopped the iteration
+     */
+    public boolean forEachWayElement(ElementVisitor<? super WayElement> visitor){
+        for(WayElement wayElement : getWayElementsView()){
+            if(!visitor.visit(wayElement))
+                return false;
+        }
+
+        return true;
+    }
+
+
     /**
      * Returns the {@link WayElement} that has the given ID or
      * <code>null</code> if no such way was found.
@@ -238,10 +314,41 @@ public class OsmElement extends AbstractOsmElement{
      * nodeID.
      */
     public ImmutableSet<Long> getReferencingWayIDs(long nodeID){
-        if(!this.nodeReferences.containsKey(nodeID))
-            return new ImmutableSet.Builder<Long>().build();
+        ImmutableSet.Builder<Long> builder = new ImmutableSet.Builder<>();
+        for(long wayID : this.nodeReferences.get(nodeID)){
+            builder.add(wayID);
+        }
+
+        return builder.build();
+    }
+
 
-        return new ImmutableSet.Builder<Long>().addAll(this.nodeReferences.get(nodeID)).build();
+    /**
+     * Returns the number of {@link WayElement}s that were already added and refer to the given node ID, i.e. the size
+     * of the set returned by {@link #getReferencingWayIDs(long)} without creating that set.
+     *
+     * @param nodeID the ID of the node
+     *
+     * @return the number of {@link WayElement}s that were already added and refer to the given node ID
+     */
+    public int getReferencingWayCount(long nodeID){
+        return this.nodeReferences.count(nodeID);
+    }
+
+
+    /**
+     * Calls the given {@link de.uzl.itm.jaxb4osm.util.LongVisitor} for the ID of each {@link WayElement} that was
+     * already added and refers to the given node ID, i.e. without boxing the IDs or creating a set like
+     * {@link #getReferencingWayIDs(long)}.
+     *
+     * @param nodeID the ID of the node
+     * @param visitor the {@link de.uzl.itm.jaxb4osm.util.LongVisitor} to be called for each way ID
+     *
+     * @return <code>true</code> if all IDs were visited or <code>false</code> if the
+     * {@link de.uzl.itm.jaxb4osm.util.LongVisitor} stopped the iteration
+     */
+    public boolean forEachReferencingWayID(long nodeID, LongVisitor visitor){
+        return this.nodeReferences.forEach(nodeID, visitor);
     }
 
     /**
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.jaxb;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link TagDictionary} is a global dictionary for the keys and values of tags. Each distinct string is kept
+ * only once and represented by an <code>int</code> code, i.e. strings like "highway" or "residential" are not
+ * stored millions of times and tags can be compared by their codes.
+ *
+ * As codes are never removed, the dictionary only admits strings with a low cardinality, i.e. the keys of tags and
+ * the values of a fixed set of keys like "highway" or "oneway" (but not the values of keys like "name"). The
+ * dictionary stops admitting such strings once it contains {@link #MAX_SIZE} strings. Strings that are not admitted
+ * are kept by the elements themselves, i.e. they are released together with the elements.
+ *
+ * The methods of this class are thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class TagDictionary {
+
+    /**
+     * The code returned by {@link #lookup(String)} for strings that are not contained in the dictionary
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * The maximum number of strings admitted from the tags of elements (see {@link #encode(String)} for the
+     * exception)
+     */
+    public static final int MAX_SIZE = 1 << 16;
+
+    //the keys of tags with a small set of common values (i.e. the values are admitted as well)
+    private static final Set<String> LOW_CARDINALITY_KEYS = new HashSet<>(Arrays.asList(
+            "access", "admin_level", "amenity", "area", "barrier", "bicycle", "boundary", "bridge", "building",
+            "crossing", "cycleway", "foot", "highway", "junction", "landuse", "lanes", "layer", "leisure", "lit",
+            "man_made", "maxspeed", "motor_vehicle", "natural", "oneway", "place", "power", "public_transport",
+            "railway", "route", "service", "shop", "sidewalk", "smoothness", "source", "surface", "tourism",
+            "tracktype", "tunnel", "type", "waterway", "wheelchair"));
+
+    private static final ConcurrentHashMap<String, Integer> CODES = new ConcurrentHashMap<>();
+
+    private static final Object LOCK = new Object();
+    private static volatile String[] strings = new String[1024];
+    private static int size;
+
+
+    private TagDictionary(){}
+
+    /**
+     * Returns the code of the given string. If the string is not yet contained in the dictionary, it is added
+     * (even if the dictionary contains {@link #MAX_SIZE} strings).
+     *
+     * <b>Note:</b> This method is meant for small sets of strings known in advance (like the keys and values of a
+     * {@link de.uzl.itm.jaxb4osm.tools.WayTagFilter}). The tags of elements are added as long as they are admitted.
+     *
+     * @param string the string to be encoded
+     *
+     * @return the code of the given string
+     */
+    public static int encode(String string){
+        if(string == null)
+            throw new NullPointerException("Tag keys and values must not be null!");
+
+        return add(string, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the code of the given string or {@link #UNKNOWN} if the string is not contained in the dictionary.
+     * In contrast to {@link #encode(String)} unknown strings are not added.
+     *
+     * @param string the string to look up
+     *
+     * @return the code of the given string or {@link #UNKNOWN} if the string is not contained in the dictionary.
+     */
+    public static int lookup(String string){
+        if(string == null)
+            return UNKNOWN;
+
+        Integer code = CODES.get(string);
+        return code == null ? UNKNOWN : code;
+    }
+
+    /**
+     * Returns the string with the given code.
+     *
+     * @param code the code of the string
+     *
+     * @return the string with the given code.
+     */
+    public static String decode(int code){
+        return strings[code];
+    }
+
+    /**
+     * Returns the number of strings contained in the dictionary.
+     *
+     * @return the number of strings contained in the dictionary.
+     */
+    public static int size(){
+        return CODES.size();
+    }
+
+
+    /**
+     * Returns the shared instance of the given key of a tag, i.e. the key is added unless the dictionary is full.
+     */
+    static String internKey(String key){
+        return intern(key, true);
+    }
+
+    /**
+     * Returns the shared instance of the given value of a tag with the given key. The value is only added if the
+     * values of the key have a low cardinality (and the dictionary is not full).
+     */
+    static String internValue(String key, String value){
+        return intern(value, LOW_CARDINALITY_KEYS.contains(key));
+    }
+
+
+    private static String intern(String string, boolean admit){
+        Integer code = CODES.get(string);
+        if(code == null){
+            //the unsynchronized read of the size is a shortcut only (add checks the size again)
+            if(!admit || size >= MAX_SIZE)
+                return string;
+
+            code = add(string, MAX_SIZE);
+            if(code == UNKNOWN)
+                return string;
+        }
+
+        return strings[code];
+    }
+
+
+    private static int add(String string, int maxSize){
+        Integer code = CODES.get(string);
+        if(code != null)
+            return code;
+
+        synchronized(LOCK){
+            code = CODES.get(string);
+            if(code != null)
+                return code;
+
+            if(size >= maxSize)
+                return UNKNOWN;
+
+            String[] array = strings;
+            if(size == array.length){
+                array = Arrays.copyOf(array, size << 1);
+            }
+            array[size] = string;
+
+            //the volatile write publishes the new string to threads decoding the code afterwards
+            strings = array;
+            CODES.put(string, size);
+            return size++;
+        }
+    }
+}
@@ -56,7 +56,11 @@ public class WayElement extends AbstractAdaptedLevel2Element {
         ONEWAY_CRITERIA.put("junction", "yes");
     }
 
-    private List<NdElement> ndElements;
+    private static final long[] NO_NODE_REFERENCES = new long[0];
+
+    //the IDs of the referenced nodes, i.e. there is no NdElement instance per reference
+    private long[] nodeReferences;
+    private int nodeReferenceCount;
 
     /**
      * Creates a new instance of {@link WayElement}.
@@ -64,8 +68,10 @@ public class WayElement extends AbstractAdaptedLevel2Element {
     private WayElement(PlainWayElement plainWayElement){
         super(plainWayElement);
 
-        this.ndElements = new ArrayList<>();
-        this.getNdElements().addAll(plainWayElement.getNdElements());
+        this.nodeReferences = new long[plainWayElement.getNdElements().size()];
+        for(NdElement ndElement : plainWayElement.getNdElements()){
+            this.nodeReferences[this.nodeReferenceCount++] = ndElement.getReference();
+        }
     }
 
 
@@ -73,28 +79,162 @@ public class WayElement extends AbstractAdaptedLevel2Element {
                       String user, String userID){
 
         super(ID, version, changeset, visible, timestamp, user, userID);
-        this.ndElements = new ArrayList<>();
+        this.nodeReferences = NO_NODE_REFERENCES;
+    }
+
+
+    /**
+     * Creates a new instance of {@link WayElement} from the raw values of the metadata attributes (as contained in
+     * OSM files) which are parsed immediately, on the first access, or ignored according to the given
+     * {@link MetadataMode}.
+     *
+     * @param ID the value of the elements attribute "id"
+     * @param metadataMode the {@link MetadataMode} for the following metadata attributes
+     * @param version the raw value of the elements attribute "version" (e.g. <code>"3"</code>)
+     * @param changeset the raw value of the elements attribute "changeset"
+     * @param visible the raw value of the elements attribute "visible" (e.g. <code>"true"</code>)
+     * @param timestamp the raw value of the elements attribute "timestamp" (e.g.
+     *                  <code>"2014-06-15T12:00:00Z"</code>)
+     * @param user the value of the elements attribute "user"
+     * @param userID the value of the elements attribute "userID"
+     */
+    public WayElement(Long ID, MetadataMode metadataMode, String version, String changeset, String visible,
+                      String timestamp, String user, String userID){
+
+        super(ID, metadataMode, version, changeset, visible, timestamp, user, userID);
+        this.nodeReferences = NO_NODE_REFERENCES;
+    }
+
+
+    WayElement(WayElement other){
+        super(other);
+        this.nodeReferences = other.nodeReferenceCount == 0 ? NO_NODE_REFERENCES :
+                Arrays.copyOf(other.nodeReferences, other.nodeReferenceCount);
+        this.nodeReferenceCount = other.nodeReferenceCount;
     }
 
 
     public NdElement getFirstNdElement(){
-        if(this.ndElements.size() == 0)
+        if(this.nodeReferenceCount == 0)
             return null;
 
-        return this.ndElements.get(0);
+        return new NdElement(this.nodeReferences[0]);
     }
 
 
     public NdElement getLastNdElement(){
-        if(this.ndElements.size() == 0)
+        if(this.nodeReferenceCount == 0)
             return null;
 
-        return this.ndElements.get(this.ndElements.size() - 1);
+        return new NdElement(this.nodeReferences[this.nodeReferenceCount - 1]);
     }
 
 
+    /**
+     * Returns a {@link java.util.List} view on the references of this way (in the order of the
+     * <code>&lt;nd&gt;</code> elements). The references are kept as a <code>long[]</code>, i.e. the
+     * {@link NdElement}s are created on access. Iterations in performance critical code should use
+     * {@link #getNodeReferenceCount()} and {@link #getNodeReference(int)} instead.
+     *
+     * <b>Note:</b> The returned {@link java.util.List} is a view on the references, i.e. modifications of the list
+     * modify the references of this element.
+     *
+     * @return a {@link java.util.List} view on the references of this way
+     */
     public List<NdElement> getNdElements(){
-        return this.ndElements;
+        return new NdElementList();
+    }
+
+
+    /**
+     * Returns the number of nodes referenced by this way (including duplicates, e.g. the first and the last node of
+     * a closed way).
+     *
+     * @return the number of nodes referenced by this way
+     */
+    public int getNodeReferenceCount(){
+        return this.nodeReferenceCount;
+    }
+
+
+    /**
+     * Returns the ID of the node referenced at the given position.
+     *
+     * @param index the position of the reference (starting with 0)
+     *
+     * @return the ID of the node referenced at the given position
+     *
+     * @throws java.lang.IndexOutOfBoundsException if the given index is negative or not less than
+     * {@link #getNodeReferenceCount()}
+     */
+    public long getNodeReference(int index){
+        checkIndex(index, this.nodeReferenceCount);
+        return this.nodeReferences[index];
+    }
+
+
+    /**
+     * Appends a reference to the node with the given ID.
+     *
+     * @param nodeID the ID of the referenced node
+     */
+    public void addNodeReference(long nodeID){
+        addNodeReference(this.nodeReferenceCount, nodeID);
+    }
+
+
+    /**
+     * Appends the references to the nodes with the given IDs, i.e. the given number of values of the given array
+     * starting at the given offset.
+     *
+     * @param nodeIDs the IDs of the referenced nodes
+     * @param offset the position of the first ID in the given array
+     * @param length the number of IDs to be added
+     */
+    public void addNodeReferences(long[] nodeIDs, int offset, int length){
+        ensureCapacity(this.nodeReferenceCount + length, true);
+        System.arraycopy(nodeIDs, offset, this.nodeReferences, this.nodeReferenceCount, length);
+        this.nodeReferenceCount += length;
+    }
+
+
+    private void addNodeReference(int index, long nodeID){
+        checkIndex(index, this.nodeReferenceCount + 1);
+        ensureCapacity(this.nodeReferenceCount + 1, false);
+
+        System.arraycopy(this.nodeReferences, index, this.nodeReferences, index + 1, this.nodeReferenceCount - index);
+        this.nodeReferences[index] = nodeID;
+        this.nodeReferenceCount++;
+    }
+
+
+    private long removeNodeReference(int index){
+        checkIndex(index, this.nodeReferenceCount);
+
+        long result = this.nodeReferences[index];
+        System.arraycopy(this.nodeReferences, index + 1, this.nodeReferences, index,
+                this.nodeReferenceCount - index - 1);
+        this.nodeReferenceCount--;
+        return result;
+    }
+
+
+    private void ensureCapacity(int capacity, boolean exact){
+        if(capacity <= this.nodeReferences.length)
+            return;
+
+        //ways are mostly built at once, so the array only grows in steps when references are added one by one
+        int length = capacity;
+        if(!exact){
+            length = Math.max(capacity, this.nodeReferences.length + (this.nodeReferences.length >> 1) + 1);
+        }
+        this.nodeReferences = Arrays.copyOf(this.nodeReferences, length);
+    }
+
+
+    private static void checkIndex(int index, int size){
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
     }
 
 
@@ -135,12 +275,11 @@ public class WayElement extends AbstractAdaptedLevel2Element {
         StringBuilder result = new StringBuilder();
         result.append("osm:way (ID: ").append(this.getID()).append(", referenced nodes: [");
 
-        Iterator<NdElement> iterator = this.ndElements.iterator();
-        while(iterator.hasNext()){
-            result.append(iterator.next());
-
-            if(iterator.hasNext())
+        for(int i = 0; i < this.nodeReferenceCount; i++){
+            if(i > 0)
                 result.append(", ");
+
+            result.append(new NdElement(this.nodeReferences[i]));
         }
         result.append("], Tags: [");
 
@@ -159,6 +298,49 @@ public class WayElement extends AbstractAdaptedLevel2Element {
     }
 
 
+    /**
+     * A {@link java.util.List} view on the node references of the way.
+     */
+    private class NdElementList extends AbstractList<NdElement> implements RandomAccess {
+
+        @Override
+        public NdElement get(int index){
+            return new NdElement(getNodeReference(index));
+        }
+
+        @Override
+        public int size(){
+            return nodeReferenceCount;
+        }
+
+        @Override
+        public NdElement set(int index, NdElement ndElement){
+            NdElement previous = get(index);
+            nodeReferences[index] = ndElement.getReference();
+            return previous;
+        }
+
+        @Override
+        public void add(int index, NdElement ndElement){
+            addNodeReference(index, ndElement.getReference());
+            this.modCount++;
+        }
+
+        @Override
+        public NdElement remove(int index){
+            NdElement previous = new NdElement(removeNodeReference(index));
+            this.modCount++;
+            return previous;
+        }
+
+        @Override
+        public void clear(){
+            nodeReferenceCount = 0;
+            this.modCount++;
+        }
+    }
+
+
     private static class PlainWayElement extends AbstractPlainLevel2Element{
 
         @XmlElement(name="nd", type = NdElement.class)
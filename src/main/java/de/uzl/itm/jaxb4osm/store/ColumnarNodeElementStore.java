@@ -0,0 +1,430 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.store;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.util.LongObjectHashMap;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link NodeElementStore} that keeps the IDs and coordinates of untagged nodes in parallel primitive arrays
+ * sorted by ID. The coordinates are either kept as <code>double</code> values (24 bytes per node including the ID)
+ * or as fixed-point <code>int</code> values with a resolution of 10<sup>-7</sup> degrees (16 bytes per node
+ * including the ID), which is the precision of the coordinates in OSM files.
+ *
+ * Tagged nodes are usually a small minority. These are kept as they are, i.e. including tags and meta data.
+ *
+ * The {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s of untagged nodes are lightweight views that are created on
+ * demand. They only provide ID and coordinates (the meta data is not kept) and modifications of such views do not
+ * affect the store.
+ *
+ * <b>Note:</b> Adding nodes in ascending order of their IDs (like they appear in OSM files) is an append operation.
+ * Untagged nodes added out of order are buffered as {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s and merged into
+ * the sorted arrays once the buffer exceeds an eighth of the arrays, i.e. adding nodes in arbitrary order takes
+ * <code>O(n log n)</code> time overall (and temporarily needs the memory of the buffered nodes).
+ *
+ * @author Oliver Kleine
+ */
+public class ColumnarNodeElementStore extends NodeElementStore {
+
+    private static final double FIXED_POINT_SCALE = 1e7;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    //marks the coordinates of removed nodes
+    private static final int REMOVED = Integer.MIN_VALUE;
+
+    private boolean fixedPoint;
+
+    private long[] nodeIDs;
+    private int[] fixedLatitudes;
+    private int[] fixedLongitudes;
+    private double[] latitudes;
+    private double[] longitudes;
+
+    //number of used array slots (including removed nodes) and number of contained untagged nodes
+    private int count;
+    private int size;
+
+    private LongObjectHashMap<NodeElement> taggedNodeElements;
+
+    //untagged nodes added out of order until they are merged into the sorted arrays
+    private LongObjectHashMap<NodeElement> pendingNodeElements;
+
+    /**
+     * Creates a new empty instance of {@link ColumnarNodeElementStore} that keeps the coordinates as fixed-point
+     * values.
+     */
+    public ColumnarNodeElementStore(){
+        this(true);
+    }
+
+    /**
+     * Creates a new empty instance of {@link ColumnarNodeElementStore}.
+     *
+     * @param fixedPoint <code>true</code> if the coordinates are to be kept as fixed-point <code>int</code>
+     *                   values with a resolution of 10<sup>-7</sup> degrees or <code>false</code> if the
+     *                   coordinates are to be kept as <code>double</code> values
+     */
+    public ColumnarNodeElementStore(boolean fixedPoint){
+        this.fixedPoint = fixedPoint;
+        this.nodeIDs = new long[DEFAULT_CAPACITY];
+
+        if(fixedPoint){
+            this.fixedLatitudes = new int[DEFAULT_CAPACITY];
+            this.fixedLongitudes = new int[DEFAULT_CAPACITY];
+        }
+        else{
+            this.latitudes = new double[DEFAULT_CAPACITY];
+            this.longitudes = new double[DEFAULT_CAPACITY];
+        }
+
+        this.taggedNodeElements = new LongObjectHashMap<>();
+        this.pendingNodeElements = new LongObjectHashMap<>();
+    }
+
+
+    @Override
+    public void put(NodeElement nodeElement) {
+        long nodeID = nodeElement.getID();
+
+        if(!nodeElement.getTags().isEmpty()){
+            removeUntagged(nodeID);
+            this.taggedNodeElements.put(nodeID, nodeElement);
+            return;
+        }
+
+        this.taggedNodeElements.remove(nodeID);
+
+        int index = indexOf(nodeID);
+        if(index >= 0){
+            if(isRemoved(index)){
+                this.size++;
+            }
+            setCoordinates(index, nodeElement.getLatitude(), nodeElement.getLongitude());
+        }
+        else if(-index - 1 == this.count){
+            append(nodeID);
+            setCoordinates(this.count - 1, nodeElement.getLatitude(), nodeElement.getLongitude());
+            this.size++;
+        }
+        else{
+            NodeElement pendingNodeElement = createNodeElement(nodeID, normalize(nodeElement.getLatitude()),
+                    normalize(nodeElement.getLongitude()));
+
+            if(this.pendingNodeElements.put(nodeID, pendingNodeElement) == null){
+                this.size++;
+            }
+            if(this.pendingNodeElements.size() > Math.max(DEFAULT_CAPACITY, this.count >> 3)){
+                mergePendingNodeElements();
+            }
+        }
+    }
+
+
+    @Override
+    public NodeElement get(long nodeID) {
+        NodeElement nodeElement = this.taggedNodeElements.get(nodeID);
+        if(nodeElement != null)
+            return nodeElement;
+
+        int index = indexOf(nodeID);
+        if(index < 0)
+            return copy(this.pendingNodeElements.get(nodeID));
+
+        return isRemoved(index) ? null : createView(index);
+    }
+
+
+    @Override
+    public boolean contains(long nodeID) {
+        if(this.taggedNodeElements.containsKey(nodeID))
+            return true;
+
+        int index = indexOf(nodeID);
+        return index < 0 ? this.pendingNodeElements.containsKey(nodeID) : !isRemoved(index);
+    }
+
+
+    @Override
+    public boolean remove(long nodeID) {
+        return this.taggedNodeElements.remove(nodeID) != null || removeUntagged(nodeID);
+    }
+
+
+    @Override
+    public int size() {
+        return this.size + this.taggedNodeElements.size();
+    }
+
+
+    @Override
+    public Collection<NodeElement> values() {
+        return new AbstractCollection<NodeElement>() {
+            @Override
+            public Iterator<NodeElement> iterator() {
+                return new NodeElementIterator();
+            }
+
+            @Override
+            public int size() {
+                return ColumnarNodeElementStore.this.size();
+            }
+        };
+    }
+
+    /**
+     * Releases the memory of removed nodes and unused array capacity. This method is useful after all nodes were
+     * added, e.g. right after unmarshalling an OSM file.
+     */
+    public void trimToSize(){
+        mergePendingNodeElements();
+
+        int target = 0;
+        for(int index = 0; index < this.count; index++){
+            if(!isRemoved(index)){
+                this.nodeIDs[target] = this.nodeIDs[index];
+                if(this.fixedPoint){
+                    this.fixedLatitudes[target] = this.fixedLatitudes[index];
+                    this.fixedLongitudes[target] = this.fixedLongitudes[index];
+                }
+                else{
+                    this.latitudes[target] = this.latitudes[index];
+                    this.longitudes[target] = this.longitudes[index];
+                }
+                target++;
+            }
+        }
+
+        this.count = target;
+        resize(Math.max(target, 1));
+    }
+
+
+    private int indexOf(long nodeID){
+        //fast path for IDs in ascending order
+        if(this.count == 0 || nodeID > this.nodeIDs[this.count - 1])
+            return -this.count - 1;
+
+        return Arrays.binarySearch(this.nodeIDs, 0, this.count, nodeID);
+    }
+
+
+    private boolean removeUntagged(long nodeID){
+        int index = indexOf(nodeID);
+        if(index < 0){
+            if(this.pendingNodeElements.remove(nodeID) == null)
+                return false;
+
+            this.size--;
+            return true;
+        }
+
+        if(isRemoved(index))
+            return false;
+
+        if(this.fixedPoint){
+            this.fixedLatitudes[index] = REMOVED;
+        }
+        else{
+            this.latitudes[index] = Double.NaN;
+        }
+
+        this.size--;
+        return true;
+    }
+
+
+    private boolean isRemoved(int index){
+        return this.fixedPoint ? this.fixedLatitudes[index] == REMOVED : Double.isNaN(this.latitudes[index]);
+    }
+
+
+    private void append(long nodeID){
+        if(this.count == this.nodeIDs.length){
+            resize(this.count + (this.count >> 1) + 1);
+        }
+
+        this.nodeIDs[this.count++] = nodeID;
+    }
+
+
+    private void mergePendingNodeElements(){
+        int pendingCount = this.pendingNodeElements.size();
+        if(pendingCount == 0)
+            return;
+
+        long[] pendingNodeIDs = new long[pendingCount];
+        int i = 0;
+        for(NodeElement nodeElement : this.pendingNodeElements.values()){
+            pendingNodeIDs[i++] = nodeElement.getID();
+        }
+        Arrays.sort(pendingNodeIDs);
+
+        int newCount = this.count + pendingCount;
+        if(newCount > this.nodeIDs.length){
+            resize(newCount + (newCount >> 1));
+        }
+
+        //merge from the end, i.e. every entry of the arrays is moved at most once
+        int source = this.count - 1;
+        int target = newCount - 1;
+        for(i = pendingCount - 1; i >= 0; i--){
+            long nodeID = pendingNodeIDs[i];
+            while(source >= 0 && this.nodeIDs[source] > nodeID){
+                move(source--, target--);
+            }
+
+            NodeElement nodeElement = this.pendingNodeElements.get(nodeID);
+            this.nodeIDs[target] = nodeID;
+            setCoordinates(target--, nodeElement.getLatitude(), nodeElement.getLongitude());
+        }
+
+        this.count = newCount;
+        this.pendingNodeElements = new LongObjectHashMap<>();
+    }
+
+
+    private void move(int source, int target){
+        this.nodeIDs[target] = this.nodeIDs[source];
+        if(this.fixedPoint){
+            this.fixedLatitudes[target] = this.fixedLatitudes[source];
+            this.fixedLongitudes[target] = this.fixedLongitudes[source];
+        }
+        else{
+            this.latitudes[target] = this.latitudes[source];
+            this.longitudes[target] = this.longitudes[source];
+        }
+    }
+
+
+    private void setCoordinates(int index, double latitude, double longitude){
+        if(this.fixedPoint){
+            this.fixedLatitudes[index] = (int) Math.round(latitude * FIXED_POINT_SCALE);
+            this.fixedLongitudes[index] = (int) Math.round(longitude * FIXED_POINT_SCALE);
+        }
+        else{
+            this.latitudes[index] = latitude;
+            this.longitudes[index] = longitude;
+        }
+    }
+
+
+    private double normalize(double coordinate){
+        return this.fixedPoint ? Math.round(coordinate * FIXED_POINT_SCALE) / FIXED_POINT_SCALE : coordinate;
+    }
+
+
+    private void resize(int capacity){
+        this.nodeIDs = Arrays.copyOf(this.nodeIDs, capacity);
+        if(this.fixedPoint){
+            this.fixedLatitudes = Arrays.copyOf(this.fixedLatitudes, capacity);
+            this.fixedLongitudes = Arrays.copyOf(this.fixedLongitudes, capacity);
+        }
+        else{
+            this.latitudes = Arrays.copyOf(this.latitudes, capacity);
+            this.longitudes = Arrays.copyOf(this.longitudes, capacity);
+        }
+    }
+
+
+    private NodeElement createView(int index){
+        double latitude, longitude;
+        if(this.fixedPoint){
+            latitude = this.fixedLatitudes[index] / FIXED_POINT_SCALE;
+            longitude = this.fixedLongitudes[index] / FIXED_POINT_SCALE;
+        }
+        else{
+            latitude = this.latitudes[index];
+            longitude = this.longitudes[index];
+        }
+
+        return createNodeElement(this.nodeIDs[index], latitude, longitude);
+    }
+
+
+    //the buffered nodes are not to be modified via the returned views
+    private static NodeElement copy(NodeElement nodeElement){
+        if(nodeElement == null)
+            return null;
+
+        return createNodeElement(nodeElement.getID(), nodeElement.getLatitude(), nodeElement.getLongitude());
+    }
+
+
+    private static NodeElement createNodeElement(long nodeID, double latitude, double longitude){
+        return new NodeElement(nodeID, null, null, null, null, null, null, latitude, longitude);
+    }
+
+
+    private class NodeElementIterator implements Iterator<NodeElement> {
+
+        private int index = -1;
+        private Iterator<NodeElement> pendingIterator = pendingNodeElements.values().iterator();
+        private Iterator<NodeElement> taggedIterator = taggedNodeElements.values().iterator();
+
+        private NodeElementIterator(){
+            advance();
+        }
+
+        private void advance(){
+            do{
+                this.index++;
+            }
+            while(this.index < count && isRemoved(this.index));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < count || this.pendingIterator.hasNext() || this.taggedIterator.hasNext();
+        }
+
+        @Override
+        public NodeElement next() {
+            if(this.index < count){
+                NodeElement result = createView(this.index);
+                advance();
+                return result;
+            }
+
+            if(this.pendingIterator.hasNext())
+                return copy(this.pendingIterator.next());
+
+            if(!this.taggedIterator.hasNext())
+                throw new NoSuchElementException();
+
+            return this.taggedIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Values view does not support modifications!");
+        }
+    }
+}
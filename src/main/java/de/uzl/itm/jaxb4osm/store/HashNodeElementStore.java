@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.store;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.util.LongObjectHashMap;
+
+import java.util.Collection;
+
+/**
+ * The default {@link NodeElementStore} that keeps the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s as they are,
+ * i.e. including tags and meta data.
+ *
+ * @author Oliver Kleine
+ */
+public class HashNodeElementStore extends NodeElementStore {
+
+    private LongObjectHashMap<NodeElement> nodeElements;
+
+    /**
+     * Creates a new empty instance of {@link HashNodeElementStore}.
+     */
+    public HashNodeElementStore(){
+        this.nodeElements = new LongObjectHashMap<>();
+    }
+
+    @Override
+    public void put(NodeElement nodeElement) {
+        this.nodeElements.put(nodeElement.getID(), nodeElement);
+    }
+
+    @Override
+    public NodeElement get(long nodeID) {
+        return this.nodeElements.get(nodeID);
+    }
+
+    @Override
+    public boolean contains(long nodeID) {
+        return this.nodeElements.containsKey(nodeID);
+    }
+
+    @Override
+    public boolean remove(long nodeID) {
+        return this.nodeElements.remove(nodeID) != null;
+    }
+
+    @Override
+    public int size() {
+        return this.nodeElements.size();
+    }
+
+    @Override
+    public Collection<NodeElement> values() {
+        return this.nodeElements.values();
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.store;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link NodeElementStore} that keeps the node coordinates in a file indexed by node ID. The file is accessed via
+ * {@link java.nio.MappedByteBuffer}s, i.e. the coordinates are held by the page cache of the operating system and
+ * not by the Java heap. The heap usage is thus bounded no matter how large the OSM file is.
+ *
+ * Each node occupies 8 bytes at the position <code>8 * nodeID</code> (latitude and longitude as fixed-point
+ * <code>int</code> values with a resolution of 10<sup>-7</sup> degrees). Unused positions are not written, i.e.
+ * the file is a sparse file on file systems supporting that.
+ *
+ * Only the coordinates are kept, i.e. the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s are lightweight views that
+ * are created on demand and provide neither tags nor meta data. Modifications of such views do not affect the
+ * store. Nodes with negative IDs are not supported.
+ *
+ * Lookups never map or extend the file, i.e. the segments of the file are only mapped by {@link #put(NodeElement)}.
+ * Concurrent lookups are thread-safe but modifications must not be concurrent with other operations.
+ *
+ * A bitmap on the heap marks the pages of 512 nodes (4 KB) that ever contained a node (4 KB of bitmap per 1 GB
+ * segment of the file). Hence, iterating over {@link #values()} takes time proportional to the number of contained
+ * nodes plus the number of such pages, no matter how large the node IDs are.
+ *
+ * @author Oliver Kleine
+ */
+public class MappedNodeElementStore extends NodeElementStore implements Closeable {
+
+    private static final double FIXED_POINT_SCALE = 1e7;
+
+    private static final int BYTES_PER_NODE = 8;
+    private static final int NODES_PER_SEGMENT_BITS = 27;
+    private static final long SEGMENT_SIZE = (long) BYTES_PER_NODE << NODES_PER_SEGMENT_BITS;
+    private static final long NODE_INDEX_MASK = (1L << NODES_PER_SEGMENT_BITS) - 1;
+    private static final int NODES_PER_PAGE_BITS = 9;
+
+    //the latitude is stored with the sign bit flipped, i.e. 0 (unwritten) marks a free position
+    private static final int LATITUDE_MASK = Integer.MIN_VALUE;
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel fileChannel;
+    //replaced (and never modified) once a segment is mapped, i.e. lookups need no synchronization
+    private volatile MappedByteBuffer[] segments;
+    //one bit per page of each segment that ever contained a node (bits are never cleared)
+    private long[][] usedPages;
+
+    private long maxNodeID;
+    private long size;
+
+    /**
+     * Creates a new empty instance of {@link MappedNodeElementStore}. An existing file is overwritten.
+     *
+     * @param file the file to keep the node coordinates in
+     *
+     * @throws IOException if the file could not be created
+     */
+    public MappedNodeElementStore(File file) throws IOException {
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.randomAccessFile.setLength(0);
+        this.fileChannel = this.randomAccessFile.getChannel();
+        this.segments = new MappedByteBuffer[0];
+        this.usedPages = new long[0][];
+        this.maxNodeID = -1;
+    }
+
+
+    @Override
+    public void put(NodeElement nodeElement) {
+        long nodeID = nodeElement.getID();
+        if(nodeID < 0)
+            throw new IllegalArgumentException("Negative node IDs are not supported (ID: " + nodeID + ")!");
+
+        MappedByteBuffer segment = getOrCreateSegment(nodeID);
+        int position = position(nodeID);
+
+        if(segment.getInt(position) == 0){
+            this.size++;
+        }
+
+        segment.putInt(position, (int) Math.round(nodeElement.getLatitude() * FIXED_POINT_SCALE) ^ LATITUDE_MASK);
+        segment.putInt(position + 4, (int) Math.round(nodeElement.getLongitude() * FIXED_POINT_SCALE));
+        this.maxNodeID = Math.max(this.maxNodeID, nodeID);
+
+        int page = (int) ((nodeID & NODE_INDEX_MASK) >>> NODES_PER_PAGE_BITS);
+        this.usedPages[(int) (nodeID >>> NODES_PER_SEGMENT_BITS)][page >>> 6] |= 1L << page;
+    }
+
+
+    @Override
+    public NodeElement get(long nodeID) {
+        if(nodeID < 0 || nodeID > this.maxNodeID)
+            return null;
+
+        MappedByteBuffer segment = getSegment(nodeID);
+        if(segment == null)
+            return null;
+
+        int position = position(nodeID);
+        int latitude = segment.getInt(position);
+        if(latitude == 0)
+            return null;
+
+        return new NodeElement(nodeID, null, null, null, null, null, null,
+                (latitude ^ LATITUDE_MASK) / FIXED_POINT_SCALE, segment.getInt(position + 4) / FIXED_POINT_SCALE);
+    }
+
+
+    @Override
+    public boolean contains(long nodeID) {
+        if(nodeID < 0 || nodeID > this.maxNodeID)
+            return false;
+
+        MappedByteBuffer segment = getSegment(nodeID);
+        return segment != null && segment.getInt(position(nodeID)) != 0;
+    }
+
+
+    @Override
+    public boolean remove(long nodeID) {
+        if(!contains(nodeID))
+            return false;
+
+        MappedByteBuffer segment = getSegment(nodeID);
+        segment.putLong(position(nodeID), 0);
+        this.size--;
+        return true;
+    }
+
+
+    /**
+     * Returns the number of contained nodes or {@link Integer#MAX_VALUE} if there are more (see
+     * {@link #longSize()}).
+     *
+     * @return the number of contained nodes (at most {@link Integer#MAX_VALUE})
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(this.size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of contained nodes, i.e. unlike {@link #size()} the result is not limited to
+     * {@link Integer#MAX_VALUE}.
+     *
+     * @return the number of contained nodes
+     */
+    public long longSize() {
+        return this.size;
+    }
+
+
+    @Override
+    public Collection<NodeElement> values() {
+        return new AbstractCollection<NodeElement>() {
+            @Override
+            public Iterator<NodeElement> iterator() {
+                return new NodeElementIterator();
+            }
+
+            @Override
+            public int size() {
+                return MappedNodeElementStore.this.size();
+            }
+        };
+    }
+
+    /**
+     * Writes all changes to the file and closes it. The store must not be used afterwards.
+     *
+     * @throws IOException if some error occurred
+     */
+    @Override
+    public void close() throws IOException {
+        for(MappedByteBuffer segment : this.segments){
+            if(segment != null){
+                segment.force();
+            }
+        }
+
+        this.segments = new MappedByteBuffer[0];
+        this.usedPages = new long[0][];
+        this.maxNodeID = -1;
+        this.fileChannel.close();
+        this.randomAccessFile.close();
+    }
+
+
+    //returns null if the segment was not mapped yet, i.e. lookups never extend the file
+    private MappedByteBuffer getSegment(long nodeID){
+        MappedByteBuffer[] segments = this.segments;
+        int index = (int) (nodeID >>> NODES_PER_SEGMENT_BITS);
+
+        return index < segments.length ? segments[index] : null;
+    }
+
+
+    private MappedByteBuffer getOrCreateSegment(long nodeID){
+        MappedByteBuffer segment = getSegment(nodeID);
+        return segment != null ? segment : createSegment((int) (nodeID >>> NODES_PER_SEGMENT_BITS));
+    }
+
+
+    private synchronized MappedByteBuffer createSegment(int index){
+        MappedByteBuffer[] segments = this.segments;
+        if(index < segments.length && segments[index] != null)
+            return segments[index];
+
+        try{
+            //mapping a region beyond the end of the file extends the file
+            MappedByteBuffer segment = this.fileChannel.map(FileChannel.MapMode.READ_WRITE, index * SEGMENT_SIZE,
+                    SEGMENT_SIZE);
+            segment.order(ByteOrder.nativeOrder());
+
+            if(index >= this.usedPages.length){
+                this.usedPages = Arrays.copyOf(this.usedPages, index + 1);
+            }
+            this.usedPages[index] = new long[1 << (NODES_PER_SEGMENT_BITS - NODES_PER_PAGE_BITS - 6)];
+
+            segments = Arrays.copyOf(segments, Math.max(segments.length, index + 1));
+            segments[index] = segment;
+            this.segments = segments;
+            return segment;
+        }
+        catch(IOException ex){
+            throw new IllegalStateException("Could not map segment " + index + " of node store!", ex);
+        }
+    }
+
+
+    //returns the given node ID if its page is used or the first node ID of the next used page (or -1 if none)
+    private long nextUsedNodeID(long nodeID){
+        while(nodeID <= this.maxNodeID){
+            int index = (int) (nodeID >>> NODES_PER_SEGMENT_BITS);
+            long[] bitmap = index < this.usedPages.length ? this.usedPages[index] : null;
+
+            if(bitmap != null){
+                int page = (int) ((nodeID & NODE_INDEX_MASK) >>> NODES_PER_PAGE_BITS);
+                int word = page >>> 6;
+                long bits = bitmap[word] & (-1L << page);
+                while(bits == 0 && ++word < bitmap.length){
+                    bits = bitmap[word];
+                }
+
+                if(bits != 0){
+                    long usedPage = ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+                    long firstNodeID = ((long) index << NODES_PER_SEGMENT_BITS) + (usedPage << NODES_PER_PAGE_BITS);
+                    return Math.max(nodeID, firstNodeID);
+                }
+            }
+
+            nodeID = (long) (index + 1) << NODES_PER_SEGMENT_BITS;
+        }
+
+        return -1;
+    }
+
+
+    private static int position(long nodeID){
+        return (int) (nodeID & NODE_INDEX_MASK) * BYTES_PER_NODE;
+    }
+
+
+    private class NodeElementIterator implements Iterator<NodeElement> {
+
+        private long nodeID = -1;
+        private long remaining = size;
+        private NodeElement next;
+
+        private NodeElementIterator(){
+            advance();
+        }
+
+        private void advance(){
+            this.next = null;
+            while(this.next == null && this.remaining > 0){
+                this.nodeID = nextUsedNodeID(this.nodeID + 1);
+                if(this.nodeID < 0)
+                    return;
+
+                this.next = get(this.nodeID);
+            }
+
+            if(this.next != null){
+                this.remaining--;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public NodeElement next() {
+            if(this.next == null)
+                throw new NoSuchElementException();
+
+            NodeElement result = this.next;
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Values view does not support modifications!");
+        }
+    }
+}
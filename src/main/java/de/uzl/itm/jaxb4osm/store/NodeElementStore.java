@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.store;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+
+import java.util.Collection;
+
+/**
+ * A {@link NodeElementStore} keeps the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s of an
+ * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}. Implementations may trade the completeness of the stored data for
+ * memory, e.g. by keeping the coordinates only and creating {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s on demand.
+ *
+ * @author Oliver Kleine
+ */
+public abstract class NodeElementStore {
+
+    /**
+     * Adds the given {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}. An already contained node with the same ID is
+     * replaced.
+     *
+     * @param nodeElement the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} to be added
+     */
+    public abstract void put(NodeElement nodeElement);
+
+    /**
+     * Returns the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} that has the given ID or <code>null</code> if no
+     * such node is contained.
+     *
+     * @param nodeID the ID to lookup the corresponding node for
+     *
+     * @return the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} that has the given ID or <code>null</code> if no
+     * such node is contained.
+     */
+    public abstract NodeElement get(long nodeID);
+
+    /**
+     * Returns <code>true</code> if a node with the given ID is contained or <code>false</code> otherwise.
+     *
+     * @param nodeID the ID of the node
+     *
+     * @return <code>true</code> if a node with the given ID is contained or <code>false</code> otherwise.
+     */
+    public abstract boolean contains(long nodeID);
+
+    /**
+     * Removes the node with the given ID.
+     *
+     * @param nodeID the ID of the node to be removed
+     *
+     * @return <code>true</code> if the node was removed or <code>false</code> if there was no such node
+     */
+    public abstract boolean remove(long nodeID);
+
+    /**
+     * Returns the number of contained nodes.
+     *
+     * @return the number of contained nodes.
+     */
+    public abstract int size();
+
+    /**
+     * Returns a {@link java.util.Collection} view on the contained nodes. The view does not support modifications
+     * and is not supposed to be used while the store is modified.
+     *
+     * @return a {@link java.util.Collection} view on the contained nodes.
+     */
+    public abstract Collection<NodeElement> values();
+}
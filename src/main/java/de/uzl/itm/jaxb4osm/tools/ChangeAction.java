@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+/**
+ * The actions of an osmChange file, i.e. the <code>&lt;create&gt;</code>, <code>&lt;modify&gt;</code> and
+ * <code>&lt;delete&gt;</code> blocks containing the changed elements (see {@link OsmChangeReader}).
+ *
+ * @author Oliver Kleine
+ */
+public enum ChangeAction {
+
+    /**
+     * The elements were created
+     */
+    CREATE("create"),
+
+    /**
+     * The elements were modified, i.e. they replace the elements with the same IDs
+     */
+    MODIFY("modify"),
+
+    /**
+     * The elements were deleted
+     */
+    DELETE("delete");
+
+    private final String elementName;
+
+    private ChangeAction(String elementName){
+        this.elementName = elementName;
+    }
+
+    /**
+     * Returns the name of the XML element containing the elements changed by this action
+     *
+     * @return the name of the XML element containing the elements changed by this action
+     */
+    public String getElementName(){
+        return this.elementName;
+    }
+
+    /**
+     * Returns the {@link ChangeAction} with the given XML element name or <code>null</code> if there is none
+     *
+     * @param elementName the name of the XML element
+     *
+     * @return the {@link ChangeAction} with the given XML element name or <code>null</code> if there is none
+     */
+    public static ChangeAction fromElementName(String elementName){
+        for(ChangeAction action : values()){
+            if(action.elementName.equals(elementName))
+                return action;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.util.LongHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/**
+ * This is a class to provide static methods to apply osmChange files (<code>.osc</code>, e.g. the minutely diffs of
+ * the OSM planet) to an already loaded {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}. The file is read in a streaming
+ * fashion by an {@link OsmStreamReader} and every element is applied as soon as its closing tag was read, i.e. the
+ * cost of an update depends on the size of the diff and not on the size of the
+ * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}. Compressed files (e.g. <code>.osc.gz</code>) are decompressed
+ * transparently.
+ *
+ * The elements are applied as follows:
+ *
+ * <ul>
+ *     <li>Created and modified nodes replace the nodes with the same ID (if any), deleted nodes are removed.</li>
+ *     <li>Created and modified ways replace the ways with the same ID if they match the given
+ *     {@link WayElementFilter}. Otherwise the ways with the same ID are removed, i.e. a way that does not match the
+ *     filter anymore after a modification disappears. Deleted ways are removed.</li>
+ *     <li>If unreferenced nodes are to be removed, the created and modified nodes and the nodes of removed and
+ *     replaced ways are removed at the end unless they are referenced by a way.</li>
+ *     <li>If the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} was clipped to bounds (see
+ *     {@link UnmarshalOptions#setBounds(de.uzl.itm.jaxb4osm.jaxb.BoundsElement, boolean)}), only the contained
+ *     elements are changed. Other nodes are only added if they are within the bounds and other ways are only added
+ *     if they reference a contained node within the bounds, i.e. the changes of a planet diff outside of an
+ *     extract are ignored.</li>
+ * </ul>
+ *
+ * Ways are added and removed by {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement#addWayElement(WayElement)} and
+ * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement#removeWayElement(long)}, i.e. the references returned by
+ * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement#getReferencingWayIDs(long)} are kept consistent. Relations are
+ * ignored.
+ *
+ * <b>Note:</b> An osmChange file only contains the changed elements. If a way starts to match the filter by a
+ * modification, its nodes are only contained afterwards if they were already contained in the
+ * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} or in the osmChange file. The methods are not thread-safe with
+ * regard to the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}, i.e. it must not be accessed by other threads
+ * while a change is applied.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmChangeReader {
+
+    private static Logger log = LoggerFactory.getLogger(OsmChangeReader.class.getName());
+
+
+    /**
+     * Applies the given osmChange file to the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to apply the changes to
+     * @param file the osmChange file to read the changes from
+     * @param filter the {@link WayElementFilter} the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} was loaded with
+     * @param removeUnreferencedNodes <code>true</code> if the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} is
+     *                                supposed to contain only the nodes referenced by at least one way (see
+     *                                {@link OsmUnmarshaller#unmarshal(java.io.File, WayElementFilter, boolean)})
+     *
+     * @return the number of changed elements read from the file
+     *
+     * @throws Exception if some error occurred
+     */
+    public static int apply(OsmElement osmElement, File file, WayElementFilter filter,
+                            boolean removeUnreferencedNodes) throws Exception{
+
+        return apply(osmElement, file, UnmarshalOptions.create().setFilter(filter)
+                .setRemoveUnreferencedNodes(removeUnreferencedNodes));
+    }
+
+    /**
+     * Applies the given osmChange file to the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} according to the
+     * {@link UnmarshalOptions} the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} was loaded with, i.e. the filter,
+     * the removal of unreferenced nodes and the bounds are applied to the changes. The other options are ignored.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to apply the changes to
+     * @param file the osmChange file to read the changes from
+     * @param options the {@link UnmarshalOptions} the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} was loaded with
+     *
+     * @return the number of changed elements read from the file
+     *
+     * @throws Exception if some error occurred
+     */
+    public static int apply(OsmElement osmElement, File file, UnmarshalOptions options) throws Exception{
+        try(InputStream inputStream = new FileInputStream(file)){
+            return apply(osmElement, inputStream, options);
+        }
+    }
+
+    /**
+     * Applies the osmChange file read from the given {@link java.io.InputStream} to the given
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}. The {@link java.io.InputStream} is not closed.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to apply the changes to
+     * @param inputStream the {@link java.io.InputStream} to read the changes from
+     * @param filter the {@link WayElementFilter} the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} was loaded with
+     * @param removeUnreferencedNodes <code>true</code> if the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} is
+     *                                supposed to contain only the nodes referenced by at least one way (see
+     *                                {@link OsmUnmarshaller#unmarshal(java.io.File, WayElementFilter, boolean)})
+     *
+     * @return the number of changed elements read from the {@link java.io.InputStream}
+     *
+     * @throws Exception if some error occurred
+     */
+    public static int apply(OsmElement osmElement, InputStream inputStream, WayElementFilter filter,
+                            boolean removeUnreferencedNodes) throws Exception{
+
+        return apply(osmElement, inputStream, UnmarshalOptions.create().setFilter(filter)
+                .setRemoveUnreferencedNodes(removeUnreferencedNodes));
+    }
+
+    /**
+     * Applies the osmChange file read from the given {@link java.io.InputStream} to the given
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} according to the {@link UnmarshalOptions} the
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} was loaded with (see
+     * {@link #apply(de.uzl.itm.jaxb4osm.jaxb.OsmElement, java.io.File, UnmarshalOptions)}). The
+     * {@link java.io.InputStream} is not closed.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to apply the changes to
+     * @param inputStream the {@link java.io.InputStream} to read the changes from
+     * @param options the {@link UnmarshalOptions} the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} was loaded with
+     *
+     * @return the number of changed elements read from the {@link java.io.InputStream}
+     *
+     * @throws Exception if some error occurred
+     */
+    public static int apply(OsmElement osmElement, InputStream inputStream, UnmarshalOptions options)
+            throws Exception{
+
+        ChangeApplier changeApplier = new ChangeApplier(osmElement, options.getFilter(),
+                options.isRemoveUnreferencedNodes(), options.getBounds());
+
+        //the filter is applied by the handler as modified ways that do not match anymore are to be removed
+        OsmUnmarshaller.unmarshal(inputStream, WayElementFilter.ANY_WAY, changeApplier);
+
+        log.debug("Applied {} changes ({} nodes and {} ways removed).", new Object[]{changeApplier.changeCount,
+                changeApplier.removedNodeCount, changeApplier.removedWayCount});
+
+        return changeApplier.changeCount;
+    }
+
+
+    private static class ChangeApplier extends OsmElementHandler {
+
+        private final OsmElement osmElement;
+        private final WayElementFilter filter;
+        private final BoundsElement bounds;
+
+        //the nodes that might be unreferenced after the changes
+        private final LongHashSet candidateNodeIDs;
+
+        private ChangeAction action;
+        private int changeCount;
+        private int removedNodeCount;
+        private int removedWayCount;
+
+
+        private ChangeApplier(OsmElement osmElement, WayElementFilter filter, boolean removeUnreferencedNodes,
+                              BoundsElement bounds){
+            this.osmElement = osmElement;
+            this.filter = filter;
+            this.bounds = bounds;
+            this.candidateNodeIDs = removeUnreferencedNodes ? new LongHashSet() : null;
+
+            //plain OSM files contain no blocks, i.e. all elements replace the contained ones
+            this.action = ChangeAction.MODIFY;
+        }
+
+
+        @Override
+        public void handleChangeAction(ChangeAction action){
+            this.action = action;
+        }
+
+
+        @Override
+        public void handleNodeElement(NodeElement nodeElement){
+            this.changeCount++;
+
+            if(this.action == ChangeAction.DELETE){
+                if(this.osmElement.removeNodeElement(nodeElement.getID())){
+                    this.removedNodeCount++;
+                }
+                return;
+            }
+
+            if(this.bounds != null && !isWithinBounds(nodeElement) &&
+                    this.osmElement.getNodeElement(nodeElement.getID()) == null){
+                return;
+            }
+
+            this.osmElement.addNodeElement(nodeElement);
+            if(this.candidateNodeIDs != null){
+                this.candidateNodeIDs.add(nodeElement.getID());
+            }
+        }
+
+
+        @Override
+        public void handleWayElement(WayElement wayElement){
+            this.changeCount++;
+
+            WayElement previousWayElement = this.osmElement.getWayElement(wayElement.getID());
+            if(this.bounds != null && previousWayElement == null && !referencesNodeWithinBounds(wayElement)){
+                return;
+            }
+
+            if(previousWayElement != null){
+                this.osmElement.removeWayElement(wayElement.getID());
+                if(this.candidateNodeIDs != null){
+                    for(int i = 0; i < previousWayElement.getNodeReferenceCount(); i++){
+                        this.candidateNodeIDs.add(previousWayElement.getNodeReference(i));
+                    }
+                }
+            }
+
+            if(this.action != ChangeAction.DELETE && this.filter.matchesCriteria(wayElement)){
+                this.osmElement.addWayElement(wayElement);
+            }
+            else if(previousWayElement != null){
+                this.removedWayCount++;
+            }
+        }
+
+
+        private boolean isWithinBounds(NodeElement nodeElement){
+            return nodeElement.getLatitude() >= this.bounds.getMinLatitude() &&
+                    nodeElement.getLatitude() <= this.bounds.getMaxLatitude() &&
+                    nodeElement.getLongitude() >= this.bounds.getMinLongitude() &&
+                    nodeElement.getLongitude() <= this.bounds.getMaxLongitude();
+        }
+
+
+        private boolean referencesNodeWithinBounds(WayElement wayElement){
+            for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                NodeElement nodeElement = this.osmElement.getNodeElement(wayElement.getNodeReference(i));
+                if(nodeElement != null && isWithinBounds(nodeElement))
+                    return true;
+            }
+            return false;
+        }
+
+
+        @Override
+        public void handleEndOfDocument(){
+            if(this.candidateNodeIDs == null)
+                return;
+
+            for(long nodeID : this.candidateNodeIDs.toArray()){
+                if(this.osmElement.getReferencingWayCount(nodeID) == 0 &&
+                        this.osmElement.removeNodeElement(nodeID)){
+                    this.removedNodeCount++;
+                }
+            }
+        }
+    }
+}
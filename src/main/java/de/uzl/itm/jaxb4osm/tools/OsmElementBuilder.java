@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.store.NodeElementStore;
+
+/**
+ * An {@link OsmElementHandler} to build an {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} from the elements delivered
+ * by an {@link OsmStreamReader}. The same instance may be used for several passes over the same OSM file.
+ *
+ * @author Oliver Kleine
+ */
+class OsmElementBuilder extends OsmElementHandler {
+
+    private OsmElement osmElement;
+
+    OsmElementBuilder(NodeElementStore nodeElementStore){
+        this.osmElement = new OsmElement(nodeElementStore);
+    }
+
+    @Override
+    public void handleOsmElement(OsmElement header){
+        this.osmElement.setVersion(header.getVersion());
+        this.osmElement.setGenerator(header.getGenerator());
+        this.osmElement.setCopyright(header.getCopyright());
+        this.osmElement.setAttribution(header.getAttribution());
+        this.osmElement.setLicense(header.getLicense());
+    }
+
+    @Override
+    public void handleBoundsElement(BoundsElement boundsElement){
+        this.osmElement.setBoundsElement(boundsElement);
+    }
+
+    @Override
+    public void handleNodeElement(NodeElement nodeElement){
+        this.osmElement.addNodeElement(nodeElement);
+    }
+
+    @Override
+    public void handleWayElement(WayElement wayElement){
+        this.osmElement.addWayElement(wayElement);
+    }
+
+    OsmElement getOsmElement(){
+        return this.osmElement;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+
+/**
+ * An {@link OsmElementHandler} is notified by the {@link OsmStreamReader} about every element read from an OSM file
+ * as soon as the closing tag of that element was read. Instances are not supposed to keep more elements than they
+ * actually need, i.e. memory consumption is up to the handler and does not depend on the size of the OSM file.
+ *
+ * All methods have an empty default implementation, i.e. extending classes only need to override the methods for
+ * the elements they are interested in.
+ *
+ * @author Oliver Kleine
+ */
+public abstract class OsmElementHandler {
+
+    /**
+     * This method is called once the <code>&lt;osm&gt;</code> root element was read.
+     *
+     * @param osmElement an empty {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} that only carries the attributes of
+     *                   the root element (e.g. version and generator) but no nodes and ways.
+     */
+    public void handleOsmElement(OsmElement osmElement){}
+
+    /**
+     * This method is called once a <code>&lt;bounds&gt;</code> element was read.
+     *
+     * @param boundsElement the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} that was read
+     */
+    public void handleBoundsElement(BoundsElement boundsElement){}
+
+    /**
+     * This method is called once a <code>&lt;create&gt;</code>, <code>&lt;modify&gt;</code> or
+     * <code>&lt;delete&gt;</code> element of an osmChange file was opened, i.e. the nodes and ways delivered
+     * afterwards (until the next call) were changed by the given {@link ChangeAction}.
+     *
+     * @param action the {@link ChangeAction} of the following elements
+     */
+    public void handleChangeAction(ChangeAction action){}
+
+    /**
+     * This method is called for every <code>&lt;node&gt;</code> element as soon as its closing tag was read.
+     *
+     * @param nodeElement the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} that was read
+     */
+    public void handleNodeElement(NodeElement nodeElement){}
+
+    /**
+     * This method is called for every <code>&lt;way&gt;</code> element that matches the {@link WayElementFilter}
+     * of the {@link OsmStreamReader} as soon as its closing tag was read.
+     *
+     * @param wayElement the {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} that was read
+     */
+    public void handleWayElement(WayElement wayElement){}
+
+    /**
+     * This method is called once the end of the OSM file was reached.
+     */
+    public void handleEndOfDocument(){}
+}
@@ -25,19 +25,24 @@
 package de.uzl.itm.jaxb4osm.tools;
 
 import javanet.staxutils.IndentingXMLEventWriter;
+import javanet.staxutils.IndentingXMLStreamWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.util.Compression;
 /**
- * This is a class to provide a static method to marshal OSM files.
+ * This is a class to provide a static method to marshal OSM files. The method is thread-safe, i.e. several OSM
+ * files may be marshalled concurrently.
  *
  * @author Oliver Kleine
  */
@@ -45,17 +50,31 @@ public class OsmMarshaller {
 
     private static Logger log = LoggerFactory.getLogger(OsmMarshaller.class.getName());
 
-    private static Marshaller marshaller;
+    private static JAXBContext context;
     static{
         try{
-            JAXBContext context = JAXBContext.newInstance(OsmElement.PlainOsmElement.class);
-            marshaller = context.createMarshaller();
+            context = JAXBContext.newInstance(OsmElement.PlainOsmElement.class);
         }
         catch (Exception ex){
             log.error("This should never happen!", ex);
         }
     }
 
+    //JAXB marshallers are not thread-safe, so every thread gets its own instance
+    private static final ThreadLocal<Marshaller> MARSHALLERS = new ThreadLocal<Marshaller>(){
+        @Override
+        protected Marshaller initialValue() {
+            try{
+                return context.createMarshaller();
+            }
+            catch (JAXBException ex){
+                throw new IllegalStateException("Could not create marshaller!", ex);
+            }
+        }
+    };
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+
 
     /**
      * Marshals the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} and writes the result on the
@@ -70,11 +89,58 @@ public class OsmMarshaller {
 
         OsmElement.PlainOsmElement plainOsmElement = new OsmElement.OsmElementAdapter().marshal(osmElement);
 
-        XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
         IndentingXMLEventWriter xmlEventWriter =
-                new IndentingXMLEventWriter(xmlOutputFactory.createXMLEventWriter(outputStream));
+                new IndentingXMLEventWriter(XML_OUTPUT_FACTORY.createXMLEventWriter(outputStream));
+
+        MARSHALLERS.get().marshal(plainOsmElement, xmlEventWriter);
+    }
+
+
+    /**
+     * Marshals the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} and writes the result on the given
+     * {@link java.io.OutputStream} (UTF-8 encoded) without JAXB, i.e. the nodes and ways are written directly by an
+     * {@link OsmStreamWriter} and there are no intermediate plain copies of the elements (see
+     * {@link OsmStreamWriter} for the format of coordinates and timestamps). The {@link java.io.OutputStream} is
+     * not closed.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to be marshaled
+     * @param outputStream the {@link java.io.OutputStream} to write the result on
+     * @param indent <code>true</code> if the output is supposed to be indented or <code>false</code> otherwise
+     *
+     * @throws Exception if some error occurred
+     */
+    public static void marshal(OsmElement osmElement, OutputStream outputStream, boolean indent) throws Exception{
+        XMLStreamWriter xmlStreamWriter = XML_OUTPUT_FACTORY.createXMLStreamWriter(outputStream, "UTF-8");
+        if(indent){
+            xmlStreamWriter = new IndentingXMLStreamWriter(xmlStreamWriter);
+        }
+
+        try{
+            new OsmStreamWriter(xmlStreamWriter).write(osmElement);
+        }
+        finally {
+            xmlStreamWriter.close();
+        }
+    }
+
 
-        marshaller.marshal(plainOsmElement, xmlEventWriter);
+    /**
+     * Marshals the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} like
+     * {@link #marshal(de.uzl.itm.jaxb4osm.jaxb.OsmElement, java.io.OutputStream, boolean)} and writes the result into
+     * the given file. The file is compressed according to the suffix of its name, i.e. files ending with
+     * <code>.gz</code> are written with gzip and files ending with <code>.bz2</code> are written with bzip2
+     * compression (see {@link de.uzl.itm.jaxb4osm.util.Compression}).
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to be marshaled
+     * @param file the file to write the result into
+     * @param indent <code>true</code> if the output is supposed to be indented or <code>false</code> otherwise
+     *
+     * @throws Exception if some error occurred
+     */
+    public static void marshal(OsmElement osmElement, File file, boolean indent) throws Exception{
+        try(OutputStream outputStream = Compression.openOutputStream(file)){
+            marshal(osmElement, outputStream, indent);
+        }
     }
 
 
@@ -0,0 +1,557 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.AbstractAdaptedLevel2Element;
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.util.ProtobufWriter;
+import de.uzl.itm.jaxb4osm.util.SharedThreadPool;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * This is a class to provide static methods to marshal an {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} into the OSM
+ * PBF format (see <a href="http://wiki.openstreetmap.org/wiki/PBF_Format">PBF Format</a>), i.e. the counterpart of
+ * {@link OsmPbfUnmarshaller}. The nodes are written as DenseNodes and the nodes and ways are sorted by their IDs, so
+ * that the delta coded IDs, coordinates and node references are small. Every block has its own string table. The
+ * blocks are encoded and compressed in parallel but written in order. Only the IDs of the nodes are sorted, i.e. the
+ * {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s are fetched from the store block by block (instead of copying all
+ * nodes). All methods are thread-safe.
+ *
+ * <b>Note:</b> Metadata (version, timestamp, changeset, user) is only written if all elements of a block provide
+ * the respective value.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmPbfMarshaller {
+
+    //the recommended maximum number of entities per block
+    private static final int BLOCK_SIZE = 8000;
+
+    //maximum number of blocks being encoded (or waiting to be written) at the same time
+    private static final int MAX_PENDING_BLOCKS = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final int GRANULARITY = 100;
+    private static final int DATE_GRANULARITY = 1000;
+
+    private static final String DEFAULT_WRITING_PROGRAM = "jaxb4osm";
+
+    private static final Comparator<AbstractAdaptedLevel2Element> ID_COMPARATOR =
+            new Comparator<AbstractAdaptedLevel2Element>() {
+        @Override
+        public int compare(AbstractAdaptedLevel2Element element1, AbstractAdaptedLevel2Element element2) {
+            return Long.compare(element1.getID(), element2.getID());
+        }
+    };
+
+
+    /**
+     * Marshals the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} into the PBF format and writes the result on the
+     * given {@link java.io.OutputStream}. The blocks are encoded by the
+     * {@link de.uzl.itm.jaxb4osm.util.SharedThreadPool}.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to be marshaled
+     * @param outputStream the {@link java.io.OutputStream} to write the result on
+     *
+     * @throws Exception if some error occurred
+     */
+    public static void marshal(OsmElement osmElement, OutputStream outputStream) throws Exception {
+        marshal(osmElement, outputStream, SharedThreadPool.get());
+    }
+
+    /**
+     * Marshals the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} into the PBF format and writes the result on the
+     * given {@link java.io.OutputStream}. The {@link java.io.OutputStream} is flushed but not closed.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to be marshaled
+     * @param outputStream the {@link java.io.OutputStream} to write the result on
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to encode and compress the blocks with
+     *                        or <code>null</code> to do so in the calling thread
+     *
+     * @throws Exception if some error occurred
+     */
+    public static void marshal(OsmElement osmElement, OutputStream outputStream, ExecutorService executorService)
+            throws Exception {
+
+        //only the IDs are sorted, i.e. the nodes are not copied (or created by stores keeping no objects)
+        long[] nodeIDs = new long[osmElement.getNodeElementsView().size()];
+        int nodeCount = 0;
+        boolean historical = false;
+        for(NodeElement nodeElement : osmElement.getNodeElementsView()){
+            nodeIDs[nodeCount++] = nodeElement.getID();
+            historical |= !nodeElement.isVisible();
+        }
+        Arrays.sort(nodeIDs, 0, nodeCount);
+
+        List<WayElement> wayElements = new ArrayList<>(osmElement.getWayElementsView());
+        Collections.sort(wayElements, ID_COMPARATOR);
+        historical |= containsInvisibleElement(wayElements);
+
+        DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+        writeBlob(dataOutputStream, PbfBlock.encodeHeaderBlock(osmElement, historical));
+
+        Deque<Future<byte[]>> pendingBlobs = new ArrayDeque<>();
+        try{
+            //the nodes of a block are fetched by the calling thread as the stores are not thread-safe
+            for(int i = 0; i < nodeCount; i += BLOCK_SIZE){
+                List<NodeElement> nodeElements = new ArrayList<>(Math.min(BLOCK_SIZE, nodeCount - i));
+                for(int j = i; j < Math.min(i + BLOCK_SIZE, nodeCount); j++){
+                    nodeElements.add(osmElement.getNodeElement(nodeIDs[j]));
+                }
+
+                write(dataOutputStream, new PbfBlock(nodeElements, Collections.<WayElement>emptyList(), historical),
+                        pendingBlobs, executorService);
+            }
+
+            for(int i = 0; i < wayElements.size(); i += BLOCK_SIZE){
+                write(dataOutputStream, new PbfBlock(Collections.<NodeElement>emptyList(),
+                        wayElements.subList(i, Math.min(i + BLOCK_SIZE, wayElements.size())), historical),
+                        pendingBlobs, executorService);
+            }
+
+            while(!pendingBlobs.isEmpty()){
+                writeBlob(dataOutputStream, take(pendingBlobs.poll()));
+            }
+        }
+        finally {
+            for(Future<byte[]> pendingBlob : pendingBlobs){
+                pendingBlob.cancel(true);
+            }
+        }
+
+        dataOutputStream.flush();
+    }
+
+
+    private static void write(DataOutputStream dataOutputStream, PbfBlock block, Deque<Future<byte[]>> pendingBlobs,
+                              ExecutorService executorService) throws Exception {
+
+        if(executorService == null){
+            writeBlob(dataOutputStream, block.call());
+            return;
+        }
+
+        pendingBlobs.add(executorService.submit(block));
+        if(pendingBlobs.size() >= MAX_PENDING_BLOCKS){
+            writeBlob(dataOutputStream, take(pendingBlobs.poll()));
+        }
+    }
+
+
+    private static boolean containsInvisibleElement(List<? extends AbstractAdaptedLevel2Element> elements){
+        for(AbstractAdaptedLevel2Element element : elements){
+            if(!element.isVisible())
+                return true;
+        }
+        return false;
+    }
+
+
+    private static void writeBlob(DataOutputStream dataOutputStream, byte[] blob) throws IOException {
+        dataOutputStream.write(blob);
+    }
+
+
+    private static byte[] take(Future<byte[]> future) throws Exception {
+        try{
+            return future.get();
+        }
+        catch(ExecutionException ex){
+            if(ex.getCause() instanceof Exception)
+                throw (Exception) ex.getCause();
+
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Encodes and compresses one primitive block (including the blob header and its length prefix).
+     */
+    private static class PbfBlock implements Callable<byte[]> {
+
+        private final List<NodeElement> nodeElements;
+        private final List<WayElement> wayElements;
+        private final boolean historical;
+
+        private String[] strings;
+        private Map<String, Integer> stringIndices;
+
+        private PbfBlock(List<NodeElement> nodeElements, List<WayElement> wayElements, boolean historical){
+            this.nodeElements = nodeElements;
+            this.wayElements = wayElements;
+            this.historical = historical;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            createStringTable();
+
+            ProtobufWriter primitiveGroup = new ProtobufWriter();
+            if(!this.nodeElements.isEmpty()){
+                primitiveGroup.writeMessage(2, encodeDenseNodes());
+            }
+            for(WayElement wayElement : this.wayElements){
+                primitiveGroup.writeMessage(3, encodeWay(wayElement));
+            }
+
+            ProtobufWriter stringTable = new ProtobufWriter();
+            for(String string : this.strings){
+                stringTable.writeString(1, string);
+            }
+
+            ProtobufWriter primitiveBlock = new ProtobufWriter(primitiveGroup.size() + stringTable.size() + 16);
+            primitiveBlock.writeMessage(1, stringTable);
+            primitiveBlock.writeMessage(2, primitiveGroup);
+
+            return encodeBlob("OSMData", primitiveBlock.toByteArray());
+        }
+
+
+        private static byte[] encodeHeaderBlock(OsmElement osmElement, boolean historical) throws IOException {
+            ProtobufWriter headerBlock = new ProtobufWriter();
+
+            BoundsElement boundsElement = osmElement.getBoundsElement();
+            if(boundsElement != null){
+                ProtobufWriter bbox = new ProtobufWriter();
+                bbox.writeSInt64(1, Math.round(boundsElement.getMinLongitude() * 1e9));
+                bbox.writeSInt64(2, Math.round(boundsElement.getMaxLongitude() * 1e9));
+                bbox.writeSInt64(3, Math.round(boundsElement.getMaxLatitude() * 1e9));
+                bbox.writeSInt64(4, Math.round(boundsElement.getMinLatitude() * 1e9));
+                headerBlock.writeMessage(1, bbox);
+            }
+
+            headerBlock.writeString(4, "OsmSchema-V0.6");
+            headerBlock.writeString(4, "DenseNodes");
+            if(historical){
+                headerBlock.writeString(4, "HistoricalInformation");
+            }
+
+            String generator = osmElement.getGenerator();
+            headerBlock.writeString(16, generator == null ? DEFAULT_WRITING_PROGRAM : generator);
+
+            return encodeBlob("OSMHeader", headerBlock.toByteArray());
+        }
+
+
+        private static byte[] encodeBlob(String type, byte[] data) throws IOException {
+            Deflater deflater = new Deflater();
+            byte[] compressed;
+            int compressedLength = 0;
+            try{
+                deflater.setInput(data);
+                deflater.finish();
+
+                compressed = new byte[data.length / 2 + 64];
+                while(!deflater.finished()){
+                    if(compressedLength == compressed.length){
+                        compressed = Arrays.copyOf(compressed, compressed.length << 1);
+                    }
+                    compressedLength += deflater.deflate(compressed, compressedLength,
+                            compressed.length - compressedLength);
+                }
+            }
+            finally {
+                deflater.end();
+            }
+
+            ProtobufWriter blob = new ProtobufWriter(compressedLength + 16);
+            blob.writeVarint(2, data.length);
+            blob.writeBytes(3, compressed, 0, compressedLength);
+
+            ProtobufWriter blobHeader = new ProtobufWriter();
+            blobHeader.writeString(1, type);
+            blobHeader.writeVarint(3, blob.size());
+
+            byte[] result = new byte[4 + blobHeader.size() + blob.size()];
+            int headerLength = blobHeader.size();
+            result[0] = (byte) (headerLength >>> 24);
+            result[1] = (byte) (headerLength >>> 16);
+            result[2] = (byte) (headerLength >>> 8);
+            result[3] = (byte) headerLength;
+            System.arraycopy(blobHeader.toByteArray(), 0, result, 4, headerLength);
+            System.arraycopy(blob.toByteArray(), 0, result, 4 + headerLength, blob.size());
+
+            return result;
+        }
+
+
+        /**
+         * Creates the string table of this block with the most frequent strings first (i.e. with the shortest
+         * varints). The string at index 0 is always the empty string which is reserved as the delimiter of the
+         * DenseNodes tags, i.e. empty keys and values of tags get an index of their own.
+         */
+        private void createStringTable(){
+            final Map<String, int[]> frequencies = new HashMap<>();
+            for(NodeElement nodeElement : this.nodeElements){
+                countStrings(frequencies, nodeElement);
+            }
+            for(WayElement wayElement : this.wayElements){
+                countStrings(frequencies, wayElement);
+            }
+
+            String[] strings = frequencies.keySet().toArray(new String[frequencies.size()]);
+            Arrays.sort(strings, new Comparator<String>() {
+                @Override
+                public int compare(String string1, String string2) {
+                    return frequencies.get(string2)[0] - frequencies.get(string1)[0];
+                }
+            });
+
+            this.strings = new String[strings.length + 1];
+            this.strings[0] = "";
+            System.arraycopy(strings, 0, this.strings, 1, strings.length);
+
+            this.stringIndices = new HashMap<>(this.strings.length * 2);
+            for(int i = 1; i < this.strings.length; i++){
+                this.stringIndices.put(this.strings[i], i);
+            }
+        }
+
+
+        private static void countStrings(Map<String, int[]> frequencies, AbstractAdaptedLevel2Element element){
+            for(Map.Entry<String, String> tag : element.getTags().entrySet()){
+                countString(frequencies, tag.getKey());
+                countString(frequencies, tag.getValue());
+            }
+            if(element.getUser() != null){
+                countString(frequencies, element.getUser());
+            }
+        }
+
+
+        private static void countString(Map<String, int[]> frequencies, String string){
+            int[] frequency = frequencies.get(string);
+            if(frequency == null){
+                frequencies.put(string, new int[]{1});
+            }
+            else{
+                frequency[0]++;
+            }
+        }
+
+
+        private ProtobufWriter encodeDenseNodes(){
+            int count = this.nodeElements.size();
+            long[] IDs = new long[count];
+            long[] latitudes = new long[count];
+            long[] longitudes = new long[count];
+            int[] keysValues = new int[count];
+            int keyValueCount = 0;
+
+            //metadata is written for all nodes of the block or for none
+            int[] versions = new int[count];
+            long[] timestamps = new long[count];
+            long[] changesets = new long[count];
+            int[] userIDs = new int[count];
+            int[] userSIDs = new int[count];
+            int[] visibles = new int[count];
+            boolean hasVersions = true, hasTimestamps = true, hasChangesets = true, hasUsers = true;
+
+            long lastID = 0, lastLatitude = 0, lastLongitude = 0, lastTimestamp = 0, lastChangeset = 0;
+            int lastUserID = 0, lastUserSID = 0;
+
+            for(int i = 0; i < count; i++){
+                NodeElement nodeElement = this.nodeElements.get(i);
+
+                long ID = nodeElement.getID();
+                long latitude = Math.round(nodeElement.getLatitude() * 1e9 / GRANULARITY);
+                long longitude = Math.round(nodeElement.getLongitude() * 1e9 / GRANULARITY);
+                IDs[i] = ID - lastID;
+                latitudes[i] = latitude - lastLatitude;
+                longitudes[i] = longitude - lastLongitude;
+                lastID = ID;
+                lastLatitude = latitude;
+                lastLongitude = longitude;
+
+                for(Map.Entry<String, String> tag : nodeElement.getTags().entrySet()){
+                    keysValues = ensureCapacity(keysValues, keyValueCount + 3);
+                    keysValues[keyValueCount++] = this.stringIndices.get(tag.getKey());
+                    keysValues[keyValueCount++] = this.stringIndices.get(tag.getValue());
+                }
+                keysValues = ensureCapacity(keysValues, keyValueCount + 1);
+                keysValues[keyValueCount++] = 0;
+
+                if(nodeElement.getVersion() == null){
+                    hasVersions = false;
+                }
+                else{
+                    versions[i] = nodeElement.getVersion();
+                }
+
+                if(nodeElement.getTimestamp() == null){
+                    hasTimestamps = false;
+                }
+                else{
+                    long timestamp = nodeElement.getTimestamp().getTime() / DATE_GRANULARITY;
+                    timestamps[i] = timestamp - lastTimestamp;
+                    lastTimestamp = timestamp;
+                }
+
+                if(nodeElement.getChangeset() == null){
+                    hasChangesets = false;
+                }
+                else{
+                    changesets[i] = nodeElement.getChangeset() - lastChangeset;
+                    lastChangeset = nodeElement.getChangeset();
+                }
+
+                Integer userID = parseUserID(nodeElement.getUserID());
+                if(userID == null || nodeElement.getUser() == null){
+                    hasUsers = false;
+                }
+                else{
+                    int userSID = this.stringIndices.get(nodeElement.getUser());
+                    userIDs[i] = userID - lastUserID;
+                    userSIDs[i] = userSID - lastUserSID;
+                    lastUserID = userID;
+                    lastUserSID = userSID;
+                }
+
+                visibles[i] = nodeElement.isVisible() ? 1 : 0;
+            }
+
+            ProtobufWriter denseInfo = new ProtobufWriter();
+            denseInfo.writePackedInt32(1, versions, hasVersions ? count : 0);
+            denseInfo.writePackedSInt64(2, timestamps, hasTimestamps ? count : 0);
+            denseInfo.writePackedSInt64(3, changesets, hasChangesets ? count : 0);
+            denseInfo.writePackedSInt32(4, userIDs, hasUsers ? count : 0);
+            denseInfo.writePackedSInt32(5, userSIDs, hasUsers ? count : 0);
+            denseInfo.writePackedInt32(6, visibles, this.historical ? count : 0);
+
+            ProtobufWriter denseNodes = new ProtobufWriter(count * 16);
+            denseNodes.writePackedSInt64(1, IDs, count);
+            if(denseInfo.size() > 0){
+                denseNodes.writeMessage(5, denseInfo);
+            }
+            denseNodes.writePackedSInt64(8, latitudes, count);
+            denseNodes.writePackedSInt64(9, longitudes, count);
+
+            //the keys and values are omitted completely if no node of the block has tags
+            if(keyValueCount > count){
+                denseNodes.writePackedInt32(10, keysValues, keyValueCount);
+            }
+
+            return denseNodes;
+        }
+
+
+        private ProtobufWriter encodeWay(WayElement wayElement){
+            ProtobufWriter way = new ProtobufWriter();
+            way.writeVarint(1, wayElement.getID());
+
+            Map<String, String> tags = wayElement.getTags();
+            int[] keys = new int[tags.size()];
+            int[] values = new int[tags.size()];
+            int tagCount = 0;
+            for(Map.Entry<String, String> tag : tags.entrySet()){
+                keys[tagCount] = this.stringIndices.get(tag.getKey());
+                values[tagCount++] = this.stringIndices.get(tag.getValue());
+            }
+            way.writePackedInt32(2, keys, tagCount);
+            way.writePackedInt32(3, values, tagCount);
+
+            ProtobufWriter info = encodeInfo(wayElement);
+            if(info.size() > 0){
+                way.writeMessage(4, info);
+            }
+
+            long[] references = new long[wayElement.getNodeReferenceCount()];
+            long lastReference = 0;
+            for(int i = 0; i < references.length; i++){
+                long reference = wayElement.getNodeReference(i);
+                references[i] = reference - lastReference;
+                lastReference = reference;
+            }
+            way.writePackedSInt64(8, references, references.length);
+
+            return way;
+        }
+
+
+        private ProtobufWriter encodeInfo(AbstractAdaptedLevel2Element element){
+            ProtobufWriter info = new ProtobufWriter(32);
+
+            if(element.getVersion() != null){
+                info.writeVarint(1, element.getVersion());
+            }
+            if(element.getTimestamp() != null){
+                info.writeVarint(2, element.getTimestamp().getTime() / DATE_GRANULARITY);
+            }
+            if(element.getChangeset() != null){
+                info.writeVarint(3, element.getChangeset());
+            }
+
+            Integer userID = parseUserID(element.getUserID());
+            if(userID != null && element.getUser() != null){
+                info.writeVarint(4, userID);
+                info.writeVarint(5, this.stringIndices.get(element.getUser()));
+            }
+
+            if(this.historical){
+                info.writeBool(6, element.isVisible());
+            }
+
+            return info;
+        }
+
+
+        private static Integer parseUserID(String userID){
+            if(userID == null)
+                return null;
+
+            try{
+                return Integer.valueOf(userID);
+            }
+            catch(NumberFormatException ex){
+                return null;
+            }
+        }
+
+
+        private static int[] ensureCapacity(int[] array, int length){
+            return length <= array.length ? array : Arrays.copyOf(array, Math.max(array.length << 1, length));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.store.HashNodeElementStore;
+import de.uzl.itm.jaxb4osm.store.NodeElementStore;
+import de.uzl.itm.jaxb4osm.util.LongHashSet;
+import de.uzl.itm.jaxb4osm.util.SharedThreadPool;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * This is a class to provide static methods to unmarshal OSM PBF files (i.e. <code>.osm.pbf</code>) into the same
+ * model as {@link OsmUnmarshaller} does for OSM XML files. The blobs of a PBF file are decompressed and decoded in
+ * parallel but the elements are added in the order of the file, i.e. the result is the same as for the equivalent
+ * XML file. All methods are thread-safe, i.e. several PBF files may be unmarshalled concurrently.
+ *
+ * <b>Note:</b> Only zlib compressed (or uncompressed) blobs are supported. Relations are skipped.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmPbfUnmarshaller {
+
+    /**
+     * Shortcut for <code>unmarshal(file, UnmarshalOptions.create().setFilter(filter)
+     * .setRemoveUnreferencedNodes(removeUnreferencedNodes))</code>
+     *
+     * @param file the PBF file to read the data to be de-serialized from
+     * @param filter the {@link WayElementFilter} to be applied
+     * @param removeUnreferencedNodes <code>true</code> if only the nodes referenced by at least one of the ways
+     *                                matching the given filter are to be kept or <code>false</code> otherwise
+     *
+     * @return the unmarshalled {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     *
+     * @throws Exception if some unexpected error occurred
+     */
+    public static OsmElement unmarshal(File file, WayElementFilter filter, boolean removeUnreferencedNodes)
+            throws Exception{
+
+        return unmarshal(file, UnmarshalOptions.create().setFilter(filter)
+                .setRemoveUnreferencedNodes(removeUnreferencedNodes));
+    }
+
+    /**
+     * Deserializes the given PBF file into one {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} instance according to the
+     * given {@link UnmarshalOptions}. The blobs are decoded by the {@link java.util.concurrent.ExecutorService} of
+     * the options, by its {@link java.util.concurrent.ForkJoinPool} or (if there is neither) by the
+     * {@link de.uzl.itm.jaxb4osm.util.SharedThreadPool}.
+     *
+     * If unreferenced nodes are to be removed, the file is read twice (see
+     * {@link UnmarshalOptions#setRemoveUnreferencedNodes(boolean)}). As the metadata is binary coded in PBF files,
+     * {@link de.uzl.itm.jaxb4osm.jaxb.MetadataMode#LAZY} is equivalent to
+     * {@link de.uzl.itm.jaxb4osm.jaxb.MetadataMode#EAGER}.
+     *
+     * The {@link ParseListener} of the given {@link UnmarshalOptions} (if any) is notified about the same
+     * {@link ParsePhase}s as by {@link OsmUnmarshaller#unmarshal(java.io.File, UnmarshalOptions)}. As the blobs are
+     * decompressed by the reader, the bytes read are the (compressed) bytes of the file (see
+     * {@link ParseProgress#getBytesRead()}) and the elements are counted once the blobs were decoded.
+     *
+     * <b>Note:</b> Clipping PBF files to bounds is not supported.
+     *
+     * @param file the PBF file to read the data to be de-serialized from
+     * @param options the {@link UnmarshalOptions} to be applied
+     *
+     * @return the unmarshalled {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     *
+     * @throws Exception if some unexpected error occurred
+     */
+    public static OsmElement unmarshal(File file, UnmarshalOptions options) throws Exception{
+        if(options.getBounds() != null)
+            throw new IllegalArgumentException("Clipping PBF files to bounds is not supported!");
+
+        ExecutorService executorService = options.getExecutorService() != null ? options.getExecutorService() :
+                options.getForkJoinPool();
+        return read(file, options, executorService != null ? executorService : SharedThreadPool.get());
+    }
+
+
+    private static OsmElement read(File file, UnmarshalOptions options, ExecutorService executorService)
+            throws Exception{
+
+        ParseMonitor monitor = new ParseMonitor(options.getParseListener());
+        NodeElementStore nodeElementStore = options.getNodeElementStore() != null ? options.getNodeElementStore() :
+                new HashNodeElementStore();
+        OsmElementBuilder builder = new OsmElementBuilder(nodeElementStore);
+
+        if(!options.isRemoveUnreferencedNodes()){
+            PbfStreamReader reader = new PbfStreamReader(builder, options.getFilter());
+            reader.setMetadataMode(options.getMetadataMode());
+            read(file, reader, executorService, monitor, ParsePhase.READ);
+            return builder.getOsmElement();
+        }
+
+        //first pass: read the matching ways only
+        PbfStreamReader wayReader = new PbfStreamReader(builder, options.getFilter());
+        wayReader.setSkipNodeElements(true);
+        wayReader.setMetadataMode(options.getMetadataMode());
+        read(file, wayReader, executorService, monitor, ParsePhase.READ_WAYS);
+
+        monitor.startPhase(ParsePhase.COLLECT_NODE_IDS);
+        LongHashSet nodeIDs = new LongHashSet();
+        try{
+            for(WayElement wayElement : builder.getOsmElement().getWayElementsView()){
+                for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                    nodeIDs.add(wayElement.getNodeReference(i));
+                }
+            }
+        }
+        finally{
+            monitor.finishPhase();
+        }
+
+        //second pass: read the referenced nodes only
+        PbfStreamReader nodeReader = new PbfStreamReader(builder, options.getFilter());
+        nodeReader.setSkipWayElements(true);
+        nodeReader.setNodeIDs(nodeIDs);
+        nodeReader.setMetadataMode(options.getMetadataMode());
+        read(file, nodeReader, executorService, monitor, ParsePhase.READ_NODES);
+
+        return builder.getOsmElement();
+    }
+
+
+    private static void read(File file, PbfStreamReader pbfStreamReader, ExecutorService executorService,
+            ParseMonitor monitor, ParsePhase phase) throws Exception{
+
+        monitor.startPhase(phase);
+        pbfStreamReader.setParseMonitor(monitor);
+        try(InputStream inputStream = new BufferedInputStream(monitor.monitorFile(new FileInputStream(file)),
+                1 << 16)){
+            pbfStreamReader.read(monitor.monitor(inputStream), executorService);
+        }
+        finally{
+            monitor.finishPhase();
+        }
+    }
+
+    /**
+     * Reads the given PBF data in a streaming fashion, i.e. every {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} and
+     * every {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} matching the given filter is delivered to the given
+     * {@link OsmElementHandler} (in the order of the file and by the calling thread) as soon as its blob was decoded.
+     *
+     * @param inputStream the {@link java.io.InputStream} to read the PBF data from
+     * @param filter the {@link WayElementFilter} to be applied
+     * @param handler the {@link OsmElementHandler} to be notified about the elements read
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to decode the blobs with or
+     *                        <code>null</code> to decode the blobs in the calling thread
+     *
+     * @throws Exception if some unexpected error occurred
+     */
+    public static void unmarshal(InputStream inputStream, WayElementFilter filter, OsmElementHandler handler,
+                                 ExecutorService executorService) throws Exception{
+
+        new PbfStreamReader(handler, filter).read(inputStream, executorService);
+    }
+}
@@ -0,0 +1,653 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.AbstractLevel2Element;
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.store.HashNodeElementStore;
+import de.uzl.itm.jaxb4osm.store.NodeElementStore;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * This is a class to provide static methods to save a (loaded) {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} into a
+ * compact binary snapshot and to load it again, i.e. without parsing the original OSM file. A snapshot contains
+ * the attributes of the <code>&lt;osm&gt;</code> element, the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement}, all
+ * {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s and all {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s with their
+ * metadata, tags and node references. The references returned by
+ * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement#getReferencingWayIDs(long)} are restored from the node references of
+ * the ways while loading.
+ *
+ * A snapshot starts with a magic and the version of the format and ends with a CRC32 checksum of all preceding
+ * bytes. Strings (tag keys and values, user names) are stored once in a string table, IDs and node references are
+ * delta encoded varints and coordinates are stored as raw doubles, i.e. loading a snapshot restores exactly the
+ * saved values. All methods are thread-safe.
+ *
+ * <b>Note:</b> Snapshots are not meant to be exchanged. Use {@link OsmPbfMarshaller} for that purpose.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmSnapshot {
+
+    /**
+     * The version of the snapshot format written by this class
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = {'J', '4', 'O', 'S'};
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    //flags for the metadata of nodes and ways
+    private static final int HAS_VERSION = 0x01;
+    private static final int HAS_CHANGESET = 0x02;
+    private static final int INVISIBLE = 0x04;
+    private static final int HAS_TIMESTAMP = 0x08;
+    private static final int HAS_USER = 0x10;
+    private static final int HAS_USER_ID = 0x20;
+
+    //the minimum number of bytes of a node (ID, coordinates, flags and tag count) and of a way (ID, flags, tag
+    //count and reference count)
+    private static final int MIN_NODE_SIZE = 1 + 16 + 1 + 1;
+    private static final int MIN_WAY_SIZE = 4;
+
+    private static final Comparator<AbstractLevel2Element> ID_ORDER = new Comparator<AbstractLevel2Element>() {
+        @Override
+        public int compare(AbstractLevel2Element element1, AbstractLevel2Element element2) {
+            return element1.getID().compareTo(element2.getID());
+        }
+    };
+
+
+    /**
+     * Saves the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} into the given file.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to be saved
+     * @param file the file to write the snapshot into
+     *
+     * @throws Exception if some error occurred
+     */
+    public static void save(OsmElement osmElement, File file) throws Exception{
+        try(OutputStream outputStream = new FileOutputStream(file)){
+            save(osmElement, outputStream);
+        }
+    }
+
+    /**
+     * Saves the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} on the given {@link java.io.OutputStream}. The
+     * {@link java.io.OutputStream} is not closed.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to be saved
+     * @param outputStream the {@link java.io.OutputStream} to write the snapshot on
+     *
+     * @throws Exception if some error occurred
+     */
+    public static void save(OsmElement osmElement, OutputStream outputStream) throws Exception{
+        //ascending IDs keep the deltas small and the loading into sorted stores an append operation
+        List<NodeElement> nodeElements = new ArrayList<>(osmElement.getNodeElements());
+        Collections.sort(nodeElements, ID_ORDER);
+        List<WayElement> wayElements = new ArrayList<>(osmElement.getWayElements());
+        Collections.sort(wayElements, ID_ORDER);
+
+        //collect the strings of all elements
+        Map<String, Integer> stringCodes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for(NodeElement nodeElement : nodeElements){
+            addStrings(nodeElement, nodeElement.getTags(), stringCodes, strings);
+        }
+        for(WayElement wayElement : wayElements){
+            addStrings(wayElement, wayElement.getTags(), stringCodes, strings);
+        }
+
+        SnapshotOutput output = new SnapshotOutput(outputStream);
+        output.writeBytes(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+
+        output.writeString(osmElement.getVersion());
+        output.writeString(osmElement.getGenerator());
+        output.writeString(osmElement.getCopyright());
+        output.writeString(osmElement.getAttribution());
+        output.writeString(osmElement.getLicense());
+
+        BoundsElement boundsElement = osmElement.getBoundsElement();
+        output.writeVarint(boundsElement == null ? 0 : 1);
+        if(boundsElement != null){
+            output.writeDouble(boundsElement.getMinLatitude());
+            output.writeDouble(boundsElement.getMaxLatitude());
+            output.writeDouble(boundsElement.getMinLongitude());
+            output.writeDouble(boundsElement.getMaxLongitude());
+        }
+
+        output.writeVarint(strings.size());
+        for(String string : strings){
+            output.writeString(string);
+        }
+
+        output.writeVarint(nodeElements.size());
+        long previousID = 0;
+        for(NodeElement nodeElement : nodeElements){
+            output.writeSInt64(nodeElement.getID() - previousID);
+            previousID = nodeElement.getID();
+
+            output.writeDouble(nodeElement.getLatitude());
+            output.writeDouble(nodeElement.getLongitude());
+            writeMetadata(output, nodeElement, nodeElement.getTags(), stringCodes);
+        }
+
+        output.writeVarint(wayElements.size());
+        previousID = 0;
+        for(WayElement wayElement : wayElements){
+            output.writeSInt64(wayElement.getID() - previousID);
+            previousID = wayElement.getID();
+
+            writeMetadata(output, wayElement, wayElement.getTags(), stringCodes);
+
+            output.writeVarint(wayElement.getNodeReferenceCount());
+            long previousReference = 0;
+            for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                long reference = wayElement.getNodeReference(i);
+                output.writeSInt64(reference - previousReference);
+                previousReference = reference;
+            }
+        }
+
+        output.finish();
+    }
+
+    /**
+     * Loads the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} saved in the given file.
+     *
+     * @param file the file to read the snapshot from
+     *
+     * @return the loaded {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     *
+     * @throws Exception if some error occurred (e.g. the file is no snapshot, was written with an unsupported
+     * version of the format or is corrupt)
+     */
+    public static OsmElement load(File file) throws Exception{
+        return load(file, new HashNodeElementStore());
+    }
+
+    /**
+     * Loads the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} saved in the given file into an instance that keeps its
+     * {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s in the given {@link de.uzl.itm.jaxb4osm.store.NodeElementStore}.
+     *
+     * @param file the file to read the snapshot from
+     * @param nodeElementStore the (empty) {@link de.uzl.itm.jaxb4osm.store.NodeElementStore} to be filled with
+     *                         the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s
+     *
+     * @return the loaded {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     *
+     * @throws Exception if some error occurred (e.g. the file is no snapshot, was written with an unsupported
+     * version of the format or is corrupt)
+     */
+    public static OsmElement load(File file, NodeElementStore nodeElementStore) throws Exception{
+        try(InputStream inputStream = new FileInputStream(file)){
+            return load(new SnapshotInput(inputStream, file.length()), nodeElementStore);
+        }
+    }
+
+    /**
+     * Loads the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} saved on the given {@link java.io.InputStream} into an
+     * instance that keeps its {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s in the given
+     * {@link de.uzl.itm.jaxb4osm.store.NodeElementStore}. The {@link java.io.InputStream} is not closed.
+     *
+     * The given {@link de.uzl.itm.jaxb4osm.store.NodeElementStore} is only filled if the checksum of the snapshot
+     * was verified, i.e. it is not changed if loading fails. As the length of the data is unknown, arrays are
+     * allocated as their content is read (instead of allocating the sizes contained in the snapshot at once).
+     *
+     * @param inputStream the {@link java.io.InputStream} to read the snapshot from
+     * @param nodeElementStore the (empty) {@link de.uzl.itm.jaxb4osm.store.NodeElementStore} to be filled with
+     *                         the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s
+     *
+     * @return the loaded {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     *
+     * @throws Exception if some error occurred (e.g. the data is no snapshot, was written with an unsupported
+     * version of the format or is corrupt)
+     */
+    public static OsmElement load(InputStream inputStream, NodeElementStore nodeElementStore) throws Exception{
+        return load(new SnapshotInput(inputStream, Long.MAX_VALUE), nodeElementStore);
+    }
+
+
+    private static OsmElement load(SnapshotInput input, NodeElementStore nodeElementStore) throws Exception{
+        for(byte magic : MAGIC){
+            if(input.readByte() != magic)
+                throw new IOException("No snapshot!");
+        }
+
+        int formatVersion = input.readInt();
+        if(formatVersion != FORMAT_VERSION)
+            throw new IOException("Unsupported snapshot version: " + formatVersion);
+
+        String version = input.readString();
+        String generator = input.readString();
+        String copyright = input.readString();
+        String attribution = input.readString();
+        String license = input.readString();
+
+        BoundsElement boundsElement = null;
+        if(input.readVarint() != 0){
+            boundsElement = new BoundsElement(input.readDouble(), input.readDouble(), input.readDouble(),
+                    input.readDouble());
+        }
+
+        //every string takes at least one byte (its length)
+        int stringCount = input.readCount(1);
+        List<String> stringList = new ArrayList<>(Math.min(stringCount, BUFFER_SIZE));
+        for(int i = 0; i < stringCount; i++){
+            stringList.add(input.readString());
+        }
+        String[] strings = stringList.toArray(new String[stringList.size()]);
+
+        //the elements are kept apart from the given store until the checksum was verified
+        int nodeCount = input.readCount(MIN_NODE_SIZE);
+        List<NodeElement> nodeElements = new ArrayList<>(Math.min(nodeCount, BUFFER_SIZE));
+        long id = 0;
+        for(int i = 0; i < nodeCount; i++){
+            id += input.readSInt64();
+            double latitude = input.readDouble();
+            double longitude = input.readDouble();
+
+            int flags = (int) input.readVarint();
+            NodeElement nodeElement = new NodeElement(id, readVersion(input, flags), readChangeset(input, flags),
+                    readVisible(flags), readTimestamp(input, flags), readUser(input, flags, strings),
+                    readUserID(input, flags, strings), latitude, longitude);
+            readTags(input, nodeElement.getTags(), strings);
+
+            nodeElements.add(nodeElement);
+        }
+
+        int wayCount = input.readCount(MIN_WAY_SIZE);
+        List<WayElement> wayElements = new ArrayList<>(Math.min(wayCount, BUFFER_SIZE));
+        id = 0;
+        for(int i = 0; i < wayCount; i++){
+            id += input.readSInt64();
+
+            int flags = (int) input.readVarint();
+            WayElement wayElement = new WayElement(id, readVersion(input, flags), readChangeset(input, flags),
+                    readVisible(flags), readTimestamp(input, flags), readUser(input, flags, strings),
+                    readUserID(input, flags, strings));
+            readTags(input, wayElement.getTags(), strings);
+
+            int referenceCount = input.readCount(1);
+            long[] references = new long[Math.min(referenceCount, BUFFER_SIZE)];
+            long reference = 0;
+            for(int j = 0; j < referenceCount; j++){
+                if(j == references.length){
+                    references = Arrays.copyOf(references, (int) Math.min(referenceCount, 2L * j));
+                }
+                reference += input.readSInt64();
+                references[j] = reference;
+            }
+            wayElement.addNodeReferences(references, 0, referenceCount);
+
+            wayElements.add(wayElement);
+        }
+
+        input.verifyChecksum();
+
+        OsmElement osmElement = new OsmElement(nodeElementStore);
+        osmElement.setVersion(version);
+        osmElement.setGenerator(generator);
+        osmElement.setCopyright(copyright);
+        osmElement.setAttribution(attribution);
+        osmElement.setLicense(license);
+        osmElement.setBoundsElement(boundsElement);
+
+        for(NodeElement nodeElement : nodeElements){
+            osmElement.addNodeElement(nodeElement);
+        }
+        for(WayElement wayElement : wayElements){
+            osmElement.addWayElement(wayElement);
+        }
+
+        return osmElement;
+    }
+
+
+    private static void addStrings(AbstractLevel2Element element, Map<String, String> tags,
+            Map<String, Integer> stringCodes, List<String> strings){
+
+        addString(element.getUser(), stringCodes, strings);
+        addString(element.getUserID(), stringCodes, strings);
+        for(Map.Entry<String, String> tag : tags.entrySet()){
+            addString(tag.getKey(), stringCodes, strings);
+            addString(tag.getValue(), stringCodes, strings);
+        }
+    }
+
+
+    private static void addString(String string, Map<String, Integer> stringCodes, List<String> strings){
+        if(string != null && !stringCodes.containsKey(string)){
+            stringCodes.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+
+    private static void writeMetadata(SnapshotOutput output, AbstractLevel2Element element, Map<String, String> tags,
+            Map<String, Integer> stringCodes) throws IOException{
+
+        Integer version = element.getVersion();
+        Integer changeset = element.getChangeset();
+        Date timestamp = element.getTimestamp();
+        String user = element.getUser();
+        String userID = element.getUserID();
+
+        int flags = 0;
+        if(version != null) flags |= HAS_VERSION;
+        if(changeset != null) flags |= HAS_CHANGESET;
+        if(!element.isVisible()) flags |= INVISIBLE;
+        if(timestamp != null) flags |= HAS_TIMESTAMP;
+        if(user != null) flags |= HAS_USER;
+        if(userID != null) flags |= HAS_USER_ID;
+
+        output.writeVarint(flags);
+        if(version != null) output.writeSInt64(version);
+        if(changeset != null) output.writeSInt64(changeset);
+        if(timestamp != null) output.writeSInt64(timestamp.getTime());
+        if(user != null) output.writeVarint(stringCodes.get(user));
+        if(userID != null) output.writeVarint(stringCodes.get(userID));
+
+        output.writeVarint(tags.size());
+        for(Map.Entry<String, String> tag : tags.entrySet()){
+            output.writeVarint(stringCodes.get(tag.getKey()));
+            output.writeVarint(stringCodes.get(tag.getValue()));
+        }
+    }
+
+
+    private static Integer readVersion(SnapshotInput input, int flags) throws IOException{
+        return (flags & HAS_VERSION) == 0 ? null : (int) input.readSInt64();
+    }
+
+
+    private static Integer readChangeset(SnapshotInput input, int flags) throws IOException{
+        return (flags & HAS_CHANGESET) == 0 ? null : (int) input.readSInt64();
+    }
+
+
+    //elements without the attribute "visible" are visible, i.e. only invisible elements need the attribute
+    private static Boolean readVisible(int flags){
+        return (flags & INVISIBLE) == 0 ? null : Boolean.FALSE;
+    }
+
+
+    private static Date readTimestamp(SnapshotInput input, int flags) throws IOException{
+        return (flags & HAS_TIMESTAMP) == 0 ? null : new Date(input.readSInt64());
+    }
+
+
+    private static String readUser(SnapshotInput input, int flags, String[] strings) throws IOException{
+        return (flags & HAS_USER) == 0 ? null : strings[input.readIndex(strings.length)];
+    }
+
+
+    private static String readUserID(SnapshotInput input, int flags, String[] strings) throws IOException{
+        return (flags & HAS_USER_ID) == 0 ? null : strings[input.readIndex(strings.length)];
+    }
+
+
+    private static void readTags(SnapshotInput input, Map<String, String> tags, String[] strings) throws IOException{
+        int tagCount = input.readCount(2);
+        for(int i = 0; i < tagCount; i++){
+            String key = strings[input.readIndex(strings.length)];
+            tags.put(key, strings[input.readIndex(strings.length)]);
+        }
+    }
+
+
+    /**
+     * Buffered output of the primitive values of a snapshot that keeps track of the checksum
+     */
+    private static class SnapshotOutput {
+
+        private final OutputStream outputStream;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final CRC32 checksum = new CRC32();
+        private int position;
+
+        private SnapshotOutput(OutputStream outputStream){
+            this.outputStream = outputStream;
+        }
+
+        private void writeByte(int value) throws IOException{
+            if(this.position == this.buffer.length){
+                flush();
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException{
+            for(byte value : bytes){
+                writeByte(value);
+            }
+        }
+
+        private void writeInt(int value) throws IOException{
+            for(int shift = 24; shift >= 0; shift -= 8){
+                writeByte(value >>> shift);
+            }
+        }
+
+        private void writeVarint(long value) throws IOException{
+            while((value & ~0x7FL) != 0){
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeSInt64(long value) throws IOException{
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeDouble(double value) throws IOException{
+            long bits = Double.doubleToRawLongBits(value);
+            for(int shift = 56; shift >= 0; shift -= 8){
+                writeByte((int) (bits >>> shift));
+            }
+        }
+
+        //null is written as length 0, all other strings with their length + 1
+        private void writeString(String string) throws IOException{
+            if(string == null){
+                writeVarint(0);
+                return;
+            }
+
+            byte[] bytes = string.getBytes(UTF_8);
+            writeVarint(bytes.length + 1);
+            writeBytes(bytes);
+        }
+
+        private void flush() throws IOException{
+            this.checksum.update(this.buffer, 0, this.position);
+            this.outputStream.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+
+        private void finish() throws IOException{
+            flush();
+            int value = (int) this.checksum.getValue();
+            this.outputStream.write(new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8),
+                    (byte) value});
+            this.outputStream.flush();
+        }
+    }
+
+
+    /**
+     * Buffered input of the primitive values of a snapshot that keeps track of the checksum
+     */
+    private static class SnapshotInput {
+
+        private final InputStream inputStream;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final CRC32 checksum = new CRC32();
+        private int position;
+        private int limit;
+
+        //the length of the snapshot (or Long.MAX_VALUE if unknown) and the number of bytes before the buffer
+        private final long length;
+        private long offset;
+
+        private SnapshotInput(InputStream inputStream, long length){
+            this.inputStream = inputStream;
+            this.length = length;
+        }
+
+        private byte readByte() throws IOException{
+            if(this.position == this.limit){
+                this.checksum.update(this.buffer, 0, this.limit);
+                this.offset += this.limit;
+                this.position = 0;
+                this.limit = 0;
+                int bytesRead;
+                do{
+                    bytesRead = this.inputStream.read(this.buffer, 0, this.buffer.length);
+                }
+                while(bytesRead == 0);
+
+                if(bytesRead < 0)
+                    throw new EOFException("Unexpected end of snapshot!");
+
+                this.limit = bytesRead;
+            }
+            return this.buffer[this.position++];
+        }
+
+        private int readInt() throws IOException{
+            int result = 0;
+            for(int i = 0; i < 4; i++){
+                result = (result << 8) | (readByte() & 0xFF);
+            }
+            return result;
+        }
+
+        private long readVarint() throws IOException{
+            long result = 0;
+            for(int shift = 0; shift < 64; shift += 7){
+                byte value = readByte();
+                result |= (long) (value & 0x7F) << shift;
+                if(value >= 0)
+                    return result;
+            }
+            throw new IOException("Malformed varint in snapshot!");
+        }
+
+        private long readSInt64() throws IOException{
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        //a number of elements of the given minimum size, i.e. a non-negative int not exceeding the remaining bytes
+        private int readCount(int minSize) throws IOException{
+            long value = readVarint();
+            if(value < 0 || value > Integer.MAX_VALUE || value * minSize > this.length - this.offset - this.position)
+                throw new IOException("Invalid count in snapshot: " + value);
+
+            return (int) value;
+        }
+
+        private int readIndex(int size) throws IOException{
+            long value = readVarint();
+            if(value < 0 || value >= size)
+                throw new IOException("Invalid string index in snapshot: " + value);
+
+            return (int) value;
+        }
+
+        private double readDouble() throws IOException{
+            long bits = 0;
+            for(int i = 0; i < 8; i++){
+                bits = (bits << 8) | (readByte() & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private String readString() throws IOException{
+            int length = readCount(1);
+            if(length == 0)
+                return null;
+
+            byte[] bytes = new byte[Math.min(length - 1, BUFFER_SIZE)];
+            for(int i = 0; i < length - 1; i++){
+                if(i == bytes.length){
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length - 1, 2L * i));
+                }
+                bytes[i] = readByte();
+            }
+            return new String(bytes, UTF_8);
+        }
+
+        private void verifyChecksum() throws IOException{
+            this.checksum.update(this.buffer, 0, this.position);
+            int expected = (int) this.checksum.getValue();
+
+            //the checksum itself is not part of the checked bytes
+            this.checksum.reset();
+            if(readIntUnchecked() != expected)
+                throw new IOException("Snapshot is corrupt (checksum mismatch)!");
+        }
+
+        private int readIntUnchecked() throws IOException{
+            int result = 0;
+            for(int i = 0; i < 4; i++){
+                while(this.position == this.limit){
+                    int bytesRead = this.inputStream.read(this.buffer, 0, this.buffer.length);
+                    if(bytesRead < 0)
+                        throw new EOFException("Unexpected end of snapshot!");
+                    this.position = 0;
+                    this.limit = bytesRead;
+                }
+                result = (result << 8) | (this.buffer[this.position++] & 0xFF);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,624 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.AbstractAdaptedLevel2Element;
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.MetadataMode;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.TagDictionary;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.util.LongHashSet;
+import de.uzl.itm.jaxb4osm.util.LongLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The {@link OsmStreamReader} reads OSM files in a streaming (pull) fashion using StAX and delivers every
+ * <code>&lt;node&gt;</code> and <code>&lt;way&gt;</code> element to an {@link OsmElementHandler} as soon as its
+ * closing tag was read. In contrast to {@link OsmUnmarshaller#unmarshal(java.io.InputStream)} there is neither
+ * an intermediate {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement.PlainOsmElement} nor an
+ * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} containing all elements, i.e. the memory consumption does not depend
+ * on the size of the OSM file. osmChange files are read the same way, i.e. the handler is additionally notified
+ * about the start of every <code>&lt;create&gt;</code>, <code>&lt;modify&gt;</code> and <code>&lt;delete&gt;</code>
+ * block (see {@link OsmElementHandler#handleChangeAction(ChangeAction)}).
+ *
+ * <b>Note:</b> Instances of {@link OsmStreamReader} are not thread-safe, i.e. one instance is supposed to read one
+ * OSM file at a time.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmStreamReader {
+
+    private static Logger log = LoggerFactory.getLogger(OsmStreamReader.class.getName());
+
+    private static final String ELEM_OSM = "osm";
+    private static final String ELEM_BOUNDS = "bounds";
+    private static final String ELEM_NODE = "node";
+    private static final String ELEM_WAY = "way";
+    private static final String ELEM_RELATION = "relation";
+    private static final String ELEM_TAG = "tag";
+    private static final String ELEM_ND = "nd";
+
+    private static final String ATT_ID = "id";
+    private static final String ATT_VERSION = "version";
+    private static final String ATT_CHANGESET = "changeset";
+    private static final String ATT_VISIBLE = "visible";
+    private static final String ATT_TIMESTAMP = "timestamp";
+    private static final String ATT_USER = "user";
+    private static final String ATT_USER_ID = "uid";
+    private static final String ATT_LATITUDE = "lat";
+    private static final String ATT_LONGITUDE = "lon";
+    private static final String ATT_KEY = "k";
+    private static final String ATT_VALUE = "v";
+    private static final String ATT_REFERENCE = "ref";
+
+    //factories are thread-safe once configured, so there is no need to look up the implementation for every file
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    //no valid coordinates (the latitude would be -214.7 degrees)
+    private static final long NO_COORDINATES = Long.MIN_VALUE;
+
+    private OsmElementHandler handler;
+    private WayElementFilter filter;
+    private WayTagFilter wayTagFilter;
+
+    private boolean skipNodeElements;
+    private boolean skipWayElements;
+    private LongHashSet nodeIDs;
+    private MetadataMode metadataMode;
+
+    //the bounds to clip the elements to, the IDs of the nodes read within these bounds and (if ways crossing the
+    //bounds are to be kept) the coordinates of the nodes outside of the bounds
+    private BoundsElement bounds;
+    private LongHashSet clippedNodeIDs;
+    private LongLongHashMap outsideNodeCoordinates;
+
+    //counts the nodes and ways seen and kept (if the reader is monitored)
+    private ParseMonitor parseMonitor;
+
+    //raw attributes of the element currently being read (parsed only if the element is actually created)
+    private String ID;
+    private String version;
+    private String changeset;
+    private String visible;
+    private String timestamp;
+    private String user;
+    private String userID;
+    private String latitude;
+    private String longitude;
+
+    //children of the element currently being read
+    private String[] tagKeys = new String[16];
+    private String[] tagValues = new String[16];
+    private int[] tagCodes = new int[32];
+    private int tagCount;
+    private long[] references = new long[256];
+    private int referenceCount;
+
+    /**
+     * Creates a new instance of {@link OsmStreamReader} that delivers all elements to the given
+     * {@link OsmElementHandler}.
+     *
+     * @param handler the {@link OsmElementHandler} to be notified about the elements read
+     */
+    public OsmStreamReader(OsmElementHandler handler){
+        this(handler, WayElementFilter.ANY_WAY);
+    }
+
+    /**
+     * Creates a new instance of {@link OsmStreamReader} that delivers all nodes and the ways matching the given
+     * {@link WayElementFilter} to the given {@link OsmElementHandler}.
+     *
+     * @param handler the {@link OsmElementHandler} to be notified about the elements read
+     * @param filter the {@link WayElementFilter} to be applied on the ways
+     */
+    public OsmStreamReader(OsmElementHandler handler, WayElementFilter filter){
+        this.handler = handler;
+        this.filter = filter;
+        this.wayTagFilter = WayElementFilter.getWayTagFilter(filter);
+        this.metadataMode = MetadataMode.EAGER;
+    }
+
+    /**
+     * Sets whether the <code>&lt;node&gt;</code> elements are to be skipped, i.e. neither instances of
+     * {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} are created nor the {@link OsmElementHandler} is notified.
+     *
+     * @param skipNodeElements <code>true</code> if the nodes are to be skipped or <code>false</code> otherwise
+     */
+    public void setSkipNodeElements(boolean skipNodeElements){
+        this.skipNodeElements = skipNodeElements;
+    }
+
+    /**
+     * Sets whether the <code>&lt;way&gt;</code> elements are to be skipped, i.e. neither instances of
+     * {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} are created nor the {@link OsmElementHandler} is notified.
+     *
+     * @param skipWayElements <code>true</code> if the ways are to be skipped or <code>false</code> otherwise
+     */
+    public void setSkipWayElements(boolean skipWayElements){
+        this.skipWayElements = skipWayElements;
+    }
+
+    /**
+     * Sets how the metadata attributes of the nodes and ways (<code>version</code>, <code>changeset</code>,
+     * <code>visible</code>, <code>timestamp</code>, <code>user</code>, and <code>uid</code>) are to be handled.
+     *
+     * @param metadataMode the {@link de.uzl.itm.jaxb4osm.jaxb.MetadataMode} to be applied (default is
+     *                     {@link de.uzl.itm.jaxb4osm.jaxb.MetadataMode#EAGER})
+     */
+    public void setMetadataMode(MetadataMode metadataMode){
+        this.metadataMode = metadataMode;
+    }
+
+    /**
+     * Restricts the nodes to be read to the given IDs, i.e. for <code>&lt;node&gt;</code> elements with other IDs
+     * no instances of {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} are created.
+     *
+     * @param nodeIDs the IDs of the nodes to be read or <code>null</code> to read all nodes (default)
+     */
+    public void setNodeIDs(LongHashSet nodeIDs){
+        this.nodeIDs = nodeIDs;
+    }
+
+    /**
+     * Shortcut for <code>setBounds(bounds, false)</code>
+     *
+     * @param bounds the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} to clip the elements to or
+     *               <code>null</code> to read all elements (default)
+     */
+    public void setBounds(BoundsElement bounds){
+        setBounds(bounds, false);
+    }
+
+    /**
+     * Clips the elements to the given bounds, i.e. only nodes within the bounds (including the borders) and ways
+     * referencing at least one of these nodes are read. If <code>crossingWays</code> is <code>true</code>, the ways
+     * with a segment (i.e. the line between two consecutive nodes) crossing the bounds are read as well, even if
+     * none of their nodes is within the bounds. The references of such ways to nodes outside of the bounds are kept.
+     * The {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} of the file (if any) is replaced by its intersection with
+     * the given bounds.
+     *
+     * <b>Note:</b> Clipping requires the nodes to precede the ways (like in every OSM file), since the ways are
+     * clipped based on the nodes read before. The memory required for clipping scales with the number of nodes
+     * within the bounds. To find the crossing ways, the coordinates of all nodes outside of the bounds are kept
+     * (with a precision of 10<sup>-7</sup> degrees like in OSM files) as well, i.e. about 21 to 43 bytes per node
+     * of the file.
+     *
+     * @param bounds the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} to clip the elements to or
+     *               <code>null</code> to read all elements (default)
+     * @param crossingWays <code>true</code> if the ways crossing the bounds without any node within the bounds are
+     *                     to be read or <code>false</code> otherwise
+     */
+    public void setBounds(BoundsElement bounds, boolean crossingWays){
+        this.bounds = bounds;
+        this.clippedNodeIDs = bounds == null ? null : new LongHashSet();
+        this.outsideNodeCoordinates = bounds == null || !crossingWays ? null : new LongLongHashMap();
+    }
+
+    /**
+     * Sets the {@link ParseMonitor} to count the nodes and ways seen and kept with.
+     *
+     * @param parseMonitor the {@link ParseMonitor} to count the elements with or <code>null</code> (default)
+     */
+    void setParseMonitor(ParseMonitor parseMonitor){
+        this.parseMonitor = parseMonitor;
+    }
+
+    /**
+     * Reads the OSM file from the given {@link java.io.InputStream} and notifies the {@link OsmElementHandler} about
+     * the elements read.
+     *
+     * @param inputStream the {@link java.io.InputStream} to read the OSM file from
+     *
+     * @throws XMLStreamException if the OSM file could not be parsed
+     */
+    public void read(InputStream inputStream) throws XMLStreamException {
+        XMLStreamReader xmlStreamReader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+
+        try{
+            while(xmlStreamReader.hasNext()){
+                if(xmlStreamReader.next() != XMLStreamConstants.START_ELEMENT)
+                    continue;
+
+                switch(xmlStreamReader.getLocalName()){
+                    case ELEM_OSM:
+                        this.handler.handleOsmElement(readOsmElement(xmlStreamReader));
+                        break;
+
+                    case ELEM_BOUNDS:
+                        BoundsElement boundsElement = readBoundsElement(xmlStreamReader);
+                        if(this.bounds != null){
+                            boundsElement = intersect(boundsElement, this.bounds);
+                        }
+                        this.handler.handleBoundsElement(boundsElement);
+                        break;
+
+                    case ELEM_NODE:
+                        if(this.skipNodeElements){
+                            skipElement(xmlStreamReader);
+                            break;
+                        }
+
+                        NodeElement nodeElement = readNodeElement(xmlStreamReader);
+                        if(nodeElement != null){
+                            this.handler.handleNodeElement(nodeElement);
+                        }
+                        if(this.parseMonitor != null){
+                            this.parseMonitor.addNodes(1, nodeElement == null ? 0 : 1);
+                        }
+                        break;
+
+                    case ELEM_WAY:
+                        if(this.skipWayElements){
+                            skipElement(xmlStreamReader);
+                            break;
+                        }
+
+                        WayElement wayElement = readWayElement(xmlStreamReader);
+                        if(wayElement != null){
+                            this.handler.handleWayElement(wayElement);
+                        }
+                        if(this.parseMonitor != null){
+                            this.parseMonitor.addWays(1, wayElement == null ? 0 : 1);
+                        }
+                        break;
+
+                    case ELEM_RELATION:
+                        skipElement(xmlStreamReader);
+                        break;
+
+                    default:
+                        ChangeAction action = ChangeAction.fromElementName(xmlStreamReader.getLocalName());
+                        if(action != null){
+                            this.handler.handleChangeAction(action);
+                        }
+                        break;
+                }
+            }
+        }
+        finally{
+            xmlStreamReader.close();
+        }
+
+        this.handler.handleEndOfDocument();
+    }
+
+
+    private static OsmElement readOsmElement(XMLStreamReader xmlStreamReader){
+        OsmElement osmElement = new OsmElement();
+        osmElement.setVersion(xmlStreamReader.getAttributeValue(null, "version"));
+        osmElement.setGenerator(xmlStreamReader.getAttributeValue(null, "generator"));
+        osmElement.setCopyright(xmlStreamReader.getAttributeValue(null, "copyright"));
+        osmElement.setAttribution(xmlStreamReader.getAttributeValue(null, "attribution"));
+        osmElement.setLicense(xmlStreamReader.getAttributeValue(null, "license"));
+        return osmElement;
+    }
+
+
+    private static BoundsElement readBoundsElement(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        double minLatitude = 0, maxLatitude = 0, minLongitude = 0, maxLongitude = 0;
+
+        //OSM files use lower case attribute names, i.e. "minlat" instead of "minLat"
+        for(int i = 0; i < xmlStreamReader.getAttributeCount(); i++){
+            String name = xmlStreamReader.getAttributeLocalName(i);
+            double value = Double.parseDouble(xmlStreamReader.getAttributeValue(i));
+
+            if(BoundsElement.ATT_MIN_LATITUDE.equalsIgnoreCase(name)){
+                minLatitude = value;
+            }
+            else if(BoundsElement.ATT_MAX_LATITUDE.equalsIgnoreCase(name)){
+                maxLatitude = value;
+            }
+            else if(BoundsElement.ATT_MIN_LONGITUDE.equalsIgnoreCase(name)){
+                minLongitude = value;
+            }
+            else if(BoundsElement.ATT_MAX_LONGITUDE.equalsIgnoreCase(name)){
+                maxLongitude = value;
+            }
+        }
+
+        skipElement(xmlStreamReader);
+        return new BoundsElement(minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+
+    private NodeElement readNodeElement(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        readAttributes(xmlStreamReader);
+
+        if(this.nodeIDs != null && (this.ID == null || !this.nodeIDs.contains(Long.parseLong(this.ID)))){
+            skipElement(xmlStreamReader);
+            return null;
+        }
+
+        if(this.bounds != null){
+            double latitude = parseDouble(this.latitude);
+            double longitude = parseDouble(this.longitude);
+            if(latitude < this.bounds.getMinLatitude() || latitude > this.bounds.getMaxLatitude()
+                    || longitude < this.bounds.getMinLongitude() || longitude > this.bounds.getMaxLongitude()){
+                if(this.outsideNodeCoordinates != null && this.ID != null){
+                    this.outsideNodeCoordinates.put(Long.parseLong(this.ID), encodeCoordinates(latitude, longitude));
+                }
+                skipElement(xmlStreamReader);
+                return null;
+            }
+            if(this.ID != null){
+                this.clippedNodeIDs.add(Long.parseLong(this.ID));
+            }
+        }
+
+        readChildElements(xmlStreamReader);
+
+        NodeElement nodeElement = new NodeElement(parseLong(this.ID), this.metadataMode, this.version,
+                this.changeset, this.visible, this.timestamp, this.user, this.userID, parseDouble(this.latitude),
+                parseDouble(this.longitude));
+
+        addTags(nodeElement);
+        return nodeElement;
+    }
+
+
+    private WayElement readWayElement(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        readAttributes(xmlStreamReader);
+        readChildElements(xmlStreamReader);
+
+        if(this.bounds != null && !referencesClippedNode() && !crossesBounds())
+            return null;
+
+        //tag filters are evaluated on the raw tags, i.e. no objects are created for rejected ways
+        if(this.wayTagFilter != null){
+            for(int i = 0; i < this.tagCount; i++){
+                this.tagCodes[2 * i] = TagDictionary.lookup(this.tagKeys[i]);
+                this.tagCodes[2 * i + 1] = TagDictionary.lookup(this.tagValues[i]);
+            }
+
+            if(!this.wayTagFilter.matchesTagCodes(this.tagCodes, 2 * this.tagCount))
+                return null;
+        }
+
+        WayElement wayElement = new WayElement(parseLong(this.ID), this.metadataMode, this.version,
+                this.changeset, this.visible, this.timestamp, this.user, this.userID);
+
+        wayElement.addNodeReferences(this.references, 0, this.referenceCount);
+        addTags(wayElement);
+
+        if(this.wayTagFilter == null && !this.filter.matchesCriteria(wayElement))
+            return null;
+
+        return wayElement;
+    }
+
+
+    private boolean referencesClippedNode(){
+        for(int i = 0; i < this.referenceCount; i++){
+            if(this.clippedNodeIDs.contains(this.references[i]))
+                return true;
+        }
+        return false;
+    }
+
+
+    //true if ways crossing the bounds are to be read and a segment between two nodes outside crosses the bounds
+    private boolean crossesBounds(){
+        if(this.outsideNodeCoordinates == null)
+            return false;
+
+        long previous = NO_COORDINATES;
+        for(int i = 0; i < this.referenceCount; i++){
+            long coordinates = this.outsideNodeCoordinates.get(this.references[i], NO_COORDINATES);
+            if(previous != NO_COORDINATES && coordinates != NO_COORDINATES
+                    && SpatialIndex.intersects(this.bounds, decodeLatitude(previous), decodeLongitude(previous),
+                    decodeLatitude(coordinates), decodeLongitude(coordinates))){
+                return true;
+            }
+            previous = coordinates;
+        }
+        return false;
+    }
+
+
+    //the coordinates in units of 10^-7 degrees (i.e. the precision of OSM files) in the upper and lower 32 bits
+    private static long encodeCoordinates(double latitude, double longitude){
+        return (long) (int) Math.round(latitude * 1e7) << 32 | ((int) Math.round(longitude * 1e7) & 0xFFFFFFFFL);
+    }
+
+
+    private static double decodeLatitude(long coordinates){
+        return (int) (coordinates >> 32) / 1e7;
+    }
+
+
+    private static double decodeLongitude(long coordinates){
+        return (int) coordinates / 1e7;
+    }
+
+
+    private static BoundsElement intersect(BoundsElement bounds1, BoundsElement bounds2){
+        return new BoundsElement(Math.max(bounds1.getMinLatitude(), bounds2.getMinLatitude()),
+                Math.min(bounds1.getMaxLatitude(), bounds2.getMaxLatitude()),
+                Math.max(bounds1.getMinLongitude(), bounds2.getMinLongitude()),
+                Math.min(bounds1.getMaxLongitude(), bounds2.getMaxLongitude()));
+    }
+
+
+    private void readAttributes(XMLStreamReader xmlStreamReader){
+        this.ID = null;
+        this.version = null;
+        this.changeset = null;
+        this.visible = null;
+        this.timestamp = null;
+        this.user = null;
+        this.userID = null;
+        this.latitude = null;
+        this.longitude = null;
+
+        //the values of skipped metadata attributes are not even read, i.e. there are no strings created for them
+        boolean readMetadata = this.metadataMode != MetadataMode.SKIP;
+
+        for(int i = 0; i < xmlStreamReader.getAttributeCount(); i++){
+            switch(xmlStreamReader.getAttributeLocalName(i)){
+                case ATT_ID:
+                    this.ID = xmlStreamReader.getAttributeValue(i);
+                    break;
+
+                case ATT_VERSION:
+                    if(readMetadata)
+                        this.version = xmlStreamReader.getAttributeValue(i);
+                    break;
+
+                case ATT_CHANGESET:
+                    if(readMetadata)
+                        this.changeset = xmlStreamReader.getAttributeValue(i);
+                    break;
+
+                case ATT_VISIBLE:
+                    if(readMetadata)
+                        this.visible = xmlStreamReader.getAttributeValue(i);
+                    break;
+
+                case ATT_TIMESTAMP:
+                    if(readMetadata)
+                        this.timestamp = xmlStreamReader.getAttributeValue(i);
+                    break;
+
+                case ATT_USER:
+                    if(readMetadata)
+                        this.user = xmlStreamReader.getAttributeValue(i);
+                    break;
+
+                case ATT_USER_ID:
+                    if(readMetadata)
+                        this.userID = xmlStreamReader.getAttributeValue(i);
+                    break;
+
+                case ATT_LATITUDE:
+                    this.latitude = xmlStreamReader.getAttributeValue(i);
+                    break;
+
+                case ATT_LONGITUDE:
+                    this.longitude = xmlStreamReader.getAttributeValue(i);
+                    break;
+            }
+        }
+    }
+
+
+    private void readChildElements(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        this.tagCount = 0;
+        this.referenceCount = 0;
+
+        int depth = 1;
+        while(depth > 0){
+            int event = xmlStreamReader.next();
+
+            if(event == XMLStreamConstants.END_ELEMENT){
+                depth--;
+            }
+
+            else if(event == XMLStreamConstants.START_ELEMENT){
+                depth++;
+
+                if(depth > 2)
+                    continue;
+
+                String name = xmlStreamReader.getLocalName();
+                if(ELEM_TAG.equals(name)){
+                    if(this.tagCount == this.tagKeys.length){
+                        this.tagKeys = Arrays.copyOf(this.tagKeys, this.tagCount << 1);
+                        this.tagValues = Arrays.copyOf(this.tagValues, this.tagCount << 1);
+                        this.tagCodes = new int[this.tagCount << 2];
+                    }
+
+                    this.tagKeys[this.tagCount] = xmlStreamReader.getAttributeValue(null, ATT_KEY);
+                    this.tagValues[this.tagCount] = xmlStreamReader.getAttributeValue(null, ATT_VALUE);
+                    this.tagCount++;
+                }
+
+                else if(ELEM_ND.equals(name)){
+                    if(this.referenceCount == this.references.length){
+                        this.references = Arrays.copyOf(this.references, this.referenceCount << 1);
+                    }
+
+                    this.references[this.referenceCount++] =
+                            Long.parseLong(xmlStreamReader.getAttributeValue(null, ATT_REFERENCE));
+                }
+            }
+        }
+    }
+
+
+    private void addTags(AbstractAdaptedLevel2Element element){
+        if(this.tagCount == 0)
+            return;
+
+        Map<String, String> tags = element.getTags();
+        for(int i = 0; i < this.tagCount; i++){
+            String key = this.tagKeys[i];
+            String value = this.tagValues[i];
+
+            if(key == null || value == null){
+                log.warn("Element with ID {} contains incomplete tag (k={}, v={})!", new Object[]{this.ID, key, value});
+            }
+            else if(tags.put(key, value) != null){
+                log.warn("Element with ID {} contains multiple tags with key {}!", this.ID, key);
+            }
+        }
+    }
+
+
+    private static Long parseLong(String value){
+        return value == null ? null : Long.valueOf(value);
+    }
+
+
+    private static double parseDouble(String value){
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+
+
+    private static void skipElement(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        int depth = 1;
+
+        while(depth > 0){
+            int event = xmlStreamReader.next();
+
+            if(event == XMLStreamConstants.START_ELEMENT){
+                depth++;
+            }
+            else if(event == XMLStreamConstants.END_ELEMENT){
+                depth--;
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.AbstractAdaptedLevel2Element;
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * The {@link OsmStreamWriter} writes OSM XML to an {@link javax.xml.stream.XMLStreamWriter} in a streaming fashion,
+ * i.e. the counterpart of {@link OsmStreamReader}. In contrast to {@link OsmMarshaller#marshal(OsmElement,
+ * java.io.OutputStream)} there is neither an intermediate {@link OsmElement.PlainOsmElement} nor a plain copy of any
+ * node or way, i.e. the elements are written as they are passed to {@link #writeNodeElement(NodeElement)} and
+ * {@link #writeWayElement(WayElement)}.
+ *
+ * Coordinates are written with 7 decimal places (which is the precision of OSM) and timestamps are written in UTC.
+ *
+ * <b>Note:</b> Instances of {@link OsmStreamWriter} are not thread-safe, i.e. one instance is supposed to write one
+ * OSM file at a time.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmStreamWriter {
+
+    private static final String ELEM_OSM = "osm";
+    private static final String ELEM_BOUNDS = "bounds";
+    private static final String ELEM_NODE = "node";
+    private static final String ELEM_WAY = "way";
+    private static final String ELEM_TAG = "tag";
+    private static final String ELEM_ND = "nd";
+
+    private static final String ATT_VERSION = "version";
+    private static final String ATT_GENERATOR = "generator";
+    private static final String ATT_COPYRIGHT = "copyright";
+    private static final String ATT_ATTRIBUTION = "attribution";
+    private static final String ATT_LICENSE = "license";
+
+    private static final String ATT_ID = "id";
+    private static final String ATT_CHANGESET = "changeset";
+    private static final String ATT_VISIBLE = "visible";
+    private static final String ATT_TIMESTAMP = "timestamp";
+    private static final String ATT_USER = "user";
+    private static final String ATT_USER_ID = "uid";
+    private static final String ATT_LATITUDE = "lat";
+    private static final String ATT_LONGITUDE = "lon";
+    private static final String ATT_KEY = "k";
+    private static final String ATT_VALUE = "v";
+    private static final String ATT_REFERENCE = "ref";
+
+    private static final long COORDINATE_SCALE = 10000000L;
+
+    private final XMLStreamWriter xmlStreamWriter;
+    private final SimpleDateFormat dateFormat;
+    private final StringBuilder coordinate = new StringBuilder(16);
+
+    /**
+     * Creates a new instance of {@link OsmStreamWriter}.
+     *
+     * @param xmlStreamWriter the {@link javax.xml.stream.XMLStreamWriter} to write the XML on
+     */
+    public OsmStreamWriter(XMLStreamWriter xmlStreamWriter){
+        this.xmlStreamWriter = xmlStreamWriter;
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        this.dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Writes the complete given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}, i.e. the start of the document, the
+     * bounds, all nodes, all ways and the end of the document.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to be written
+     *
+     * @throws XMLStreamException if some error occurred while writing
+     */
+    public void write(OsmElement osmElement) throws XMLStreamException {
+        writeStartDocument(osmElement);
+
+        if(osmElement.getBoundsElement() != null){
+            writeBoundsElement(osmElement.getBoundsElement());
+        }
+
+        for(NodeElement nodeElement : osmElement.getNodeElementsView()){
+            writeNodeElement(nodeElement);
+        }
+
+        for(WayElement wayElement : osmElement.getWayElementsView()){
+            writeWayElement(wayElement);
+        }
+
+        writeEndDocument();
+    }
+
+    /**
+     * Writes the XML declaration and the start tag of the <code>&lt;osm&gt;</code> element with the attributes of
+     * the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} (but nothing of its content).
+     *
+     * @param header the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} providing the attributes
+     *
+     * @throws XMLStreamException if some error occurred while writing
+     */
+    public void writeStartDocument(OsmElement header) throws XMLStreamException {
+        this.xmlStreamWriter.writeStartDocument("UTF-8", "1.0");
+        this.xmlStreamWriter.writeStartElement(ELEM_OSM);
+        writeAttribute(ATT_VERSION, header.getVersion());
+        writeAttribute(ATT_GENERATOR, header.getGenerator());
+        writeAttribute(ATT_COPYRIGHT, header.getCopyright());
+        writeAttribute(ATT_ATTRIBUTION, header.getAttribution());
+        writeAttribute(ATT_LICENSE, header.getLicense());
+    }
+
+    /**
+     * Writes the given {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement}.
+     *
+     * @param boundsElement the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} to be written
+     *
+     * @throws XMLStreamException if some error occurred while writing
+     */
+    public void writeBoundsElement(BoundsElement boundsElement) throws XMLStreamException {
+        this.xmlStreamWriter.writeEmptyElement(ELEM_BOUNDS);
+        writeCoordinate(BoundsElement.ATT_MIN_LATITUDE, boundsElement.getMinLatitude());
+        writeCoordinate(BoundsElement.ATT_MIN_LONGITUDE, boundsElement.getMinLongitude());
+        writeCoordinate(BoundsElement.ATT_MAX_LATITUDE, boundsElement.getMaxLatitude());
+        writeCoordinate(BoundsElement.ATT_MAX_LONGITUDE, boundsElement.getMaxLongitude());
+    }
+
+    /**
+     * Writes the given {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} including its tags.
+     *
+     * @param nodeElement the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} to be written
+     *
+     * @throws XMLStreamException if some error occurred while writing
+     */
+    public void writeNodeElement(NodeElement nodeElement) throws XMLStreamException {
+        Map<String, String> tags = nodeElement.getTags();
+
+        if(tags.isEmpty()){
+            this.xmlStreamWriter.writeEmptyElement(ELEM_NODE);
+        }
+        else{
+            this.xmlStreamWriter.writeStartElement(ELEM_NODE);
+        }
+
+        writeAttributes(nodeElement);
+        writeCoordinate(ATT_LATITUDE, nodeElement.getLatitude());
+        writeCoordinate(ATT_LONGITUDE, nodeElement.getLongitude());
+
+        if(!tags.isEmpty()){
+            writeTags(tags);
+            this.xmlStreamWriter.writeEndElement();
+        }
+    }
+
+    /**
+     * Writes the given {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} including its node references and tags.
+     *
+     * @param wayElement the {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} to be written
+     *
+     * @throws XMLStreamException if some error occurred while writing
+     */
+    public void writeWayElement(WayElement wayElement) throws XMLStreamException {
+        this.xmlStreamWriter.writeStartElement(ELEM_WAY);
+        writeAttributes(wayElement);
+
+        for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+            this.xmlStreamWriter.writeEmptyElement(ELEM_ND);
+            this.xmlStreamWriter.writeAttribute(ATT_REFERENCE, Long.toString(wayElement.getNodeReference(i)));
+        }
+
+        writeTags(wayElement.getTags());
+        this.xmlStreamWriter.writeEndElement();
+    }
+
+    /**
+     * Writes the end tag of the <code>&lt;osm&gt;</code> element and ends the document. The underlying
+     * {@link javax.xml.stream.XMLStreamWriter} is flushed but not closed.
+     *
+     * @throws XMLStreamException if some error occurred while writing
+     */
+    public void writeEndDocument() throws XMLStreamException {
+        this.xmlStreamWriter.writeEndElement();
+        this.xmlStreamWriter.writeEndDocument();
+        this.xmlStreamWriter.flush();
+    }
+
+
+    private void writeAttributes(AbstractAdaptedLevel2Element element) throws XMLStreamException {
+        this.xmlStreamWriter.writeAttribute(ATT_ID, Long.toString(element.getID()));
+
+        if(element.getVersion() != null){
+            this.xmlStreamWriter.writeAttribute(ATT_VERSION, Integer.toString(element.getVersion()));
+        }
+        if(element.getChangeset() != null){
+            this.xmlStreamWriter.writeAttribute(ATT_CHANGESET, Integer.toString(element.getChangeset()));
+        }
+        if(!element.isVisible()){
+            this.xmlStreamWriter.writeAttribute(ATT_VISIBLE, "false");
+        }
+
+        Date timestamp = element.getTimestamp();
+        if(timestamp != null){
+            this.xmlStreamWriter.writeAttribute(ATT_TIMESTAMP, this.dateFormat.format(timestamp));
+        }
+
+        writeAttribute(ATT_USER, element.getUser());
+        writeAttribute(ATT_USER_ID, element.getUserID());
+    }
+
+
+    private void writeTags(Map<String, String> tags) throws XMLStreamException {
+        for(Map.Entry<String, String> tag : tags.entrySet()){
+            this.xmlStreamWriter.writeEmptyElement(ELEM_TAG);
+            this.xmlStreamWriter.writeAttribute(ATT_KEY, tag.getKey());
+            this.xmlStreamWriter.writeAttribute(ATT_VALUE, tag.getValue());
+        }
+    }
+
+
+    private void writeAttribute(String name, String value) throws XMLStreamException {
+        if(value != null){
+            this.xmlStreamWriter.writeAttribute(name, value);
+        }
+    }
+
+
+    /**
+     * Writes the given coordinate as fixed point number with (at most) 7 decimal places, i.e. without exponent and
+     * without trailing zeros (e.g. <code>53.8654321</code> or <code>10.5</code>).
+     */
+    private void writeCoordinate(String name, double value) throws XMLStreamException {
+        long scaled = Math.round(value * COORDINATE_SCALE);
+
+        this.coordinate.setLength(0);
+        if(scaled < 0){
+            this.coordinate.append('-');
+            scaled = -scaled;
+        }
+        this.coordinate.append(scaled / COORDINATE_SCALE);
+
+        long fraction = scaled % COORDINATE_SCALE;
+        if(fraction != 0){
+            int length = this.coordinate.length();
+            this.coordinate.append(COORDINATE_SCALE + fraction).setCharAt(length, '.');
+            while(this.coordinate.charAt(this.coordinate.length() - 1) == '0'){
+                this.coordinate.setLength(this.coordinate.length() - 1);
+            }
+        }
+
+        this.xmlStreamWriter.writeAttribute(name, this.coordinate.toString());
+    }
+}
@@ -24,23 +24,39 @@
  */
 package de.uzl.itm.jaxb4osm.tools;
 
+import de.uzl.itm.jaxb4osm.jaxb.AbstractPlainLevel2Element;
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
 import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
 import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.store.HashNodeElementStore;
+import de.uzl.itm.jaxb4osm.store.NodeElementStore;
+import de.uzl.itm.jaxb4osm.util.Compression;
+import de.uzl.itm.jaxb4osm.util.LongHashSet;
+import de.uzl.itm.jaxb4osm.util.SharedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.InputStream;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
- * This is a class to provide static methods to unmarshal OSM files.
+ * This is a class to provide static methods to unmarshal OSM files. All methods are thread-safe, i.e. several OSM
+ * files may be unmarshalled concurrently. Compressed OSM files (gzip or bzip2) are decompressed transparently (see
+ * {@link de.uzl.itm.jaxb4osm.util.Compression}).
  *
  * @author Oliver Kleine
  */
@@ -48,17 +64,32 @@ public class OsmUnmarshaller {
 
     private static Logger log = LoggerFactory.getLogger(OsmUnmarshaller.class.getName());
 
-    private static Unmarshaller unmarshaller;
+    private static JAXBContext context;
     static{
         try{
-            JAXBContext context = JAXBContext.newInstance(OsmElement.PlainOsmElement.class);
-            unmarshaller = context.createUnmarshaller();
+            context = JAXBContext.newInstance(OsmElement.PlainOsmElement.class);
         }
         catch (Exception ex){
             log.error("This should never happen!", ex);
         }
     }
 
+    //factories are thread-safe once configured, so there is no need to look up the implementation for every file
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    //JAXB unmarshallers are not thread-safe, so every thread gets its own instance
+    private static final ThreadLocal<Unmarshaller> UNMARSHALLERS = new ThreadLocal<Unmarshaller>(){
+        @Override
+        protected Unmarshaller initialValue() {
+            try{
+                return context.createUnmarshaller();
+            }
+            catch (JAXBException ex){
+                throw new IllegalStateException("Could not create unmarshaller!", ex);
+            }
+        }
+    };
+
     /**
      * Shortcurt for <code>unmarshal(inputStream, WayElementFilter.ANY_WAY, false)</code>
      *
@@ -86,7 +117,9 @@ public class OsmUnmarshaller {
     }
 
     /**
-     * Deserializes the given OSM file into one {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} instance.
+     * Deserializes the given OSM file into one {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} instance. Compressed data
+     * is detected and decompressed. The given {@link java.io.InputStream} is not closed (whether it is compressed or
+     * not), i.e. it is up to the caller.
      *
      * @param inputStream the {@link java.io.InputStream} to read the data to be de-serialized from
      * @param filter the {@link WayElementFilter} to be applied
@@ -103,30 +136,342 @@ public class OsmUnmarshaller {
     public static OsmElement unmarshal(InputStream inputStream, WayElementFilter filter, boolean removeUnreferencedNodes)
             throws Exception{
 
-        //create xml event reader for input stream
-        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-        XMLEventReader xmlEventReader = xmlInputFactory.createXMLEventReader(inputStream);
+        //there is no listener but the phases are recorded as JFR events
+        ParseMonitor monitor = new ParseMonitor(null);
 
         //Do the un-marshalling
-        OsmElement.PlainOsmElement plainOsmElement =
-                unmarshaller.unmarshal(xmlEventReader, OsmElement.PlainOsmElement.class).getValue();
+        monitor.startPhase(ParsePhase.BIND);
+        OsmElement.PlainOsmElement plainOsmElement;
+        try{
+            Unmarshaller unmarshaller = UNMARSHALLERS.get();
+            InputStream decompressedInputStream = decompress(inputStream, monitor);
+            try{
+                //create xml event reader for input stream
+                XMLEventReader xmlEventReader =
+                        XML_INPUT_FACTORY.createXMLEventReader(monitor.monitor(decompressedInputStream));
 
-        OsmElement osmElement = new OsmElement.OsmElementAdapter().unmarshal(plainOsmElement, filter);
+                unmarshaller.setListener(new ElementCounter(monitor));
+                plainOsmElement = unmarshaller.unmarshal(xmlEventReader, OsmElement.PlainOsmElement.class).getValue();
+            }
+            finally{
+                unmarshaller.setListener(null);
+                decompressedInputStream.close();
+            }
+        }
+        finally{
+            monitor.finishPhase();
+        }
+
+        monitor.startPhase(ParsePhase.CONVERT);
+        OsmElement osmElement;
+        try{
+            osmElement = new OsmElement.OsmElementAdapter().unmarshal(plainOsmElement, filter);
+            monitor.addNodes(0, osmElement.getNodeElementsView().size());
+            monitor.addWays(0, osmElement.getWayElementsView().size());
+        }
+        finally{
+            monitor.finishPhase();
+        }
 
         if(removeUnreferencedNodes){
-            Set<Long> unreferencedNodes = new HashSet<>();
-            for(NodeElement nodeElement : osmElement.getNodeElements()){
-                if(osmElement.getReferencingWayIDs(nodeElement.getID()).size() == 0){
+            removeUnreferencedNodes(osmElement, monitor);
+        }
+
+        return osmElement;
+    }
+
+    /**
+     * Shortcut for <code>unmarshal(file, UnmarshalOptions.create().setFilter(filter)
+     * .setRemoveUnreferencedNodes(removeUnreferencedNodes))</code>
+     *
+     * @param file the OSM file to read the data to be de-serialized from
+     * @param filter the {@link WayElementFilter} to be applied
+     * @param removeUnreferencedNodes <code>true</code> if only the nodes referenced by at least one of the ways
+     *                                matching the given filter are to be kept or <code>false</code> otherwise
+     *
+     * @return the unmarshalled {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     *
+     * @throws Exception if some unexpected error occurred
+     */
+    public static OsmElement unmarshal(File file, WayElementFilter filter, boolean removeUnreferencedNodes)
+            throws Exception{
+
+        return unmarshal(file, UnmarshalOptions.create().setFilter(filter)
+                .setRemoveUnreferencedNodes(removeUnreferencedNodes));
+    }
+
+    /**
+     * Deserializes the given (compressed) OSM file into one {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} instance
+     * according to the given {@link UnmarshalOptions}. In contrast to
+     * {@link #unmarshal(java.io.InputStream, WayElementFilter, boolean)} the file is read in a streaming fashion,
+     * i.e. there is no intermediate {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement.PlainOsmElement}.
+     *
+     * The {@link ParseListener} of the given {@link UnmarshalOptions} (if any) is notified about the
+     * {@link ParsePhase}s, i.e. {@link ParsePhase#READ} or (if unreferenced nodes are to be removed)
+     * {@link ParsePhase#READ_WAYS}, {@link ParsePhase#COLLECT_NODE_IDS} and {@link ParsePhase#READ_NODES}. This
+     * applies to files read in parallel as well, whose progress is reported range by range (see
+     * {@link UnmarshalOptions#setForkJoinPool(java.util.concurrent.ForkJoinPool)}).
+     *
+     * @param file the OSM file to read the data to be de-serialized from
+     * @param options the {@link UnmarshalOptions} to be applied
+     *
+     * @return the unmarshalled {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     *
+     * @throws Exception if some unexpected error occurred
+     */
+    public static OsmElement unmarshal(File file, UnmarshalOptions options) throws Exception{
+        boolean compressed = Compression.detect(file) != Compression.NONE;
+
+        if(options.getForkJoinPool() != null && options.getBounds() == null && !compressed){
+            return new ParallelOsmReader(file, options).read();
+        }
+
+        ExecutorService executorService = options.getExecutorService() != null ? options.getExecutorService() :
+                options.getForkJoinPool();
+        if(executorService == null && compressed){
+            executorService = SharedThreadPool.get();
+        }
+
+        return read(file, options, executorService);
+    }
+
+    /**
+     * Deserializes the given OSM files in parallel using the given {@link java.util.concurrent.ExecutorService}.
+     * Each file is deserialized via {@link #unmarshal(java.io.File, UnmarshalOptions)}. Files contained more than
+     * once are deserialized only once.
+     *
+     * @param files the OSM files to read the data to be de-serialized from
+     * @param options the {@link UnmarshalOptions} to be applied to every file (without a
+     *                {@link de.uzl.itm.jaxb4osm.store.NodeElementStore} as the files cannot share a store)
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to unmarshal the files with
+     *
+     * @return a {@link java.util.Map} (in the order of the given files) with the files as keys and the
+     * {@link java.util.concurrent.Future}s of the unmarshalled {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}s as values.
+     * If the unmarshalling of a file failed, the corresponding {@link java.util.concurrent.Future} throws an
+     * {@link java.util.concurrent.ExecutionException} but the other files are not affected.
+     */
+    public static Map<File, Future<OsmElement>> unmarshal(Collection<File> files, final UnmarshalOptions options,
+            ExecutorService executorService){
+
+        if(options.getNodeElementStore() != null)
+            throw new IllegalArgumentException("Several files cannot share a node element store!");
+
+        Map<File, Future<OsmElement>> result = new LinkedHashMap<>();
+
+        for(final File file : files){
+            if(result.containsKey(file))
+                continue;
+
+            result.put(file, executorService.submit(new Callable<OsmElement>() {
+                @Override
+                public OsmElement call() throws Exception {
+                    return unmarshal(file, options);
+                }
+            }));
+        }
+
+        return result;
+    }
+
+
+    private static OsmElement read(File file, UnmarshalOptions options, ExecutorService executorService)
+            throws Exception{
+
+        ParseMonitor monitor = new ParseMonitor(options.getParseListener());
+        NodeElementStore nodeElementStore = options.getNodeElementStore() != null ? options.getNodeElementStore() :
+                new HashNodeElementStore();
+        OsmElementBuilder builder = new OsmElementBuilder(nodeElementStore);
+
+        if(options.getBounds() != null)
+            return clip(file, options, builder, executorService, monitor);
+
+        if(!options.isRemoveUnreferencedNodes()){
+            OsmStreamReader reader = new OsmStreamReader(builder, options.getFilter());
+            reader.setMetadataMode(options.getMetadataMode());
+            read(file, reader, executorService, monitor, ParsePhase.READ);
+            return builder.getOsmElement();
+        }
+
+        //first pass: read the matching ways only
+        OsmStreamReader wayReader = new OsmStreamReader(builder, options.getFilter());
+        wayReader.setSkipNodeElements(true);
+        wayReader.setMetadataMode(options.getMetadataMode());
+        read(file, wayReader, executorService, monitor, ParsePhase.READ_WAYS);
+
+        monitor.startPhase(ParsePhase.COLLECT_NODE_IDS);
+        LongHashSet nodeIDs = new LongHashSet();
+        try{
+            for(WayElement wayElement : builder.getOsmElement().getWayElementsView()){
+                for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                    nodeIDs.add(wayElement.getNodeReference(i));
+                }
+            }
+        }
+        finally{
+            monitor.finishPhase();
+        }
+
+        //second pass: read the referenced nodes only
+        OsmStreamReader nodeReader = new OsmStreamReader(builder, options.getFilter());
+        nodeReader.setSkipWayElements(true);
+        nodeReader.setNodeIDs(nodeIDs);
+        nodeReader.setMetadataMode(options.getMetadataMode());
+        read(file, nodeReader, executorService, monitor, ParsePhase.READ_NODES);
+
+        return builder.getOsmElement();
+    }
+
+
+    private static OsmElement clip(File file, UnmarshalOptions options, OsmElementBuilder builder,
+            ExecutorService executorService, ParseMonitor monitor) throws Exception{
+
+        BoundsElement bounds = options.getBounds();
+        OsmStreamReader clippingReader = new OsmStreamReader(builder, options.getFilter());
+        clippingReader.setBounds(bounds, options.isCrossingWays());
+        clippingReader.setMetadataMode(options.getMetadataMode());
+        read(file, clippingReader, executorService, monitor, ParsePhase.READ);
+
+        OsmElement osmElement = builder.getOsmElement();
+        if(osmElement.getBoundsElement() == null){
+            osmElement.setBoundsElement(bounds);
+        }
+
+        if(options.isCompleteWays()){
+            //second pass: read the missing nodes of the clipped ways
+            monitor.startPhase(ParsePhase.COLLECT_NODE_IDS);
+            LongHashSet nodeIDs = new LongHashSet();
+            try{
+                for(WayElement wayElement : osmElement.getWayElementsView()){
+                    for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                        long nodeID = wayElement.getNodeReference(i);
+                        if(osmElement.getNodeElement(nodeID) == null){
+                            nodeIDs.add(nodeID);
+                        }
+                    }
+                }
+            }
+            finally{
+                monitor.finishPhase();
+            }
+
+            if(nodeIDs.size() > 0){
+                OsmStreamReader nodeReader = new OsmStreamReader(builder, options.getFilter());
+                nodeReader.setSkipWayElements(true);
+                nodeReader.setNodeIDs(nodeIDs);
+                nodeReader.setMetadataMode(options.getMetadataMode());
+
+                //the second pass delivers the original bounds of the file again
+                BoundsElement clippedBounds = osmElement.getBoundsElement();
+                read(file, nodeReader, executorService, monitor, ParsePhase.READ_NODES);
+                osmElement.setBoundsElement(clippedBounds);
+            }
+        }
+
+        if(options.isRemoveUnreferencedNodes()){
+            removeUnreferencedNodes(osmElement, monitor);
+        }
+
+        return osmElement;
+    }
+
+
+    private static void removeUnreferencedNodes(OsmElement osmElement, ParseMonitor monitor){
+        monitor.startPhase(ParsePhase.REMOVE_UNREFERENCED_NODES);
+        try{
+            LongHashSet unreferencedNodes = new LongHashSet();
+            for(NodeElement nodeElement : osmElement.getNodeElementsView()){
+                if(osmElement.getReferencingWayCount(nodeElement.getID()) == 0){
                     unreferencedNodes.add(nodeElement.getID());
                 }
             }
 
-            for(long nodeID : unreferencedNodes){
+            for(long nodeID : unreferencedNodes.toArray()){
                 osmElement.removeNodeElement(nodeID);
             }
+            monitor.addNodes(0, -unreferencedNodes.size());
+        }
+        finally{
+            monitor.finishPhase();
         }
+    }
 
-        return osmElement;
+
+    private static void read(File file, OsmStreamReader osmStreamReader, ExecutorService executorService,
+            ParseMonitor monitor, ParsePhase phase) throws Exception{
+
+        monitor.startPhase(phase);
+        osmStreamReader.setParseMonitor(monitor);
+        try(InputStream inputStream = Compression.detect(file).decompress(
+                monitor.monitorFile(new FileInputStream(file)), executorService)){
+            osmStreamReader.read(monitor.monitor(inputStream));
+        }
+        finally{
+            monitor.finishPhase();
+        }
+    }
+
+
+    //counts the nodes and ways bound by JAXB (the plain elements are converted by the adapters afterwards)
+    private static class ElementCounter extends Unmarshaller.Listener {
+
+        private final ParseMonitor monitor;
+
+        private ElementCounter(ParseMonitor monitor){
+            this.monitor = monitor;
+        }
+
+        @Override
+        public void afterUnmarshal(Object target, Object parent){
+            if(target instanceof NodeElement.PlainNodeElement){
+                this.monitor.addNodes(1, 0);
+            }
+            else if(target instanceof AbstractPlainLevel2Element){
+                this.monitor.addWays(1, 0);
+            }
+        }
+    }
+
+
+    //the returned stream is to be closed (to stop the decompression) but does not close the given stream
+    private static InputStream decompress(InputStream inputStream) throws Exception{
+        return Compression.detectAndDecompress(new FilterInputStream(inputStream) {
+            @Override
+            public void close(){
+                //the given stream is closed by the caller
+            }
+        }, null);
+    }
+
+
+    //the same as decompress(InputStream) but counts the (compressed) bytes read from the given stream
+    private static InputStream decompress(InputStream inputStream, ParseMonitor monitor) throws Exception{
+        return decompress(monitor.monitorFile(inputStream));
+    }
+
+    /**
+     * Reads the given OSM file in a streaming fashion, i.e. every {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement} and
+     * every {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} matching the given filter is delivered to the given
+     * {@link OsmElementHandler} as soon as its closing tag was read. No
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} containing all elements is built, i.e. the memory consumption is
+     * up to the {@link OsmElementHandler} and does not depend on the size of the file. Compressed data is detected
+     * and decompressed. The given {@link java.io.InputStream} is not closed, i.e. it is up to the caller.
+     *
+     * @param inputStream the {@link java.io.InputStream} to read the data to be de-serialized from
+     * @param filter the {@link WayElementFilter} to be applied
+     * @param handler the {@link OsmElementHandler} to be notified about the elements read
+     *
+     * @throws Exception if some unexpected error occurred
+     */
+    public static void unmarshal(InputStream inputStream, WayElementFilter filter, OsmElementHandler handler)
+            throws Exception{
+
+        InputStream decompressedInputStream = decompress(inputStream);
+        try{
+            new OsmStreamReader(handler, filter).read(decompressedInputStream);
+        }
+        finally{
+            decompressedInputStream.close();
+        }
     }
 
 
@@ -135,15 +480,15 @@ public class OsmUnmarshaller {
 
         String pathToOsmFile = args[0];
         FileInputStream inputStream = new FileInputStream(new File(pathToOsmFile));
-        OsmElement osmElement  = OsmUnmarshaller.unmarshal(inputStream, WayElementFilter.STREETS, true);
+        OsmElement osmElement  = OsmUnmarshaller.unmarshal(inputStream, WayTagFilter.STREETS, true);
 
-        System.out.println("Found " + osmElement.getNodeElements().size() + " nodes.");
+        System.out.println("Found " + osmElement.getNodeElementsView().size() + " nodes.");
 
-        System.out.println("Found " + osmElement.getWayElements().size() + " streets.");
+        System.out.println("Found " + osmElement.getWayElementsView().size() + " streets.");
 
         int crossings = 0;
-        for(NodeElement nodeElement : osmElement.getNodeElements()){
-            if(osmElement.getReferencingWayIDs(nodeElement.getID()).size() > 1) crossings++;
+        for(NodeElement nodeElement : osmElement.getNodeElementsView()){
+            if(osmElement.getReferencingWayCount(nodeElement.getID()) > 1) crossings++;
         }
 
         System.out.println("Found " + crossings + " crossings");
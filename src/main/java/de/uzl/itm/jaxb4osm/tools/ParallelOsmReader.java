@@ -0,0 +1,433 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.store.HashNodeElementStore;
+import de.uzl.itm.jaxb4osm.util.LongHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reads a single OSM file in parallel. The file is split into byte ranges which are resynchronized on the next
+ * top-level start tag (<code>&lt;node</code>, <code>&lt;way</code> or <code>&lt;relation</code>). Since the
+ * characters <code>&lt;</code> and <code>&gt;</code> are escaped within attribute values, such a start tag can
+ * not appear anywhere else in an OSM file (except for comments and CDATA sections which OSM files do not contain).
+ *
+ * Each range is parsed by a worker of a {@link java.util.concurrent.ForkJoinPool} into plain lists of the elements
+ * in the order of the file, i.e. the workers do not build any hash based structures that would have to be merged
+ * (and kept in memory twice) afterwards. The lists are added to the result in the order of the ranges (while the
+ * following ranges are still being parsed) and released right after, i.e. the result is the same as if the file was
+ * read sequentially. As the {@link de.uzl.itm.jaxb4osm.store.NodeElementStore}s are not thread-safe, the nodes are
+ * added by the calling thread while a worker adds the ways of the same range (which only touch the way index).
+ *
+ * Each range is monitored by a {@link ParseMonitor} of its own. The counters are added to the {@link ParseMonitor}
+ * of the file when the range is merged, i.e. the {@link ParseListener} is notified by the calling thread and the
+ * progress advances range by range.
+ *
+ * <b>Note:</b> OSM files are expected to be UTF-8 encoded (which is the encoding used by OpenStreetMap).
+ *
+ * @author Oliver Kleine
+ */
+class ParallelOsmReader {
+
+    private static Logger log = LoggerFactory.getLogger(ParallelOsmReader.class.getName());
+
+    private static final int MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final byte[][] START_TAGS = new byte[][]{
+            "<node".getBytes(StandardCharsets.US_ASCII),
+            "<way".getBytes(StandardCharsets.US_ASCII),
+            "<relation".getBytes(StandardCharsets.US_ASCII),
+            "</osm".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    private static final byte[] OSM_START_TAG = "<osm>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OSM_END_TAG = "</osm>".getBytes(StandardCharsets.US_ASCII);
+
+    private final File file;
+    private final UnmarshalOptions options;
+    private final ForkJoinPool forkJoinPool;
+    private final long minChunkSize;
+
+    private FileChannel fileChannel;
+
+
+    ParallelOsmReader(File file, UnmarshalOptions options){
+        this(file, options, MIN_CHUNK_SIZE);
+    }
+
+
+    ParallelOsmReader(File file, UnmarshalOptions options, long minChunkSize){
+        this.file = file;
+        this.options = options;
+        this.forkJoinPool = options.getForkJoinPool();
+        this.minChunkSize = minChunkSize;
+    }
+
+
+    OsmElement read() throws Exception{
+        ParseMonitor monitor = new ParseMonitor(this.options.getParseListener());
+        boolean removeUnreferencedNodes = this.options.isRemoveUnreferencedNodes();
+
+        try(RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "r")){
+            this.fileChannel = randomAccessFile.getChannel();
+            long[] boundaries = findBoundaries();
+            log.debug("Split {} into {} chunks.", this.file, boundaries.length - 1);
+
+            //first pass: read all elements or (if unreferenced nodes are to be removed) the matching ways only
+            OsmElement result;
+            monitor.startPhase(removeUnreferencedNodes ? ParsePhase.READ_WAYS : ParsePhase.READ);
+            try{
+                //the header (i.e. <osm> and <bounds>) precedes the first node
+                OsmElementBuilder builder = new OsmElementBuilder(this.options.getNodeElementStore() != null ?
+                        this.options.getNodeElementStore() : new HashNodeElementStore());
+                new OsmStreamReader(builder).read(new SequenceInputStream(
+                        monitor.monitor(monitor.monitorFile(new FileRangeInputStream(this.fileChannel, 0,
+                                boundaries[0]))),
+                        new ByteArrayInputStream(OSM_END_TAG)));
+                result = builder.getOsmElement();
+
+                merge(result, submit(boundaries, removeUnreferencedNodes, false, null), monitor);
+            }
+            finally{
+                monitor.finishPhase();
+            }
+
+            if(!removeUnreferencedNodes)
+                return result;
+
+            monitor.startPhase(ParsePhase.COLLECT_NODE_IDS);
+            LongHashSet nodeIDs = new LongHashSet();
+            try{
+                for(WayElement wayElement : result.getWayElementsView()){
+                    for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                        nodeIDs.add(wayElement.getNodeReference(i));
+                    }
+                }
+            }
+            finally{
+                monitor.finishPhase();
+            }
+
+            //second pass: read the referenced nodes only
+            monitor.startPhase(ParsePhase.READ_NODES);
+            try{
+                merge(result, submit(boundaries, false, true, nodeIDs), monitor);
+            }
+            finally{
+                monitor.finishPhase();
+            }
+            return result;
+        }
+    }
+
+
+    private List<ForkJoinTask<Chunk>> submit(long[] boundaries, boolean skipNodeElements, boolean skipWayElements,
+                                             LongHashSet nodeIDs){
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(boundaries.length - 1);
+        for(int i = 0; i < boundaries.length - 1; i++){
+            ChunkTask task = new ChunkTask(boundaries[i], boundaries[i + 1], skipNodeElements, skipWayElements,
+                    nodeIDs);
+            tasks.add(this.forkJoinPool.submit(task));
+        }
+
+        return tasks;
+    }
+
+
+    private void merge(final OsmElement result, List<ForkJoinTask<Chunk>> tasks, ParseMonitor monitor){
+        //merging in the order of the chunks keeps the rules of addNodeElement and addWayElement for duplicate IDs;
+        //chunks are merged as soon as they are available while the following chunks are still being parsed
+        for(int i = 0; i < tasks.size(); i++){
+            final Chunk chunk = tasks.get(i).join();
+
+            //the nodes (i.e. the store) and the ways (i.e. the way index) are disjoint parts of the result
+            ForkJoinTask<?> wayTask = null;
+            if(!chunk.wayElements.isEmpty()){
+                wayTask = this.forkJoinPool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        result.addWayElements(chunk.wayElements);
+                    }
+                });
+            }
+
+            result.addNodeElements(chunk.nodeElements);
+            if(wayTask != null){
+                wayTask.join();
+            }
+            monitor.add(chunk.parseMonitor);
+
+            //the completed task keeps its result, i.e. the chunk is released by releasing the task
+            tasks.set(i, null);
+        }
+    }
+
+
+    private long[] findBoundaries() throws IOException{
+        long fileSize = this.fileChannel.size();
+        int chunks = (int) Math.max(1, Math.min(this.forkJoinPool.getParallelism() * CHUNKS_PER_WORKER,
+                fileSize / this.minChunkSize));
+
+        //the last chunk ends right before the closing </osm> tag
+        long end = findEndTag(fileSize);
+
+        long[] boundaries = new long[chunks + 1];
+        int count = 0;
+        for(int i = 0; i < chunks; i++){
+            long boundary = Math.min(findStartTag(i * (fileSize / chunks), fileSize), end);
+            if(count == 0 || boundary > boundaries[count - 1]){
+                boundaries[count++] = boundary;
+            }
+        }
+
+        if(boundaries[count - 1] < end){
+            boundaries[count++] = end;
+        }
+
+        return Arrays.copyOf(boundaries, count);
+    }
+
+
+    private long findStartTag(long position, long fileSize) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        //the last bytes of a buffer are read again with the next buffer to find tags across buffer boundaries
+        int overlap = 16;
+        while(position < fileSize){
+            buffer.clear();
+            int length = this.fileChannel.read(buffer, position);
+            if(length <= 0)
+                break;
+
+            byte[] bytes = buffer.array();
+            boolean last = position + length >= fileSize;
+            int end = last ? length : length - overlap;
+
+            for(int i = 0; i < end; i++){
+                if(bytes[i] == '<' && isStartTag(bytes, i, length)){
+                    return position + i;
+                }
+            }
+
+            if(last)
+                break;
+
+            position += end;
+        }
+
+        return fileSize;
+    }
+
+
+    private long findEndTag(long fileSize) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(fileSize, 64 * 1024));
+        long position = fileSize - buffer.capacity();
+        this.fileChannel.read(buffer, position);
+
+        byte[] bytes = buffer.array();
+        byte[] tag = START_TAGS[START_TAGS.length - 1];
+        for(int i = buffer.position() - tag.length; i >= 0; i--){
+            if(bytes[i] == '<' && isStartTag(bytes, i, buffer.position()) && bytes[i + 1] == '/'){
+                return position + i;
+            }
+        }
+
+        return fileSize;
+    }
+
+
+    private static boolean isStartTag(byte[] bytes, int offset, int length){
+        for(byte[] tag : START_TAGS){
+            int end = offset + tag.length;
+            if(end >= length)
+                continue;
+
+            boolean matches = true;
+            for(int i = 1; i < tag.length && matches; i++){
+                matches = bytes[offset + i] == tag[i];
+            }
+
+            byte next = bytes[end];
+            if(matches && (next == ' ' || next == '\t' || next == '\r' || next == '\n' || next == '>' || next == '/'))
+                return true;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * The elements of a single range in the order of the file and the counters of the range.
+     */
+    private static class Chunk extends OsmElementHandler {
+
+        private final List<NodeElement> nodeElements = new ArrayList<>();
+        private final List<WayElement> wayElements = new ArrayList<>();
+        private final ParseMonitor parseMonitor = new ParseMonitor(null);
+
+        @Override
+        public void handleNodeElement(NodeElement nodeElement){
+            this.nodeElements.add(nodeElement);
+        }
+
+        @Override
+        public void handleWayElement(WayElement wayElement){
+            this.wayElements.add(wayElement);
+        }
+    }
+
+
+    private class ChunkTask extends RecursiveTask<Chunk> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long start;
+        private final long end;
+        private final boolean skipNodeElements;
+        private final boolean skipWayElements;
+        private final LongHashSet nodeIDs;
+
+        private ChunkTask(long start, long end, boolean skipNodeElements, boolean skipWayElements,
+                          LongHashSet nodeIDs){
+            this.start = start;
+            this.end = end;
+            this.skipNodeElements = skipNodeElements;
+            this.skipWayElements = skipWayElements;
+            this.nodeIDs = nodeIDs;
+        }
+
+        @Override
+        protected Chunk compute() {
+            Chunk chunk = new Chunk();
+
+            OsmStreamReader reader = new OsmStreamReader(chunk, options.getFilter());
+            reader.setSkipNodeElements(this.skipNodeElements);
+            reader.setSkipWayElements(this.skipWayElements);
+            reader.setNodeIDs(this.nodeIDs);
+            reader.setMetadataMode(options.getMetadataMode());
+            reader.setParseMonitor(chunk.parseMonitor);
+
+            //the chunk contains complete top-level elements only, so it becomes well-formed within <osm>...</osm>
+            InputStream inputStream = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                    new ByteArrayInputStream(OSM_START_TAG),
+                    chunk.parseMonitor.monitor(chunk.parseMonitor.monitorFile(
+                            new FileRangeInputStream(fileChannel, this.start, this.end))),
+                    new ByteArrayInputStream(OSM_END_TAG))));
+
+            try{
+                reader.read(inputStream);
+            }
+            catch(Exception ex){
+                throw new IllegalStateException("Could not parse bytes " + this.start + " to " + this.end + "!", ex);
+            }
+
+            return chunk;
+        }
+    }
+
+
+    /**
+     * An {@link java.io.InputStream} on a range of a file using positional reads, i.e. several instances may read
+     * from the same {@link java.nio.channels.FileChannel} concurrently.
+     */
+    private static class FileRangeInputStream extends InputStream {
+
+        private final FileChannel fileChannel;
+        private final ByteBuffer buffer;
+        private long position;
+        private final long end;
+
+        private FileRangeInputStream(FileChannel fileChannel, long start, long end){
+            this.fileChannel = fileChannel;
+            this.buffer = ByteBuffer.allocate(64 * 1024);
+            this.buffer.flip();
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(!fill())
+                return -1;
+
+            return this.buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if(length == 0)
+                return 0;
+
+            if(!fill())
+                return -1;
+
+            length = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        private boolean fill() throws IOException{
+            if(this.buffer.hasRemaining())
+                return true;
+
+            if(this.position >= this.end)
+                return false;
+
+            this.buffer.clear();
+            this.buffer.limit((int) Math.min(this.buffer.capacity(), this.end - this.position));
+            int length = this.fileChannel.read(this.buffer, this.position);
+            this.buffer.flip();
+
+            if(length <= 0)
+                return false;
+
+            this.position += length;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+/**
+ * A {@link ParseListener} is notified about the progress of the {@link OsmUnmarshaller} and the
+ * {@link OsmPbfUnmarshaller} (see {@link UnmarshalOptions#setParseListener(ParseListener)}), i.e. about the start and
+ * the end of every {@link ParsePhase} and (periodically) about the number of bytes read and the number of nodes and
+ * ways seen and kept so far (see {@link ParseProgress}). This allows to monitor long running unmarshalling
+ * processes, e.g. to raise alerts on slow loads or to find out whether loading is bound by I/O or by parsing.
+ *
+ * All methods are called by the thread that unmarshals the file and have an empty default implementation, i.e.
+ * extending classes only need to override the methods they are interested in. Listeners are supposed to return
+ * quickly as the unmarshalling does not continue before.
+ *
+ * @author Oliver Kleine
+ */
+public abstract class ParseListener {
+
+    /**
+     * This method is called once a {@link ParsePhase} started.
+     *
+     * @param phase the {@link ParsePhase} that started
+     */
+    public void handlePhaseStarted(ParsePhase phase){}
+
+    /**
+     * This method is called once a {@link ParsePhase} finished. It is called as well if the phase failed (before
+     * the exception is thrown by the unmarshalling method), i.e. every call of
+     * {@link #handlePhaseStarted(ParsePhase)} is followed by a call of this method.
+     *
+     * @param phase the {@link ParsePhase} that finished
+     * @param duration the duration of the {@link ParsePhase} in nanoseconds
+     */
+    public void handlePhaseFinished(ParsePhase phase, long duration){}
+
+    /**
+     * This method is called at the end of every {@link ParsePhase} and while a file is read whenever the progress
+     * interval (see {@link #getProgressInterval()}) elapsed since the last call.
+     *
+     * @param progress the current {@link ParseProgress}
+     */
+    public void handleProgress(ParseProgress progress){}
+
+    /**
+     * Returns the minimum time between two calls of {@link #handleProgress(ParseProgress)} while a file is read in
+     * milliseconds (default is 1000).
+     *
+     * @return the minimum time between two calls of {@link #handleProgress(ParseProgress)} in milliseconds
+     */
+    public long getProgressInterval(){
+        return 1000;
+    }
+}
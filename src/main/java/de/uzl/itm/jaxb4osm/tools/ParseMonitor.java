@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ParseMonitor} keeps the counters of one unmarshalling process, times its {@link ParsePhase}s, and
+ * notifies the {@link ParseListener} (if any) and JFR (see {@link ParsePhaseEvent}). Instances are not thread-safe,
+ * i.e. they are supposed to be used by the thread that unmarshals the file only. The only exception is the stream
+ * returned by {@link #monitorFile(java.io.InputStream)}, which may be read by the thread decompressing the file.
+ * Readers working in parallel use a {@link ParseMonitor} each and {@link #add(ParseMonitor)} them afterwards.
+ *
+ * @author Oliver Kleine
+ */
+class ParseMonitor {
+
+    private static final ParseListener NO_LISTENER = new ParseListener(){};
+
+    private final ParseListener listener;
+    private final long progressInterval;
+    private final long startTime;
+    private long nextProgressTime;
+
+    private long bytesRead;
+    private final AtomicLong fileBytesRead = new AtomicLong();
+    private long inputWaitTime;
+    private long nodesSeen;
+    private long nodesKept;
+    private long waysSeen;
+    private long waysKept;
+
+    //the current phase, its start and the counters at its start
+    private ParsePhase phase;
+    private long phaseStartTime;
+    private Object phaseEvent;
+    private long[] phaseStartCounters = new long[6];
+
+
+    /**
+     * Creates a new instance of {@link ParseMonitor}.
+     *
+     * @param listener the {@link ParseListener} to be notified or <code>null</code> if there is none
+     */
+    ParseMonitor(ParseListener listener){
+        this.listener = listener == null ? NO_LISTENER : listener;
+        this.progressInterval = TimeUnit.MILLISECONDS.toNanos(this.listener.getProgressInterval());
+        this.startTime = System.nanoTime();
+        this.nextProgressTime = this.startTime + this.progressInterval;
+    }
+
+
+    void startPhase(ParsePhase phase){
+        this.phase = phase;
+        this.phaseStartTime = System.nanoTime();
+        this.phaseStartCounters = new long[]{this.bytesRead, this.fileBytesRead.get(), this.nodesSeen,
+                this.nodesKept, this.waysSeen, this.waysKept};
+        this.phaseEvent = ParsePhaseEvent.begin();
+        this.listener.handlePhaseStarted(phase);
+    }
+
+    /**
+     * Finishes the current {@link ParsePhase}. This method is supposed to be called in a <code>finally</code>
+     * block, i.e. also if the phase failed, so that every {@link ParseListener#handlePhaseStarted(ParsePhase)} is
+     * followed by {@link ParseListener#handlePhaseFinished(ParsePhase, long)}.
+     */
+    void finishPhase(){
+        long duration = System.nanoTime() - this.phaseStartTime;
+        ParsePhaseEvent.commit(this.phaseEvent, this.phase, this.bytesRead - this.phaseStartCounters[0],
+                this.fileBytesRead.get() - this.phaseStartCounters[1], this.nodesSeen - this.phaseStartCounters[2],
+                this.nodesKept - this.phaseStartCounters[3], this.waysSeen - this.phaseStartCounters[4],
+                this.waysKept - this.phaseStartCounters[5]);
+        this.phaseEvent = null;
+
+        this.listener.handleProgress(getProgress());
+        this.listener.handlePhaseFinished(this.phase, duration);
+    }
+
+
+    void addNodes(long seen, long kept){
+        this.nodesSeen += seen;
+        this.nodesKept += kept;
+    }
+
+
+    void addWays(long seen, long kept){
+        this.waysSeen += seen;
+        this.waysKept += kept;
+    }
+
+
+    /**
+     * Adds the counters of the given {@link ParseMonitor} (e.g. of a range of the file read by another thread) to
+     * the counters of this {@link ParseMonitor} and notifies the {@link ParseListener} about the progress if the
+     * progress interval elapsed.
+     *
+     * @param parseMonitor the {@link ParseMonitor} to add the counters of (which is not used any longer)
+     */
+    void add(ParseMonitor parseMonitor){
+        this.bytesRead += parseMonitor.bytesRead;
+        this.fileBytesRead.addAndGet(parseMonitor.fileBytesRead.get());
+        this.inputWaitTime += parseMonitor.inputWaitTime;
+        this.nodesSeen += parseMonitor.nodesSeen;
+        this.nodesKept += parseMonitor.nodesKept;
+        this.waysSeen += parseMonitor.waysSeen;
+        this.waysKept += parseMonitor.waysKept;
+        handleProgress(System.nanoTime());
+    }
+
+
+    ParseProgress getProgress(){
+        return new ParseProgress(this.phase, System.nanoTime() - this.startTime, this.bytesRead,
+                this.fileBytesRead.get(), this.inputWaitTime, this.nodesSeen, this.nodesKept, this.waysSeen,
+                this.waysKept);
+    }
+
+    /**
+     * Returns an {@link java.io.InputStream} that counts the bytes read from the given
+     * {@link java.io.InputStream}, measures the time spent waiting for them and notifies the
+     * {@link ParseListener} about the progress whenever the progress interval elapsed. Closing the returned
+     * {@link java.io.InputStream} closes the given one.
+     *
+     * @param inputStream the {@link java.io.InputStream} to be monitored
+     *
+     * @return the monitored {@link java.io.InputStream}
+     */
+    InputStream monitor(InputStream inputStream){
+        return new MonitoredInputStream(inputStream);
+    }
+
+    /**
+     * Returns an {@link java.io.InputStream} that counts the bytes read from the given (file)
+     * {@link java.io.InputStream}, i.e. the compressed bytes if the file is compressed. In contrast to
+     * {@link #monitor(java.io.InputStream)}, the returned {@link java.io.InputStream} may be read by any thread.
+     * Closing the returned {@link java.io.InputStream} closes the given one.
+     *
+     * @param inputStream the {@link java.io.InputStream} to count the bytes read from
+     *
+     * @return the counting {@link java.io.InputStream}
+     */
+    InputStream monitorFile(InputStream inputStream){
+        return new FileInputStreamCounter(inputStream);
+    }
+
+
+    private void handleInput(long count, long waitTime, long now){
+        if(count > 0){
+            this.bytesRead += count;
+        }
+        this.inputWaitTime += waitTime;
+
+        //the parser reads the input in chunks, i.e. the time is checked at most once per chunk
+        handleProgress(now);
+    }
+
+
+    private void handleProgress(long now){
+        if(now - this.nextProgressTime >= 0){
+            this.nextProgressTime = now + this.progressInterval;
+            this.listener.handleProgress(getProgress());
+        }
+    }
+
+
+    private class MonitoredInputStream extends FilterInputStream {
+
+        private MonitoredInputStream(InputStream inputStream){
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int result = super.read();
+            long now = System.nanoTime();
+            handleInput(result < 0 ? 0 : 1, now - start, now);
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            int result = super.read(buffer, offset, length);
+            long now = System.nanoTime();
+            handleInput(result, now - start, now);
+            return result;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long start = System.nanoTime();
+            long result = super.skip(count);
+            long now = System.nanoTime();
+            handleInput(result, now - start, now);
+            return result;
+        }
+    }
+
+
+    private class FileInputStreamCounter extends FilterInputStream {
+
+        private FileInputStreamCounter(InputStream inputStream){
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if(result >= 0){
+                fileBytesRead.incrementAndGet();
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if(result > 0){
+                fileBytesRead.addAndGet(result);
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long result = super.skip(count);
+            if(result > 0){
+                fileBytesRead.addAndGet(result);
+            }
+            return result;
+        }
+    }
+}
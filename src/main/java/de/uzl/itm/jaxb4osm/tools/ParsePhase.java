@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+/**
+ * The {@link ParsePhase}s an OSM file passes while being unmarshalled by the {@link OsmUnmarshaller} (or the
+ * {@link OsmPbfUnmarshaller}). Which phases occur depends on the method used (see the descriptions of the phases).
+ * The phases are reported to the {@link ParseListener} given to the unmarshalling method and recorded as JFR events
+ * (if available).
+ *
+ * @author Oliver Kleine
+ */
+public enum ParsePhase {
+
+    /**
+     * The file is tokenized and bound to the plain JAXB classes, i.e. the whole file is read (only for
+     * {@link OsmUnmarshaller#unmarshal(java.io.InputStream, WayElementFilter, boolean)}, which records the
+     * {@link ParsePhase}s as JFR events only).
+     */
+    BIND,
+
+    /**
+     * The plain JAXB classes are converted into an {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} by the
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement.OsmElementAdapter} and the {@link WayElementFilter} is applied
+     * (only for {@link OsmUnmarshaller#unmarshal(java.io.InputStream, WayElementFilter, boolean)}).
+     */
+    CONVERT,
+
+    /**
+     * The nodes that are not referenced by any way are removed from the
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} after all elements were read (only for
+     * {@link OsmUnmarshaller#unmarshal(java.io.InputStream, WayElementFilter, boolean)} and files clipped to bounds if
+     * unreferenced nodes are to be removed).
+     */
+    REMOVE_UNREFERENCED_NODES,
+
+    /**
+     * The file is read in a streaming fashion, i.e. all elements are read in one pass.
+     */
+    READ,
+
+    /**
+     * The first pass of a file read twice, i.e. only the ways are read.
+     */
+    READ_WAYS,
+
+    /**
+     * The IDs of the nodes to be read by the second pass (i.e. the nodes referenced by the ways read before) are
+     * collected.
+     */
+    COLLECT_NODE_IDS,
+
+    /**
+     * The second pass of a file read twice, i.e. only the nodes are read.
+     */
+    READ_NODES
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records {@link ParsePhase}s as JDK Flight Recorder events named <code>de.uzl.itm.jaxb4osm.ParsePhase</code>
+ * (category "jaxb4osm"). The event type is defined at runtime via the <code>jdk.jfr.EventFactory</code>, i.e. there
+ * is no dependency on the <code>jdk.jfr</code> API at compile time and no events are recorded on JVMs without this
+ * API (e.g. Java 7 or Java 8 before update 262). As usual for JFR events, the costs are negligible unless a recording
+ * with this event enabled is running.
+ *
+ * Every event covers the duration of one phase and carries the name of the phase and the numbers of bytes read and
+ * of nodes and ways seen and kept during that phase.
+ *
+ * @author Oliver Kleine
+ */
+final class ParsePhaseEvent {
+
+    private static Logger log = LoggerFactory.getLogger(ParsePhaseEvent.class.getName());
+
+    static final String EVENT_NAME = "de.uzl.itm.jaxb4osm.ParsePhase";
+
+    private static final Object EVENT_FACTORY;
+    private static final Method NEW_EVENT;
+    private static final Method BEGIN;
+    private static final Method END;
+    private static final Method SHOULD_COMMIT;
+    private static final Method SET;
+    private static final Method COMMIT;
+
+    static{
+        Object eventFactory = null;
+        Method newEvent = null, begin = null, end = null, shouldCommit = null, set = null, commit = null;
+        try{
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+
+            Constructor<?> annotationElement =
+                    Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+            List<Object> annotations = Arrays.asList(
+                    annotationElement.newInstance(Class.forName("jdk.jfr.Name"), EVENT_NAME),
+                    annotationElement.newInstance(Class.forName("jdk.jfr.Label"), "OSM Parse Phase"),
+                    annotationElement.newInstance(Class.forName("jdk.jfr.Category"), new String[]{"jaxb4osm"}),
+                    annotationElement.newInstance(Class.forName("jdk.jfr.StackTrace"), false)
+            );
+
+            //the order of the fields is the order of the indexes used by #commit(...)
+            Constructor<?> valueDescriptor =
+                    Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class);
+            List<Object> fields = new ArrayList<>();
+            fields.add(valueDescriptor.newInstance(String.class, "phase"));
+            for(String name : new String[]{"bytesRead", "fileBytesRead", "nodesSeen", "nodesKept", "waysSeen",
+                    "waysKept"}){
+                fields.add(valueDescriptor.newInstance(long.class, name));
+            }
+
+            eventFactory = eventFactoryClass.getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, fields);
+            newEvent = eventFactoryClass.getMethod("newEvent");
+            begin = eventClass.getMethod("begin");
+            end = eventClass.getMethod("end");
+            shouldCommit = eventClass.getMethod("shouldCommit");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+        }
+        catch(Exception | LinkageError ex){
+            log.debug("JFR events are not available ({}).", ex.toString());
+            eventFactory = null;
+        }
+
+        EVENT_FACTORY = eventFactory;
+        NEW_EVENT = newEvent;
+        BEGIN = begin;
+        END = end;
+        SHOULD_COMMIT = shouldCommit;
+        SET = set;
+        COMMIT = commit;
+    }
+
+
+    private ParsePhaseEvent(){}
+
+    /**
+     * Creates a new event and starts its timing.
+     *
+     * @return the new event or <code>null</code> if JFR events are not available
+     */
+    static Object begin(){
+        if(EVENT_FACTORY == null)
+            return null;
+
+        try{
+            Object event = NEW_EVENT.invoke(EVENT_FACTORY);
+            BEGIN.invoke(event);
+            return event;
+        }
+        catch(Exception ex){
+            log.debug("Could not create JFR event.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Ends the timing of the given event and commits it with the given values (if the event is enabled and the
+     * duration exceeds the threshold of the recording).
+     *
+     * @param event the event returned by {@link #begin()} (<code>null</code> is ignored)
+     * @param phase the {@link ParsePhase} that finished
+     * @param bytesRead the number of bytes read by the parser during the phase
+     * @param fileBytesRead the number of bytes read from the file during the phase
+     * @param nodesSeen the number of nodes seen during the phase
+     * @param nodesKept the number of nodes kept during the phase
+     * @param waysSeen the number of ways seen during the phase
+     * @param waysKept the number of ways kept during the phase
+     */
+    static void commit(Object event, ParsePhase phase, long bytesRead, long fileBytesRead, long nodesSeen,
+                       long nodesKept, long waysSeen, long waysKept){
+        if(event == null)
+            return;
+
+        try{
+            END.invoke(event);
+            if(!((Boolean) SHOULD_COMMIT.invoke(event)))
+                return;
+
+            SET.invoke(event, 0, phase.name());
+            SET.invoke(event, 1, bytesRead);
+            SET.invoke(event, 2, fileBytesRead);
+            SET.invoke(event, 3, nodesSeen);
+            SET.invoke(event, 4, nodesKept);
+            SET.invoke(event, 5, waysSeen);
+            SET.invoke(event, 6, waysKept);
+            COMMIT.invoke(event);
+        }
+        catch(Exception ex){
+            log.debug("Could not commit JFR event.", ex);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ParseProgress} is an immutable snapshot of the counters of an unmarshalling process, i.e. the number
+ * of bytes read and the number of nodes and ways seen and kept so far. The counters are cumulated over all
+ * {@link ParsePhase}s, i.e. if a file is read twice the bytes are counted twice.
+ *
+ * An element is seen if it was actually examined, e.g. the nodes skipped as a whole by the first pass of a file
+ * read twice (see {@link ParsePhase#READ_WAYS}) are not seen. An element is kept if it is contained in the
+ * result, i.e. the filtered elements are the elements seen but not kept.
+ *
+ * @author Oliver Kleine
+ */
+public class ParseProgress {
+
+    private final ParsePhase phase;
+    private final long elapsedTime;
+    private final long bytesRead;
+    private final long fileBytesRead;
+    private final long inputWaitTime;
+    private final long nodesSeen;
+    private final long nodesKept;
+    private final long waysSeen;
+    private final long waysKept;
+
+
+    ParseProgress(ParsePhase phase, long elapsedTime, long bytesRead, long fileBytesRead, long inputWaitTime,
+                  long nodesSeen, long nodesKept, long waysSeen, long waysKept){
+
+        this.phase = phase;
+        this.elapsedTime = elapsedTime;
+        this.bytesRead = bytesRead;
+        this.fileBytesRead = fileBytesRead;
+        this.inputWaitTime = inputWaitTime;
+        this.nodesSeen = nodesSeen;
+        this.nodesKept = nodesKept;
+        this.waysSeen = waysSeen;
+        this.waysKept = waysKept;
+    }
+
+    /**
+     * Returns the {@link ParsePhase} this snapshot was taken in.
+     *
+     * @return the {@link ParsePhase} this snapshot was taken in
+     */
+    public ParsePhase getPhase(){
+        return this.phase;
+    }
+
+    /**
+     * Returns the time since the unmarshalling started in nanoseconds.
+     *
+     * @return the time since the unmarshalling started in nanoseconds
+     */
+    public long getElapsedTime(){
+        return this.elapsedTime;
+    }
+
+    /**
+     * Returns the number of bytes read by the parser, i.e. the decompressed bytes of compressed XML files and the
+     * (compressed) bytes of PBF files as their blobs are decompressed by the parser.
+     *
+     * @return the number of bytes read by the parser
+     */
+    public long getBytesRead(){
+        return this.bytesRead;
+    }
+
+    /**
+     * Returns the number of bytes read from the file (or the given {@link java.io.InputStream}), i.e. the
+     * compressed bytes of compressed files. For uncompressed files this is the same as {@link #getBytesRead()}
+     * except for the bytes read ahead. As compressed files are decompressed ahead of the parser (and maybe by another
+     * thread), the ratio of both counters approximates the compression ratio while a file is read and equals it at
+     * the end of a reading phase.
+     *
+     * @return the number of bytes read from the file
+     */
+    public long getFileBytesRead(){
+        return this.fileBytesRead;
+    }
+
+    /**
+     * Returns the time (in nanoseconds) the parser was waiting for input, i.e. the time spent on reading (and
+     * decompressing) the file. The remaining time of the reading phases was spent on parsing. If a file is read by
+     * several threads in parallel, this is the sum of the times of all threads.
+     *
+     * @return the time the XML parser was waiting for input in nanoseconds
+     */
+    public long getInputWaitTime(){
+        return this.inputWaitTime;
+    }
+
+    /**
+     * Returns the number of nodes seen so far.
+     *
+     * @return the number of nodes seen so far
+     */
+    public long getNodesSeen(){
+        return this.nodesSeen;
+    }
+
+    /**
+     * Returns the number of nodes kept so far.
+     *
+     * @return the number of nodes kept so far
+     */
+    public long getNodesKept(){
+        return this.nodesKept;
+    }
+
+    /**
+     * Returns the number of nodes filtered so far, i.e. the nodes seen but not kept.
+     *
+     * @return the number of nodes filtered so far
+     */
+    public long getNodesFiltered(){
+        return this.nodesSeen - this.nodesKept;
+    }
+
+    /**
+     * Returns the number of ways seen so far.
+     *
+     * @return the number of ways seen so far
+     */
+    public long getWaysSeen(){
+        return this.waysSeen;
+    }
+
+    /**
+     * Returns the number of ways kept so far.
+     *
+     * @return the number of ways kept so far
+     */
+    public long getWaysKept(){
+        return this.waysKept;
+    }
+
+    /**
+     * Returns the number of ways filtered so far, i.e. the ways seen but not kept.
+     *
+     * @return the number of ways filtered so far
+     */
+    public long getWaysFiltered(){
+        return this.waysSeen - this.waysKept;
+    }
+
+    /**
+     * Returns the average number of elements (nodes and ways) seen per second since the unmarshalling started.
+     *
+     * @return the average number of elements seen per second
+     */
+    public double getElementsPerSecond(){
+        return perSecond(this.nodesSeen + this.waysSeen);
+    }
+
+    /**
+     * Returns the average number of bytes read per second since the unmarshalling started.
+     *
+     * @return the average number of bytes read per second
+     */
+    public double getBytesPerSecond(){
+        return perSecond(this.bytesRead);
+    }
+
+
+    private double perSecond(long count){
+        if(this.elapsedTime == 0)
+            return 0;
+
+        return count * (double) TimeUnit.SECONDS.toNanos(1) / this.elapsedTime;
+    }
+
+
+    @Override
+    public String toString(){
+        return "[Phase: " + this.phase + ", elapsed: " + TimeUnit.NANOSECONDS.toMillis(this.elapsedTime) +
+                " ms, bytes read: " + this.bytesRead + ", file bytes read: " + this.fileBytesRead +
+                ", input wait: " + TimeUnit.NANOSECONDS.toMillis(this.inputWaitTime) + " ms, nodes seen/kept: " +
+                this.nodesSeen + "/" + this.nodesKept + ", ways seen/kept: " + this.waysSeen + "/" + this.waysKept +
+                ", elements/s: " + Math.round(getElementsPerSecond()) + "]";
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ParseStatistics} is a {@link ParseListener} that records the duration of every {@link ParsePhase} and
+ * the latest {@link ParseProgress}, i.e. once the unmarshalling finished it provides the total counters and shows
+ * where the time was spent.
+ *
+ * <b>Note:</b> An instance is supposed to be used for one unmarshalling process only. If a phase occurs more than
+ * once, the durations are summed up.
+ *
+ * @author Oliver Kleine
+ */
+public class ParseStatistics extends ParseListener {
+
+    private final Map<ParsePhase, Long> phaseDurations = new EnumMap<>(ParsePhase.class);
+    private volatile ParseProgress progress;
+
+
+    @Override
+    public synchronized void handlePhaseFinished(ParsePhase phase, long duration){
+        Long previous = this.phaseDurations.get(phase);
+        this.phaseDurations.put(phase, previous == null ? duration : previous + duration);
+    }
+
+
+    @Override
+    public void handleProgress(ParseProgress progress){
+        this.progress = progress;
+    }
+
+    /**
+     * Returns the duration of the given {@link ParsePhase} in nanoseconds.
+     *
+     * @param phase the {@link ParsePhase} to return the duration of
+     *
+     * @return the duration of the given {@link ParsePhase} in nanoseconds or <code>0</code> if the phase did not
+     * (yet) finish
+     */
+    public synchronized long getPhaseDuration(ParsePhase phase){
+        Long duration = this.phaseDurations.get(phase);
+        return duration == null ? 0 : duration;
+    }
+
+    /**
+     * Returns the durations (in nanoseconds) of the {@link ParsePhase}s that finished so far (in the order of the
+     * {@link ParsePhase}s).
+     *
+     * @return the durations of the {@link ParsePhase}s that finished so far
+     */
+    public synchronized Map<ParsePhase, Long> getPhaseDurations(){
+        return Collections.unmodifiableMap(new EnumMap<>(this.phaseDurations));
+    }
+
+    /**
+     * Returns the latest {@link ParseProgress}, i.e. the totals once the unmarshalling finished.
+     *
+     * @return the latest {@link ParseProgress} or <code>null</code> if there was no progress reported yet
+     */
+    public ParseProgress getProgress(){
+        return this.progress;
+    }
+
+
+    @Override
+    public synchronized String toString(){
+        StringBuilder result = new StringBuilder("[Phases: [");
+        boolean first = true;
+        for(Map.Entry<ParsePhase, Long> entry : this.phaseDurations.entrySet()){
+            if(!first)
+                result.append(", ");
+
+            first = false;
+
+            result.append(entry.getKey()).append(": ").append(TimeUnit.NANOSECONDS.toMillis(entry.getValue()))
+                    .append(" ms");
+        }
+        return result.append("], Progress: ").append(this.progress).append("]").toString();
+    }
+}
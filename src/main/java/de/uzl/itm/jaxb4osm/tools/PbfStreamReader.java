@@ -0,0 +1,888 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import com.google.common.collect.ImmutableSet;
+import de.uzl.itm.jaxb4osm.jaxb.AbstractAdaptedLevel2Element;
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.MetadataMode;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.TagDictionary;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.util.LongHashSet;
+import de.uzl.itm.jaxb4osm.util.ProtobufReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static de.uzl.itm.jaxb4osm.util.ProtobufReader.getFieldNumber;
+
+/**
+ * A reader for OSM PBF files (see <a href="http://wiki.openstreetmap.org/wiki/PBF_Format">PBF Format</a>) that
+ * delivers the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s and {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s to an
+ * {@link OsmElementHandler}, i.e. the counterpart of {@link OsmStreamReader} for the binary format.
+ *
+ * The blobs of the file are read sequentially but decompressed and decoded by the workers of an
+ * {@link java.util.concurrent.ExecutorService}. The decoded elements are delivered to the
+ * {@link OsmElementHandler} in the order of the file and always by the thread calling
+ * {@link #read(java.io.InputStream, java.util.concurrent.ExecutorService)}. Only zlib compressed and uncompressed
+ * blobs are supported. Relations are skipped.
+ *
+ * @author Oliver Kleine
+ */
+class PbfStreamReader {
+
+    private static Logger log = LoggerFactory.getLogger(PbfStreamReader.class.getName());
+
+    private static final String BLOB_TYPE_HEADER = "OSMHeader";
+    private static final String BLOB_TYPE_DATA = "OSMData";
+
+    //limits given by the specification
+    private static final int MAX_BLOB_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private static final Set<String> SUPPORTED_FEATURES =
+            ImmutableSet.of("OsmSchema-V0.6", "DenseNodes", "HistoricalInformation");
+
+    //maximum number of blobs being decoded (or waiting to be delivered) at the same time
+    private static final int MAX_PENDING_BLOCKS = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final double NANO = .000000001;
+
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+    private static final String[] NO_STRINGS = new String[0];
+
+    private final OsmElementHandler handler;
+    private final WayElementFilter filter;
+    private final WayTagFilter wayTagFilter;
+
+    private boolean skipNodeElements;
+    private boolean skipWayElements;
+    private LongHashSet nodeIDs;
+    private MetadataMode metadataMode;
+
+    //counts the nodes and ways seen and kept (if the reader is monitored)
+    private ParseMonitor parseMonitor;
+
+
+    PbfStreamReader(OsmElementHandler handler, WayElementFilter filter){
+        this.handler = handler;
+        this.filter = filter;
+        this.wayTagFilter = WayElementFilter.getWayTagFilter(filter);
+        this.metadataMode = MetadataMode.EAGER;
+    }
+
+    /**
+     * Sets whether the node elements are to be skipped without being decoded (the blobs are decompressed anyway).
+     */
+    void setSkipNodeElements(boolean skipNodeElements){
+        this.skipNodeElements = skipNodeElements;
+    }
+
+    /**
+     * Sets whether the way elements are to be skipped without being decoded (the blobs are decompressed anyway).
+     */
+    void setSkipWayElements(boolean skipWayElements){
+        this.skipWayElements = skipWayElements;
+    }
+
+    /**
+     * Sets how the metadata of the elements is to be handled. As the metadata of PBF files is binary coded, there is
+     * nothing to be parsed lazily, i.e. {@link MetadataMode#LAZY} is equivalent to {@link MetadataMode#EAGER} while
+     * {@link MetadataMode#SKIP} avoids decoding the metadata at all.
+     */
+    void setMetadataMode(MetadataMode metadataMode){
+        this.metadataMode = metadataMode;
+    }
+
+    /**
+     * Restricts the node elements to be created to the given IDs (or removes the restriction if <code>null</code>).
+     * The set must not be modified while reading.
+     */
+    void setNodeIDs(LongHashSet nodeIDs){
+        this.nodeIDs = nodeIDs;
+    }
+
+    /**
+     * Sets the {@link ParseMonitor} to count the nodes and ways seen and kept with. The blobs are decoded by the
+     * workers but counted by the calling thread when their elements are delivered.
+     *
+     * @param parseMonitor the {@link ParseMonitor} to count the elements with or <code>null</code> (default)
+     */
+    void setParseMonitor(ParseMonitor parseMonitor){
+        this.parseMonitor = parseMonitor;
+    }
+
+
+    /**
+     * Reads the given {@link java.io.InputStream} until its end.
+     *
+     * @param inputStream the {@link java.io.InputStream} to read the PBF data from
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to decode the blobs with or
+     *                        <code>null</code> to decode the blobs in the calling thread
+     *
+     * @throws Exception if some error occurred
+     */
+    void read(InputStream inputStream, ExecutorService executorService) throws Exception {
+        DataInputStream dataInputStream = new DataInputStream(inputStream);
+        Deque<Future<PrimitiveBlock>> pendingBlocks = new ArrayDeque<>();
+
+        try{
+            byte[] blobHeader;
+            while((blobHeader = readBlobHeader(dataInputStream)) != null){
+                String type = null;
+                int dataSize = -1;
+
+                ProtobufReader reader = new ProtobufReader(blobHeader);
+                for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+                    switch(getFieldNumber(tag)){
+                        case 1:
+                            type = reader.readString();
+                            break;
+
+                        case 3:
+                            dataSize = reader.readInt32();
+                            break;
+
+                        default:
+                            reader.skipField(tag);
+                    }
+                }
+
+                if(dataSize < 0 || dataSize > MAX_BLOB_SIZE)
+                    throw new IOException("Invalid blob size: " + dataSize);
+
+                byte[] blob = new byte[dataSize];
+                dataInputStream.readFully(blob);
+
+                if(BLOB_TYPE_HEADER.equals(type)){
+                    readHeaderBlock(readBlobData(blob));
+                }
+
+                else if(BLOB_TYPE_DATA.equals(type)){
+                    if(executorService == null){
+                        deliver(new PrimitiveBlock(blob).call());
+                        continue;
+                    }
+
+                    pendingBlocks.add(executorService.submit(new PrimitiveBlock(blob)));
+                    if(pendingBlocks.size() >= MAX_PENDING_BLOCKS){
+                        deliver(take(pendingBlocks.poll()));
+                    }
+                }
+
+                else{
+                    log.debug("Skip blob of unknown type {}.", type);
+                }
+            }
+
+            while(!pendingBlocks.isEmpty()){
+                deliver(take(pendingBlocks.poll()));
+            }
+        }
+        finally {
+            for(Future<PrimitiveBlock> pendingBlock : pendingBlocks){
+                pendingBlock.cancel(true);
+            }
+        }
+
+        this.handler.handleEndOfDocument();
+    }
+
+
+    private static byte[] readBlobHeader(DataInputStream dataInputStream) throws IOException {
+        int firstByte = dataInputStream.read();
+        if(firstByte < 0)
+            return null;
+
+        int length = (firstByte << 24) | (dataInputStream.readUnsignedByte() << 16) |
+                (dataInputStream.readUnsignedByte() << 8) | dataInputStream.readUnsignedByte();
+
+        if(length < 0 || length > MAX_BLOB_HEADER_SIZE)
+            throw new IOException("Invalid blob header size: " + length);
+
+        byte[] result = new byte[length];
+        dataInputStream.readFully(result);
+        return result;
+    }
+
+
+    private static byte[] readBlobData(byte[] blob) throws IOException {
+        byte[] zlibData = null;
+        int rawSize = -1;
+
+        ProtobufReader reader = new ProtobufReader(blob);
+        for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+            switch(getFieldNumber(tag)){
+                case 1:
+                    return reader.readBytes();
+
+                case 2:
+                    rawSize = reader.readInt32();
+                    break;
+
+                case 3:
+                    zlibData = reader.readBytes();
+                    break;
+
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    throw new IOException("Unsupported blob compression (field " + getFieldNumber(tag) + ")!");
+
+                default:
+                    reader.skipField(tag);
+            }
+        }
+
+        if(zlibData == null)
+            throw new IOException("Blob without data!");
+
+        if(rawSize < 0 || rawSize > MAX_BLOB_SIZE)
+            throw new IOException("Invalid raw size of blob: " + rawSize);
+
+        Inflater inflater = new Inflater();
+        try{
+            inflater.setInput(zlibData);
+            byte[] result = new byte[rawSize];
+            int length = 0;
+            while(length < rawSize){
+                int count = inflater.inflate(result, length, rawSize - length);
+                if(count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Blob is shorter than its raw size!");
+
+                length += count;
+            }
+            return result;
+        }
+        catch(DataFormatException ex){
+            throw new IOException("Malformed zlib data in blob!", ex);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+
+    private void readHeaderBlock(byte[] data) throws IOException {
+        OsmElement osmElement = new OsmElement();
+        osmElement.setVersion("0.6");
+        BoundsElement boundsElement = null;
+
+        ProtobufReader reader = new ProtobufReader(data);
+        for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+            switch(getFieldNumber(tag)){
+                case 1:
+                    boundsElement = readBoundsElement(reader.readMessage());
+                    break;
+
+                case 4:
+                    String feature = reader.readString();
+                    if(!SUPPORTED_FEATURES.contains(feature))
+                        throw new IOException("Unsupported required feature: " + feature);
+                    break;
+
+                case 16:
+                    osmElement.setGenerator(reader.readString());
+                    break;
+
+                default:
+                    reader.skipField(tag);
+            }
+        }
+
+        this.handler.handleOsmElement(osmElement);
+        if(boundsElement != null){
+            this.handler.handleBoundsElement(boundsElement);
+        }
+    }
+
+
+    private static BoundsElement readBoundsElement(ProtobufReader reader) throws IOException {
+        long left = 0, right = 0, top = 0, bottom = 0;
+
+        for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+            switch(getFieldNumber(tag)){
+                case 1:
+                    left = reader.readSInt64();
+                    break;
+
+                case 2:
+                    right = reader.readSInt64();
+                    break;
+
+                case 3:
+                    top = reader.readSInt64();
+                    break;
+
+                case 4:
+                    bottom = reader.readSInt64();
+                    break;
+
+                default:
+                    reader.skipField(tag);
+            }
+        }
+
+        return new BoundsElement(NANO * bottom, NANO * top, NANO * left, NANO * right);
+    }
+
+
+    private void deliver(PrimitiveBlock primitiveBlock){
+        if(this.parseMonitor != null){
+            this.parseMonitor.addNodes(primitiveBlock.nodesSeen, primitiveBlock.nodeElements.size());
+            this.parseMonitor.addWays(primitiveBlock.waysSeen, primitiveBlock.wayElements.size());
+        }
+
+        for(NodeElement nodeElement : primitiveBlock.nodeElements){
+            this.handler.handleNodeElement(nodeElement);
+        }
+
+        for(WayElement wayElement : primitiveBlock.wayElements){
+            this.handler.handleWayElement(wayElement);
+        }
+    }
+
+
+    private static PrimitiveBlock take(Future<PrimitiveBlock> future) throws Exception {
+        try{
+            return future.get();
+        }
+        catch(ExecutionException ex){
+            if(ex.getCause() instanceof Exception)
+                throw (Exception) ex.getCause();
+
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Decodes one blob of type "OSMData" (i.e. a primitive block) into its node and way elements.
+     */
+    private class PrimitiveBlock implements Callable<PrimitiveBlock> {
+
+        private byte[] blob;
+
+        private final List<NodeElement> nodeElements = new ArrayList<>();
+        private final List<WayElement> wayElements = new ArrayList<>();
+
+        //the elements decoded (i.e. not skipped as a whole) including the filtered ones
+        private int nodesSeen;
+        private int waysSeen;
+
+        private String[] strings = NO_STRINGS;
+        private int granularity = 100;
+        private long latitudeOffset = 0;
+        private long longitudeOffset = 0;
+        private int dateGranularity = 1000;
+
+        //codes of the strings in the tag dictionary (looked up on demand) and a buffer for the tag filter
+        private int[] stringCodes;
+        private int[] tagCodes = new int[32];
+
+        //metadata of the element currently being decoded
+        private Integer version;
+        private Integer changeset;
+        private Boolean visible;
+        private Date timestamp;
+        private String user;
+        private String userID;
+
+        private PrimitiveBlock(byte[] blob){
+            this.blob = blob;
+        }
+
+        @Override
+        public PrimitiveBlock call() throws IOException {
+            ProtobufReader reader = new ProtobufReader(readBlobData(this.blob));
+            this.blob = null;
+
+            //the groups precede granularity and offsets, so they are decoded afterwards
+            List<ProtobufReader> primitiveGroups = new ArrayList<>();
+            for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+                switch(getFieldNumber(tag)){
+                    case 1:
+                        readStringTable(reader.readMessage());
+                        break;
+
+                    case 2:
+                        primitiveGroups.add(reader.readMessage());
+                        break;
+
+                    case 17:
+                        this.granularity = reader.readInt32();
+                        break;
+
+                    case 18:
+                        this.dateGranularity = reader.readInt32();
+                        break;
+
+                    case 19:
+                        this.latitudeOffset = reader.readVarint();
+                        break;
+
+                    case 20:
+                        this.longitudeOffset = reader.readVarint();
+                        break;
+
+                    default:
+                        reader.skipField(tag);
+                }
+            }
+
+            for(ProtobufReader primitiveGroup : primitiveGroups){
+                readPrimitiveGroup(primitiveGroup);
+            }
+
+            return this;
+        }
+
+
+        private void readStringTable(ProtobufReader reader) throws IOException {
+            List<String> strings = new ArrayList<>();
+            for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+                if(getFieldNumber(tag) == 1){
+                    strings.add(reader.readString());
+                }
+                else{
+                    reader.skipField(tag);
+                }
+            }
+
+            this.strings = strings.toArray(new String[strings.size()]);
+        }
+
+
+        private void readPrimitiveGroup(ProtobufReader reader) throws IOException {
+            for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+                int field = getFieldNumber(tag);
+
+                if(field == 1 && !skipNodeElements){
+                    readNode(reader.readMessage());
+                }
+                else if(field == 2 && !skipNodeElements){
+                    readDenseNodes(reader.readMessage());
+                }
+                else if(field == 3 && !skipWayElements){
+                    readWay(reader.readMessage());
+                }
+                else{
+                    reader.skipField(tag);
+                }
+            }
+        }
+
+
+        private void readNode(ProtobufReader reader) throws IOException {
+            long ID = 0, latitude = 0, longitude = 0;
+            int[] keys = NO_INTS, values = NO_INTS;
+            ProtobufReader info = null;
+
+            for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+                switch(getFieldNumber(tag)){
+                    case 1:
+                        ID = reader.readSInt64();
+                        break;
+
+                    case 2:
+                        keys = reader.readPackedInt32();
+                        break;
+
+                    case 3:
+                        values = reader.readPackedInt32();
+                        break;
+
+                    case 4:
+                        info = reader.readMessage();
+                        break;
+
+                    case 8:
+                        latitude = reader.readSInt64();
+                        break;
+
+                    case 9:
+                        longitude = reader.readSInt64();
+                        break;
+
+                    default:
+                        reader.skipField(tag);
+                }
+            }
+
+            this.nodesSeen++;
+            if(nodeIDs != null && !nodeIDs.contains(ID))
+                return;
+
+            readInfo(info);
+            NodeElement nodeElement = new NodeElement(ID, this.version, this.changeset, this.visible, this.timestamp,
+                    this.user, this.userID, getLatitude(latitude), getLongitude(longitude));
+
+            addTags(nodeElement, keys, values);
+            this.nodeElements.add(nodeElement);
+        }
+
+
+        private void readDenseNodes(ProtobufReader reader) throws IOException {
+            long[] IDs = NO_LONGS, latitudes = NO_LONGS, longitudes = NO_LONGS;
+            int[] keysValues = NO_INTS;
+            ProtobufReader denseInfo = null;
+
+            for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+                switch(getFieldNumber(tag)){
+                    case 1:
+                        IDs = reader.readPackedSInt64();
+                        break;
+
+                    case 5:
+                        denseInfo = reader.readMessage();
+                        break;
+
+                    case 8:
+                        latitudes = reader.readPackedSInt64();
+                        break;
+
+                    case 9:
+                        longitudes = reader.readPackedSInt64();
+                        break;
+
+                    case 10:
+                        keysValues = reader.readPackedInt32();
+                        break;
+
+                    default:
+                        reader.skipField(tag);
+                }
+            }
+
+            int count = IDs.length;
+            if(latitudes.length != count || longitudes.length != count)
+                throw new IOException("Inconsistent number of coordinates in dense nodes!");
+
+            //metadata (all arrays are either empty or contain one value per node)
+            int[] versions = NO_INTS, userIDs = NO_INTS, userSIDs = NO_INTS, visibles = NO_INTS;
+            long[] timestamps = NO_LONGS, changesets = NO_LONGS;
+
+            if(denseInfo != null && metadataMode != MetadataMode.SKIP){
+                for(int tag = denseInfo.readTag(); tag != 0; tag = denseInfo.readTag()){
+                    switch(getFieldNumber(tag)){
+                        case 1:
+                            versions = checkLength(denseInfo.readPackedInt32(), count);
+                            break;
+
+                        case 2:
+                            timestamps = checkLength(denseInfo.readPackedSInt64(), count);
+                            break;
+
+                        case 3:
+                            changesets = checkLength(denseInfo.readPackedSInt64(), count);
+                            break;
+
+                        case 4:
+                            userIDs = checkLength(denseInfo.readPackedSInt32(), count);
+                            break;
+
+                        case 5:
+                            userSIDs = checkLength(denseInfo.readPackedSInt32(), count);
+                            break;
+
+                        case 6:
+                            visibles = checkLength(denseInfo.readPackedInt32(), count);
+                            break;
+
+                        default:
+                            denseInfo.skipField(tag);
+                    }
+                }
+            }
+
+            //all values except for the versions and the visibility are delta coded
+            long ID = 0, latitude = 0, longitude = 0, timestamp = 0, changeset = 0;
+            int userID = 0, userSID = 0;
+            int keyValueIndex = 0;
+
+            this.nodesSeen += count;
+            for(int i = 0; i < count; i++){
+                ID += IDs[i];
+                latitude += latitudes[i];
+                longitude += longitudes[i];
+
+                if(timestamps.length > 0)
+                    timestamp += timestamps[i];
+                if(changesets.length > 0)
+                    changeset += changesets[i];
+                if(userIDs.length > 0)
+                    userID += userIDs[i];
+                if(userSIDs.length > 0)
+                    userSID += userSIDs[i];
+
+                //the tags of all nodes are contained in one array, the tags of each node are terminated by 0
+                int firstKeyValue = keyValueIndex;
+                while(keyValueIndex < keysValues.length && keysValues[keyValueIndex] != 0){
+                    keyValueIndex += 2;
+                }
+                int lastKeyValue = Math.min(keyValueIndex, keysValues.length);
+                keyValueIndex++;
+
+                if(nodeIDs != null && !nodeIDs.contains(ID))
+                    continue;
+
+                NodeElement nodeElement = new NodeElement(ID,
+                        versions.length > 0 ? versions[i] : null,
+                        changesets.length > 0 ? (int) changeset : null,
+                        visibles.length > 0 ? visibles[i] != 0 : null,
+                        timestamps.length > 0 ? new Date(timestamp * this.dateGranularity) : null,
+                        userSIDs.length > 0 ? getUser(userSID) : null,
+                        userIDs.length > 0 ? String.valueOf(userID) : null,
+                        getLatitude(latitude), getLongitude(longitude));
+
+                if(lastKeyValue > firstKeyValue){
+                    Map<String, String> tags = nodeElement.getTags();
+                    for(int j = firstKeyValue; j < lastKeyValue; j += 2){
+                        if(j + 1 >= keysValues.length)
+                            throw new IOException("Incomplete tag of dense node " + ID);
+
+                        putTag(tags, ID, keysValues[j], keysValues[j + 1]);
+                    }
+                }
+
+                this.nodeElements.add(nodeElement);
+            }
+        }
+
+
+        private void readWay(ProtobufReader reader) throws IOException {
+            long ID = 0;
+            int[] keys = NO_INTS, values = NO_INTS;
+            long[] references = NO_LONGS;
+            ProtobufReader info = null;
+
+            for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+                switch(getFieldNumber(tag)){
+                    case 1:
+                        ID = reader.readVarint();
+                        break;
+
+                    case 2:
+                        keys = reader.readPackedInt32();
+                        break;
+
+                    case 3:
+                        values = reader.readPackedInt32();
+                        break;
+
+                    case 4:
+                        info = reader.readMessage();
+                        break;
+
+                    case 8:
+                        references = reader.readPackedSInt64();
+                        break;
+
+                    default:
+                        reader.skipField(tag);
+                }
+            }
+
+            if(keys.length != values.length)
+                throw new IOException("Inconsistent number of tag keys and values of way " + ID);
+
+            this.waysSeen++;
+
+            //tag filters are evaluated on the string table, i.e. no objects are created for rejected ways
+            if(wayTagFilter != null){
+                if(this.tagCodes.length < 2 * keys.length){
+                    this.tagCodes = new int[2 * keys.length];
+                }
+
+                for(int i = 0; i < keys.length; i++){
+                    this.tagCodes[2 * i] = getStringCode(keys[i]);
+                    this.tagCodes[2 * i + 1] = getStringCode(values[i]);
+                }
+
+                if(!wayTagFilter.matchesTagCodes(this.tagCodes, 2 * keys.length))
+                    return;
+            }
+
+            readInfo(info);
+            WayElement wayElement = new WayElement(ID, this.version, this.changeset, this.visible, this.timestamp,
+                    this.user, this.userID);
+
+            long reference = 0;
+            for(int i = 0; i < references.length; i++){
+                reference += references[i];
+                references[i] = reference;
+            }
+            wayElement.addNodeReferences(references, 0, references.length);
+
+            addTags(wayElement, keys, values);
+
+            if(wayTagFilter == null && !filter.matchesCriteria(wayElement))
+                return;
+
+            this.wayElements.add(wayElement);
+        }
+
+
+        private void readInfo(ProtobufReader reader) throws IOException {
+            this.version = null;
+            this.changeset = null;
+            this.visible = null;
+            this.timestamp = null;
+            this.user = null;
+            this.userID = null;
+
+            if(reader == null || metadataMode == MetadataMode.SKIP)
+                return;
+
+            for(int tag = reader.readTag(); tag != 0; tag = reader.readTag()){
+                switch(getFieldNumber(tag)){
+                    case 1:
+                        this.version = reader.readInt32();
+                        break;
+
+                    case 2:
+                        this.timestamp = new Date(reader.readVarint() * this.dateGranularity);
+                        break;
+
+                    case 3:
+                        this.changeset = (int) reader.readVarint();
+                        break;
+
+                    case 4:
+                        this.userID = String.valueOf(reader.readInt32());
+                        break;
+
+                    case 5:
+                        this.user = getUser(reader.readInt32());
+                        break;
+
+                    case 6:
+                        this.visible = reader.readBool();
+                        break;
+
+                    default:
+                        reader.skipField(tag);
+                }
+            }
+        }
+
+
+        private void addTags(AbstractAdaptedLevel2Element element, int[] keys, int[] values) throws IOException {
+            if(keys.length != values.length)
+                throw new IOException("Inconsistent number of tag keys and values of element " + element.getID());
+
+            if(keys.length == 0)
+                return;
+
+            Map<String, String> tags = element.getTags();
+            for(int i = 0; i < keys.length; i++){
+                putTag(tags, element.getID(), keys[i], values[i]);
+            }
+        }
+
+
+        private void putTag(Map<String, String> tags, long ID, int key, int value) throws IOException {
+            if(tags.put(getString(key), getString(value)) != null){
+                log.warn("Element with ID {} contains multiple tags with key {}!", ID, getString(key));
+            }
+        }
+
+
+        private String getString(int index) throws IOException {
+            if(index < 0 || index >= this.strings.length)
+                throw new IOException("Invalid index of string table: " + index);
+
+            return this.strings[index];
+        }
+
+
+        private String getUser(int index) throws IOException {
+            //index 0 is always the empty string, i.e. there is no user name
+            return index == 0 ? null : getString(index);
+        }
+
+
+        private int getStringCode(int index) throws IOException {
+            if(this.stringCodes == null){
+                this.stringCodes = new int[this.strings.length];
+                Arrays.fill(this.stringCodes, Integer.MIN_VALUE);
+            }
+
+            String string = getString(index);
+            if(this.stringCodes[index] == Integer.MIN_VALUE){
+                this.stringCodes[index] = TagDictionary.lookup(string);
+            }
+
+            return this.stringCodes[index];
+        }
+
+
+        private double getLatitude(long latitude){
+            return NANO * (this.latitudeOffset + (long) this.granularity * latitude);
+        }
+
+
+        private double getLongitude(long longitude){
+            return NANO * (this.longitudeOffset + (long) this.granularity * longitude);
+        }
+    }
+
+
+    private static int[] checkLength(int[] values, int length) throws IOException {
+        if(values.length != 0 && values.length != length)
+            throw new IOException("Inconsistent number of values in dense info!");
+
+        return values;
+    }
+
+
+    private static long[] checkLength(long[] values, int length) throws IOException {
+        if(values.length != 0 && values.length != length)
+            throw new IOException("Inconsistent number of values in dense info!");
+
+        return values;
+    }
+}
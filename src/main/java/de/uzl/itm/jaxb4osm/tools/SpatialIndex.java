@@ -0,0 +1,576 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.util.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A spatial index over the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s and
+ * {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s of an {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to answer range
+ * queries (given as {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement}) and k-nearest-node queries without scanning all
+ * elements.
+ *
+ * The index is a uniform grid over the extent of the nodes with about 8 nodes per cell. The nodes are kept in
+ * primitive arrays grouped by cell. Every way is assigned to the cells crossed by its segments (i.e. the lines
+ * between its consecutive nodes), i.e. long diagonal ways occupy a number of cells proportional to their length
+ * instead of the area of their bounding box. Range queries for ways return the ways with at least one segment
+ * intersecting the given bounds.
+ *
+ * <b>Note:</b> The index is a snapshot of the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} at the time of its
+ * creation, i.e. it does not reflect subsequent modifications. Instances are immutable and thus thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class SpatialIndex {
+
+    private static final int NODES_PER_CELL = 8;
+
+    private final OsmElement osmElement;
+
+    //the grid
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double cellHeight;
+    private final double cellWidth;
+    private final int rows;
+    private final int columns;
+
+    //the nodes grouped by cell, i.e. the nodes of cell c are at the positions nodeCellStart[c] to nodeCellStart[c+1]
+    private final int[] nodeCellStart;
+    private final long[] nodeIDs;
+    private final double[] nodeLatitudes;
+    private final double[] nodeLongitudes;
+
+    //the ways and the coordinates of their (known) nodes, i.e. the nodes of way w are at the positions
+    //wayPointStart[w] to wayPointStart[w+1], and the ways (indexes) per cell
+    private final long[] wayIDs;
+    private final int[] wayPointStart;
+    private final double[] pointLatitudes;
+    private final double[] pointLongitudes;
+    private final int[] wayCellStart;
+    private final int[] wayCellEntries;
+
+
+    private SpatialIndex(OsmElement osmElement){
+        this.osmElement = osmElement;
+
+        List<NodeElement> nodeElements = osmElement.getNodeElements();
+        int nodeCount = nodeElements.size();
+
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        for(NodeElement nodeElement : nodeElements){
+            minLat = Math.min(minLat, nodeElement.getLatitude());
+            maxLat = Math.max(maxLat, nodeElement.getLatitude());
+            minLon = Math.min(minLon, nodeElement.getLongitude());
+            maxLon = Math.max(maxLon, nodeElement.getLongitude());
+        }
+        if(nodeCount == 0){
+            minLat = maxLat = minLon = maxLon = 0;
+        }
+
+        //cells that are roughly square in meters
+        double latSpan = Math.max(maxLat - minLat, 1e-7);
+        double lonSpan = Math.max((maxLon - minLon) * Math.cos(Math.toRadians((minLat + maxLat) / 2)), 1e-7);
+        int cells = Math.max(1, nodeCount / NODES_PER_CELL);
+        this.rows = (int) Math.max(1, Math.min(cells, Math.round(Math.sqrt(cells * latSpan / lonSpan))));
+        this.columns = Math.max(1, cells / this.rows);
+
+        this.minLatitude = minLat;
+        this.minLongitude = minLon;
+        //slightly larger cells to put the maximum coordinates into the last row (column)
+        this.cellHeight = Math.max(maxLat - minLat, 1e-7) / this.rows * (1 + 1e-9);
+        this.cellWidth = Math.max(maxLon - minLon, 1e-7) / this.columns * (1 + 1e-9);
+
+        //group the nodes by cell (counting sort)
+        int[] nodeCells = new int[nodeCount];
+        this.nodeCellStart = new int[this.rows * this.columns + 1];
+        for(int i = 0; i < nodeCount; i++){
+            NodeElement nodeElement = nodeElements.get(i);
+            nodeCells[i] = getCell(getRow(nodeElement.getLatitude()), getColumn(nodeElement.getLongitude()));
+            this.nodeCellStart[nodeCells[i] + 1]++;
+        }
+        for(int cell = 0; cell < this.rows * this.columns; cell++){
+            this.nodeCellStart[cell + 1] += this.nodeCellStart[cell];
+        }
+
+        this.nodeIDs = new long[nodeCount];
+        this.nodeLatitudes = new double[nodeCount];
+        this.nodeLongitudes = new double[nodeCount];
+        int[] nextPosition = Arrays.copyOf(this.nodeCellStart, this.nodeCellStart.length - 1);
+        for(int i = 0; i < nodeCount; i++){
+            NodeElement nodeElement = nodeElements.get(i);
+            int position = nextPosition[nodeCells[i]]++;
+            this.nodeIDs[position] = nodeElement.getID();
+            this.nodeLatitudes[position] = nodeElement.getLatitude();
+            this.nodeLongitudes[position] = nodeElement.getLongitude();
+        }
+
+        //collect the coordinates of the ways (unknown nodes are skipped, ways without any known node are not indexed)
+        List<WayElement> wayElements = osmElement.getWayElements();
+        long[] ids = new long[wayElements.size()];
+        int[] pointStart = new int[wayElements.size() + 1];
+        int pointCount = 0;
+        for(WayElement wayElement : wayElements){
+            pointCount += wayElement.getNodeReferenceCount();
+        }
+        double[] latitudes = new double[pointCount];
+        double[] longitudes = new double[pointCount];
+
+        int wayCount = 0;
+        pointCount = 0;
+        for(WayElement wayElement : wayElements){
+            for(int i = 0; i < wayElement.getNodeReferenceCount(); i++){
+                NodeElement nodeElement = osmElement.getNodeElement(wayElement.getNodeReference(i));
+                if(nodeElement != null){
+                    latitudes[pointCount] = nodeElement.getLatitude();
+                    longitudes[pointCount] = nodeElement.getLongitude();
+                    pointCount++;
+                }
+            }
+
+            if(pointCount > pointStart[wayCount]){
+                ids[wayCount++] = wayElement.getID();
+                pointStart[wayCount] = pointCount;
+            }
+        }
+        this.wayIDs = Arrays.copyOf(ids, wayCount);
+        this.wayPointStart = Arrays.copyOf(pointStart, wayCount + 1);
+        this.pointLatitudes = Arrays.copyOf(latitudes, pointCount);
+        this.pointLongitudes = Arrays.copyOf(longitudes, pointCount);
+
+        //assign the ways to the cells crossed by their segments (counting sort)
+        this.wayCellStart = new int[this.rows * this.columns + 1];
+        long entryCount = 0;
+        int[] wayCells = new int[16];
+        for(int way = 0; way < wayCount; way++){
+            int cellCount = getCells(way, wayCells);
+            if(cellCount > wayCells.length){
+                wayCells = new int[cellCount];
+                cellCount = getCells(way, wayCells);
+            }
+            for(int i = 0; i < cellCount; i++){
+                this.wayCellStart[wayCells[i] + 1]++;
+            }
+
+            entryCount += cellCount;
+            if(entryCount > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("Too many ways to be indexed!");
+        }
+        for(int cell = 0; cell < this.rows * this.columns; cell++){
+            this.wayCellStart[cell + 1] += this.wayCellStart[cell];
+        }
+
+        this.wayCellEntries = new int[this.wayCellStart[this.rows * this.columns]];
+        nextPosition = Arrays.copyOf(this.wayCellStart, this.wayCellStart.length - 1);
+        for(int way = 0; way < wayCount; way++){
+            int cellCount = getCells(way, wayCells);
+            for(int i = 0; i < cellCount; i++){
+                this.wayCellEntries[nextPosition[wayCells[i]]++] = way;
+            }
+        }
+    }
+
+
+    //writes the (distinct) cells crossed by the segments of the given way into the given array and returns their
+    //number (if the array is too small, only an upper bound of the number is returned)
+    private int getCells(int way, int[] cells){
+        int count = 0;
+        int first = this.wayPointStart[way];
+        int last = this.wayPointStart[way + 1] - 1;
+
+        //a way with a single (known) node is a point
+        for(int i = first; i <= Math.max(first, last - 1); i++){
+            int j = Math.min(i + 1, last);
+            double lat1 = Math.min(this.pointLatitudes[i], this.pointLatitudes[j]);
+            double lat2 = Math.max(this.pointLatitudes[i], this.pointLatitudes[j]);
+
+            //the cells of every row crossed by the segment, i.e. the columns between its longitudes at the borders
+            //of the row (widened by a tiny margin against rounding errors)
+            int maxRow = getRow(lat2 + this.cellHeight * 1e-9);
+            for(int row = getRow(lat1 - this.cellHeight * 1e-9); row <= maxRow; row++){
+                double lon1 = this.pointLongitudes[i];
+                double lon2 = this.pointLongitudes[j];
+                if(lat1 < lat2){
+                    lon1 = getLongitude(i, j, Math.max(lat1, this.minLatitude + row * this.cellHeight));
+                    lon2 = getLongitude(i, j, Math.min(lat2, this.minLatitude + (row + 1) * this.cellHeight));
+                }
+
+                int maxColumn = getColumn(Math.max(lon1, lon2) + this.cellWidth * 1e-9);
+                for(int column = getColumn(Math.min(lon1, lon2) - this.cellWidth * 1e-9); column <= maxColumn;
+                        column++){
+                    int cell = getCell(row, column);
+
+                    //consecutive segments mostly share their cells with the previous ones
+                    boolean known = false;
+                    for(int k = Math.min(count, cells.length) - 1; k >= Math.max(0, count - 4) && !known; k--){
+                        known = cells[k] == cell;
+                    }
+                    if(!known){
+                        if(count < cells.length){
+                            cells[count] = cell;
+                        }
+                        count++;
+                    }
+                }
+            }
+        }
+
+        if(count > cells.length)
+            return count;
+
+        //remove the remaining duplicates
+        Arrays.sort(cells, 0, count);
+        int distinct = 0;
+        for(int i = 0; i < count; i++){
+            if(distinct == 0 || cells[distinct - 1] != cells[i]){
+                cells[distinct++] = cells[i];
+            }
+        }
+        return distinct;
+    }
+
+
+    //the longitude of the (non-horizontal) segment between the given points at the given latitude
+    private double getLongitude(int point1, int point2, double latitude){
+        double lat1 = this.pointLatitudes[point1];
+        double lat2 = this.pointLatitudes[point2];
+        double lon1 = this.pointLongitudes[point1];
+        double lon2 = this.pointLongitudes[point2];
+
+        double fraction = Math.max(0, Math.min(1, (latitude - lat1) / (lat2 - lat1)));
+        return lon1 + (lon2 - lon1) * fraction;
+    }
+
+
+    /**
+     * Creates a new {@link SpatialIndex} over the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s and
+     * {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s currently contained in the given
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}.
+     *
+     * @param osmElement the {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} to be indexed
+     *
+     * @return a new {@link SpatialIndex} over the given {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement}
+     */
+    public static SpatialIndex create(OsmElement osmElement){
+        return new SpatialIndex(osmElement);
+    }
+
+    /**
+     * Returns the IDs of the nodes within the given bounds (including the borders).
+     *
+     * @param bounds the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} to look for nodes in
+     *
+     * @return the IDs of the nodes within the given bounds (in no particular order)
+     */
+    public long[] getNodeIDs(BoundsElement bounds){
+        long[] result = new long[16];
+        int count = 0;
+
+        if(!intersectsGrid(bounds))
+            return new long[0];
+
+        int maxRow = getRow(bounds.getMaxLatitude());
+        int maxColumn = getColumn(bounds.getMaxLongitude());
+        for(int row = getRow(bounds.getMinLatitude()); row <= maxRow; row++){
+            for(int column = getColumn(bounds.getMinLongitude()); column <= maxColumn; column++){
+                int cell = getCell(row, column);
+                for(int i = this.nodeCellStart[cell]; i < this.nodeCellStart[cell + 1]; i++){
+                    if(contains(bounds, this.nodeLatitudes[i], this.nodeLongitudes[i])){
+                        if(count == result.length){
+                            result = Arrays.copyOf(result, count << 1);
+                        }
+                        result[count++] = this.nodeIDs[i];
+                    }
+                }
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s within the given bounds (including the borders).
+     *
+     * @param bounds the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} to look for nodes in
+     *
+     * @return the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s within the given bounds (in no particular order)
+     */
+    public List<NodeElement> getNodeElements(BoundsElement bounds){
+        long[] ids = getNodeIDs(bounds);
+        List<NodeElement> result = new ArrayList<>(ids.length);
+        for(long id : ids){
+            result.add(this.osmElement.getNodeElement(id));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of the ways with at least one segment intersecting the given bounds (including the borders).
+     * This includes all ways with at least one node within the given bounds and the ways crossing the bounds
+     * without any node inside. Nodes of the ways that are not contained in the indexed
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement} are skipped.
+     *
+     * @param bounds the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} to look for ways in
+     *
+     * @return the IDs of the ways intersecting the given bounds (in no particular order)
+     */
+    public long[] getWayIDs(BoundsElement bounds){
+        long[] result = new long[16];
+        int count = 0;
+
+        if(!intersectsGrid(bounds))
+            return new long[0];
+
+        //a way is contained in every cell crossed by its segments, i.e. it is checked only once
+        LongHashSet checkedWays = new LongHashSet();
+        int maxRow = getRow(bounds.getMaxLatitude());
+        int maxColumn = getColumn(bounds.getMaxLongitude());
+        for(int row = getRow(bounds.getMinLatitude()); row <= maxRow; row++){
+            for(int column = getColumn(bounds.getMinLongitude()); column <= maxColumn; column++){
+                int cell = getCell(row, column);
+                for(int i = this.wayCellStart[cell]; i < this.wayCellStart[cell + 1]; i++){
+                    int way = this.wayCellEntries[i];
+                    if(checkedWays.add(way) && intersects(way, bounds)){
+                        if(count == result.length){
+                            result = Arrays.copyOf(result, count << 1);
+                        }
+                        result[count++] = this.wayIDs[way];
+                    }
+                }
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s with at least one segment intersecting the given
+     * bounds (see {@link #getWayIDs(de.uzl.itm.jaxb4osm.jaxb.BoundsElement)}).
+     *
+     * @param bounds the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} to look for ways in
+     *
+     * @return the {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s intersecting the given bounds (in no particular
+     * order)
+     */
+    public List<WayElement> getWayElements(BoundsElement bounds){
+        long[] ids = getWayIDs(bounds);
+        List<WayElement> result = new ArrayList<>(ids.length);
+        for(long id : ids){
+            result.add(this.osmElement.getWayElement(id));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of the (up to) <code>k</code> nodes nearest to the given position. The distances are
+     * computed in an equirectangular projection at the latitude of the given position, which is accurate for
+     * distances up to some kilometers.
+     *
+     * @param latitude the latitude of the position
+     * @param longitude the longitude of the position
+     * @param k the maximum number of nodes to be returned
+     *
+     * @return the IDs of the (up to) <code>k</code> nodes nearest to the given position, ordered by ascending
+     * distance
+     */
+    public long[] getNearestNodeIDs(double latitude, double longitude, int k){
+        if(k <= 0 || this.nodeIDs.length == 0)
+            return new long[0];
+
+        double scale = Math.cos(Math.toRadians(latitude));
+
+        //the best candidates so far ordered by ascending (squared) distance
+        int[] candidates = new int[k];
+        double[] distances = new double[k];
+        int count = 0;
+
+        int centerRow = getRow(latitude);
+        int centerColumn = getColumn(longitude);
+        for(int ring = 0; ; ring++){
+            int minRow = Math.max(0, centerRow - ring);
+            int maxRow = Math.min(this.rows - 1, centerRow + ring);
+            int minColumn = Math.max(0, centerColumn - ring);
+            int maxColumn = Math.min(this.columns - 1, centerColumn + ring);
+
+            for(int row = minRow; row <= maxRow; row++){
+                boolean border = row == centerRow - ring || row == centerRow + ring;
+                for(int column = minColumn; column <= maxColumn; column++){
+                    //only the cells of the current ring
+                    if(!border && column != centerColumn - ring && column != centerColumn + ring)
+                        continue;
+
+                    int cell = getCell(row, column);
+                    for(int i = this.nodeCellStart[cell]; i < this.nodeCellStart[cell + 1]; i++){
+                        double dLat = this.nodeLatitudes[i] - latitude;
+                        double dLon = (this.nodeLongitudes[i] - longitude) * scale;
+                        double distance = dLat * dLat + dLon * dLon;
+                        if(count < k || distance < distances[count - 1]){
+                            int position = count < k ? count++ : count - 1;
+                            while(position > 0 && distances[position - 1] > distance){
+                                candidates[position] = candidates[position - 1];
+                                distances[position] = distances[position - 1];
+                                position--;
+                            }
+                            candidates[position] = i;
+                            distances[position] = distance;
+                        }
+                    }
+                }
+            }
+
+            //all remaining nodes are outside of the cells covered so far
+            double bound = Double.POSITIVE_INFINITY;
+            if(minRow > 0)
+                bound = Math.min(bound, latitude - (this.minLatitude + minRow * this.cellHeight));
+            if(maxRow < this.rows - 1)
+                bound = Math.min(bound, this.minLatitude + (maxRow + 1) * this.cellHeight - latitude);
+            if(minColumn > 0)
+                bound = Math.min(bound, (longitude - (this.minLongitude + minColumn * this.cellWidth)) * scale);
+            if(maxColumn < this.columns - 1)
+                bound = Math.min(bound, (this.minLongitude + (maxColumn + 1) * this.cellWidth - longitude) * scale);
+
+            if(bound == Double.POSITIVE_INFINITY || (count == k && distances[k - 1] <= bound * bound))
+                break;
+        }
+
+        long[] result = new long[count];
+        for(int i = 0; i < count; i++){
+            result[i] = this.nodeIDs[candidates[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s of
+     * {@link #getNearestNodeIDs(double, double, int)}.
+     *
+     * @param latitude the latitude of the position
+     * @param longitude the longitude of the position
+     * @param k the maximum number of nodes to be returned
+     *
+     * @return the (up to) <code>k</code> {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s nearest to the given
+     * position, ordered by ascending distance
+     */
+    public List<NodeElement> getNearestNodeElements(double latitude, double longitude, int k){
+        long[] ids = getNearestNodeIDs(latitude, longitude, k);
+        List<NodeElement> result = new ArrayList<>(ids.length);
+        for(long id : ids){
+            result.add(this.osmElement.getNodeElement(id));
+        }
+        return result;
+    }
+
+
+    private boolean intersectsGrid(BoundsElement bounds){
+        return bounds.getMinLatitude() <= bounds.getMaxLatitude()
+                && bounds.getMinLongitude() <= bounds.getMaxLongitude()
+                && bounds.getMaxLatitude() >= this.minLatitude
+                && bounds.getMinLatitude() <= this.minLatitude + this.rows * this.cellHeight
+                && bounds.getMaxLongitude() >= this.minLongitude
+                && bounds.getMinLongitude() <= this.minLongitude + this.columns * this.cellWidth;
+    }
+
+
+    private boolean intersects(int way, BoundsElement bounds){
+        int first = this.wayPointStart[way];
+        int last = this.wayPointStart[way + 1] - 1;
+        for(int i = first; i <= Math.max(first, last - 1); i++){
+            int j = Math.min(i + 1, last);
+            if(intersects(bounds, this.pointLatitudes[i], this.pointLongitudes[i], this.pointLatitudes[j],
+                    this.pointLongitudes[j])){
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    //returns true if the segment between the given points intersects the given bounds (including the borders),
+    //i.e. the segment is clipped to the borders one after another (Liang-Barsky)
+    static boolean intersects(BoundsElement bounds, double lat1, double lon1, double lat2, double lon2){
+        if(contains(bounds, lat1, lon1) || contains(bounds, lat2, lon2))
+            return true;
+
+        double start = 0, end = 1;
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        double[] p = {-dLat, dLat, -dLon, dLon};
+        double[] q = {lat1 - bounds.getMinLatitude(), bounds.getMaxLatitude() - lat1,
+                lon1 - bounds.getMinLongitude(), bounds.getMaxLongitude() - lon1};
+        for(int i = 0; i < 4; i++){
+            if(p[i] == 0){
+                //parallel to the border, i.e. either completely outside or not restricted by this border
+                if(q[i] < 0)
+                    return false;
+            }
+            else{
+                double fraction = q[i] / p[i];
+                if(p[i] < 0){
+                    start = Math.max(start, fraction);
+                }
+                else{
+                    end = Math.min(end, fraction);
+                }
+                if(start > end)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static boolean contains(BoundsElement bounds, double latitude, double longitude){
+        return latitude >= bounds.getMinLatitude() && latitude <= bounds.getMaxLatitude()
+                && longitude >= bounds.getMinLongitude() && longitude <= bounds.getMaxLongitude();
+    }
+
+
+    //the row of the given latitude (clamped to the grid)
+    private int getRow(double latitude){
+        int row = (int) Math.floor((latitude - this.minLatitude) / this.cellHeight);
+        return Math.max(0, Math.min(this.rows - 1, row));
+    }
+
+
+    //the column of the given longitude (clamped to the grid)
+    private int getColumn(double longitude){
+        int column = (int) Math.floor((longitude - this.minLongitude) / this.cellWidth);
+        return Math.max(0, Math.min(this.columns - 1, column));
+    }
+
+
+    private int getCell(int row, int column){
+        return row * this.columns + column;
+    }
+}
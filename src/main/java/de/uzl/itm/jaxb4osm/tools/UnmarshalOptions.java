@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.MetadataMode;
+import de.uzl.itm.jaxb4osm.store.NodeElementStore;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The options for unmarshalling OSM files with {@link OsmUnmarshaller#unmarshal(java.io.File, UnmarshalOptions)}.
+ * All setters return the instance itself, i.e. the calls can be chained, e.g.
+ *
+ * <pre>
+ * OsmElement osmElement = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create()
+ *         .setFilter(WayTagFilter.STREETS)
+ *         .setRemoveUnreferencedNodes(true)
+ *         .setMetadataMode(MetadataMode.SKIP));
+ * </pre>
+ *
+ * Options that are not set keep their defaults, i.e. all ways are kept, unreferenced nodes are not removed, the
+ * nodes are kept in a new {@link de.uzl.itm.jaxb4osm.store.HashNodeElementStore}, the metadata is parsed eagerly and
+ * the file is parsed sequentially.
+ *
+ * <b>Note:</b> Instances of {@link UnmarshalOptions} are not thread-safe. An instance may be used for several
+ * files unless a {@link de.uzl.itm.jaxb4osm.store.NodeElementStore} was set (which is filled by the first file).
+ *
+ * @author Oliver Kleine
+ */
+public class UnmarshalOptions {
+
+    private WayElementFilter filter;
+    private boolean removeUnreferencedNodes;
+    private NodeElementStore nodeElementStore;
+    private MetadataMode metadataMode;
+    private ExecutorService executorService;
+    private ForkJoinPool forkJoinPool;
+    private BoundsElement bounds;
+    private boolean completeWays;
+    private boolean crossingWays;
+    private ParseListener listener;
+
+
+    private UnmarshalOptions(){
+        this.filter = WayElementFilter.ANY_WAY;
+        this.metadataMode = MetadataMode.EAGER;
+    }
+
+    /**
+     * Creates a new instance of {@link UnmarshalOptions} with the default options.
+     *
+     * @return a new instance of {@link UnmarshalOptions} with the default options
+     */
+    public static UnmarshalOptions create(){
+        return new UnmarshalOptions();
+    }
+
+    /**
+     * Sets the {@link WayElementFilter} to be applied (default is {@link WayElementFilter#ANY_WAY}).
+     *
+     * @param filter the {@link WayElementFilter} to be applied
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setFilter(WayElementFilter filter){
+        if(filter == null)
+            throw new IllegalArgumentException("Filter must not be null (use WayElementFilter.ANY_WAY)!");
+
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Sets whether only the nodes referenced by at least one of the ways matching the filter are to be kept
+     * (default is <code>false</code>). If so, the file is read twice. The first pass only reads the ways matching
+     * the filter and the second pass only creates the nodes referenced by these ways, i.e. the memory consumption
+     * scales with the filtered result and not with the size of the file.
+     *
+     * @param removeUnreferencedNodes <code>true</code> if only the nodes referenced by at least one of the ways
+     *                                matching the filter are to be kept or <code>false</code> otherwise
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setRemoveUnreferencedNodes(boolean removeUnreferencedNodes){
+        this.removeUnreferencedNodes = removeUnreferencedNodes;
+        return this;
+    }
+
+    /**
+     * Sets the (empty) {@link de.uzl.itm.jaxb4osm.store.NodeElementStore} to be filled with the nodes (default is
+     * a new {@link de.uzl.itm.jaxb4osm.store.HashNodeElementStore} for every file).
+     *
+     * @param nodeElementStore the (empty) {@link de.uzl.itm.jaxb4osm.store.NodeElementStore} to be filled with
+     *                         the nodes or <code>null</code> for the default
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setNodeElementStore(NodeElementStore nodeElementStore){
+        this.nodeElementStore = nodeElementStore;
+        return this;
+    }
+
+    /**
+     * Sets how the metadata attributes of the nodes and ways (<code>version</code>, <code>changeset</code>,
+     * <code>visible</code>, <code>timestamp</code>, <code>user</code>, and <code>uid</code>) are handled (default is
+     * {@link de.uzl.itm.jaxb4osm.jaxb.MetadataMode#EAGER}), i.e. applications that do not need these attributes save
+     * the time to parse them (and the memory to keep them).
+     *
+     * @param metadataMode the {@link de.uzl.itm.jaxb4osm.jaxb.MetadataMode} to be applied
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setMetadataMode(MetadataMode metadataMode){
+        if(metadataMode == null)
+            throw new IllegalArgumentException("Metadata mode must not be null!");
+
+        this.metadataMode = metadataMode;
+        return this;
+    }
+
+    /**
+     * Sets the {@link java.util.concurrent.ExecutorService} to decompress the blocks of compressed files with
+     * (while the blocks decompressed before are parsed). By default, compressed files are decompressed by the
+     * {@link de.uzl.itm.jaxb4osm.util.SharedThreadPool}, i.e. files unmarshalled concurrently share its threads.
+     *
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to decompress compressed files with
+     *                        or <code>null</code> for the default
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setExecutorService(ExecutorService executorService){
+        this.executorService = executorService;
+        return this;
+    }
+
+    /**
+     * Sets the {@link java.util.concurrent.ForkJoinPool} to parse uncompressed files with (default is
+     * <code>null</code>, i.e. files are parsed sequentially). The file is split into byte ranges that are parsed in
+     * parallel and the partial results are merged in the order of the ranges, i.e. the result is the same as if
+     * the file was parsed sequentially (including the rules of
+     * {@link de.uzl.itm.jaxb4osm.jaxb.OsmElement#addWayElement(de.uzl.itm.jaxb4osm.jaxb.WayElement)} for duplicate
+     * IDs).
+     *
+     * <b>Note:</b> The file is expected to be UTF-8 encoded (which is the encoding used by OpenStreetMap).
+     * Compressed files cannot be split into byte ranges, i.e. they are parsed sequentially while the workers of the
+     * given {@link java.util.concurrent.ForkJoinPool} decompress the blocks of the file in parallel (unless an
+     * {@link java.util.concurrent.ExecutorService} was set). Files clipped to bounds are parsed sequentially as well.
+     *
+     * @param forkJoinPool the {@link java.util.concurrent.ForkJoinPool} to parse the file with or <code>null</code>
+     *                     to parse the file sequentially
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setForkJoinPool(ForkJoinPool forkJoinPool){
+        this.forkJoinPool = forkJoinPool;
+        return this;
+    }
+
+    /**
+     * Sets the bounds to clip the elements to (default is <code>null</code>, i.e. no clipping). Only the nodes within
+     * the bounds and the ways matching the filter and referencing at least one of these nodes are kept, i.e.
+     * neither the memory consumption nor the number of created objects depends on the size of the file but on the
+     * clipped area. The bounds of the result are the given bounds. Ways crossing the bounds without any node within
+     * the bounds are only kept if {@link #setCrossingWays(boolean)} is set.
+     *
+     * If <code>completeWays</code> is <code>true</code>, the nodes outside of the bounds that are referenced by the
+     * clipped ways are added as well, i.e. all ways are complete. This requires a second pass over the file (reading
+     * only these nodes). Otherwise the ways keep their references to nodes outside of the bounds but the
+     * corresponding {@link de.uzl.itm.jaxb4osm.jaxb.NodeElement}s are not contained in the result.
+     *
+     * @param bounds the {@link de.uzl.itm.jaxb4osm.jaxb.BoundsElement} to clip the elements to or <code>null</code>
+     *               for no clipping
+     * @param completeWays <code>true</code> if the nodes outside of the bounds that are referenced by the clipped
+     *                     ways are to be added or <code>false</code> otherwise
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setBounds(BoundsElement bounds, boolean completeWays){
+        this.bounds = bounds;
+        this.completeWays = completeWays;
+        return this;
+    }
+
+    /**
+     * Sets whether the ways crossing the bounds (see {@link #setBounds(BoundsElement, boolean)}) without any node
+     * within the bounds are to be kept as well (default is <code>false</code>). A way crosses the bounds if the line
+     * between two of its consecutive nodes intersects the bounds. This requires to keep the coordinates of all nodes
+     * outside of the bounds while reading (see {@link OsmStreamReader#setBounds(BoundsElement, boolean)}), i.e. the
+     * memory consumption depends on the size of the file.
+     *
+     * @param crossingWays <code>true</code> if the ways crossing the bounds are to be kept or <code>false</code>
+     *                     otherwise
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setCrossingWays(boolean crossingWays){
+        this.crossingWays = crossingWays;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ParseListener} to be notified about the progress (default is <code>null</code>). The listener
+     * is notified by {@link OsmUnmarshaller#unmarshal(java.io.File, UnmarshalOptions)} (whether the file is read
+     * sequentially or in parallel) and {@link OsmPbfUnmarshaller#unmarshal(java.io.File, UnmarshalOptions)}, i.e.
+     * by all methods taking {@link UnmarshalOptions}.
+     *
+     * @param listener the {@link ParseListener} to be notified about the progress or <code>null</code> if there is
+     *                 none
+     *
+     * @return this instance of {@link UnmarshalOptions}
+     */
+    public UnmarshalOptions setParseListener(ParseListener listener){
+        this.listener = listener;
+        return this;
+    }
+
+
+    WayElementFilter getFilter(){
+        return this.filter;
+    }
+
+    boolean isRemoveUnreferencedNodes(){
+        return this.removeUnreferencedNodes;
+    }
+
+    NodeElementStore getNodeElementStore(){
+        return this.nodeElementStore;
+    }
+
+    MetadataMode getMetadataMode(){
+        return this.metadataMode;
+    }
+
+    ExecutorService getExecutorService(){
+        return this.executorService;
+    }
+
+    ForkJoinPool getForkJoinPool(){
+        return this.forkJoinPool;
+    }
+
+    BoundsElement getBounds(){
+        return this.bounds;
+    }
+
+    boolean isCompleteWays(){
+        return this.completeWays;
+    }
+
+    boolean isCrossingWays(){
+        return this.crossingWays;
+    }
+
+    ParseListener getParseListener(){
+        return this.listener;
+    }
+}
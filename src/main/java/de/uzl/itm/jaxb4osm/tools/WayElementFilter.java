@@ -27,13 +27,10 @@ package de.uzl.itm.jaxb4osm.tools;
 
 import de.uzl.itm.jaxb4osm.jaxb.WayElement;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * A {@link WayElementFilter} is used to check whether a given {@link WayElement} is to be further processed or ignored
- * for the (un-)marshalling process.
+ * for the (un-)marshalling process. Filters that only depend on the tags of a way are preferably declared as
+ * {@link WayTagFilter} which is evaluated before the {@link WayElement} is created.
  *
  * @author Oliver Kleine
  */
@@ -42,17 +39,14 @@ public abstract class WayElementFilter {
     /**
      * A predefined {@link WayElementFilter} to filter for all streets, i.e. roads that are allowed
      * to be used by cars, i.e. have the "highway" tag present.
+     *
+     * @deprecated use {@link WayTagFilter#ALL_STREETS} which can be combined with other {@link WayTagFilter}s
      */
-    public static final WayElementFilter ALL_STREETS = new WayElementFilter() {
-
-        private Set<String> highwayValues = new HashSet<>(Arrays.asList(
-                "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential", "service",
-                "motorway_link", "trunk_link", "primary_link", "secondary_link", "tertiary_link", "living_street"
-        ));
-
+    @Deprecated
+    public static final WayElementFilter ALL_STREETS = new PredefinedTagFilter() {
         @Override
-        public boolean matchesCriteria(WayElement wayElement) {
-            return highwayValues.contains(wayElement.getTagValue("highway"));
+        WayTagFilter getWayTagFilter() {
+            return WayTagFilter.ALL_STREETS;
         }
     };
 
@@ -60,33 +54,28 @@ public abstract class WayElementFilter {
     /**
      * A predefined {@link WayElementFilter} to filter for streets. This filter is similar to ALL_STREETS but does not
      * allow OSM highways classified as "service" or "living_street".
+     *
+     * @deprecated use {@link WayTagFilter#STREETS} which can be combined with other {@link WayTagFilter}s
      */
-    public static final WayElementFilter STREETS = new WayElementFilter() {
-
-        private Set<String> highwayValues = new HashSet<>(Arrays.asList(
-                "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
-                "motorway_link", "trunk_link", "primary_link", "secondary_link", "tertiary_link"
-        ));
-
+    @Deprecated
+    public static final WayElementFilter STREETS = new PredefinedTagFilter() {
         @Override
-        public boolean matchesCriteria(WayElement wayElement) {
-            return highwayValues.contains(wayElement.getTagValue("highway"));
+        WayTagFilter getWayTagFilter() {
+            return WayTagFilter.STREETS;
         }
     };
 
     /**
      * A predefined {@link WayElementFilter} to filter for larger streets, i.e. "motorway", "trunk", "primary",
      * "secondary", "tertiary", "unclassified"
+     *
+     * @deprecated use {@link WayTagFilter#HIGHWAYS} which can be combined with other {@link WayTagFilter}s
      */
-    public static final WayElementFilter HIGHWAYS = new WayElementFilter() {
-
-        private Set<String> highwayValues = new HashSet<String>(Arrays.asList(
-                "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified"
-        ));
-
+    @Deprecated
+    public static final WayElementFilter HIGHWAYS = new PredefinedTagFilter() {
         @Override
-        public boolean matchesCriteria(WayElement wayElement) {
-            return highwayValues.contains(wayElement.getTagValue("highway"));
+        WayTagFilter getWayTagFilter() {
+            return WayTagFilter.HIGHWAYS;
         }
     };
 
@@ -97,7 +86,7 @@ public abstract class WayElementFilter {
     public static final WayElementFilter LUEBECK_WALLSTR = new WayElementFilter() {
         @Override
         public boolean matchesCriteria(WayElement wayElement) {
-            if(!WayElementFilter.STREETS.matchesCriteria(wayElement))
+            if(!WayTagFilter.STREETS.matchesCriteria(wayElement))
                 return false;
 
             return "Wallstraße".equals(wayElement.getTagValue("name"));
@@ -111,7 +100,7 @@ public abstract class WayElementFilter {
     public static final WayElementFilter LUEBECK_GROSSE_BURGSTR = new WayElementFilter() {
         @Override
         public boolean matchesCriteria(WayElement wayElement) {
-            if(!WayElementFilter.STREETS.matchesCriteria(wayElement))
+            if(!WayTagFilter.STREETS.matchesCriteria(wayElement))
                 return false;
 
             return "Große Burgstraße".equals(wayElement.getTagValue("name"));
@@ -154,6 +143,38 @@ public abstract class WayElementFilter {
      */
     public abstract boolean matchesCriteria(WayElement wayElement);
 
+
+    /**
+     * Returns the {@link WayTagFilter} the given filter is equivalent to, i.e. the filter itself if it is a
+     * {@link WayTagFilter} or the {@link WayTagFilter} of a predefined tag filter (e.g. {@link #STREETS}).
+     *
+     * @param filter the {@link WayElementFilter} to return the equivalent {@link WayTagFilter} of
+     *
+     * @return the {@link WayTagFilter} the given filter is equivalent to or <code>null</code> if there is none
+     */
+    static WayTagFilter getWayTagFilter(WayElementFilter filter){
+        if(filter instanceof WayTagFilter)
+            return (WayTagFilter) filter;
+
+        if(filter instanceof PredefinedTagFilter)
+            return ((PredefinedTagFilter) filter).getWayTagFilter();
+
+        return null;
+    }
+
+
+    //the class initialization of a superclass must not create instances of its subclasses, i.e. of WayTagFilter,
+    //as this deadlocks if other threads initialize WayTagFilter at the same time. The constants of WayTagFilter are
+    //resolved on first use instead, i.e. WayTagFilter is the lazy holder of the predefined tag filters.
+    private abstract static class PredefinedTagFilter extends WayElementFilter {
+
+        abstract WayTagFilter getWayTagFilter();
+
+        @Override
+        public boolean matchesCriteria(WayElement wayElement){
+            return getWayTagFilter().matchesCriteria(wayElement);
+        }
+    }
 }
 
 
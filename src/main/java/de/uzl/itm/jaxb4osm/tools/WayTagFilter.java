@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.TagDictionary;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+
+import java.util.Arrays;
+
+/**
+ * A {@link WayTagFilter} is a {@link WayElementFilter} that is declared by criteria on the tags of a way, i.e. sets
+ * of values for certain keys combined with {@link #and(WayTagFilter...)}, {@link #or(WayTagFilter...)} and
+ * {@link #not(WayTagFilter)}, e.g.
+ *
+ * <pre>
+ * WayTagFilter filter = WayTagFilter.and(
+ *         WayTagFilter.hasTag("highway", "primary", "secondary"),
+ *         WayTagFilter.not(WayTagFilter.hasTag("access", "no"))
+ * );
+ * </pre>
+ *
+ * All keys and values are compiled into codes of the {@link de.uzl.itm.jaxb4osm.jaxb.TagDictionary}, i.e. the
+ * evaluation only compares <code>int</code>s. Furthermore, the {@link OsmStreamReader} evaluates a
+ * {@link WayTagFilter} on the raw <code>k</code> and <code>v</code> attributes of a way before any objects are
+ * created for that way, i.e. rejected ways cause (almost) no allocations.
+ *
+ * @author Oliver Kleine
+ */
+public abstract class WayTagFilter extends WayElementFilter {
+
+    /**
+     * A predefined {@link WayTagFilter} to filter for all streets, i.e. roads that are allowed
+     * to be used by cars, i.e. have the "highway" tag present.
+     */
+    public static final WayTagFilter ALL_STREETS = hasTag("highway",
+            "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential", "service",
+            "motorway_link", "trunk_link", "primary_link", "secondary_link", "tertiary_link", "living_street"
+    );
+
+    /**
+     * A predefined {@link WayTagFilter} to filter for streets. This filter is similar to {@link #ALL_STREETS} but
+     * does not allow OSM highways classified as "service" or "living_street".
+     */
+    public static final WayTagFilter STREETS = hasTag("highway",
+            "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
+            "motorway_link", "trunk_link", "primary_link", "secondary_link", "tertiary_link"
+    );
+
+    /**
+     * A predefined {@link WayTagFilter} to filter for larger streets, i.e. "motorway", "trunk", "primary",
+     * "secondary", "tertiary", "unclassified"
+     */
+    public static final WayTagFilter HIGHWAYS = hasTag("highway",
+            "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified"
+    );
+
+
+    WayTagFilter(){}
+
+    /**
+     * Returns a {@link WayTagFilter} that matches ways having a tag with the given key and one of the given values.
+     * If no values are given, any value matches.
+     *
+     * @param key the value of the "k" attribute
+     * @param values the allowed values of the "v" attribute (or none to allow any value)
+     *
+     * @return a {@link WayTagFilter} that matches ways having a tag with the given key and one of the given values.
+     */
+    public static WayTagFilter hasTag(String key, String... values){
+        int[] valueCodes = new int[values.length];
+        for(int i = 0; i < values.length; i++){
+            valueCodes[i] = TagDictionary.encode(values[i]);
+        }
+        Arrays.sort(valueCodes);
+
+        return new TagCriterion(TagDictionary.encode(key), valueCodes);
+    }
+
+    /**
+     * Returns a {@link WayTagFilter} that matches ways matching all of the given filters.
+     *
+     * @param filters the filters to be combined
+     *
+     * @return a {@link WayTagFilter} that matches ways matching all of the given filters.
+     */
+    public static WayTagFilter and(WayTagFilter... filters){
+        return new Conjunction(filters.clone());
+    }
+
+    /**
+     * Returns a {@link WayTagFilter} that matches ways matching at least one of the given filters.
+     *
+     * @param filters the filters to be combined
+     *
+     * @return a {@link WayTagFilter} that matches ways matching at least one of the given filters.
+     */
+    public static WayTagFilter or(WayTagFilter... filters){
+        return new Disjunction(filters.clone());
+    }
+
+    /**
+     * Returns a {@link WayTagFilter} that matches ways not matching the given filter.
+     *
+     * @param filter the filter to be negated
+     *
+     * @return a {@link WayTagFilter} that matches ways not matching the given filter.
+     */
+    public static WayTagFilter not(WayTagFilter filter){
+        return new Negation(filter);
+    }
+
+
+    /**
+     * Returns <code>true</code> if the tags given as {@link de.uzl.itm.jaxb4osm.jaxb.TagDictionary} codes match
+     * the criteria of this filter or <code>false</code> otherwise.
+     *
+     * @param tagCodes alternating key and value codes (or {@link TagDictionary#UNKNOWN} for strings not contained
+     *                 in the {@link de.uzl.itm.jaxb4osm.jaxb.TagDictionary})
+     * @param length the number of codes to be considered (i.e. twice the number of tags)
+     *
+     * @return <code>true</code> if the tags match the criteria of this filter or <code>false</code> otherwise.
+     */
+    abstract boolean matchesTagCodes(int[] tagCodes, int length);
+
+
+    private static class TagCriterion extends WayTagFilter {
+
+        private final int keyCode;
+        private final int[] valueCodes;
+
+        private TagCriterion(int keyCode, int[] valueCodes){
+            this.keyCode = keyCode;
+            this.valueCodes = valueCodes;
+        }
+
+        @Override
+        public boolean matchesCriteria(WayElement wayElement) {
+            return matchesValueCode(wayElement.getTagValueCode(this.keyCode));
+        }
+
+        @Override
+        boolean matchesTagCodes(int[] tagCodes, int length) {
+            //the last tag wins if a key is contained more than once (like for the tags of an element)
+            for(int i = length - 2; i >= 0; i -= 2){
+                if(tagCodes[i] == this.keyCode)
+                    return matchesValueCode(tagCodes[i + 1]);
+            }
+
+            return false;
+        }
+
+        private boolean matchesValueCode(int valueCode){
+            if(valueCode == TagDictionary.UNKNOWN)
+                return false;
+
+            return this.valueCodes.length == 0 || Arrays.binarySearch(this.valueCodes, valueCode) >= 0;
+        }
+    }
+
+
+    private static class Conjunction extends WayTagFilter {
+
+        private final WayTagFilter[] filters;
+
+        private Conjunction(WayTagFilter[] filters){
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean matchesCriteria(WayElement wayElement) {
+            for(WayTagFilter filter : this.filters){
+                if(!filter.matchesCriteria(wayElement))
+                    return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        boolean matchesTagCodes(int[] tagCodes, int length) {
+            for(WayTagFilter filter : this.filters){
+                if(!filter.matchesTagCodes(tagCodes, length))
+                    return false;
+            }
+
+            return true;
+        }
+    }
+
+
+    private static class Disjunction extends WayTagFilter {
+
+        private final WayTagFilter[] filters;
+
+        private Disjunction(WayTagFilter[] filters){
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean matchesCriteria(WayElement wayElement) {
+            for(WayTagFilter filter : this.filters){
+                if(filter.matchesCriteria(wayElement))
+                    return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        boolean matchesTagCodes(int[] tagCodes, int length) {
+            for(WayTagFilter filter : this.filters){
+                if(filter.matchesTagCodes(tagCodes, length))
+                    return true;
+            }
+
+            return false;
+        }
+    }
+
+
+    private static class Negation extends WayTagFilter {
+
+        private final WayTagFilter filter;
+
+        private Negation(WayTagFilter filter){
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean matchesCriteria(WayElement wayElement) {
+            return !this.filter.matchesCriteria(wayElement);
+        }
+
+        @Override
+        boolean matchesTagCodes(int[] tagCodes, int length) {
+            return !this.filter.matchesTagCodes(tagCodes, length);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression formats of OSM files, i.e. plain XML (or PBF), gzip (<code>.osm.gz</code>) and bzip2
+ * (<code>.osm.bz2</code>). The format of a file is detected from its name or, if the name has no known suffix,
+ * from its first bytes.
+ *
+ * Decompression always takes place on a thread of its own (see {@link ReadAheadInputStream}), i.e. in parallel to
+ * the parsing of the data. If an {@link java.util.concurrent.ExecutorService} is given, the blocks of bzip2 data
+ * and the members of block compressed gzip data are additionally decompressed in parallel (see
+ * {@link ParallelBZip2InputStream} and {@link ParallelGzipInputStream}).
+ *
+ * @author Oliver Kleine
+ */
+public enum Compression {
+
+    /**
+     * No compression
+     */
+    NONE,
+
+    /**
+     * gzip compression (suffixes <code>.gz</code> and <code>.gzip</code>)
+     */
+    GZIP,
+
+    /**
+     * bzip2 compression (suffixes <code>.bz2</code> and <code>.bzip2</code>)
+     */
+    BZIP2;
+
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    //the first bytes of a gzip member including the "BC" extra field of block compressed data
+    private static final int MAX_HEADER_LENGTH = 18;
+
+
+    /**
+     * Returns the {@link Compression} indicated by the suffix of the given file name.
+     *
+     * @param fileName the name of the file
+     *
+     * @return the {@link Compression} indicated by the suffix of the given file name (or {@link #NONE} if the
+     * suffix is unknown)
+     */
+    public static Compression fromFileName(String fileName){
+        String name = fileName.toLowerCase();
+        if(name.endsWith(".gz") || name.endsWith(".gzip")){
+            return GZIP;
+        }
+        else if(name.endsWith(".bz2") || name.endsWith(".bzip2")){
+            return BZIP2;
+        }
+        else{
+            return NONE;
+        }
+    }
+
+    /**
+     * Returns the {@link Compression} indicated by the given first bytes of some data.
+     *
+     * @param bytes the first bytes of the data
+     * @param length the number of valid bytes
+     *
+     * @return the {@link Compression} indicated by the given bytes (or {@link #NONE} if there is no known magic)
+     */
+    public static Compression fromMagicBytes(byte[] bytes, int length){
+        if(length >= 2 && (bytes[0] & 0xFF) == 0x1F && (bytes[1] & 0xFF) == 0x8B){
+            return GZIP;
+        }
+        else if(length >= 4 && bytes[0] == 'B' && bytes[1] == 'Z' && bytes[2] == 'h' && bytes[3] >= '1'
+                && bytes[3] <= '9'){
+            return BZIP2;
+        }
+        else{
+            return NONE;
+        }
+    }
+
+    /**
+     * Returns the {@link Compression} of the given file, i.e. the {@link Compression} indicated by the suffix of its
+     * name or (if the suffix is unknown) by its first bytes.
+     *
+     * @param file the file to detect the {@link Compression} of
+     *
+     * @return the {@link Compression} of the given file
+     *
+     * @throws java.io.IOException if the file could not be read
+     */
+    public static Compression detect(File file) throws IOException{
+        Compression compression = fromFileName(file.getName());
+        if(compression != NONE)
+            return compression;
+
+        try(InputStream inputStream = new FileInputStream(file)){
+            byte[] bytes = new byte[4];
+            return fromMagicBytes(bytes, ReadAheadInputStream.readFully(inputStream, bytes, 0, bytes.length));
+        }
+    }
+
+    /**
+     * Returns an {@link java.io.InputStream} providing the decompressed content of the given file.
+     *
+     * @param file the file to be read
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to decompress blocks in parallel or
+     *                        <code>null</code> to decompress sequentially
+     *
+     * @return an {@link java.io.InputStream} providing the decompressed content of the given file
+     *
+     * @throws java.io.IOException if the file could not be read
+     */
+    public static InputStream openInputStream(File file, ExecutorService executorService) throws IOException{
+        return detect(file).decompress(new FileInputStream(file), executorService);
+    }
+
+    /**
+     * Returns an {@link java.io.InputStream} providing the decompressed content of the given
+     * {@link java.io.InputStream}. The {@link Compression} is detected from the first bytes, i.e. for uncompressed
+     * data the result provides the plain content of the given {@link java.io.InputStream}.
+     *
+     * @param inputStream the {@link java.io.InputStream} to be read
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to decompress blocks in parallel or
+     *                        <code>null</code> to decompress sequentially
+     *
+     * @return an {@link java.io.InputStream} providing the decompressed content of the given
+     * {@link java.io.InputStream}
+     *
+     * @throws java.io.IOException if the {@link java.io.InputStream} could not be read
+     */
+    public static InputStream detectAndDecompress(InputStream inputStream, ExecutorService executorService)
+            throws IOException{
+
+        inputStream = markSupported(inputStream);
+        inputStream.mark(4);
+        byte[] bytes = new byte[4];
+        int length = ReadAheadInputStream.readFully(inputStream, bytes, 0, bytes.length);
+        inputStream.reset();
+
+        return fromMagicBytes(bytes, length).decompress(inputStream, executorService);
+    }
+
+    /**
+     * Returns an {@link java.io.InputStream} providing the decompressed content of the given
+     * {@link java.io.InputStream} which is expected to be compressed with this {@link Compression}.
+     *
+     * @param inputStream the {@link java.io.InputStream} to be read
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to decompress blocks in parallel or
+     *                        <code>null</code> to decompress sequentially
+     *
+     * @return an {@link java.io.InputStream} providing the decompressed content of the given
+     * {@link java.io.InputStream}
+     *
+     * @throws java.io.IOException if the {@link java.io.InputStream} could not be read
+     */
+    public InputStream decompress(InputStream inputStream, ExecutorService executorService) throws IOException{
+        inputStream = markSupported(inputStream);
+
+        switch(this){
+            case GZIP:
+                inputStream.mark(MAX_HEADER_LENGTH);
+                byte[] header = new byte[MAX_HEADER_LENGTH];
+                int length = ReadAheadInputStream.readFully(inputStream, header, 0, header.length);
+                inputStream.reset();
+
+                if(executorService != null && ParallelGzipInputStream.isBlockCompressed(header, length)){
+                    return new ParallelGzipInputStream(inputStream, executorService);
+                }
+                return new ReadAheadInputStream(new GzipCompressorInputStream(inputStream, true));
+
+            case BZIP2:
+                if(executorService != null){
+                    return new ParallelBZip2InputStream(inputStream, executorService);
+                }
+                return new ReadAheadInputStream(new BZip2CompressorInputStream(inputStream, true));
+
+            default:
+                return inputStream;
+        }
+    }
+
+    /**
+     * Returns an {@link java.io.OutputStream} to write the content of the given file with the {@link Compression}
+     * indicated by the suffix of its name.
+     *
+     * @param file the file to be written
+     *
+     * @return an {@link java.io.OutputStream} to write the content of the given file
+     *
+     * @throws java.io.IOException if the file could not be opened
+     */
+    public static OutputStream openOutputStream(File file) throws IOException{
+        return fromFileName(file.getName()).compress(new FileOutputStream(file));
+    }
+
+    /**
+     * Returns an {@link java.io.OutputStream} that compresses the data written on it with this {@link Compression}
+     * and writes the result on the given {@link java.io.OutputStream}. Closing the returned
+     * {@link java.io.OutputStream} finishes the compression and closes the given {@link java.io.OutputStream}.
+     *
+     * @param outputStream the {@link java.io.OutputStream} to write the compressed data on
+     *
+     * @return an {@link java.io.OutputStream} that compresses the data written on it
+     *
+     * @throws java.io.IOException if some error occurred
+     */
+    public OutputStream compress(OutputStream outputStream) throws IOException{
+        switch(this){
+            case GZIP:
+                return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+
+            case BZIP2:
+                return new BZip2CompressorOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+
+            default:
+                return new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        }
+    }
+
+
+    private static InputStream markSupported(InputStream inputStream){
+        return inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of <code>int</code> values (e.g. vertices of a graph) with <code>double</code> keys kept in
+ * primitive arrays. There is no decrease-key operation, instead a value is added again with the smaller key.
+ * Users are supposed to skip outdated entries when polling (e.g. if the polled key is greater than the current
+ * distance of the vertex).
+ *
+ * <b>Note:</b> Instances of {@link IntMinHeap} are not thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class IntMinHeap {
+
+    private double[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates a new empty instance of {@link IntMinHeap}.
+     */
+    public IntMinHeap(){
+        this.keys = new double[64];
+        this.values = new int[64];
+    }
+
+    /**
+     * Adds the given value with the given key.
+     *
+     * @param key the key of the value
+     * @param value the value to be added
+     */
+    public void add(double key, int value){
+        if(this.size == this.keys.length){
+            this.keys = Arrays.copyOf(this.keys, this.size << 1);
+            this.values = Arrays.copyOf(this.values, this.size << 1);
+        }
+
+        //sift up
+        int index = this.size++;
+        while(index > 0){
+            int parent = (index - 1) >>> 1;
+            if(this.keys[parent] <= key)
+                break;
+
+            this.keys[index] = this.keys[parent];
+            this.values[index] = this.values[parent];
+            index = parent;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+    }
+
+    /**
+     * Returns the smallest key (which must not be called on an empty heap).
+     *
+     * @return the smallest key
+     */
+    public double peekKey(){
+        return this.keys[0];
+    }
+
+    /**
+     * Removes the value with the smallest key (which must not be called on an empty heap).
+     *
+     * @return the value with the smallest key
+     */
+    public int poll(){
+        int result = this.values[0];
+        double key = this.keys[--this.size];
+        int value = this.values[this.size];
+
+        //sift down
+        int index = 0;
+        int half = this.size >>> 1;
+        while(index < half){
+            int child = 2 * index + 1;
+            if(child + 1 < this.size && this.keys[child + 1] < this.keys[child]){
+                child++;
+            }
+
+            if(key <= this.keys[child])
+                break;
+
+            this.keys[index] = this.keys[child];
+            this.values[index] = this.values[child];
+            index = child;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if this heap is empty or <code>false</code> otherwise.
+     *
+     * @return <code>true</code> if this heap is empty or <code>false</code> otherwise
+     */
+    public boolean isEmpty(){
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the number of entries (including outdated ones).
+     *
+     * @return the number of entries
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear(){
+        this.size = 0;
+    }
+}
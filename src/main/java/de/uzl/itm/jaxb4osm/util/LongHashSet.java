@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive <code>long</code> values based on open addressing with linear probing. In contrast to a
+ * {@link java.util.HashSet} of {@link java.lang.Long}s there is neither a boxed value nor an entry object per element,
+ * i.e. the memory consumption is about 11 to 21 bytes per element (8 bytes per table slot at a load factor of 0.375
+ * to 0.75). For 1,000,000 values, a {@link LongHashSet} needs about 17 bytes per element and a
+ * {@link java.util.HashSet} about 64 bytes (see <code>LongHashSetTest</code>).
+ *
+ * <b>Note:</b> Instances of {@link LongHashSet} are not thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class LongHashSet {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    //0 marks a free slot, the value 0 itself is tracked separately
+    private long[] values;
+    private boolean containsZero;
+    private int size;
+
+    /**
+     * Creates a new empty instance of {@link LongHashSet}.
+     */
+    public LongHashSet(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new empty instance of {@link LongHashSet} that is able to hold the given number of values without
+     * being resized.
+     *
+     * @param expectedSize the expected number of values
+     */
+    public LongHashSet(int expectedSize){
+        this.values = new long[tableSize(expectedSize)];
+    }
+
+    /**
+     * Adds the given value to this set.
+     *
+     * @param value the value to be added
+     *
+     * @return <code>true</code> if the value was added or <code>false</code> if it was already contained
+     */
+    public boolean add(long value){
+        if(value == 0){
+            if(this.containsZero)
+                return false;
+
+            this.containsZero = true;
+            this.size++;
+            return true;
+        }
+
+        int mask = this.values.length - 1;
+        int index = mix(value) & mask;
+        while(this.values[index] != 0){
+            if(this.values[index] == value)
+                return false;
+
+            index = (index + 1) & mask;
+        }
+
+        this.values[index] = value;
+        if(++this.size > this.values.length * LOAD_FACTOR){
+            rehash(this.values.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the given value is contained in this set or <code>false</code> otherwise.
+     *
+     * @param value the value to look up
+     *
+     * @return <code>true</code> if the given value is contained in this set or <code>false</code> otherwise.
+     */
+    public boolean contains(long value){
+        if(value == 0)
+            return this.containsZero;
+
+        int mask = this.values.length - 1;
+        int index = mix(value) & mask;
+        while(this.values[index] != 0){
+            if(this.values[index] == value)
+                return true;
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes the given value from this set.
+     *
+     * @param value the value to be removed
+     *
+     * @return <code>true</code> if the value was removed or <code>false</code> if it was not contained
+     */
+    public boolean remove(long value){
+        if(value == 0){
+            if(!this.containsZero)
+                return false;
+
+            this.containsZero = false;
+            this.size--;
+            return true;
+        }
+
+        int mask = this.values.length - 1;
+        int index = mix(value) & mask;
+        while(this.values[index] != value){
+            if(this.values[index] == 0)
+                return false;
+
+            index = (index + 1) & mask;
+        }
+
+        //shift back the following values of the same probe sequence to keep them reachable
+        int gap = index;
+        index = (index + 1) & mask;
+        while(this.values[index] != 0){
+            int home = mix(this.values[index]) & mask;
+            if(((index - home) & mask) >= ((index - gap) & mask)){
+                this.values[gap] = this.values[index];
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        this.values[gap] = 0;
+
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Returns the number of values contained in this set.
+     *
+     * @return the number of values contained in this set.
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Returns the values contained in this set as an (unsorted) array.
+     *
+     * @return the values contained in this set as an (unsorted) array.
+     */
+    public long[] toArray(){
+        long[] result = new long[this.size];
+        int count = 0;
+
+        if(this.containsZero){
+            result[count++] = 0;
+        }
+
+        for(long value : this.values){
+            if(value != 0){
+                result[count++] = value;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes all values from this set.
+     */
+    public void clear(){
+        Arrays.fill(this.values, 0);
+        this.containsZero = false;
+        this.size = 0;
+    }
+
+
+    private void rehash(int newLength){
+        long[] oldValues = this.values;
+        this.values = new long[newLength];
+
+        int mask = newLength - 1;
+        for(long value : oldValues){
+            if(value != 0){
+                int index = mix(value) & mask;
+                while(this.values[index] != 0){
+                    index = (index + 1) & mask;
+                }
+                this.values[index] = value;
+            }
+        }
+    }
+
+
+    static int tableSize(int expectedSize){
+        int result = DEFAULT_CAPACITY;
+        while(result * LOAD_FACTOR < expectedSize){
+            result <<= 1;
+        }
+        return result;
+    }
+
+
+    static int mix(long value){
+        //OSM IDs are mostly consecutive, so the bits need to be spread over the whole table
+        long hash = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (hash ^ (hash >>> 33));
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive <code>long</code> keys to primitive <code>long</code> values based on open addressing with
+ * linear probing (like {@link LongHashSet}), i.e. there are neither boxed keys and values nor entry objects. The
+ * memory consumption is about 21 to 43 bytes per mapping (16 bytes per table slot at a load factor of 0.375 to 0.75).
+ *
+ * <b>Note:</b> Instances of {@link LongLongHashMap} are not thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class LongLongHashMap {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    //the key 0 marks a free slot, the key 0 itself is tracked separately
+    private long[] keys;
+    private long[] values;
+    private boolean containsZero;
+    private long zeroValue;
+    private int size;
+
+    /**
+     * Creates a new empty instance of {@link LongLongHashMap}.
+     */
+    public LongLongHashMap(){
+        this(0);
+    }
+
+    /**
+     * Creates a new empty instance of {@link LongLongHashMap} that is able to hold the given number of mappings
+     * without being resized.
+     *
+     * @param expectedSize the expected number of mappings
+     */
+    public LongLongHashMap(int expectedSize){
+        int length = LongHashSet.tableSize(expectedSize);
+        this.keys = new long[length];
+        this.values = new long[length];
+    }
+
+    /**
+     * Maps the given key to the given value (replacing a previous value of the key).
+     *
+     * @param key the key
+     * @param value the value
+     *
+     * @return <code>true</code> if the key was added or <code>false</code> if it was already contained
+     */
+    public boolean put(long key, long value){
+        if(key == 0){
+            boolean added = !this.containsZero;
+            if(added){
+                this.containsZero = true;
+                this.size++;
+            }
+            this.zeroValue = value;
+            return added;
+        }
+
+        int mask = this.keys.length - 1;
+        int index = LongHashSet.mix(key) & mask;
+        while(this.keys[index] != 0){
+            if(this.keys[index] == key){
+                this.values[index] = value;
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        this.keys[index] = key;
+        this.values[index] = value;
+        if(++this.size > this.keys.length * LOAD_FACTOR){
+            rehash(this.keys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of the given key or the given default value if the key is not contained.
+     *
+     * @param key the key to look up
+     * @param defaultValue the value to be returned if the key is not contained
+     *
+     * @return the value of the given key or the given default value if the key is not contained
+     */
+    public long get(long key, long defaultValue){
+        if(key == 0)
+            return this.containsZero ? this.zeroValue : defaultValue;
+
+        int mask = this.keys.length - 1;
+        int index = LongHashSet.mix(key) & mask;
+        while(this.keys[index] != 0){
+            if(this.keys[index] == key)
+                return this.values[index];
+
+            index = (index + 1) & mask;
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Returns <code>true</code> if the given key is contained in this map or <code>false</code> otherwise.
+     *
+     * @param key the key to look up
+     *
+     * @return <code>true</code> if the given key is contained in this map or <code>false</code> otherwise
+     */
+    public boolean containsKey(long key){
+        if(key == 0)
+            return this.containsZero;
+
+        int mask = this.keys.length - 1;
+        int index = LongHashSet.mix(key) & mask;
+        while(this.keys[index] != 0){
+            if(this.keys[index] == key)
+                return true;
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of keys contained in this map.
+     *
+     * @return the number of keys contained in this map
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Removes all mappings from this map.
+     */
+    public void clear(){
+        Arrays.fill(this.keys, 0);
+        this.containsZero = false;
+        this.size = 0;
+    }
+
+
+    private void rehash(int newLength){
+        long[] oldKeys = this.keys;
+        long[] oldValues = this.values;
+        this.keys = new long[newLength];
+        this.values = new long[newLength];
+
+        int mask = newLength - 1;
+        for(int i = 0; i < oldKeys.length; i++){
+            if(oldKeys[i] != 0){
+                int index = LongHashSet.mix(oldKeys[i]) & mask;
+                while(this.keys[index] != 0){
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import java.util.Arrays;
+
+/**
+ * A multimap with primitive <code>long</code> keys and values based on open addressing with linear probing. The
+ * values of a key are kept in a <code>long[]</code> of exactly the required length. Like a
+ * {@link com.google.common.collect.HashMultimap}, a {@link LongLongMultimap} does not contain duplicate key-value
+ * pairs.
+ *
+ * A {@link com.google.common.collect.HashMultimap} with {@link java.lang.Long} keys and values needs more than
+ * 200 bytes for a key with a single value (entry object and {@link java.lang.Long} for the key plus a
+ * {@link java.util.HashSet} with its own table, entry object and {@link java.lang.Long} for the value). A
+ * {@link LongLongMultimap} needs about 40 to 56 bytes for a key with a single value (16 to 32 bytes for the key and
+ * the compressed array reference per table slot at a load factor of 0.375 to 0.75 plus 24 bytes for the array) and
+ * 8 bytes per additional value. For 1,000,000 keys with a single value, the measured footprints are about 49 and
+ * 216 bytes per key (see <code>LongLongMultimapTest</code>).
+ *
+ * <b>Note:</b> Instances of {@link LongLongMultimap} are not thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class LongLongMultimap {
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final long[] EMPTY = new long[0];
+
+    //a null value array marks a free slot, the key 0 is tracked separately
+    private long[] keys;
+    private long[][] values;
+    private long[] zeroValues;
+    private int size;
+
+    /**
+     * Creates a new empty instance of {@link LongLongMultimap}.
+     */
+    public LongLongMultimap(){
+        this(0);
+    }
+
+    /**
+     * Creates a new empty instance of {@link LongLongMultimap} that is able to hold the given number of keys
+     * without being resized.
+     *
+     * @param expectedKeys the expected number of keys
+     */
+    public LongLongMultimap(int expectedKeys){
+        int length = LongHashSet.tableSize(expectedKeys);
+        this.keys = new long[length];
+        this.values = new long[length][];
+    }
+
+    /**
+     * Creates a new instance of {@link LongLongMultimap} containing the same key-value pairs as the given one. The
+     * value arrays are shared as they are never modified but replaced.
+     *
+     * @param multimap the {@link LongLongMultimap} to copy
+     */
+    public LongLongMultimap(LongLongMultimap multimap){
+        this.keys = multimap.keys.clone();
+        this.values = multimap.values.clone();
+        this.zeroValues = multimap.zeroValues;
+        this.size = multimap.size;
+    }
+
+    /**
+     * Adds the given value to the values of the given key.
+     *
+     * @param key the key
+     * @param value the value
+     *
+     * @return <code>true</code> if the value was added or <code>false</code> if the key-value pair was already
+     * contained
+     */
+    public boolean put(long key, long value){
+        if(key == 0){
+            if(contains(this.zeroValues, value))
+                return false;
+
+            if(this.zeroValues == null){
+                this.size++;
+            }
+            this.zeroValues = append(this.zeroValues, value);
+            return true;
+        }
+
+        int mask = this.keys.length - 1;
+        int index = LongHashSet.mix(key) & mask;
+        while(this.values[index] != null){
+            if(this.keys[index] == key){
+                if(contains(this.values[index], value))
+                    return false;
+
+                this.values[index] = append(this.values[index], value);
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        this.keys[index] = key;
+        this.values[index] = new long[]{value};
+        if(++this.size > this.keys.length * LOAD_FACTOR){
+            rehash(this.keys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given value from the values of the given key. If there is no value left, the key is removed.
+     *
+     * @param key the key
+     * @param value the value
+     *
+     * @return <code>true</code> if the value was removed or <code>false</code> if the key-value pair was not
+     * contained
+     */
+    public boolean remove(long key, long value){
+        if(key == 0){
+            if(!contains(this.zeroValues, value))
+                return false;
+
+            this.zeroValues = without(this.zeroValues, value);
+            if(this.zeroValues == null){
+                this.size--;
+            }
+            return true;
+        }
+
+        int index = indexOf(key);
+        if(index < 0 || !contains(this.values[index], value))
+            return false;
+
+        this.values[index] = without(this.values[index], value);
+        if(this.values[index] == null){
+            removeAt(index);
+        }
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if there is at least one value for the given key or <code>false</code> otherwise.
+     *
+     * @param key the key
+     *
+     * @return <code>true</code> if there is at least one value for the given key or <code>false</code> otherwise.
+     */
+    public boolean containsKey(long key){
+        return key == 0 ? this.zeroValues != null : indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the number of values of the given key.
+     *
+     * @param key the key
+     *
+     * @return the number of values of the given key.
+     */
+    public int count(long key){
+        long[] result = internalGet(key);
+        return result == null ? 0 : result.length;
+    }
+
+    /**
+     * Returns a copy of the values of the given key (in the order of their addition).
+     *
+     * @param key the key
+     *
+     * @return a copy of the values of the given key (in the order of their addition) or an empty array if there
+     * are no values.
+     */
+    public long[] get(long key){
+        long[] result = internalGet(key);
+        return result == null ? EMPTY : result.clone();
+    }
+
+    /**
+     * Calls the given {@link LongVisitor} for each value of the given key (in the order of their addition) without
+     * copying the values.
+     *
+     * @param key the key
+     * @param visitor the {@link LongVisitor} to be called for each value
+     *
+     * @return <code>true</code> if all values were visited or <code>false</code> if the {@link LongVisitor} stopped
+     * the iteration
+     */
+    public boolean forEach(long key, LongVisitor visitor){
+        long[] values = internalGet(key);
+        if(values != null){
+            for(long value : values){
+                if(!visitor.visit(value))
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of keys contained in this multimap.
+     *
+     * @return the number of keys contained in this multimap.
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Removes all keys and values from this multimap.
+     */
+    public void clear(){
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.values, null);
+        this.zeroValues = null;
+        this.size = 0;
+    }
+
+
+    private long[] internalGet(long key){
+        if(key == 0)
+            return this.zeroValues;
+
+        int index = indexOf(key);
+        return index < 0 ? null : this.values[index];
+    }
+
+
+    private int indexOf(long key){
+        int mask = this.keys.length - 1;
+        int index = LongHashSet.mix(key) & mask;
+        while(this.values[index] != null){
+            if(this.keys[index] == key)
+                return index;
+
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+
+    private void removeAt(int index){
+        int mask = this.keys.length - 1;
+
+        //shift back the following keys of the same probe sequence to keep them reachable
+        int gap = index;
+        index = (index + 1) & mask;
+        while(this.values[index] != null){
+            int home = LongHashSet.mix(this.keys[index]) & mask;
+            if(((index - home) & mask) >= ((index - gap) & mask)){
+                this.keys[gap] = this.keys[index];
+                this.values[gap] = this.values[index];
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        this.keys[gap] = 0;
+        this.values[gap] = null;
+
+        this.size--;
+    }
+
+
+    private void rehash(int newLength){
+        long[] oldKeys = this.keys;
+        long[][] oldValues = this.values;
+        this.keys = new long[newLength];
+        this.values = new long[newLength][];
+
+        int mask = newLength - 1;
+        for(int i = 0; i < oldKeys.length; i++){
+            if(oldValues[i] != null){
+                int index = LongHashSet.mix(oldKeys[i]) & mask;
+                while(this.values[index] != null){
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+
+    private static boolean contains(long[] array, long value){
+        if(array == null)
+            return false;
+
+        for(long element : array){
+            if(element == value)
+                return true;
+        }
+
+        return false;
+    }
+
+
+    private static long[] append(long[] array, long value){
+        if(array == null)
+            return new long[]{value};
+
+        long[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+
+    private static long[] without(long[] array, long value){
+        if(array.length == 1)
+            return null;
+
+        long[] result = new long[array.length - 1];
+        int count = 0;
+        for(long element : array){
+            if(element != value){
+                result[count++] = element;
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A map with primitive <code>long</code> keys based on open addressing with linear probing. Keys and values are
+ * kept in two parallel arrays, i.e. there is neither a boxed key nor an entry object per mapping.
+ *
+ * A {@link java.util.HashMap} with {@link java.lang.Long} keys needs about 55 to 65 bytes per mapping (entry object
+ * of 32 bytes, {@link java.lang.Long} of 16 bytes and one to two table slots). A {@link LongObjectHashMap} needs about
+ * 16 to 32 bytes per mapping (8 bytes for the key and 4 bytes for the compressed value reference per table slot at a
+ * load factor of 0.375 to 0.75). For 1,000,000 mappings, the measured footprints are about 25 and 64 bytes per
+ * mapping (see <code>LongObjectHashMapTest</code>).
+ *
+ * <b>Note:</b> Instances of {@link LongObjectHashMap} are not thread-safe.
+ *
+ * @param <V> the type of the values
+ *
+ * @author Oliver Kleine
+ */
+public class LongObjectHashMap<V> {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    //a null value marks a free slot, the key 0 is tracked separately
+    private long[] keys;
+    private Object[] values;
+    private Object zeroValue;
+    private int size;
+
+    private Collection<V> valuesView;
+
+    /**
+     * Creates a new empty instance of {@link LongObjectHashMap}.
+     */
+    public LongObjectHashMap(){
+        this(0);
+    }
+
+    /**
+     * Creates a new empty instance of {@link LongObjectHashMap} that is able to hold the given number of mappings
+     * without being resized.
+     *
+     * @param expectedSize the expected number of mappings
+     */
+    public LongObjectHashMap(int expectedSize){
+        int length = LongHashSet.tableSize(expectedSize);
+        this.keys = new long[length];
+        this.values = new Object[length];
+    }
+
+    /**
+     * Creates a new instance of {@link LongObjectHashMap} containing the same mappings as the given one (without
+     * rehashing, i.e. the copy costs about as much as copying the two arrays).
+     *
+     * @param map the {@link LongObjectHashMap} to copy
+     */
+    public LongObjectHashMap(LongObjectHashMap<V> map){
+        this.keys = map.keys.clone();
+        this.values = map.values.clone();
+        this.zeroValue = map.zeroValue;
+        this.size = map.size;
+    }
+
+    /**
+     * Associates the given value with the given key.
+     *
+     * @param key the key
+     * @param value the value (must not be <code>null</code>)
+     *
+     * @return the value previously associated with the given key or <code>null</code> if there was none
+     */
+    public V put(long key, V value){
+        if(value == null)
+            throw new NullPointerException("Values must not be null!");
+
+        if(key == 0){
+            V previous = cast(this.zeroValue);
+            this.zeroValue = value;
+            if(previous == null){
+                this.size++;
+            }
+            return previous;
+        }
+
+        int mask = this.keys.length - 1;
+        int index = LongHashSet.mix(key) & mask;
+        while(this.values[index] != null){
+            if(this.keys[index] == key){
+                V previous = cast(this.values[index]);
+                this.values[index] = value;
+                return previous;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        this.keys[index] = key;
+        this.values[index] = value;
+        if(++this.size > this.keys.length * LOAD_FACTOR){
+            rehash(this.keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value associated with the given key or <code>null</code> if there is none.
+     *
+     * @param key the key
+     *
+     * @return the value associated with the given key or <code>null</code> if there is none.
+     */
+    public V get(long key){
+        if(key == 0)
+            return cast(this.zeroValue);
+
+        int mask = this.keys.length - 1;
+        int index = LongHashSet.mix(key) & mask;
+        while(this.values[index] != null){
+            if(this.keys[index] == key)
+                return cast(this.values[index]);
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if there is a value associated with the given key or <code>false</code> otherwise.
+     *
+     * @param key the key
+     *
+     * @return <code>true</code> if there is a value associated with the given key or <code>false</code> otherwise.
+     */
+    public boolean containsKey(long key){
+        return get(key) != null;
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     *
+     * @param key the key
+     *
+     * @return the value that was associated with the given key or <code>null</code> if there was none
+     */
+    public V remove(long key){
+        if(key == 0){
+            V previous = cast(this.zeroValue);
+            if(previous != null){
+                this.zeroValue = null;
+                this.size--;
+            }
+            return previous;
+        }
+
+        int mask = this.keys.length - 1;
+        int index = LongHashSet.mix(key) & mask;
+        while(this.values[index] == null || this.keys[index] != key){
+            if(this.values[index] == null)
+                return null;
+
+            index = (index + 1) & mask;
+        }
+
+        V previous = cast(this.values[index]);
+
+        //shift back the following mappings of the same probe sequence to keep them reachable
+        int gap = index;
+        index = (index + 1) & mask;
+        while(this.values[index] != null){
+            int home = LongHashSet.mix(this.keys[index]) & mask;
+            if(((index - home) & mask) >= ((index - gap) & mask)){
+                this.keys[gap] = this.keys[index];
+                this.values[gap] = this.values[index];
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        this.keys[gap] = 0;
+        this.values[gap] = null;
+
+        this.size--;
+        return previous;
+    }
+
+    /**
+     * Returns the number of mappings contained in this map.
+     *
+     * @return the number of mappings contained in this map.
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Removes all mappings from this map.
+     */
+    public void clear(){
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.values, null);
+        this.zeroValue = null;
+        this.size = 0;
+    }
+
+    /**
+     * Returns a {@link java.util.Collection} view on the values contained in this map. The view does not support
+     * modifications and is not supposed to be used while the map is modified.
+     *
+     * @return a {@link java.util.Collection} view on the values contained in this map.
+     */
+    public Collection<V> values(){
+        if(this.valuesView == null){
+            this.valuesView = new AbstractCollection<V>() {
+                @Override
+                public Iterator<V> iterator() {
+                    return new ValueIterator();
+                }
+
+                @Override
+                public int size() {
+                    return LongObjectHashMap.this.size;
+                }
+            };
+        }
+
+        return this.valuesView;
+    }
+
+
+    private void rehash(int newLength){
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new long[newLength];
+        this.values = new Object[newLength];
+
+        int mask = newLength - 1;
+        for(int i = 0; i < oldKeys.length; i++){
+            if(oldValues[i] != null){
+                int index = LongHashSet.mix(oldKeys[i]) & mask;
+                while(this.values[index] != null){
+                    index = (index + 1) & mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value){
+        return (V) value;
+    }
+
+
+    private class ValueIterator implements Iterator<V> {
+
+        private Object[] table = LongObjectHashMap.this.values;
+        private boolean zeroPending = LongObjectHashMap.this.zeroValue != null;
+        private int index = -1;
+
+        private ValueIterator(){
+            advance();
+        }
+
+        private void advance(){
+            do{
+                this.index++;
+            }
+            while(this.index < this.table.length && this.table[this.index] == null);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.zeroPending || this.index < this.table.length;
+        }
+
+        @Override
+        public V next() {
+            if(this.zeroPending){
+                this.zeroPending = false;
+                return cast(LongObjectHashMap.this.zeroValue);
+            }
+
+            if(this.index >= this.table.length)
+                throw new NoSuchElementException();
+
+            V result = cast(this.table[this.index]);
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Values view does not support modifications!");
+        }
+    }
+}
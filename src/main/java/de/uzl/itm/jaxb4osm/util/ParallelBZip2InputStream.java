@@ -0,0 +1,388 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReadAheadInputStream} to decompress bzip2 data in parallel. The compressed blocks of a bzip2 stream
+ * (up to 900 KB of uncompressed data each) are independent of each other but not byte-aligned. The feeder thread
+ * searches the bit patterns marking the start of a block and the end of a stream, rewrites every block as a stream
+ * of its own and submits the decompression of these streams to the given {@link java.util.concurrent.ExecutorService}.
+ * Files consisting of several concatenated streams (e.g. created by <code>pbzip2</code>) are supported, too.
+ *
+ * Every block is verified by the CRC it contains. The magics may in theory also occur within the compressed data of
+ * a block (about 10<sup>-8</sup> per block). The data is split into contiguous ranges at every magic, i.e. if a
+ * range fails to decompress, it is merged with the following ranges (as long as these are buffered) and
+ * decompressed again. Only if all merges fail, the stream throws an {@link java.io.IOException}, i.e. it never
+ * returns corrupt data.
+ *
+ * @author Oliver Kleine
+ */
+public class ParallelBZip2InputStream extends ReadAheadInputStream {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+    private static final long MAGIC_MASK = 0xFFFFFFFFFFFFL;
+
+    private static final int BUFFER_SIZE = 1 << 21;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ExecutorService executorService;
+    private final int capacity;
+
+    /**
+     * Creates a new instance of {@link ParallelBZip2InputStream}.
+     *
+     * @param source the {@link java.io.InputStream} to read the compressed data from
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to decompress the blocks with
+     */
+    public ParallelBZip2InputStream(InputStream source, ExecutorService executorService){
+        super(source, BUFFER_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+        this.executorService = executorService;
+        this.capacity = Runtime.getRuntime().availableProcessors() * 2;
+    }
+
+
+    @Override
+    protected void feed() throws Exception{
+        InputStream source = getSource();
+
+        byte[] header = new byte[4];
+        if(readFully(source, header, 0, 4) < 4 || header[0] != 'B' || header[1] != 'Z' || header[2] != 'h'
+                || header[3] < '1' || header[3] > '9'){
+            throw new IOException("No bzip2 stream!");
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        int scanPosition = 0;
+
+        //bit position of the current range in the buffer or -1 if there is none (i.e. before the first magic)
+        long rangeStart = -1;
+        long rangeMagic = 0;
+        Range previous = null;
+
+        long window = 0;
+        long bytesScanned = 0;
+
+        try{
+            while(true){
+                if(scanPosition == length){
+                    if(length == buffer.length){
+                        //keep the current range and enough bytes for a magic spanning the previous bytes
+                        int keep = rangeStart >= 0 ? (int) (rangeStart >>> 3) : Math.max(0, scanPosition - 8);
+                        if(keep == 0){
+                            buffer = Arrays.copyOf(buffer, buffer.length << 1);
+                        }
+                        else{
+                            System.arraycopy(buffer, keep, buffer, 0, length - keep);
+                            length -= keep;
+                            scanPosition -= keep;
+                            if(rangeStart >= 0){
+                                rangeStart -= (long) keep << 3;
+                            }
+                        }
+                    }
+
+                    int bytesRead = source.read(buffer, length, buffer.length - length);
+                    if(bytesRead < 0){
+                        if(rangeMagic == BLOCK_MAGIC)
+                            throw new IOException("Unexpected end of bzip2 stream!");
+
+                        //the range after the last end of stream marker may be needed to merge the previous ranges
+                        if(rangeStart >= 0){
+                            add(previous, new Range(buffer, rangeStart, (long) length << 3, rangeMagic));
+                        }
+                        return;
+                    }
+                    length += bytesRead;
+                    continue;
+                }
+
+                window = (window << 8) | (buffer[scanPosition++] & 0xFF);
+                bytesScanned++;
+
+                //check every bit position of the byte just read for the end of a magic
+                int maxShift = (int) Math.min(7, bytesScanned * 8 - 48);
+                for(int shift = 0; shift <= maxShift; shift++){
+                    long magicStart = ((long) scanPosition << 3) - shift - 48;
+                    long magic = getMagic((window >>> shift) & MAGIC_MASK, 32 + (bytesScanned << 3) - shift - 48);
+                    if(magic != 0){
+                        if(rangeStart >= 0){
+                            previous = add(previous, new Range(buffer, rangeStart, magicStart, rangeMagic));
+                        }
+                        rangeStart = magicStart;
+                        rangeMagic = magic;
+                        break;
+                    }
+                }
+            }
+        }
+        finally{
+            //there are no more ranges to be merged with
+            if(previous != null){
+                previous.setNext(null);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the magic with the given value (or 0 if the value is no magic). The position is the bit position of
+     * the magic in the compressed data (which allows tests to simulate a magic within the data of a block).
+     */
+    long getMagic(long value, long position){
+        return value == BLOCK_MAGIC || value == END_OF_STREAM_MAGIC ? value : 0;
+    }
+
+
+    private Range add(Range previous, final Range range) throws InterruptedException{
+        if(range.magic == BLOCK_MAGIC){
+            range.decompressed = this.executorService.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return decompress(createStream(range.bits, range.offset, range.offset + range.length));
+                }
+            });
+        }
+
+        //the link is set before the range is enqueued, i.e. a consumer merging ranges never waits for a full queue
+        if(previous != null){
+            previous.setNext(range);
+        }
+        enqueue(range);
+        return range;
+    }
+
+
+    private static byte[] decompress(byte[] stream) throws IOException{
+        try(InputStream inputStream = new BZip2CompressorInputStream(new ByteArrayInputStream(stream))){
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+
+
+    /**
+     * A range of the compressed data from one magic to the next one, i.e. a block (unless there are further magics
+     * within the data of the block) or the end of a stream (followed by the header of the next stream, if any).
+     */
+    private class Range implements Future<byte[]> {
+
+        private byte[] bits;
+        private final int offset;
+        private final long length;
+        private final long magic;
+
+        private volatile Future<byte[]> decompressed;
+        private final CountDownLatch linked = new CountDownLatch(1);
+        private Range next;
+
+        //ranges merged into a previous range (only accessed by the consumer)
+        private boolean merged;
+
+        private Range(byte[] buffer, long startBit, long endBit, long magic){
+            int startByte = (int) (startBit >>> 3);
+            this.bits = Arrays.copyOfRange(buffer, startByte, (int) ((endBit + 7) >>> 3));
+            this.offset = (int) (startBit & 7);
+            this.length = endBit - startBit;
+            this.magic = magic;
+        }
+
+        private void setNext(Range next){
+            if(this.linked.getCount() > 0){
+                this.next = next;
+                this.linked.countDown();
+            }
+        }
+
+        @Override
+        public byte[] get() throws InterruptedException, ExecutionException {
+            try{
+                if(this.merged || this.magic != BLOCK_MAGIC)
+                    return EMPTY;
+
+                try{
+                    return this.decompressed.get();
+                }
+                catch(ExecutionException ex){
+                    byte[] result = merge();
+                    if(result == null)
+                        throw ex;
+
+                    return result;
+                }
+            }
+            finally{
+                //the data is no longer needed for merging
+                this.bits = null;
+            }
+        }
+
+        //merges this range with the following ranges until the result can be decompressed
+        private byte[] merge() throws InterruptedException{
+            List<Range> ranges = new ArrayList<>();
+            ranges.add(this);
+
+            //the following ranges are linked before they are enqueued, i.e. up to capacity ranges are available
+            for(int i = 0; i < capacity; i++){
+                Range last = ranges.get(ranges.size() - 1);
+                last.linked.await();
+                if(last.next == null)
+                    return null;
+
+                ranges.add(last.next);
+                try{
+                    byte[] result = decompress(concatenate(ranges));
+                    for(Range range : ranges.subList(1, ranges.size())){
+                        range.merged = true;
+                        range.cancel(true);
+                    }
+                    return result;
+                }
+                catch(IOException ex){
+                    //merge with the next range
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public byte[] get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+            return get();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return this.decompressed != null && this.decompressed.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.decompressed != null && this.decompressed.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.decompressed == null || this.decompressed.isDone();
+        }
+    }
+
+
+    //creates a stream of the given contiguous ranges (i.e. one block starting with the first range)
+    private static byte[] concatenate(List<Range> ranges){
+        long bitCount = 0;
+        for(Range range : ranges){
+            bitCount += range.length;
+        }
+
+        byte[] buffer = new byte[(int) ((bitCount + 7) >>> 3)];
+        long bitPosition = 0;
+        for(Range range : ranges){
+            for(long i = 0; i < range.length; i++){
+                bitPosition = writeBits(buffer, bitPosition, readBits(range.bits, range.offset + i, 1), 1);
+            }
+        }
+
+        return createStream(buffer, 0, bitCount);
+    }
+
+
+    /**
+     * Creates a bzip2 stream consisting of the block in the given range, i.e. a stream header, the block (starting
+     * with its magic) and the end of stream marker with the CRC of the block as combined CRC.
+     */
+    static byte[] createStream(byte[] buffer, long startBit, long endBit){
+        long bitCount = endBit - startBit;
+        byte[] result = new byte[4 + (int) ((bitCount + 80 + 7) >>> 3)];
+        result[0] = 'B';
+        result[1] = 'Z';
+        result[2] = 'h';
+        //the largest block size is safe for every block
+        result[3] = '9';
+
+        //copy the block to a byte-aligned position
+        int offset = (int) (startBit & 7);
+        int startByte = (int) (startBit >>> 3);
+        int byteCount = (int) (bitCount >>> 3);
+        if(offset == 0){
+            System.arraycopy(buffer, startByte, result, 4, byteCount);
+        }
+        else{
+            for(int i = 0; i < byteCount; i++){
+                result[4 + i] = (byte) ((buffer[startByte + i] << offset)
+                        | ((buffer[startByte + i + 1] & 0xFF) >>> (8 - offset)));
+            }
+        }
+
+        long bitPosition = 32 + ((long) byteCount << 3);
+        for(long i = (long) byteCount << 3; i < bitCount; i++){
+            bitPosition = writeBits(result, bitPosition, readBits(buffer, startBit + i, 1), 1);
+        }
+
+        long blockCRC = readBits(buffer, startBit + 48, 32);
+        bitPosition = writeBits(result, bitPosition, END_OF_STREAM_MAGIC, 48);
+        writeBits(result, bitPosition, blockCRC, 32);
+
+        return result;
+    }
+
+
+    private static long readBits(byte[] buffer, long bitPosition, int count){
+        long result = 0;
+        for(int i = 0; i < count; i++){
+            long position = bitPosition + i;
+            int bit = (buffer[(int) (position >>> 3)] >>> (7 - (int) (position & 7))) & 1;
+            result = (result << 1) | bit;
+        }
+        return result;
+    }
+
+
+    private static long writeBits(byte[] buffer, long bitPosition, long value, int count){
+        for(int i = count - 1; i >= 0; i--){
+            if(((value >>> i) & 1) != 0){
+                buffer[(int) (bitPosition >>> 3)] |= 1 << (7 - (int) (bitPosition & 7));
+            }
+            bitPosition++;
+        }
+        return bitPosition;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A {@link ReadAheadInputStream} to decompress multi-member gzip data in parallel. The members of a gzip file are
+ * independent of each other but the header of a member does usually not contain its size, i.e. the start of the
+ * next member is only known after the member was decompressed. Hence, the members are decompressed in parallel if
+ * their headers contain the size in the "BC" extra field (as written by <code>bgzip</code> and other block
+ * compressing tools). The first member without this field and all following members are decompressed sequentially
+ * by the feeder thread.
+ *
+ * @author Oliver Kleine
+ */
+public class ParallelGzipInputStream extends ReadAheadInputStream {
+
+    private static final int HEADER_LENGTH = 12;
+    private static final int FLAG_EXTRA = 0x04;
+
+    private static final int CHUNK_SIZE = 1 << 18;
+
+    private final ExecutorService executorService;
+
+    /**
+     * Creates a new instance of {@link ParallelGzipInputStream}.
+     *
+     * @param source the {@link java.io.InputStream} to read the compressed data from
+     * @param executorService the {@link java.util.concurrent.ExecutorService} to decompress the members with
+     */
+    public ParallelGzipInputStream(InputStream source, ExecutorService executorService){
+        super(source, CHUNK_SIZE, Runtime.getRuntime().availableProcessors() * 4);
+        this.executorService = executorService;
+    }
+
+    /**
+     * Returns <code>true</code> if the given bytes start with the header of a gzip member containing its size in
+     * the "BC" extra field or <code>false</code> otherwise.
+     *
+     * @param header the first bytes of the data
+     * @param length the number of valid bytes
+     *
+     * @return <code>true</code> if the given bytes start with the header of a gzip member containing its size or
+     * <code>false</code> otherwise
+     */
+    public static boolean isBlockCompressed(byte[] header, int length){
+        if(length < HEADER_LENGTH || (header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B
+                || (header[3] & FLAG_EXTRA) == 0){
+            return false;
+        }
+
+        int extraLength = readUnsignedShort(header, 10);
+        return getBlockSize(Arrays.copyOfRange(header, HEADER_LENGTH, Math.min(length, HEADER_LENGTH + extraLength)))
+                > 0;
+    }
+
+
+    @Override
+    protected void feed() throws Exception{
+        InputStream source = getSource();
+
+        while(true){
+            byte[] header = new byte[HEADER_LENGTH];
+            int headerLength = readFully(source, header, 0, HEADER_LENGTH);
+            if(headerLength == 0)
+                return;
+
+            if(headerLength < HEADER_LENGTH || (header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B){
+                throw new IOException("No gzip member!");
+            }
+
+            byte[] extra = new byte[0];
+            if((header[3] & FLAG_EXTRA) != 0){
+                extra = new byte[readUnsignedShort(header, 10)];
+                if(readFully(source, extra, 0, extra.length) < extra.length)
+                    throw new IOException("Unexpected end of gzip member!");
+            }
+
+            int blockSize = getBlockSize(extra);
+            if(blockSize <= 0){
+                byte[] consumed = Arrays.copyOf(header, HEADER_LENGTH + extra.length);
+                System.arraycopy(extra, 0, consumed, HEADER_LENGTH, extra.length);
+                try(InputStream inputStream = new GzipCompressorInputStream(
+                        new SequenceInputStream(new ByteArrayInputStream(consumed), source), true)){
+                    feed(inputStream);
+                }
+                return;
+            }
+
+            int offset = HEADER_LENGTH + extra.length;
+            if(blockSize < offset)
+                throw new IOException("Invalid size of gzip member: " + blockSize);
+
+            final byte[] member = Arrays.copyOf(header, blockSize);
+            System.arraycopy(extra, 0, member, HEADER_LENGTH, extra.length);
+            if(readFully(source, member, offset, blockSize - offset) < blockSize - offset)
+                throw new IOException("Unexpected end of gzip member!");
+
+            enqueue(this.executorService.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    try(InputStream inputStream = new GzipCompressorInputStream(new ByteArrayInputStream(member))){
+                        return ByteStreams.toByteArray(inputStream);
+                    }
+                }
+            }));
+        }
+    }
+
+
+    //returns the size of the member contained in the "BC" subfield of the given extra field or -1 if there is none
+    private static int getBlockSize(byte[] extra){
+        int position = 0;
+        while(position + 4 <= extra.length){
+            int subfieldLength = readUnsignedShort(extra, position + 2);
+            if(extra[position] == 'B' && extra[position + 1] == 'C' && subfieldLength == 2
+                    && position + 6 <= extra.length){
+                return readUnsignedShort(extra, position + 4) + 1;
+            }
+            position += 4 + subfieldLength;
+        }
+        return -1;
+    }
+
+
+    private static int readUnsignedShort(byte[] buffer, int offset){
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A minimal decoder for the protocol buffers wire format operating on a byte array. It supports exactly what is
+ * needed to read OSM PBF files, i.e. varints (including zigzag encoded ones), length delimited fields (strings,
+ * bytes, nested messages and packed repeated fields) and skipping of unknown fields. There is no schema and no
+ * generated code, i.e. the caller reads the fields in the order they appear in the data.
+ *
+ * <b>Note:</b> Instances of {@link ProtobufReader} are not thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class ProtobufReader {
+
+    public static final int WIRE_TYPE_VARINT = 0;
+    public static final int WIRE_TYPE_FIXED64 = 1;
+    public static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+    public static final int WIRE_TYPE_FIXED32 = 5;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    /**
+     * Creates a new instance of {@link ProtobufReader} to decode the given bytes.
+     *
+     * @param buffer the encoded message
+     */
+    public ProtobufReader(byte[] buffer){
+        this(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Creates a new instance of {@link ProtobufReader} to decode the given range of the given bytes.
+     *
+     * @param buffer the array containing the encoded message
+     * @param offset the position of the first byte of the message
+     * @param length the number of bytes of the message
+     */
+    public ProtobufReader(byte[] buffer, int offset, int length){
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Returns the field number of the given tag (as returned by {@link #readTag()})
+     *
+     * @param tag the tag
+     *
+     * @return the field number of the given tag
+     */
+    public static int getFieldNumber(int tag){
+        return tag >>> 3;
+    }
+
+    /**
+     * Returns the wire type of the given tag (as returned by {@link #readTag()})
+     *
+     * @param tag the tag
+     *
+     * @return the wire type of the given tag
+     */
+    public static int getWireType(int tag){
+        return tag & 7;
+    }
+
+    /**
+     * Returns <code>true</code> if there are more bytes to be read or <code>false</code> otherwise
+     *
+     * @return <code>true</code> if there are more bytes to be read or <code>false</code> otherwise
+     */
+    public boolean hasRemaining(){
+        return this.position < this.limit;
+    }
+
+    /**
+     * Reads the tag (i.e. field number and wire type) of the next field.
+     *
+     * @return the tag of the next field or 0 if the end of the message was reached
+     *
+     * @throws IOException if the data is malformed
+     */
+    public int readTag() throws IOException {
+        if(this.position >= this.limit)
+            return 0;
+
+        return (int) readVarint();
+    }
+
+    /**
+     * Reads a varint, i.e. a value of type <code>int32</code>, <code>int64</code>, <code>uint32</code>,
+     * <code>uint64</code> or <code>bool</code>.
+     *
+     * @return the value read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public long readVarint() throws IOException {
+        long result = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            if(this.position >= this.limit)
+                throw new IOException("Truncated varint!");
+
+            byte b = this.buffer[this.position++];
+            result |= (long) (b & 0x7F) << shift;
+            if(b >= 0)
+                return result;
+        }
+
+        throw new IOException("Malformed varint!");
+    }
+
+    /**
+     * Reads a value of type <code>int32</code> or <code>uint32</code>.
+     *
+     * @return the value read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public int readInt32() throws IOException {
+        return (int) readVarint();
+    }
+
+    /**
+     * Reads a (zigzag encoded) value of type <code>sint32</code>.
+     *
+     * @return the value read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public int readSInt32() throws IOException {
+        int value = (int) readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a (zigzag encoded) value of type <code>sint64</code>.
+     *
+     * @return the value read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public long readSInt64() throws IOException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a value of type <code>bool</code>.
+     *
+     * @return the value read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public boolean readBool() throws IOException {
+        return readVarint() != 0;
+    }
+
+    /**
+     * Reads the length prefix of a length delimited field and makes sure that the announced number of bytes is
+     * available.
+     *
+     * @return the length of the field
+     *
+     * @throws IOException if the data is malformed
+     */
+    public int readLength() throws IOException {
+        long length = readVarint();
+        if(length < 0 || length > this.limit - this.position)
+            throw new IOException("Invalid length of length delimited field: " + length);
+
+        return (int) length;
+    }
+
+    /**
+     * Reads a value of type <code>bytes</code>.
+     *
+     * @return the value read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public byte[] readBytes() throws IOException {
+        int length = readLength();
+        byte[] result = Arrays.copyOfRange(this.buffer, this.position, this.position + length);
+        this.position += length;
+        return result;
+    }
+
+    /**
+     * Reads a (UTF-8 encoded) value of type <code>string</code>.
+     *
+     * @return the value read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public String readString() throws IOException {
+        int length = readLength();
+        String result = new String(this.buffer, this.position, length, UTF_8);
+        this.position += length;
+        return result;
+    }
+
+    /**
+     * Reads an embedded message. The returned {@link ProtobufReader} shares the buffer of this instance and this
+     * instance continues after the embedded message.
+     *
+     * @return a {@link ProtobufReader} to decode the embedded message
+     *
+     * @throws IOException if the data is malformed
+     */
+    public ProtobufReader readMessage() throws IOException {
+        int length = readLength();
+        ProtobufReader result = new ProtobufReader(this.buffer, this.position, length);
+        this.position += length;
+        return result;
+    }
+
+    /**
+     * Reads a packed repeated field of type <code>int32</code>, <code>uint32</code> or <code>bool</code>.
+     *
+     * @return the values read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public int[] readPackedInt32() throws IOException {
+        int end = readLength() + this.position;
+        int[] result = new int[Math.min(end - this.position, 16)];
+        int count = 0;
+
+        while(this.position < end){
+            if(count == result.length){
+                result = Arrays.copyOf(result, Math.min(count << 1, end - this.position + count));
+            }
+            result[count++] = (int) readVarint();
+        }
+
+        checkEnd(end);
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Reads a packed repeated field of type <code>sint32</code>.
+     *
+     * @return the values read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public int[] readPackedSInt32() throws IOException {
+        int[] result = readPackedInt32();
+        for(int i = 0; i < result.length; i++){
+            result[i] = (result[i] >>> 1) ^ -(result[i] & 1);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a packed repeated field of type <code>int64</code> or <code>uint64</code>.
+     *
+     * @return the values read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public long[] readPackedInt64() throws IOException {
+        int end = readLength() + this.position;
+        long[] result = new long[Math.min(end - this.position, 16)];
+        int count = 0;
+
+        while(this.position < end){
+            if(count == result.length){
+                result = Arrays.copyOf(result, Math.min(count << 1, end - this.position + count));
+            }
+            result[count++] = readVarint();
+        }
+
+        checkEnd(end);
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Reads a packed repeated field of type <code>sint64</code>.
+     *
+     * @return the values read
+     *
+     * @throws IOException if the data is malformed
+     */
+    public long[] readPackedSInt64() throws IOException {
+        long[] result = readPackedInt64();
+        for(int i = 0; i < result.length; i++){
+            result[i] = (result[i] >>> 1) ^ -(result[i] & 1);
+        }
+        return result;
+    }
+
+    /**
+     * Skips the value of a field with the given tag.
+     *
+     * @param tag the tag of the field to be skipped (as returned by {@link #readTag()})
+     *
+     * @throws IOException if the data is malformed or the wire type is not supported
+     */
+    public void skipField(int tag) throws IOException {
+        switch(getWireType(tag)){
+            case WIRE_TYPE_VARINT:
+                readVarint();
+                break;
+
+            case WIRE_TYPE_FIXED64:
+                skip(8);
+                break;
+
+            case WIRE_TYPE_LENGTH_DELIMITED:
+                skip(readLength());
+                break;
+
+            case WIRE_TYPE_FIXED32:
+                skip(4);
+                break;
+
+            default:
+                throw new IOException("Unsupported wire type: " + getWireType(tag));
+        }
+    }
+
+
+    private void skip(int length) throws IOException {
+        if(length > this.limit - this.position)
+            throw new IOException("Truncated field!");
+
+        this.position += length;
+    }
+
+
+    private void checkEnd(int end) throws IOException {
+        if(this.position != end)
+            throw new IOException("Packed field exceeds its length!");
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A minimal encoder for the protocol buffers wire format writing into a growing byte array, i.e. the counterpart of
+ * {@link ProtobufReader}. Fields are written in the order of the method calls.
+ *
+ * <b>Note:</b> Instances of {@link ProtobufWriter} are not thread-safe.
+ *
+ * @author Oliver Kleine
+ */
+public class ProtobufWriter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * Creates a new empty instance of {@link ProtobufWriter}.
+     */
+    public ProtobufWriter(){
+        this(256);
+    }
+
+    /**
+     * Creates a new empty instance of {@link ProtobufWriter} that is able to hold the given number of bytes without
+     * being resized.
+     *
+     * @param capacity the expected number of bytes
+     */
+    public ProtobufWriter(int capacity){
+        this.buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Writes a field of type <code>int32</code>, <code>int64</code>, <code>uint32</code> or <code>uint64</code>.
+     *
+     * @param field the field number
+     * @param value the value to be written
+     */
+    public void writeVarint(int field, long value){
+        writeTag(field, ProtobufReader.WIRE_TYPE_VARINT);
+        writeRawVarint(value);
+    }
+
+    /**
+     * Writes a field of type <code>sint32</code> or <code>sint64</code> (i.e. zigzag encoded).
+     *
+     * @param field the field number
+     * @param value the value to be written
+     */
+    public void writeSInt64(int field, long value){
+        writeVarint(field, zigzag(value));
+    }
+
+    /**
+     * Writes a field of type <code>bool</code>.
+     *
+     * @param field the field number
+     * @param value the value to be written
+     */
+    public void writeBool(int field, boolean value){
+        writeVarint(field, value ? 1 : 0);
+    }
+
+    /**
+     * Writes a field of type <code>string</code> (UTF-8 encoded).
+     *
+     * @param field the field number
+     * @param value the value to be written
+     */
+    public void writeString(int field, String value){
+        byte[] bytes = value.getBytes(UTF_8);
+        writeBytes(field, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes a field of type <code>bytes</code>.
+     *
+     * @param field the field number
+     * @param value the array containing the value to be written
+     * @param offset the position of the first byte of the value
+     * @param length the number of bytes of the value
+     */
+    public void writeBytes(int field, byte[] value, int offset, int length){
+        writeTag(field, ProtobufReader.WIRE_TYPE_LENGTH_DELIMITED);
+        writeRawVarint(length);
+        ensureCapacity(length);
+        System.arraycopy(value, offset, this.buffer, this.size, length);
+        this.size += length;
+    }
+
+    /**
+     * Writes the content of the given {@link ProtobufWriter} as embedded message.
+     *
+     * @param field the field number
+     * @param message the {@link ProtobufWriter} containing the encoded message
+     */
+    public void writeMessage(int field, ProtobufWriter message){
+        writeBytes(field, message.buffer, 0, message.size);
+    }
+
+    /**
+     * Writes the first <code>count</code> values of the given array as packed repeated field of type
+     * <code>int32</code>, <code>uint32</code> or <code>bool</code>. Nothing is written if <code>count</code> is 0.
+     *
+     * @param field the field number
+     * @param values the values to be written
+     * @param count the number of values to be written
+     */
+    public void writePackedInt32(int field, int[] values, int count){
+        if(count == 0)
+            return;
+
+        int length = 0;
+        for(int i = 0; i < count; i++){
+            length += getVarintSize(values[i]);
+        }
+
+        writeTag(field, ProtobufReader.WIRE_TYPE_LENGTH_DELIMITED);
+        writeRawVarint(length);
+        for(int i = 0; i < count; i++){
+            writeRawVarint(values[i]);
+        }
+    }
+
+    /**
+     * Writes the first <code>count</code> values of the given array as packed repeated field of type
+     * <code>sint32</code>. Nothing is written if <code>count</code> is 0.
+     *
+     * @param field the field number
+     * @param values the values to be written
+     * @param count the number of values to be written
+     */
+    public void writePackedSInt32(int field, int[] values, int count){
+        if(count == 0)
+            return;
+
+        int length = 0;
+        for(int i = 0; i < count; i++){
+            length += getVarintSize(zigzag(values[i]));
+        }
+
+        writeTag(field, ProtobufReader.WIRE_TYPE_LENGTH_DELIMITED);
+        writeRawVarint(length);
+        for(int i = 0; i < count; i++){
+            writeRawVarint(zigzag(values[i]));
+        }
+    }
+
+    /**
+     * Writes the first <code>count</code> values of the given array as packed repeated field of type
+     * <code>sint64</code>. Nothing is written if <code>count</code> is 0.
+     *
+     * @param field the field number
+     * @param values the values to be written
+     * @param count the number of values to be written
+     */
+    public void writePackedSInt64(int field, long[] values, int count){
+        if(count == 0)
+            return;
+
+        int length = 0;
+        for(int i = 0; i < count; i++){
+            length += getVarintSize(zigzag(values[i]));
+        }
+
+        writeTag(field, ProtobufReader.WIRE_TYPE_LENGTH_DELIMITED);
+        writeRawVarint(length);
+        for(int i = 0; i < count; i++){
+            writeRawVarint(zigzag(values[i]));
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far
+     *
+     * @return the number of bytes written so far
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Returns a copy of the bytes written so far
+     *
+     * @return a copy of the bytes written so far
+     */
+    public byte[] toByteArray(){
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+
+    /**
+     * Writes the bytes written so far on the given {@link java.io.OutputStream}.
+     *
+     * @param outputStream the {@link java.io.OutputStream} to write the bytes on
+     *
+     * @throws IOException if some error occurred while writing
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(this.buffer, 0, this.size);
+    }
+
+    /**
+     * Discards the bytes written so far (but keeps the allocated buffer).
+     */
+    public void reset(){
+        this.size = 0;
+    }
+
+
+    private void writeTag(int field, int wireType){
+        writeRawVarint((field << 3) | wireType);
+    }
+
+
+    private void writeRawVarint(long value){
+        ensureCapacity(10);
+        while((value & ~0x7FL) != 0){
+            this.buffer[this.size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.size++] = (byte) value;
+    }
+
+
+    private void ensureCapacity(int length){
+        if(this.size + length > this.buffer.length){
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length << 1, this.size + length));
+        }
+    }
+
+
+    private static long zigzag(long value){
+        return (value << 1) ^ (value >> 63);
+    }
+
+
+    private static long zigzag(int value){
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+
+    private static int getVarintSize(long value){
+        int result = 1;
+        while((value & ~0x7FL) != 0){
+            value >>>= 7;
+            result++;
+        }
+        return result;
+    }
+}
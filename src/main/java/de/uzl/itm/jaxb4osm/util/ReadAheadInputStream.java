@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import com.google.common.util.concurrent.Futures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link java.io.InputStream} that reads ahead of its consumer. A feeder thread reads chunks from the source
+ * and puts them into a bounded queue, i.e. reading (and decompressing) the source and parsing the data overlap
+ * while there are never more than <code>capacity</code> chunks buffered.
+ *
+ * The chunks are queued as {@link java.util.concurrent.Future}s, i.e. subclasses may override {@link #feed()} to
+ * produce the chunks on other threads (e.g. by decompressing blocks of the source in parallel). The consumer
+ * always receives the chunks in the order they were enqueued. Errors of the feeder (or of a chunk) are thrown by
+ * the next read operation of the consumer.
+ *
+ * <b>Note:</b> The stream is supposed to be closed. Otherwise the feeder thread keeps waiting for the consumer if
+ * the stream was not read until its end.
+ *
+ * @author Oliver Kleine
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 18;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final Future<byte[]> END_OF_STREAM = Futures.immediateFuture(EMPTY);
+
+    private final InputStream source;
+    private final int chunkSize;
+    private final BlockingQueue<Future<byte[]>> chunks;
+
+    private Thread feeder;
+    private volatile boolean closed;
+
+    private byte[] chunk = EMPTY;
+    private int position;
+    private boolean endOfStream;
+
+    /**
+     * Creates a new instance of {@link ReadAheadInputStream} reading chunks of 256 KB and buffering up to 16 chunks.
+     *
+     * @param source the {@link java.io.InputStream} to read from
+     */
+    public ReadAheadInputStream(InputStream source){
+        this(source, DEFAULT_CHUNK_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance of {@link ReadAheadInputStream}.
+     *
+     * @param source the {@link java.io.InputStream} to read from
+     * @param chunkSize the number of bytes to read from the source at once
+     * @param capacity the maximum number of chunks to be buffered
+     */
+    public ReadAheadInputStream(InputStream source, int chunkSize, int capacity){
+        this.source = source;
+        this.chunkSize = chunkSize;
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Returns the {@link java.io.InputStream} to read from.
+     *
+     * @return the {@link java.io.InputStream} to read from
+     */
+    protected InputStream getSource(){
+        return this.source;
+    }
+
+    /**
+     * Reads the source and enqueues its content (in the right order) via {@link #enqueue(java.util.concurrent.Future)}.
+     * This method is invoked once by the feeder thread and is supposed to return at the end of the source. The
+     * default implementation enqueues the plain content of the source.
+     *
+     * @throws Exception if some error occurred
+     */
+    protected void feed() throws Exception{
+        feed(this.source);
+    }
+
+    /**
+     * Enqueues the content of the given {@link java.io.InputStream} in chunks that were read by the feeder thread
+     * itself.
+     *
+     * @param inputStream the {@link java.io.InputStream} to be read until its end
+     *
+     * @throws Exception if some error occurred
+     */
+    protected final void feed(InputStream inputStream) throws Exception{
+        while(true){
+            byte[] buffer = new byte[this.chunkSize];
+            int length = readFully(inputStream, buffer, 0, buffer.length);
+            if(length > 0){
+                enqueue(Futures.immediateFuture(length < buffer.length ? Arrays.copyOf(buffer, length) : buffer));
+            }
+
+            if(length < buffer.length)
+                return;
+        }
+    }
+
+    /**
+     * Appends the given chunk to the queue. This method blocks as long as the queue is full.
+     *
+     * @param chunk the {@link java.util.concurrent.Future} of the chunk
+     *
+     * @throws InterruptedException if the feeder thread was interrupted (e.g. because the stream was closed)
+     */
+    protected final void enqueue(Future<byte[]> chunk) throws InterruptedException{
+        this.chunks.put(chunk);
+    }
+
+
+    @Override
+    public int read() throws IOException{
+        if(!nextChunk())
+            return -1;
+
+        return this.chunk[this.position++] & 0xFF;
+    }
+
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException{
+        if(length == 0)
+            return 0;
+
+        if(!nextChunk())
+            return -1;
+
+        int count = Math.min(length, this.chunk.length - this.position);
+        System.arraycopy(this.chunk, this.position, buffer, offset, count);
+        this.position += count;
+        return count;
+    }
+
+
+    @Override
+    public int available() throws IOException{
+        return this.chunk.length - this.position;
+    }
+
+
+    @Override
+    public void close() throws IOException{
+        this.closed = true;
+        if(this.feeder != null){
+            this.feeder.interrupt();
+        }
+
+        Future<byte[]> pending;
+        while((pending = this.chunks.poll()) != null){
+            pending.cancel(true);
+        }
+
+        this.source.close();
+    }
+
+
+    private boolean nextChunk() throws IOException{
+        if(this.closed)
+            throw new IOException("Stream closed!");
+
+        if(this.feeder == null){
+            startFeeder();
+        }
+
+        while(this.position == this.chunk.length){
+            if(this.endOfStream)
+                return false;
+
+            try{
+                Future<byte[]> next = this.chunks.take();
+                if(next == END_OF_STREAM){
+                    this.endOfStream = true;
+                }
+                this.chunk = next.get();
+                this.position = 0;
+            }
+            catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data!");
+            }
+            catch(ExecutionException ex){
+                this.endOfStream = true;
+                this.chunk = EMPTY;
+                this.position = 0;
+                Throwable cause = ex.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+        }
+
+        return true;
+    }
+
+
+    private void startFeeder(){
+        this.feeder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    feed();
+                    enqueue(END_OF_STREAM);
+                }
+                catch(InterruptedException ex){
+                    //the stream was closed
+                }
+                catch(Throwable ex){
+                    if(!closed){
+                        try{
+                            enqueue(Futures.<byte[]>immediateFailedFuture(ex));
+                        }
+                        catch(InterruptedException e){
+                            //the stream was closed
+                        }
+                    }
+                }
+            }
+        }, getClass().getSimpleName() + "-feeder");
+
+        this.feeder.setDaemon(true);
+        this.feeder.start();
+    }
+
+
+    static int readFully(InputStream inputStream, byte[] buffer, int offset, int length) throws IOException{
+        int count = 0;
+        while(count < length){
+            int bytesRead = inputStream.read(buffer, offset + count, length - count);
+            if(bytesRead < 0)
+                break;
+
+            count += bytesRead;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,336 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.graph;
+
+import de.uzl.itm.jaxb4osm.tools.OsmTestData;
+import de.uzl.itm.jaxb4osm.tools.WayTagFilter;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link Router}s, i.e. that Dijkstra, A* and the {@link ContractionHierarchy} find routes of equal
+ * distance, and for saving and loading {@link ContractionHierarchy}s.
+ *
+ * @author Oliver Kleine
+ */
+public class RouterTest {
+
+    private static final int GRID_SIZE = 15;
+
+    private static RoadGraph graph;
+    private static ContractionHierarchy contractionHierarchy;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createContractionHierarchy() throws Exception{
+        graph = createGraph(GRID_SIZE, 3);
+        contractionHierarchy = ContractionHierarchy.create(graph);
+    }
+
+
+    @Test
+    public void testEqualDistances() throws Exception{
+        assertEqualRoutes(Router.createDijkstraRouter(graph), Router.createAStarRouter(graph));
+        assertEqualRoutes(Router.createDijkstraRouter(graph), Router.createContractionHierarchyRouter(contractionHierarchy));
+    }
+
+
+    @Test
+    public void testRouteByNodeID() throws Exception{
+        long sourceNodeID = OsmTestData.getNodeID(GRID_SIZE, 0, 0);
+        long targetNodeID = OsmTestData.getNodeID(GRID_SIZE, GRID_SIZE - 1, GRID_SIZE - 1);
+        Route route = Router.createContractionHierarchyRouter(contractionHierarchy).route(sourceNodeID, targetNodeID);
+
+        assertNotNull(route);
+        assertEquals(sourceNodeID, route.getNodeIDs()[0]);
+        assertEquals(targetNodeID, route.getNodeIDs()[route.getNodeIDs().length - 1]);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRouteFromUnknownNode() throws Exception{
+        Router.createDijkstraRouter(graph).route(-1L, OsmTestData.getNodeID(GRID_SIZE, 0, 0));
+    }
+
+
+    @Test
+    public void testSaveAndLoad() throws Exception{
+        ContractionHierarchy loaded = ContractionHierarchy.load(new ByteArrayInputStream(save(contractionHierarchy)),
+                graph);
+
+        assertEquals(contractionHierarchy.getShortcutCount(), loaded.getShortcutCount());
+        for(int vertex = 0; vertex < graph.getVertexCount(); vertex++){
+            assertEquals(contractionHierarchy.getRank(vertex), loaded.getRank(vertex));
+        }
+        assertEqualRoutes(Router.createDijkstraRouter(graph), Router.createContractionHierarchyRouter(loaded));
+    }
+
+
+    @Test
+    public void testSaveAndLoadWithFile() throws Exception{
+        File file = this.temporaryFolder.newFile("test.ch");
+        contractionHierarchy.save(file);
+        ContractionHierarchy loaded = ContractionHierarchy.load(file, graph);
+        assertEquals(contractionHierarchy.getShortcutCount(), loaded.getShortcutCount());
+    }
+
+
+    @Test
+    public void testLoadForOtherGraph() throws Exception{
+        byte[] data = save(contractionHierarchy);
+
+        //same vertex and edge count but different edge lengths
+        assertRejected(data, createGraph(GRID_SIZE, 4), "does not belong to the given road graph");
+        assertRejected(data, createGraph(GRID_SIZE - 1, 3), "does not belong to the given road graph");
+    }
+
+
+    @Test
+    public void testBadMagic() throws Exception{
+        byte[] data = save(contractionHierarchy);
+        data[0] ^= 0x01;
+        assertRejected(data, graph, "No contraction hierarchy!");
+    }
+
+
+    @Test
+    public void testBadChecksum() throws Exception{
+        byte[] data = save(contractionHierarchy);
+        data[data.length - 1] ^= 0x01;
+        assertRejected(data, graph, "checksum mismatch");
+    }
+
+
+    @Test
+    public void testLargeShortcutCount() throws Exception{
+        byte[] data = save(contractionHierarchy);
+        int position = getShortcutCountPosition();
+
+        for(int bit = 0x10; bit <= 0x40; bit <<= 1){
+            byte[] corrupt = data.clone();
+            corrupt[position] ^= bit;
+
+            //the length of the file is known, i.e. the count is rejected before anything is allocated
+            File file = this.temporaryFolder.newFile();
+            try(OutputStream outputStream = new FileOutputStream(file)){
+                outputStream.write(corrupt);
+            }
+            try{
+                ContractionHierarchy.load(file, graph);
+                fail("Shortcut count was not rejected!");
+            }
+            catch(IOException ex){
+                assertTrue(ex.getMessage(), ex.getMessage().contains("Invalid shortcut count"));
+            }
+
+            //the length of the stream is unknown, i.e. it ends before the shortcuts
+            try{
+                ContractionHierarchy.load(new ByteArrayInputStream(corrupt), graph);
+                fail("Shortcut count was not rejected!");
+            }
+            catch(EOFException ex){
+                //expected
+            }
+        }
+    }
+
+
+    @Test
+    public void testCorruptHeader() throws Exception{
+        byte[] data = save(contractionHierarchy);
+        assertRejected(setInt(data, 4, ContractionHierarchy.FORMAT_VERSION + 1), graph, "Unsupported");
+
+        //vertex count, edge count and (both halves of) the fingerprint
+        for(int position = 8; position < 24; position += 4){
+            assertRejected(setInt(data, position, getInt(data, position) + 1), graph, "does not belong");
+        }
+    }
+
+
+    @Test
+    public void testCorruptRanks() throws Exception{
+        byte[] data = save(contractionHierarchy);
+        int vertexCount = graph.getVertexCount();
+
+        assertRejected(setInt(data, 24, -1), graph, "Invalid rank");
+        assertRejected(setInt(data, 24, vertexCount), graph, "Invalid rank");
+
+        //two vertices with the same rank
+        assertRejected(setInt(data, 24 + 4 * (vertexCount - 1), getInt(data, 24)), graph, "Invalid rank");
+    }
+
+
+    @Test
+    public void testCorruptShortcutCount() throws Exception{
+        byte[] data = save(contractionHierarchy);
+        int position = getShortcutCountPosition();
+        int shortcutCount = getInt(data, position);
+        assertTrue(shortcutCount > 0);
+
+        assertRejected(setInt(data, position, -1), graph, "Invalid shortcut count");
+        assertRejected(setInt(data, position, Integer.MAX_VALUE), graph, "Invalid shortcut count");
+
+        //the first bytes of the last shortcut are taken for the checksum
+        assertRejected(setInt(data, position, shortcutCount - 1), graph, "checksum mismatch");
+
+        //the checksum is taken for the first bytes of another shortcut
+        try{
+            ContractionHierarchy.load(new ByteArrayInputStream(setInt(data, position, shortcutCount + 1)), graph);
+            fail("Shortcut count was not rejected!");
+        }
+        catch(EOFException ex){
+            //expected
+        }
+    }
+
+
+    @Test
+    public void testCorruptShortcuts() throws Exception{
+        byte[] data = save(contractionHierarchy);
+        int vertexCount = graph.getVertexCount();
+        int edge = graph.getEdgeCount() + contractionHierarchy.getShortcutCount() - 1;
+
+        //source, target, weight, first child and second child of the last shortcut
+        int position = data.length - 4 - 24;
+        assertRejected(setInt(data, position, -1), graph, "Invalid shortcut");
+        assertRejected(setInt(data, position + 4, vertexCount), graph, "Invalid shortcut");
+        assertRejected(setInt(data, position + 8, getInt(data, position + 8) ^ 0x10), graph, "checksum mismatch");
+        assertRejected(setInt(data, position + 16, edge), graph, "Invalid shortcut");
+        assertRejected(setInt(data, position + 20, -1), graph, "Invalid shortcut");
+
+        //valid but different children
+        assertRejected(setInt(data, position + 16, 0), graph, "checksum mismatch");
+    }
+
+
+    @Test
+    public void testTruncatedData() throws Exception{
+        byte[] data = save(contractionHierarchy);
+        for(int length : new int[]{0, 3, 23, getShortcutCountPosition() + 2, data.length - 25, data.length - 1}){
+            try{
+                ContractionHierarchy.load(new ByteArrayInputStream(Arrays.copyOf(data, length)), graph);
+                fail("Truncated data (" + length + " bytes) was not rejected!");
+            }
+            catch(EOFException ex){
+                //expected
+            }
+        }
+    }
+
+
+    private static void assertEqualRoutes(Router expectedRouter, Router actualRouter){
+        RoadGraph graph = expectedRouter.getGraph();
+        int vertexCount = graph.getVertexCount();
+        for(int source = 0; source < vertexCount; source += 7){
+            for(int target = 0; target < vertexCount; target++){
+                Route expected = expectedRouter.route(source, target);
+                Route actual = actualRouter.route(source, target);
+                if(expected == null){
+                    assertNull(actual);
+                    continue;
+                }
+
+                String message = "Route from " + source + " to " + target;
+                assertNotNull(message, actual);
+                assertEquals(message, expected.getDistance(), actual.getDistance(), 1e-6);
+                assertEquals(message, source, graph.getVertex(actual.getNodeIDs()[0]));
+                assertEquals(message, target, graph.getVertex(actual.getNodeIDs()[actual.getNodeIDs().length - 1]));
+
+                //the edges (i.e. unpacked shortcuts) must be connected and sum up to the distance
+                double length = 0;
+                int vertex = source;
+                for(int edge : actual.getEdges()){
+                    assertEquals(message, vertex, graph.getSource(edge));
+                    vertex = graph.getTarget(edge);
+                    length += graph.getLength(edge);
+                }
+                assertEquals(message, target, vertex);
+                assertEquals(message, actual.getDistance(), length, 1e-6);
+            }
+        }
+    }
+
+
+    private static void assertRejected(byte[] data, RoadGraph graph, String message) throws Exception{
+        try{
+            ContractionHierarchy.load(new ByteArrayInputStream(data), graph);
+            fail("Contraction hierarchy was not rejected!");
+        }
+        catch(IOException ex){
+            assertTrue(ex.getMessage(), ex.getMessage().contains(message));
+        }
+    }
+
+
+    //behind magic, version, vertex count, edge count, fingerprint and the ranks
+    private static int getShortcutCountPosition(){
+        return 4 + 4 + 4 + 4 + 8 + 4 * graph.getVertexCount();
+    }
+
+
+    private static int getInt(byte[] data, int position){
+        return ByteBuffer.wrap(data).getInt(position);
+    }
+
+
+    private static byte[] setInt(byte[] data, int position, int value){
+        byte[] result = data.clone();
+        ByteBuffer.wrap(result).putInt(position, value);
+        return result;
+    }
+
+
+    private static byte[] save(ContractionHierarchy contractionHierarchy) throws Exception{
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        contractionHierarchy.save(outputStream);
+        return outputStream.toByteArray();
+    }
+
+
+    private static RoadGraph createGraph(int gridSize, long seed) throws Exception{
+        return RoadGraph.create(OsmTestData.unmarshal(OsmTestData.createDocument(gridSize, seed),
+                WayTagFilter.STREETS));
+    }
+}
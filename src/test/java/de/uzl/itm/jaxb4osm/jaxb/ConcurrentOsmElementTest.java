@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.jaxb;
+
+import de.uzl.itm.jaxb4osm.tools.OsmTestData;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ConcurrentOsmElement}, i.e. that published versions never change (not even by their elements),
+ * that conflicting updates are rejected and that concurrent updates are all applied.
+ *
+ * @author Oliver Kleine
+ */
+public class ConcurrentOsmElementTest {
+
+    private static final int GRID_SIZE = 10;
+
+    private static OsmElement osmElement;
+
+    @BeforeClass
+    public static void createOsmElement() throws Exception{
+        osmElement = OsmTestData.unmarshal(OsmTestData.createDocument(GRID_SIZE, 5), WayElementFilter.ANY_WAY);
+    }
+
+
+    @Test
+    public void testInitialVersion(){
+        ConcurrentOsmElement concurrentOsmElement = new ConcurrentOsmElement(osmElement);
+        OsmTestData.assertOsmElementEquals(osmElement, concurrentOsmElement.getSnapshot());
+        assertEquals(osmElement.getGenerator(), concurrentOsmElement.getSnapshot().getGenerator());
+
+        //the elements are copied, i.e. the given element is neither contained nor modified
+        NodeElement nodeElement = osmElement.getNodeElement(1);
+        assertTrue(nodeElement != concurrentOsmElement.getSnapshot().getNodeElement(1));
+        assertTrue(nodeElement.isVisible());
+    }
+
+
+    @Test
+    public void testSnapshotIsolation() throws Exception{
+        ConcurrentOsmElement concurrentOsmElement = new ConcurrentOsmElement(osmElement);
+        OsmElement snapshot = concurrentOsmElement.getSnapshot();
+
+        OsmElement update = concurrentOsmElement.beginUpdate();
+        update.addNodeElement(createNodeElement(1, 54.0, "modified"));
+        update.addNodeElement(createNodeElement(-1, 54.1, "created"));
+        assertTrue(update.removeWayElement(1));
+        WayElement wayElement = new WayElement(-1L, null, null, null, null, null, null);
+        wayElement.addNodeReference(1);
+        wayElement.addNodeReference(-1);
+        assertTrue(update.addWayElement(wayElement));
+
+        //nothing is visible before the update was published
+        assertSame(snapshot, concurrentOsmElement.getSnapshot());
+        assertSame(update, concurrentOsmElement.publish(update));
+        assertSame(update, concurrentOsmElement.getSnapshot());
+
+        //the previous snapshot did not change
+        OsmTestData.assertOsmElementEquals(osmElement, snapshot);
+        assertNull(snapshot.getNodeElement(-1));
+        assertEquals(2, snapshot.getReferencingWayCount(1));
+
+        assertEquals(54.0, update.getNodeElement(1).getLatitude(), 0);
+        assertEquals("modified", update.getNodeElement(1).getTagValue("name"));
+        assertNull(update.getWayElement(1));
+        assertNotNull(update.getWayElement(-1));
+        assertEquals(2, update.getReferencingWayCount(1));
+        assertEquals(1, update.getReferencingWayCount(-1));
+        assertEquals(osmElement.getNodeElementsView().size() + 1, update.getNodeElementsView().size());
+        assertEquals(osmElement.getWayElementsView().size(), update.getWayElementsView().size());
+
+        //the added elements were copied
+        wayElement.addNodeReference(2);
+        assertEquals(2, update.getWayElement(-1).getNodeReferenceCount());
+    }
+
+
+    @Test
+    public void testReadOnlySnapshot() throws Exception{
+        ConcurrentOsmElement concurrentOsmElement = new ConcurrentOsmElement(osmElement);
+        final OsmElement snapshot = concurrentOsmElement.getSnapshot();
+        final NodeElement nodeElement = snapshot.getNodeElement(1000000);
+        final WayElement wayElement = snapshot.getWayElement(1);
+
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                nodeElement.getTags().put("amenity", "shelter");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                nodeElement.getTags().remove("amenity");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                nodeElement.getTags().entrySet().iterator().next().setValue("shelter");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                wayElement.getTags().clear();
+            }
+        });
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                wayElement.addNodeReference(1);
+            }
+        });
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                wayElement.getNdElements().remove(0);
+            }
+        });
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                snapshot.addNodeElement(createNodeElement(-1, 54.0, "created"));
+            }
+        });
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                snapshot.removeWayElement(1);
+            }
+        });
+
+        //the timestamps are copies
+        wayElement.getTimestamp().setTime(0);
+        assertEquals(osmElement.getWayElement(1).getTimestamp(), wayElement.getTimestamp());
+
+        OsmTestData.assertOsmElementEquals(osmElement, snapshot);
+        assertEquals("bench", nodeElement.getTagValue("amenity"));
+    }
+
+
+    @Test
+    public void testReadOnlyElementsOfUpdate() throws Exception{
+        ConcurrentOsmElement concurrentOsmElement = new ConcurrentOsmElement(osmElement);
+        OsmElement update = concurrentOsmElement.beginUpdate();
+
+        //the elements are shared with the published version, i.e. they must be replaced
+        final WayElement wayElement = update.getWayElement(1);
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                wayElement.getTags().put("highway", "footway");
+            }
+        });
+
+        update.addNodeElement(createNodeElement(1, 54.0, "modified"));
+        final NodeElement nodeElement = update.getNodeElement(1);
+        assertUnsupported(new Runnable() {
+            @Override
+            public void run() {
+                nodeElement.getTags().put("name", "modified twice");
+            }
+        });
+
+        concurrentOsmElement.publish(update);
+        assertEquals("modified", concurrentOsmElement.getSnapshot().getNodeElement(1).getTagValue("name"));
+        assertEquals("residential", concurrentOsmElement.getSnapshot().getWayElement(1).getTagValue("highway"));
+    }
+
+
+    @Test
+    public void testConflictingUpdates(){
+        ConcurrentOsmElement concurrentOsmElement = new ConcurrentOsmElement(osmElement);
+        OsmElement snapshot = concurrentOsmElement.getSnapshot();
+
+        OsmElement update1 = concurrentOsmElement.beginUpdate();
+        OsmElement update2 = concurrentOsmElement.beginUpdate();
+        update1.addNodeElement(createNodeElement(-1, 54.0, "first"));
+        update2.addNodeElement(createNodeElement(-2, 54.0, "second"));
+
+        concurrentOsmElement.publish(update1);
+        try{
+            concurrentOsmElement.publish(update2);
+            fail("Conflicting update was published!");
+        }
+        catch(ConcurrentModificationException ex){
+            //expected
+        }
+
+        //the rejected update is discarded
+        assertSame(update1, concurrentOsmElement.getSnapshot());
+        assertNull(concurrentOsmElement.getSnapshot().getNodeElement(-2));
+        assertNull(snapshot.getNodeElement(-1));
+
+        try{
+            concurrentOsmElement.publish(update1);
+            fail("Update was published twice!");
+        }
+        catch(IllegalStateException ex){
+            //expected
+        }
+
+        try{
+            concurrentOsmElement.publish(new ConcurrentOsmElement().beginUpdate());
+            fail("Update of another element was published!");
+        }
+        catch(IllegalArgumentException ex){
+            //expected
+        }
+    }
+
+
+    @Test
+    public void testConcurrentUpdates() throws Exception{
+        final ConcurrentOsmElement concurrentOsmElement = new ConcurrentOsmElement(osmElement);
+        final int threads = 4;
+        final int updatesPerThread = 50;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads + 1);
+        try{
+            //every version contains the ways of all previous versions, i.e. the number of ways never decreases
+            Future<Integer> reader = executorService.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    start.await();
+                    int versions = 0;
+                    int wayCount = 0;
+                    OsmElement previous = null;
+                    while(!finished.get()){
+                        OsmElement snapshot = concurrentOsmElement.getSnapshot();
+                        if(snapshot != previous){
+                            int size = snapshot.getWayElementsView().size();
+                            assertTrue(size >= wayCount);
+                            assertEquals(size, snapshot.getWayElements().size());
+                            wayCount = size;
+                            previous = snapshot;
+                            versions++;
+                        }
+                    }
+                    return versions;
+                }
+            });
+
+            List<Future<Void>> writers = new ArrayList<>();
+            for(int thread = 0; thread < threads; thread++){
+                final long firstWayID = -1000 * (thread + 1);
+                writers.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for(int i = 0; i < updatesPerThread; i++){
+                            final long wayID = firstWayID - i;
+                            concurrentOsmElement.update(new ConcurrentOsmElement.Update() {
+                                @Override
+                                public void apply(OsmElement osmElement) throws Exception {
+                                    WayElement wayElement = new WayElement(wayID, null, null, null, null, null, null);
+                                    wayElement.addNodeReference(1);
+                                    osmElement.addWayElement(wayElement);
+                                }
+                            });
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            start.countDown();
+            for(Future<Void> writer : writers){
+                writer.get();
+            }
+            finished.set(true);
+            assertTrue(reader.get() > 0);
+        }
+        finally{
+            executorService.shutdownNow();
+        }
+
+        //no update was lost
+        OsmElement snapshot = concurrentOsmElement.getSnapshot();
+        assertEquals(osmElement.getWayElementsView().size() + threads * updatesPerThread,
+                snapshot.getWayElementsView().size());
+        assertEquals(osmElement.getReferencingWayCount(1) + threads * updatesPerThread,
+                snapshot.getReferencingWayCount(1));
+    }
+
+
+    private static NodeElement createNodeElement(long nodeID, double latitude, String name){
+        NodeElement nodeElement = new NodeElement(nodeID, 2, null, null, null, null, null, latitude, 10.6);
+        nodeElement.getTags().put("name", name);
+        return nodeElement;
+    }
+
+
+    private static void assertUnsupported(Runnable modification){
+        try{
+            modification.run();
+            fail("Modification was not rejected!");
+        }
+        catch(UnsupportedOperationException ex){
+            //expected
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.jaxb;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TagDictionary}, i.e. that only strings with a low cardinality are shared and the dictionary does
+ * not grow beyond {@link TagDictionary#MAX_SIZE}.
+ *
+ * @author Oliver Kleine
+ */
+public class TagDictionaryTest {
+
+    private static NodeElement nodeElement1;
+
+    //testMaxSize fills the dictionary, i.e. the shared values are to be added before
+    @BeforeClass
+    public static void createNodeElement(){
+        nodeElement1 = createNodeElement(1);
+        nodeElement1.getTags().put("highway", new String("residential"));
+    }
+
+
+    @Test
+    public void testSharedValues(){
+        NodeElement nodeElement2 = createNodeElement(2);
+        nodeElement2.getTags().put(new String("highway"), new String("residential"));
+
+        assertSame(nodeElement1.getTagValue("highway"), nodeElement2.getTagValue("highway"));
+        int keyCode = TagDictionary.lookup("highway");
+        assertEquals(TagDictionary.lookup("residential"), nodeElement2.getTagValueCode(keyCode));
+    }
+
+
+    @Test
+    public void testUnsharedValues(){
+        int size = TagDictionary.size();
+
+        //the values of names are not added, i.e. they are released together with the elements
+        for(int i = 0; i < 10000; i++){
+            NodeElement nodeElement = createNodeElement(i);
+            nodeElement.getTags().put("name", "Street " + i);
+            assertEquals("Street " + i, nodeElement.getTagValue("name"));
+            assertEquals(TagDictionary.UNKNOWN, nodeElement.getTagValueCode(TagDictionary.lookup("name")));
+        }
+
+        assertTrue(TagDictionary.size() <= size + 1);
+        assertEquals(TagDictionary.UNKNOWN, TagDictionary.lookup("Street 1"));
+    }
+
+
+    @Test
+    public void testMaxSize(){
+        for(int i = 0; i < TagDictionary.MAX_SIZE + 1000; i++){
+            NodeElement nodeElement = createNodeElement(i);
+            nodeElement.getTags().put("key" + i, "yes");
+            assertEquals("yes", nodeElement.getTags().get("key" + i));
+        }
+        assertTrue(TagDictionary.size() <= TagDictionary.MAX_SIZE);
+
+        //strings known in advance (like the criteria of filters) are added anyway
+        int code = TagDictionary.encode("criterion beyond the maximum size");
+        assertEquals("criterion beyond the maximum size", TagDictionary.decode(code));
+    }
+
+
+    @Test
+    public void testTagsView(){
+        NodeElement nodeElement = createNodeElement(1);
+        Map<String, String> tags = nodeElement.getTags();
+        tags.put("amenity", "bench");
+        tags.put("name", "Wallstraße");
+
+        assertEquals(tags, nodeElement.getTags());
+        assertEquals("bench", tags.remove("amenity"));
+        assertNull(nodeElement.getTagValue("amenity"));
+        assertEquals(1, nodeElement.getTags().size());
+    }
+
+
+    private static NodeElement createNodeElement(long nodeID){
+        return new NodeElement(nodeID, null, null, null, null, null, null, 53.8, 10.6);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.store;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ColumnarNodeElementStore}, i.e. the contract of {@link NodeElementStore} with fixed-point and
+ * <code>double</code> coordinates, and nodes added out of order.
+ *
+ * @author Oliver Kleine
+ */
+public class ColumnarNodeElementStoreTest extends NodeElementStoreTest {
+
+    @Override
+    protected NodeElementStore createStore(){
+        return new ColumnarNodeElementStore();
+    }
+
+    @Override
+    protected boolean isKeepingTags(){
+        return true;
+    }
+
+
+    @Test
+    public void testRandomOperationsWithDoubleCoordinates(){
+        assertRandomOperations(new ColumnarNodeElementStore(false), 6);
+    }
+
+
+    @Test(timeout = 10000)
+    public void testDescendingOrder(){
+        //shifting the arrays on every insertion would take minutes
+        int count = 1000000;
+        for(int i = count; i > 0; i--){
+            this.store.put(createNodeElement(i, i / 1e7, -i / 1e7));
+        }
+
+        assertEquals(count, this.store.size());
+        for(int i = 1; i <= count; i += 997){
+            assertNodeElement(i, i / 1e7, -i / 1e7, this.store.get(i));
+        }
+        assertEquals(count, count(this.store));
+    }
+
+
+    @Test
+    public void testTrimToSize(){
+        for(int i = 100; i > 0; i--){
+            this.store.put(createNodeElement(i * 2, i, i));
+        }
+        this.store.remove(10);
+        ((ColumnarNodeElementStore) this.store).trimToSize();
+
+        assertEquals(99, this.store.size());
+        assertEquals(99, count(this.store));
+        assertNodeElement(200, 100, 100, this.store.get(200));
+        this.store.put(createNodeElement(11, 5.5, 5.5));
+        this.store.put(createNodeElement(201, 1, 1));
+        assertNodeElement(11, 5.5, 5.5, this.store.get(11));
+        assertEquals(101, count(this.store));
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.store;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link MappedNodeElementStore}, i.e. the contract of {@link NodeElementStore} and the iteration over
+ * sparse node IDs.
+ *
+ * @author Oliver Kleine
+ */
+public class MappedNodeElementStoreTest extends NodeElementStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Override
+    protected NodeElementStore createStore() throws Exception{
+        return new MappedNodeElementStore(this.temporaryFolder.newFile("nodes.bin"));
+    }
+
+    @Override
+    protected boolean isKeepingTags(){
+        return false;
+    }
+
+    @After
+    public void closeStore() throws Exception{
+        ((MappedNodeElementStore) this.store).close();
+    }
+
+
+    @Test(timeout = 10000)
+    public void testSparseNodeIDs(){
+        //iterating over all positions up to the highest node ID would take minutes
+        long[] nodeIDs = {3, 600, 5000000000L, 5000000001L, 12000000000L};
+        for(long nodeID : nodeIDs){
+            this.store.put(createNodeElement(nodeID, 53.8, 10.6));
+        }
+        this.store.remove(600);
+
+        List<Long> actual = new ArrayList<>();
+        for(NodeElement nodeElement : this.store.values()){
+            actual.add(nodeElement.getID());
+        }
+        assertEquals(Arrays.asList(3L, 5000000000L, 5000000001L, 12000000000L), actual);
+        assertNodeElement(12000000000L, 53.8, 10.6, this.store.get(12000000000L));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeNodeID(){
+        this.store.put(createNodeElement(-1, 53.8, 10.6));
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.store;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the contract of {@link NodeElementStore} shared by all implementations. Subclasses provide the store to be
+ * tested.
+ *
+ * @author Oliver Kleine
+ */
+public abstract class NodeElementStoreTest {
+
+    //the precision of the coordinates in OSM files (and of the fixed-point stores)
+    private static final double DELTA = 1e-7;
+
+    protected NodeElementStore store;
+
+    /**
+     * Returns a new empty instance of the {@link NodeElementStore} to be tested.
+     *
+     * @return a new empty instance of the {@link NodeElementStore} to be tested
+     *
+     * @throws Exception if some error occurred
+     */
+    protected abstract NodeElementStore createStore() throws Exception;
+
+    /**
+     * Returns <code>true</code> if the store to be tested keeps the tags of the nodes or <code>false</code>
+     * otherwise.
+     *
+     * @return <code>true</code> if the store to be tested keeps the tags of the nodes or <code>false</code>
+     * otherwise.
+     */
+    protected abstract boolean isKeepingTags();
+
+
+    @Before
+    public void setup() throws Exception{
+        this.store = createStore();
+    }
+
+
+    @Test
+    public void testPutAndGet(){
+        this.store.put(createNodeElement(1, 53.8, 10.6));
+        this.store.put(createNodeElement(7, -33.9, -70.7));
+        this.store.put(createNodeElement(3, 0, 179.9999999));
+
+        assertEquals(3, this.store.size());
+        assertNodeElement(1, 53.8, 10.6, this.store.get(1));
+        assertNodeElement(7, -33.9, -70.7, this.store.get(7));
+        assertNodeElement(3, 0, 179.9999999, this.store.get(3));
+
+        assertTrue(this.store.contains(3));
+        assertFalse(this.store.contains(2));
+        assertNull(this.store.get(2));
+        assertNull(this.store.get(1000000));
+    }
+
+
+    @Test
+    public void testReplace(){
+        this.store.put(createNodeElement(5, 53.8, 10.6));
+        this.store.put(createNodeElement(5, 53.9, 10.7));
+
+        assertEquals(1, this.store.size());
+        assertNodeElement(5, 53.9, 10.7, this.store.get(5));
+    }
+
+
+    @Test
+    public void testRemove(){
+        this.store.put(createNodeElement(5, 53.8, 10.6));
+        this.store.put(createNodeElement(6, 53.9, 10.7));
+
+        assertTrue(this.store.remove(5));
+        assertFalse(this.store.remove(5));
+        assertFalse(this.store.remove(4));
+        assertFalse(this.store.contains(5));
+        assertNull(this.store.get(5));
+        assertEquals(1, this.store.size());
+        assertEquals(1, count(this.store));
+
+        this.store.put(createNodeElement(5, 53.7, 10.5));
+        assertNodeElement(5, 53.7, 10.5, this.store.get(5));
+        assertEquals(2, this.store.size());
+    }
+
+
+    @Test
+    public void testTags(){
+        NodeElement nodeElement = createNodeElement(5, 53.8, 10.6);
+        nodeElement.getTags().put("amenity", "bench");
+        this.store.put(nodeElement);
+        this.store.put(createNodeElement(6, 53.9, 10.7));
+
+        assertEquals(2, this.store.size());
+        assertEquals(isKeepingTags() ? "bench" : null, this.store.get(5).getTagValue("amenity"));
+
+        //replacing a tagged node with an untagged one
+        this.store.put(createNodeElement(5, 53.7, 10.5));
+        assertEquals(2, this.store.size());
+        assertNodeElement(5, 53.7, 10.5, this.store.get(5));
+        assertTrue(this.store.get(5).getTags().isEmpty());
+    }
+
+
+    @Test
+    public void testRandomOperations(){
+        assertRandomOperations(this.store, 5);
+    }
+
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testValuesAreReadOnly(){
+        this.store.put(createNodeElement(5, 53.8, 10.6));
+        this.store.values().iterator().remove();
+    }
+
+
+    /**
+     * Adds, replaces and removes nodes with IDs in random order and compares the store with a {@link TreeMap}
+     * after each operation.
+     *
+     * @param store the {@link NodeElementStore} to be tested
+     * @param seed the seed for the random operations
+     */
+    protected static void assertRandomOperations(NodeElementStore store, long seed){
+        Random random = new Random(seed);
+        Map<Long, double[]> expected = new TreeMap<>();
+
+        for(int i = 0; i < 100000; i++){
+            long nodeID = 1 + random.nextInt(50000);
+            if(random.nextInt(4) == 0){
+                assertEquals(expected.remove(nodeID) != null, store.remove(nodeID));
+            }
+            else{
+                double latitude = (random.nextInt(1800000000) - 900000000) / 1e7;
+                double longitude = (random.nextInt(2000000000) - 1000000000) / 1e7;
+                store.put(createNodeElement(nodeID, latitude, longitude));
+                expected.put(nodeID, new double[]{latitude, longitude});
+            }
+            assertEquals(expected.size(), store.size());
+
+            if(i % 1000 == 0){
+                long lookupID = 1 + random.nextInt(50000);
+                double[] coordinates = expected.get(lookupID);
+                assertEquals(coordinates != null, store.contains(lookupID));
+                if(coordinates != null){
+                    assertNodeElement(lookupID, coordinates[0], coordinates[1], store.get(lookupID));
+                }
+            }
+        }
+
+        assertEquals(expected.size(), count(store));
+        for(NodeElement nodeElement : store.values()){
+            double[] coordinates = expected.get(nodeElement.getID());
+            assertNotNull("Unexpected node " + nodeElement.getID(), coordinates);
+            assertNodeElement(nodeElement.getID(), coordinates[0], coordinates[1], nodeElement);
+        }
+        for(Map.Entry<Long, double[]> entry : expected.entrySet()){
+            double[] coordinates = entry.getValue();
+            assertNodeElement(entry.getKey(), coordinates[0], coordinates[1], store.get(entry.getKey()));
+        }
+    }
+
+
+    protected static NodeElement createNodeElement(long nodeID, double latitude, double longitude){
+        return new NodeElement(nodeID, null, null, null, null, null, null, latitude, longitude);
+    }
+
+
+    protected static void assertNodeElement(long nodeID, double latitude, double longitude, NodeElement actual){
+        assertNotNull("Missing node " + nodeID, actual);
+        assertEquals(nodeID, (long) actual.getID());
+        assertEquals(latitude, actual.getLatitude(), DELTA);
+        assertEquals(longitude, actual.getLongitude(), DELTA);
+    }
+
+
+    protected static int count(NodeElementStore store){
+        int result = 0;
+        for(NodeElement ignored : store.values()){
+            result++;
+        }
+        assertEquals(result, store.values().size());
+        return result;
+    }
+}
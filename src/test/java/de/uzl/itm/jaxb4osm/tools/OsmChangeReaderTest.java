@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link OsmChangeReader}, i.e. applying an osmChange file with created, modified and deleted elements to
+ * a grid of 5 x 5 nodes (see {@link OsmTestData}).
+ *
+ * @author Oliver Kleine
+ */
+public class OsmChangeReaderTest {
+
+    private static final int GRID_SIZE = 5;
+
+    //the number of elements of the osmChange file
+    private static final int CHANGE_COUNT = 11;
+
+    private static String document;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createDocument(){
+        document = OsmTestData.createDocument(GRID_SIZE, 11);
+    }
+
+
+    @Test
+    public void testApply() throws Exception{
+        OsmElement osmElement = unmarshal(UnmarshalOptions.create().setFilter(WayTagFilter.STREETS));
+        assertEquals(CHANGE_COUNT, apply(osmElement, UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)));
+
+        //created elements
+        assertEquals(Integer.valueOf(1), osmElement.getNodeElement(100).getVersion());
+        assertNotNull(osmElement.getNodeElement(101));
+        WayElement wayElement = osmElement.getWayElement(20);
+        assertEquals(3, wayElement.getNodeReferenceCount());
+        assertEquals(1, osmElement.getReferencingWayCount(100));
+        assertNotNull(osmElement.getNodeElement(200));
+        assertNotNull(osmElement.getWayElement(21));
+
+        //modified elements replace the previous versions (the first node is referenced by ways 1, 6 and 20)
+        assertEquals(Integer.valueOf(2), osmElement.getNodeElement(1).getVersion());
+        assertEquals(53.7999, osmElement.getNodeElement(1).getLatitude(), 0);
+        assertEquals(3, osmElement.getReferencingWayCount(1));
+
+        wayElement = osmElement.getWayElement(1);
+        assertEquals(Integer.valueOf(3), wayElement.getVersion());
+        assertEquals("Neue Straße", wayElement.getTagValue("name"));
+        assertEquals(3, wayElement.getNodeReferenceCount());
+        assertEquals(1, osmElement.getReferencingWayCount(4));
+
+        //a modified way that does not match the filter anymore and the deleted elements
+        assertNull(osmElement.getWayElement(2));
+        assertNull(osmElement.getWayElement(10));
+        assertNull(osmElement.getNodeElement(1000003));
+        assertEquals(0, osmElement.getReferencingWayCount(10));
+
+        //unreferenced nodes are kept
+        assertNotNull(osmElement.getNodeElement(10));
+        assertNotNull(osmElement.getNodeElement(1000000));
+
+        assertRoundTrip(osmElement, WayTagFilter.STREETS);
+    }
+
+
+    @Test
+    public void testApplyWithoutFilter() throws Exception{
+        OsmElement osmElement = unmarshal(UnmarshalOptions.create());
+        apply(osmElement, UnmarshalOptions.create());
+
+        //the modified way does not match the filter of streets, i.e. it is kept without filter
+        assertEquals("footway", osmElement.getWayElement(2).getTagValue("highway"));
+        assertNotNull(osmElement.getWayElement(2 * GRID_SIZE + 1));
+        assertRoundTrip(osmElement, WayElementFilter.ANY_WAY);
+    }
+
+
+    @Test
+    public void testRemoveUnreferencedNodes() throws Exception{
+        UnmarshalOptions options = UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)
+                .setRemoveUnreferencedNodes(true);
+        OsmElement osmElement = unmarshal(options);
+        assertNull(osmElement.getNodeElement(1000000));
+        int nodeCount = osmElement.getNodeElementsView().size();
+
+        assertEquals(CHANGE_COUNT, apply(osmElement, options));
+
+        //node 5 was referenced by the ways 1 and 10, node 10 by the ways 2 and 10
+        assertNull(osmElement.getNodeElement(5));
+        assertNull(osmElement.getNodeElement(10));
+        assertNotNull(osmElement.getNodeElement(4));
+        assertEquals(nodeCount - 2 + 4, osmElement.getNodeElementsView().size());
+        assertRoundTrip(osmElement, WayTagFilter.STREETS);
+    }
+
+
+    @Test
+    public void testBounds() throws Exception{
+        //the bounds contain the whole grid but not the elements created far away
+        UnmarshalOptions options = UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)
+                .setBounds(new BoundsElement(53.7995, 53.81, 10.5995, 10.61), false);
+        OsmElement osmElement = unmarshal(options);
+        assertEquals(GRID_SIZE * GRID_SIZE, osmElement.getNodeElementsView().size());
+
+        assertEquals(CHANGE_COUNT, apply(osmElement, options));
+        assertNotNull(osmElement.getNodeElement(100));
+        assertNotNull(osmElement.getWayElement(20));
+        assertNull(osmElement.getNodeElement(200));
+        assertNull(osmElement.getNodeElement(201));
+        assertNull(osmElement.getWayElement(21));
+
+        //contained elements are changed anyway
+        assertEquals(53.7999, osmElement.getNodeElement(1).getLatitude(), 0);
+        assertEquals(3, osmElement.getWayElement(1).getNodeReferenceCount());
+        assertNull(osmElement.getWayElement(10));
+    }
+
+
+    @Test
+    public void testBoundsOutsideOfChanges() throws Exception{
+        //the bounds contain the nodes of the third column only
+        UnmarshalOptions options = UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)
+                .setBounds(new BoundsElement(53.7995, 53.81, 10.6029, 10.6034), false);
+        OsmElement osmElement = unmarshal(options);
+        assertEquals(GRID_SIZE, osmElement.getNodeElementsView().size());
+
+        //the way 20 references the first node that is not contained
+        apply(osmElement, options);
+        assertNull(osmElement.getNodeElement(1));
+        assertNull(osmElement.getNodeElement(100));
+        assertNull(osmElement.getWayElement(20));
+        assertEquals(3, osmElement.getWayElement(1).getNodeReferenceCount());
+    }
+
+
+    private OsmElement unmarshal(UnmarshalOptions options) throws Exception{
+        File file = this.temporaryFolder.newFile();
+        try(OutputStream outputStream = new FileOutputStream(file)){
+            outputStream.write(document.getBytes(StandardCharsets.UTF_8));
+        }
+        return OsmUnmarshaller.unmarshal(file, options);
+    }
+
+
+    private static int apply(OsmElement osmElement, UnmarshalOptions options) throws Exception{
+        try(InputStream inputStream = new ByteArrayInputStream(createChange().getBytes(StandardCharsets.UTF_8))){
+            return OsmChangeReader.apply(osmElement, inputStream, options);
+        }
+    }
+
+
+    //the changed element must be the same after writing and reading it
+    private static void assertRoundTrip(OsmElement osmElement, WayElementFilter filter) throws Exception{
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        OsmMarshaller.marshal(osmElement, outputStream, false);
+        OsmTestData.assertOsmElementEquals(osmElement, OsmTestData.unmarshal(
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8), filter));
+    }
+
+
+    private static String createChange(){
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<osmChange version=\"0.6\" generator=\"jaxb4osm test\">\n" +
+                "  <create>\n" +
+                "    <node id=\"100\" lat=\"53.8005\" lon=\"10.6005\" version=\"1\"/>\n" +
+                "    <node id=\"101\" lat=\"53.8015\" lon=\"10.6005\" version=\"1\"/>\n" +
+                "    <way id=\"20\" version=\"1\">\n" +
+                "      <nd ref=\"100\"/>\n      <nd ref=\"101\"/>\n      <nd ref=\"1\"/>\n" +
+                "      <tag k=\"highway\" v=\"residential\"/>\n" +
+                "    </way>\n" +
+                "    <node id=\"200\" lat=\"54.5\" lon=\"11.5\" version=\"1\"/>\n" +
+                "    <node id=\"201\" lat=\"54.5\" lon=\"11.501\" version=\"1\"/>\n" +
+                "    <way id=\"21\" version=\"1\">\n" +
+                "      <nd ref=\"200\"/>\n      <nd ref=\"201\"/>\n" +
+                "      <tag k=\"highway\" v=\"tertiary\"/>\n" +
+                "    </way>\n" +
+                "  </create>\n" +
+                "  <modify>\n" +
+                "    <node id=\"1\" lat=\"53.7999\" lon=\"10.6\" version=\"2\"/>\n" +
+                "    <way id=\"1\" version=\"3\">\n" +
+                "      <nd ref=\"1\"/>\n      <nd ref=\"2\"/>\n      <nd ref=\"3\"/>\n" +
+                "      <tag k=\"highway\" v=\"residential\"/>\n" +
+                "      <tag k=\"name\" v=\"Neue Straße\"/>\n" +
+                "    </way>\n" +
+                "    <way id=\"2\" version=\"3\">\n" +
+                "      <nd ref=\"6\"/>\n      <nd ref=\"7\"/>\n      <nd ref=\"8\"/>\n      <nd ref=\"9\"/>\n" +
+                "      <nd ref=\"10\"/>\n" +
+                "      <tag k=\"highway\" v=\"footway\"/>\n" +
+                "    </way>\n" +
+                "  </modify>\n" +
+                "  <delete>\n" +
+                "    <node id=\"1000003\" lat=\"53.85003\" lon=\"10.65003\" version=\"2\"/>\n" +
+                "    <way id=\"10\" version=\"3\"/>\n" +
+                "  </delete>\n" +
+                "</osmChange>\n";
+    }
+}
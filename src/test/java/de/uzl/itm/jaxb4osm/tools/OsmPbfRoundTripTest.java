@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.MetadataMode;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.store.ColumnarNodeElementStore;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link OsmPbfMarshaller} and {@link OsmPbfUnmarshaller}, i.e. writing an {@link OsmElement} into a PBF
+ * file and reading it again.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmPbfRoundTripTest {
+
+    private static String document;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createDocument(){
+        document = OsmTestData.createDocument(20, 42);
+    }
+
+
+    @Test
+    public void testRoundTrip() throws Exception{
+        OsmElement expected = OsmUnmarshaller.unmarshal(writeDocument(), WayElementFilter.ANY_WAY, false);
+        File file = marshal(expected, null);
+
+        OsmElement actual = OsmPbfUnmarshaller.unmarshal(file, WayElementFilter.ANY_WAY, false);
+        OsmTestData.assertOsmElementEquals(expected, actual);
+
+        //the bounds of the document (see OsmTestData)
+        assertEquals(53.8, actual.getBoundsElement().getMinLatitude(), 1e-9);
+        assertEquals(53.9, actual.getBoundsElement().getMaxLatitude(), 1e-9);
+        assertEquals(10.6, actual.getBoundsElement().getMinLongitude(), 1e-9);
+        assertEquals(10.8, actual.getBoundsElement().getMaxLongitude(), 1e-9);
+    }
+
+
+    @Test
+    public void testRoundTripWithExecutorService() throws Exception{
+        OsmElement expected = OsmTestData.unmarshal(document, WayElementFilter.ANY_WAY);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try{
+            File file = marshal(expected, executorService);
+            OsmElement actual = OsmPbfUnmarshaller.unmarshal(file,
+                    UnmarshalOptions.create().setExecutorService(executorService));
+            OsmTestData.assertOsmElementEquals(expected, actual);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void testRemoveUnreferencedNodes() throws Exception{
+        File file = marshal(OsmTestData.unmarshal(document, WayElementFilter.ANY_WAY), null);
+
+        //the XML reader is the reference for the filters
+        OsmElement expected = OsmUnmarshaller.unmarshal(writeDocument(), WayTagFilter.STREETS, true);
+        OsmElement actual = OsmPbfUnmarshaller.unmarshal(file, WayTagFilter.STREETS, true);
+        OsmTestData.assertOsmElementEquals(expected, actual);
+        assertEquals(20 * 20, actual.getNodeElementsView().size());
+    }
+
+
+    @Test
+    public void testParseListener() throws Exception{
+        File file = marshal(OsmTestData.unmarshal(document, WayElementFilter.ANY_WAY), null);
+
+        //the XML reader is the reference for the counters
+        ParseStatistics expected = new ParseStatistics();
+        OsmUnmarshaller.unmarshal(writeDocument(), UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)
+                .setRemoveUnreferencedNodes(true).setParseListener(expected));
+
+        ParseStatistics actual = new ParseStatistics();
+        OsmPbfUnmarshaller.unmarshal(file, UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)
+                .setRemoveUnreferencedNodes(true).setParseListener(actual));
+
+        assertEquals(expected.getPhaseDurations().keySet(), actual.getPhaseDurations().keySet());
+        assertEquals(expected.getProgress().getNodesSeen(), actual.getProgress().getNodesSeen());
+        assertEquals(expected.getProgress().getNodesKept(), actual.getProgress().getNodesKept());
+        assertEquals(expected.getProgress().getWaysSeen(), actual.getProgress().getWaysSeen());
+        assertEquals(expected.getProgress().getWaysKept(), actual.getProgress().getWaysKept());
+
+        //the blobs are decompressed by the reader, i.e. the parser reads the bytes of the file (twice)
+        assertEquals(2 * file.length(), actual.getProgress().getFileBytesRead());
+        assertEquals(2 * file.length(), actual.getProgress().getBytesRead());
+    }
+
+
+    @Test
+    public void testEmptyStrings() throws Exception{
+        OsmElement expected = OsmTestData.unmarshal(document, WayElementFilter.ANY_WAY);
+
+        //index 0 of the string table is the delimiter of the tags of DenseNodes
+        expected.getNodeElement(1).getTags().put("fixme", "");
+        expected.getNodeElement(2).getTags().put("", "empty key");
+        expected.getNodeElement(3).getTags().put("note", "");
+        expected.getWayElement(1).getTags().put("fixme", "");
+
+        OsmElement actual = OsmPbfUnmarshaller.unmarshal(marshal(expected, null), WayElementFilter.ANY_WAY, false);
+        OsmTestData.assertOsmElementEquals(expected, actual);
+        assertEquals("", actual.getNodeElement(1).getTagValue("fixme"));
+        assertEquals("empty key", actual.getNodeElement(2).getTagValue(""));
+    }
+
+
+    @Test
+    public void testColumnarNodeElementStore() throws Exception{
+        //the store drops the metadata of untagged nodes, i.e. the blocks would not contain any metadata anyway
+        OsmElement expected = OsmUnmarshaller.unmarshal(writeDocument(), UnmarshalOptions.create()
+                .setNodeElementStore(new ColumnarNodeElementStore()).setMetadataMode(MetadataMode.SKIP));
+
+        //nodes added out of order are kept apart from the sorted nodes of the store
+        expected.addNodeElement(new NodeElement(5L, null, null, null, null, null, null, 53.95, 10.95));
+
+        OsmElement actual = OsmPbfUnmarshaller.unmarshal(marshal(expected, null), UnmarshalOptions.create()
+                .setNodeElementStore(new ColumnarNodeElementStore()));
+        OsmTestData.assertOsmElementEquals(expected, actual);
+        assertEquals(53.95, actual.getNodeElement(5).getLatitude(), 1e-9);
+    }
+
+
+    @Test(expected = Exception.class)
+    public void testNoPbfFile() throws Exception{
+        File file = this.temporaryFolder.newFile("test.osm.pbf");
+        try(OutputStream outputStream = new FileOutputStream(file)){
+            outputStream.write(document.getBytes(StandardCharsets.UTF_8));
+        }
+
+        OsmPbfUnmarshaller.unmarshal(file, WayElementFilter.ANY_WAY, false);
+    }
+
+
+    private File writeDocument() throws Exception{
+        File file = this.temporaryFolder.newFile("test.osm");
+        try(OutputStream outputStream = new FileOutputStream(file)){
+            outputStream.write(document.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+
+    private File marshal(OsmElement osmElement, ExecutorService executorService) throws Exception{
+        File file = this.temporaryFolder.newFile();
+        try(OutputStream outputStream = new FileOutputStream(file)){
+            if(executorService == null){
+                OsmPbfMarshaller.marshal(osmElement, outputStream);
+            }
+            else{
+                OsmPbfMarshaller.marshal(osmElement, outputStream, executorService);
+            }
+        }
+        return file;
+    }
+}
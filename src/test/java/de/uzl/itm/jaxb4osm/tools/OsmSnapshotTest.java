@@ -0,0 +1,393 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.store.HashNodeElementStore;
+import de.uzl.itm.jaxb4osm.store.NodeElementStore;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link OsmSnapshot}, i.e. saving and loading {@link OsmElement}s and the rejection of corrupt snapshots.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmSnapshotTest {
+
+    private static OsmElement osmElement;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createOsmElement() throws Exception{
+        osmElement = OsmTestData.unmarshal(OsmTestData.createDocument(15, 7), WayElementFilter.ANY_WAY);
+    }
+
+
+    @Test
+    public void testRoundTrip() throws Exception{
+        OsmElement actual = load(save(osmElement));
+        OsmTestData.assertOsmElementEquals(osmElement, actual);
+        assertEquals(osmElement.getVersion(), actual.getVersion());
+        assertEquals(osmElement.getGenerator(), actual.getGenerator());
+        assertNull(actual.getBoundsElement());
+    }
+
+
+    @Test
+    public void testRoundTripWithFile() throws Exception{
+        File xmlFile = this.temporaryFolder.newFile("test.osm");
+        try(OutputStream outputStream = new FileOutputStream(xmlFile)){
+            outputStream.write(OsmTestData.createDocument(15, 7).getBytes(StandardCharsets.UTF_8));
+        }
+        OsmElement expected = OsmUnmarshaller.unmarshal(xmlFile, WayTagFilter.STREETS, true);
+
+        File file = this.temporaryFolder.newFile("test.snapshot");
+        OsmSnapshot.save(expected, file);
+        OsmElement actual = OsmSnapshot.load(file);
+
+        OsmTestData.assertOsmElementEquals(expected, actual);
+        assertEquals(expected.getBoundsElement().getMinLatitude(), actual.getBoundsElement().getMinLatitude(), 0);
+        assertEquals(expected.getBoundsElement().getMaxLongitude(), actual.getBoundsElement().getMaxLongitude(), 0);
+    }
+
+
+    @Test
+    public void testEmptyOsmElement() throws Exception{
+        OsmElement actual = load(save(new OsmElement()));
+        assertTrue(actual.getNodeElementsView().isEmpty());
+        assertTrue(actual.getWayElementsView().isEmpty());
+    }
+
+
+    @Test
+    public void testBadMagic() throws Exception{
+        byte[] snapshot = save(osmElement);
+        snapshot[0] = 'X';
+        assertRejected(snapshot, "No snapshot!");
+    }
+
+
+    @Test
+    public void testUnsupportedVersion() throws Exception{
+        byte[] snapshot = save(osmElement);
+        snapshot[7]++;
+        assertRejected(snapshot, "Unsupported snapshot version");
+    }
+
+
+    @Test
+    public void testBadChecksum() throws Exception{
+        byte[] snapshot = save(osmElement);
+        snapshot[snapshot.length - 1] ^= 0x01;
+        assertRejected(snapshot, "checksum mismatch");
+    }
+
+
+    @Test
+    public void testStoreNotFilledIfCorrupt() throws Exception{
+        byte[] snapshot = save(osmElement);
+        snapshot[snapshot.length - 1] ^= 0x01;
+
+        NodeElementStore nodeElementStore = new HashNodeElementStore();
+        try{
+            OsmSnapshot.load(new ByteArrayInputStream(snapshot), nodeElementStore);
+            fail("Snapshot was not rejected!");
+        }
+        catch(IOException ex){
+            assertEquals(0, nodeElementStore.size());
+        }
+    }
+
+
+    @Test
+    public void testLargeCounts() throws Exception{
+        //the snapshot of an empty element: magic, version, five null strings, no bounds, three counts and checksum
+        byte[] snapshot = save(new OsmElement());
+        assertEquals(8 + 5 + 1 + 3 + 4, snapshot.length);
+
+        //the string length and the counts of strings, nodes and ways must not cause huge allocations
+        for(int position : new int[]{8, 14, 15, 16}){
+            for(long count : new long[]{Integer.MAX_VALUE, Integer.MAX_VALUE / 19, 1 << 20}){
+                ByteArrayOutputStream corrupt = new ByteArrayOutputStream();
+                corrupt.write(snapshot, 0, position);
+                for(long value = count; ; value >>>= 7){
+                    if(value < 0x80){
+                        corrupt.write((int) value);
+                        break;
+                    }
+                    corrupt.write((int) (value & 0x7F) | 0x80);
+                }
+                corrupt.write(snapshot, position + 1, snapshot.length - position - 1);
+
+                assertRejected(corrupt.toByteArray(), "");
+                File file = this.temporaryFolder.newFile();
+                try(OutputStream outputStream = new FileOutputStream(file)){
+                    outputStream.write(corrupt.toByteArray());
+                }
+                try{
+                    OsmSnapshot.load(file);
+                    fail("Count " + count + " at position " + position + " was not rejected!");
+                }
+                catch(IOException ex){
+                    assertTrue(ex.getMessage(), ex.getMessage().startsWith("Invalid count"));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testSnapshotFields() throws Exception{
+        //the unchanged fields describe a valid snapshot, i.e. the tests below change exactly one field
+        OsmElement actual = load(new SnapshotFields().toByteArray());
+        assertEquals("0.6", actual.getVersion());
+        assertEquals("residential", actual.getNodeElement(5).getTagValue("highway"));
+        assertEquals(Integer.valueOf(3), actual.getNodeElement(5).getVersion());
+        assertEquals(2, actual.getWayElement(7).getNodeReferenceCount());
+        assertEquals(1, actual.getReferencingWayCount(5));
+    }
+
+
+    @Test
+    public void testCorruptStringLength() throws Exception{
+        SnapshotFields fields = new SnapshotFields();
+        fields.versionLength = 1000;
+        assertInvalidCount(fields);
+
+        //the string takes the string count and the strings
+        fields.versionLength = 5;
+        assertRejected(fields.toByteArray(), "");
+    }
+
+
+    @Test
+    public void testCorruptStringCount() throws Exception{
+        SnapshotFields fields = new SnapshotFields();
+        fields.stringCount = 1000;
+        assertInvalidCount(fields);
+
+        //the missing string is taken for the nodes
+        fields.stringCount = 1;
+        assertRejected(fields.toByteArray(), "");
+    }
+
+
+    @Test
+    public void testCorruptStringIndex() throws Exception{
+        SnapshotFields fields = new SnapshotFields();
+        fields.keyIndex = 2;
+        assertRejected(fields.toByteArray(), "Invalid string index in snapshot: 2");
+
+        fields.keyIndex = 1L << 40;
+        assertRejected(fields.toByteArray(), "Invalid string index");
+    }
+
+
+    @Test
+    public void testCorruptNodeCount() throws Exception{
+        SnapshotFields fields = new SnapshotFields();
+        fields.nodeCount = 1000;
+        assertInvalidCount(fields);
+
+        //every node takes at least 19 bytes, i.e. the 26 bytes behind the count may contain one node only
+        fields.nodeCount = 2;
+        assertInvalidCount(fields);
+    }
+
+
+    @Test
+    public void testCorruptTagCount() throws Exception{
+        SnapshotFields fields = new SnapshotFields();
+        fields.tagCount = 1000;
+        assertInvalidCount(fields);
+
+        //the way count and the ID of the way are taken for the missing tag
+        fields.tagCount = 2;
+        assertRejected(fields.toByteArray(), "");
+    }
+
+
+    @Test
+    public void testCorruptWayCount() throws Exception{
+        SnapshotFields fields = new SnapshotFields();
+        fields.wayCount = 1000;
+        assertInvalidCount(fields);
+
+        //the checksum is taken for the missing way
+        fields.wayCount = 2;
+        assertRejected(fields.toByteArray(), "");
+    }
+
+
+    @Test
+    public void testCorruptReferenceCount() throws Exception{
+        SnapshotFields fields = new SnapshotFields();
+        fields.referenceCount = 1000;
+        assertInvalidCount(fields);
+
+        //the last reference is taken for the first byte of the checksum
+        fields.referenceCount = 1;
+        assertRejected(fields.toByteArray(), "checksum mismatch");
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testTruncatedSnapshot() throws Exception{
+        byte[] snapshot = save(osmElement);
+        load(Arrays.copyOf(snapshot, snapshot.length - 10));
+    }
+
+
+    private static void assertRejected(byte[] snapshot, String message) throws Exception{
+        try{
+            load(snapshot);
+            fail("Snapshot was not rejected!");
+        }
+        catch(IOException ex){
+            assertTrue(ex.getMessage(), ex.getMessage().contains(message));
+        }
+    }
+
+
+    //the count exceeds the remaining bytes of the file, the stream (of unknown length) ends before the elements
+    private void assertInvalidCount(SnapshotFields fields) throws Exception{
+        File file = this.temporaryFolder.newFile();
+        try(OutputStream outputStream = new FileOutputStream(file)){
+            outputStream.write(fields.toByteArray());
+        }
+        try{
+            OsmSnapshot.load(file);
+            fail("Count was not rejected!");
+        }
+        catch(IOException ex){
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Invalid count"));
+        }
+
+        assertRejected(fields.toByteArray(), "");
+    }
+
+
+    private static byte[] save(OsmElement osmElement) throws Exception{
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        OsmSnapshot.save(osmElement, outputStream);
+        return outputStream.toByteArray();
+    }
+
+
+    private static OsmElement load(byte[] snapshot) throws Exception{
+        return OsmSnapshot.load(new ByteArrayInputStream(snapshot), new HashNodeElementStore());
+    }
+
+
+    /**
+     * The fields of a snapshot containing one tagged node and one way referencing that node twice. The counts and
+     * lengths may be changed to create corrupt snapshots (with a valid checksum).
+     */
+    private static class SnapshotFields {
+
+        private long versionLength = "0.6".length() + 1;
+        private long stringCount = 2;
+        private long nodeCount = 1;
+        private long tagCount = 1;
+        private long keyIndex = 0;
+        private long wayCount = 1;
+        private long referenceCount = 2;
+
+        private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        private byte[] toByteArray() throws IOException{
+            this.outputStream.reset();
+            this.outputStream.write(new byte[]{'J', '4', 'O', 'S', 0, 0, 0, OsmSnapshot.FORMAT_VERSION});
+
+            //version, generator, copyright, attribution and license followed by the (missing) bounds
+            writeVarint(this.versionLength);
+            this.outputStream.write("0.6".getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(new byte[]{0, 0, 0, 0, 0});
+
+            writeVarint(this.stringCount);
+            writeString("highway");
+            writeString("residential");
+
+            //ID, coordinates, flags (version), version, tag count and tag of the node
+            writeVarint(this.nodeCount);
+            writeVarint(5 << 1);
+            this.outputStream.write(ByteBuffer.allocate(16).putDouble(53.8).putDouble(10.6).array());
+            writeVarint(0x01);
+            writeVarint(3 << 1);
+            writeVarint(this.tagCount);
+            writeVarint(this.keyIndex);
+            writeVarint(1);
+
+            //ID, flags, tag count and (delta encoded) references of the way
+            writeVarint(this.wayCount);
+            writeVarint(7 << 1);
+            writeVarint(0);
+            writeVarint(0);
+            writeVarint(this.referenceCount);
+            writeVarint(5 << 1);
+            writeVarint(0);
+
+            CRC32 checksum = new CRC32();
+            checksum.update(this.outputStream.toByteArray());
+            this.outputStream.write(ByteBuffer.allocate(4).putInt((int) checksum.getValue()).array());
+            return this.outputStream.toByteArray();
+        }
+
+        private void writeString(String string) throws IOException{
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            this.outputStream.write(bytes);
+        }
+
+        private void writeVarint(long value){
+            while((value & ~0x7FL) != 0){
+                this.outputStream.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.outputStream.write((int) value);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Creates small OSM documents for the tests, i.e. a grid of streets (with one-way streets, non-ASCII names and
+ * metadata) plus some unreferenced nodes, and compares the elements of {@link OsmElement}s.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmTestData {
+
+    private static final String[] NAMES = {"Wallstraße", "Große Burgstraße", "Königstraße", "Beckergrube"};
+
+    /**
+     * Returns an OSM document containing a grid of the given size. The coordinates have at most 7 decimal places
+     * and the timestamps have full seconds, i.e. they are not changed by the PBF format.
+     *
+     * @param gridSize the number of rows and columns of the grid
+     * @param seed the seed for the (slightly random) coordinates
+     *
+     * @return an OSM document containing a grid of the given size
+     */
+    public static String createDocument(int gridSize, long seed){
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        builder.append("<osm version=\"0.6\" generator=\"jaxb4osm test\">\n");
+        builder.append("  <bounds minlat=\"53.8\" minlon=\"10.6\" maxlat=\"53.9\" maxlon=\"10.8\"/>\n");
+
+        for(int row = 0; row < gridSize; row++){
+            for(int column = 0; column < gridSize; column++){
+                double latitude = 53.8 + row * 0.001 + random.nextInt(300) * 1e-7;
+                double longitude = 10.6 + column * 0.0015 + random.nextInt(300) * 1e-7;
+                builder.append(String.format(Locale.ROOT, "  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\" version=\"%d\" " +
+                        "timestamp=\"2014-0%d-1%dT12:34:5%dZ\" changeset=\"%d\" user=\"mapper%d\" uid=\"%d\"/>\n",
+                        getNodeID(gridSize, row, column), latitude, longitude, 1 + row % 3, 1 + column % 9, row % 10,
+                        column % 10, 1000 + row, row % 4, 100 + row % 4));
+            }
+        }
+
+        //unreferenced nodes with tags (metadata is complete as the PBF format only keeps it for complete blocks)
+        for(int i = 0; i < gridSize; i++){
+            builder.append(String.format(Locale.ROOT, "  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\" version=\"1\" " +
+                    "timestamp=\"2014-02-03T04:05:06Z\" changeset=\"2000\" user=\"Jörg\" uid=\"200\">\n" +
+                    "    <tag k=\"amenity\" v=\"bench\"/>\n    <tag k=\"name\" v=\"%s &amp; &lt;%d&gt;\"/>\n  </node>\n",
+                    1000000L + i, 53.85 + i * 1e-5, 10.65 + i * 1e-5, NAMES[i % NAMES.length], i));
+        }
+
+        long wayID = 1;
+        for(int row = 0; row < gridSize; row++){
+            appendWay(builder, wayID++, gridSize, row, -1, row % 4 == 1 ? "yes" : null, "residential");
+        }
+        for(int column = 0; column < gridSize; column++){
+            appendWay(builder, wayID++, gridSize, -1, column, column % 5 == 2 ? "-1" : null, "tertiary");
+        }
+
+        //a building that is not a street
+        builder.append("  <way id=\"").append(wayID).append("\" version=\"1\">\n");
+        for(long nodeID : new long[]{1000000L, 1000001L, 1000002L, 1000000L}){
+            builder.append("    <nd ref=\"").append(nodeID).append("\"/>\n");
+        }
+        builder.append("    <tag k=\"building\" v=\"yes\"/>\n  </way>\n");
+
+        builder.append("</osm>\n");
+        return builder.toString();
+    }
+
+
+    /**
+     * Returns the ID of the node at the given position of the grid
+     *
+     * @param gridSize the number of rows and columns of the grid
+     * @param row the row of the node
+     * @param column the column of the node
+     *
+     * @return the ID of the node at the given position of the grid
+     */
+    public static long getNodeID(int gridSize, int row, int column){
+        return 1 + row * gridSize + column;
+    }
+
+
+    /**
+     * Unmarshals the given OSM document (without removing unreferenced nodes)
+     *
+     * @param document the OSM document
+     * @param filter the {@link WayElementFilter} to be applied
+     *
+     * @return the unmarshalled {@link OsmElement}
+     *
+     * @throws Exception if some error occurred
+     */
+    public static OsmElement unmarshal(String document, WayElementFilter filter) throws Exception{
+        return OsmUnmarshaller.unmarshal(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), filter,
+                false);
+    }
+
+
+    /**
+     * Asserts that both {@link OsmElement}s contain the same nodes and ways (including their tags and metadata)
+     *
+     * @param expected the expected {@link OsmElement}
+     * @param actual the actual {@link OsmElement}
+     */
+    public static void assertOsmElementEquals(OsmElement expected, OsmElement actual){
+        assertEquals(expected.getNodeElementsView().size(), actual.getNodeElementsView().size());
+        for(NodeElement expectedNode : expected.getNodeElementsView()){
+            NodeElement actualNode = actual.getNodeElement(expectedNode.getID());
+            assertNotNull("Missing node " + expectedNode.getID(), actualNode);
+            assertEquals(expectedNode.getLatitude(), actualNode.getLatitude(), 1e-9);
+            assertEquals(expectedNode.getLongitude(), actualNode.getLongitude(), 1e-9);
+            assertEquals(expectedNode.getTags(), actualNode.getTags());
+            assertMetadataEquals(expectedNode, actualNode);
+        }
+
+        assertEquals(expected.getWayElementsView().size(), actual.getWayElementsView().size());
+        for(WayElement expectedWay : expected.getWayElementsView()){
+            WayElement actualWay = actual.getWayElement(expectedWay.getID());
+            assertNotNull("Missing way " + expectedWay.getID(), actualWay);
+            assertEquals(expectedWay.getTags(), actualWay.getTags());
+            assertEquals(expectedWay.getNodeReferenceCount(), actualWay.getNodeReferenceCount());
+            for(int i = 0; i < expectedWay.getNodeReferenceCount(); i++){
+                assertEquals(expectedWay.getNodeReference(i), actualWay.getNodeReference(i));
+            }
+            assertEquals(expected.getReferencingWayCount(expectedWay.getNodeReference(0)),
+                    actual.getReferencingWayCount(expectedWay.getNodeReference(0)));
+            assertMetadataEquals(expectedWay, actualWay);
+        }
+    }
+
+
+    private static void assertMetadataEquals(NodeElement expected, NodeElement actual){
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getChangeset(), actual.getChangeset());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getUser(), actual.getUser());
+        assertEquals(expected.getUserID(), actual.getUserID());
+        assertEquals(expected.isVisible(), actual.isVisible());
+    }
+
+
+    private static void assertMetadataEquals(WayElement expected, WayElement actual){
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.isVisible(), actual.isVisible());
+    }
+
+
+    private static void appendWay(StringBuilder builder, long wayID, int gridSize, int row, int column, String oneWay,
+                                  String highway){
+
+        builder.append("  <way id=\"").append(wayID).append("\" version=\"2\" timestamp=\"2014-05-06T07:08:09Z\">\n");
+        for(int i = 0; i < gridSize; i++){
+            long nodeID = row >= 0 ? getNodeID(gridSize, row, i) : getNodeID(gridSize, i, column);
+            builder.append("    <nd ref=\"").append(nodeID).append("\"/>\n");
+        }
+        builder.append("    <tag k=\"highway\" v=\"").append(highway).append("\"/>\n");
+        builder.append("    <tag k=\"name\" v=\"").append(NAMES[(int) (wayID % NAMES.length)]).append("\"/>\n");
+        if(oneWay != null){
+            builder.append("    <tag k=\"oneway\" v=\"").append(oneWay).append("\"/>\n");
+        }
+        builder.append("  </way>\n");
+    }
+}
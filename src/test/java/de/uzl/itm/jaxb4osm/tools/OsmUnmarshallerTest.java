@@ -0,0 +1,435 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.MetadataMode;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.store.ColumnarNodeElementStore;
+import de.uzl.itm.jaxb4osm.store.NodeElementStore;
+import de.uzl.itm.jaxb4osm.util.Compression;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link OsmUnmarshaller}, i.e. reading OSM files according to {@link UnmarshalOptions}.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmUnmarshallerTest {
+
+    private static String document;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createDocument(){
+        document = OsmTestData.createDocument(20, 42);
+    }
+
+
+    @Test
+    public void testDefaultOptions() throws Exception{
+        OsmElement expected = OsmTestData.unmarshal(document, WayElementFilter.ANY_WAY);
+        OsmElement actual = OsmUnmarshaller.unmarshal(writeDocument(), UnmarshalOptions.create());
+        OsmTestData.assertOsmElementEquals(expected, actual);
+    }
+
+
+    @Test
+    public void testRemoveUnreferencedNodes() throws Exception{
+        //the JAXB reader is the reference for the filters
+        OsmElement expected = OsmUnmarshaller.unmarshal(new ByteArrayInputStream(
+                document.getBytes(StandardCharsets.UTF_8)), WayTagFilter.STREETS, true);
+        OsmElement actual = OsmUnmarshaller.unmarshal(writeDocument(), UnmarshalOptions.create()
+                .setFilter(WayTagFilter.STREETS).setRemoveUnreferencedNodes(true));
+
+        OsmTestData.assertOsmElementEquals(expected, actual);
+        assertEquals(20 * 20, actual.getNodeElementsView().size());
+    }
+
+
+    @Test
+    public void testNodeElementStore() throws Exception{
+        NodeElementStore nodeElementStore = new ColumnarNodeElementStore();
+        OsmElement actual = OsmUnmarshaller.unmarshal(writeDocument(), UnmarshalOptions.create()
+                .setNodeElementStore(nodeElementStore));
+
+        assertEquals(20 * 20 + 20, nodeElementStore.size());
+        assertEquals(20 * 20 + 20, actual.getNodeElementsView().size());
+        nodeElementStore.remove(1);
+        assertNull(actual.getNodeElement(1));
+    }
+
+
+    @Test
+    public void testSkipMetadata() throws Exception{
+        OsmElement actual = OsmUnmarshaller.unmarshal(writeDocument(), UnmarshalOptions.create()
+                .setMetadataMode(MetadataMode.SKIP));
+
+        NodeElement nodeElement = actual.getNodeElement(OsmTestData.getNodeID(20, 1, 1));
+        assertNull(nodeElement.getVersion());
+        assertNull(nodeElement.getTimestamp());
+        assertEquals(20 * 20 + 20, actual.getNodeElementsView().size());
+    }
+
+
+    @Test
+    public void testForkJoinPool() throws Exception{
+        //duplicate IDs in the last chunk, i.e. the node replaces the first one while the way is ignored
+        String document = OsmUnmarshallerTest.document.replace("</osm>",
+                "  <node id=\"1\" lat=\"53.95\" lon=\"10.95\"/>\n" +
+                "  <way id=\"1\">\n    <nd ref=\"2\"/>\n    <nd ref=\"3\"/>\n  </way>\n</osm>");
+        File file = writeDocument(document);
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(3);
+        try{
+            for(boolean removeUnreferencedNodes : new boolean[]{false, true}){
+                //the columnar store drops the metadata of untagged nodes, i.e. both results use it
+                OsmElement expected = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create()
+                        .setFilter(WayTagFilter.STREETS).setRemoveUnreferencedNodes(removeUnreferencedNodes)
+                        .setNodeElementStore(new ColumnarNodeElementStore()));
+
+                NodeElementStore nodeElementStore = new ColumnarNodeElementStore();
+                UnmarshalOptions options = UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)
+                        .setRemoveUnreferencedNodes(removeUnreferencedNodes).setNodeElementStore(nodeElementStore)
+                        .setForkJoinPool(forkJoinPool);
+
+                //small chunks, i.e. the file is split into as many chunks as possible
+                OsmElement actual = new ParallelOsmReader(file, options, 4096).read();
+                OsmTestData.assertOsmElementEquals(expected, actual);
+                assertEquals(53.95, actual.getNodeElement(1).getLatitude(), 1e-9);
+                assertEquals(20, actual.getWayElement(1).getNodeReferenceCount());
+                assertEquals(expected.getNodeElementsView().size(), nodeElementStore.size());
+                assertEquals(expected.getBoundsElement().getMaxLatitude(),
+                        actual.getBoundsElement().getMaxLatitude(), 1e-9);
+            }
+        }
+        finally{
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void testBounds() throws Exception{
+        //rows 5 to 7 and columns 3 to 5 of the grid (see OsmTestData)
+        BoundsElement bounds = new BoundsElement(53.8045, 53.8075, 10.604, 10.6085);
+        File file = writeDocument();
+
+        OsmElement actual = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setBounds(bounds, false));
+        assertEquals(9, actual.getNodeElementsView().size());
+        for(int row = 5; row <= 7; row++){
+            for(int column = 3; column <= 5; column++){
+                assertNotNull(actual.getNodeElement(OsmTestData.getNodeID(20, row, column)));
+            }
+        }
+
+        //the ways of the rows and columns keep their references to the nodes outside of the bounds
+        assertEquals(6, actual.getWayElementsView().size());
+        for(long wayID : new long[]{6, 7, 8, 24, 25, 26}){
+            assertEquals(20, actual.getWayElement(wayID).getNodeReferenceCount());
+        }
+
+        //the intersection of the bounds of the file and the given bounds
+        assertEquals(53.8045, actual.getBoundsElement().getMinLatitude(), 0);
+        assertEquals(10.6085, actual.getBoundsElement().getMaxLongitude(), 0);
+
+        //the nodes of the ways outside of the bounds are added
+        actual = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setBounds(bounds, true));
+        assertEquals(3 * 20 + 3 * 20 - 9, actual.getNodeElementsView().size());
+        assertEquals(6, actual.getWayElementsView().size());
+        assertEquals(53.8045, actual.getBoundsElement().getMinLatitude(), 0);
+    }
+
+
+    @Test
+    public void testCrossingWays() throws Exception{
+        //between the rows 5 and 6 around column 5, i.e. the way of column 5 crosses the bounds without any node
+        BoundsElement bounds = new BoundsElement(53.8052, 53.8058, 10.607, 10.608);
+        File file = writeDocument();
+
+        OsmElement actual = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setBounds(bounds, false));
+        assertEquals(0, actual.getNodeElementsView().size());
+        assertEquals(0, actual.getWayElementsView().size());
+
+        actual = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setBounds(bounds, false)
+                .setCrossingWays(true));
+        assertEquals(0, actual.getNodeElementsView().size());
+        assertEquals(1, actual.getWayElementsView().size());
+        assertEquals(20, actual.getWayElement(20 + 5 + 1).getNodeReferenceCount());
+
+        //the complete way
+        actual = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setBounds(bounds, true)
+                .setCrossingWays(true));
+        assertEquals(20, actual.getNodeElementsView().size());
+        for(int row = 0; row < 20; row++){
+            assertNotNull(actual.getNodeElement(OsmTestData.getNodeID(20, row, 5)));
+        }
+
+        //the ways crossing the bounds of testBounds also have nodes within the bounds, i.e. they are not added twice
+        bounds = new BoundsElement(53.8045, 53.8075, 10.604, 10.6085);
+        actual = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setBounds(bounds, false)
+                .setCrossingWays(true));
+        assertEquals(9, actual.getNodeElementsView().size());
+        assertEquals(6, actual.getWayElementsView().size());
+    }
+
+
+    @Test
+    public void testSharedThreadPool() throws Exception{
+        List<File> files = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            File file = this.temporaryFolder.newFile("test" + i + ".osm.bz2");
+            try(OutputStream outputStream = Compression.openOutputStream(file)){
+                outputStream.write(document.getBytes(StandardCharsets.UTF_8));
+            }
+            files.add(file);
+        }
+
+        //the files are decompressed by the same threads instead of a pool per file
+        OsmElement expected = OsmTestData.unmarshal(document, WayElementFilter.ANY_WAY);
+        ExecutorService executorService = Executors.newFixedThreadPool(files.size());
+        try{
+            for(Future<OsmElement> actual : OsmUnmarshaller.unmarshal(files, UnmarshalOptions.create(),
+                    executorService).values()){
+                OsmTestData.assertOsmElementEquals(expected, actual.get());
+            }
+        }
+        finally{
+            executorService.shutdownNow();
+        }
+
+        int workerCount = 0;
+        for(Thread thread : Thread.getAllStackTraces().keySet()){
+            if(thread.getName().startsWith("jaxb4osm-worker-")){
+                assertTrue(thread.isDaemon());
+                workerCount++;
+            }
+        }
+        assertTrue(workerCount > 0 && workerCount <= Runtime.getRuntime().availableProcessors());
+    }
+
+
+    @Test
+    public void testParseListener() throws Exception{
+        File file = writeDocument();
+        ParseStatistics statistics = new ParseStatistics();
+        OsmElement osmElement = OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create()
+                .setFilter(WayTagFilter.STREETS).setRemoveUnreferencedNodes(true).setParseListener(statistics));
+
+        assertEquals(EnumSet.of(ParsePhase.READ_WAYS, ParsePhase.COLLECT_NODE_IDS, ParsePhase.READ_NODES),
+                statistics.getPhaseDurations().keySet());
+
+        //the first pass skips the nodes and the second pass skips the ways, i.e. the file is read twice
+        ParseProgress progress = statistics.getProgress();
+        assertEquals(ParsePhase.READ_NODES, progress.getPhase());
+        assertEquals(20 * 20 + 20, progress.getNodesSeen());
+        assertEquals(osmElement.getNodeElementsView().size(), progress.getNodesKept());
+        assertEquals(2 * 20 + 1, progress.getWaysSeen());
+        assertEquals(osmElement.getWayElementsView().size(), progress.getWaysKept());
+        assertEquals(2 * file.length(), progress.getFileBytesRead());
+        assertEquals(progress.getFileBytesRead(), progress.getBytesRead());
+    }
+
+
+    @Test
+    public void testParseListenerCompressedFile() throws Exception{
+        byte[] data = document.getBytes(StandardCharsets.UTF_8);
+        for(String suffix : new String[]{".osm.gz", ".osm.bz2"}){
+            File file = this.temporaryFolder.newFile("test" + suffix);
+            try(OutputStream outputStream = Compression.openOutputStream(file)){
+                outputStream.write(data);
+            }
+
+            //the parser reads the decompressed bytes while the compressed bytes are read from the file
+            ParseStatistics statistics = new ParseStatistics();
+            OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setParseListener(statistics));
+
+            ParseProgress progress = statistics.getProgress();
+            assertEquals(suffix, file.length(), progress.getFileBytesRead());
+            assertEquals(suffix, data.length, progress.getBytesRead());
+        }
+    }
+
+
+    @Test
+    public void testParseListenerFailedPhase() throws Exception{
+        File file = writeDocument(document.substring(0, document.length() / 2));
+        final List<ParsePhase> startedPhases = new ArrayList<>();
+        final List<ParsePhase> finishedPhases = new ArrayList<>();
+        ParseListener listener = new ParseListener() {
+            @Override
+            public void handlePhaseStarted(ParsePhase phase){
+                startedPhases.add(phase);
+            }
+
+            @Override
+            public void handlePhaseFinished(ParsePhase phase, long duration){
+                finishedPhases.add(phase);
+            }
+        };
+
+        try{
+            OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setRemoveUnreferencedNodes(true)
+                    .setParseListener(listener));
+            fail("The truncated file was not rejected!");
+        }
+        catch(Exception ex){
+            //the first pass failed
+            assertEquals(Collections.singletonList(ParsePhase.READ_WAYS), startedPhases);
+            assertEquals(startedPhases, finishedPhases);
+        }
+    }
+
+
+    @Test
+    public void testParseListenerForkJoinPool() throws Exception{
+        File file = writeDocument();
+        ParseStatistics expected = new ParseStatistics();
+        OsmUnmarshaller.unmarshal(file, UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)
+                .setRemoveUnreferencedNodes(true).setParseListener(expected));
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(3);
+        try{
+            ParseStatistics actual = new ParseStatistics();
+            new ParallelOsmReader(file, UnmarshalOptions.create().setFilter(WayTagFilter.STREETS)
+                    .setRemoveUnreferencedNodes(true).setForkJoinPool(forkJoinPool).setParseListener(actual),
+                    4096).read();
+
+            assertEquals(expected.getPhaseDurations().keySet(), actual.getPhaseDurations().keySet());
+            assertEquals(expected.getProgress().getNodesSeen(), actual.getProgress().getNodesSeen());
+            assertEquals(expected.getProgress().getNodesKept(), actual.getProgress().getNodesKept());
+            assertEquals(expected.getProgress().getWaysSeen(), actual.getProgress().getWaysSeen());
+            assertEquals(expected.getProgress().getWaysKept(), actual.getProgress().getWaysKept());
+
+            //the header is read once and the ranges (without the closing </osm> tag) are read twice
+            long header = document.indexOf("<node");
+            long end = file.length() - "</osm>\n".length();
+            assertEquals(header + 2 * (end - header), actual.getProgress().getFileBytesRead());
+            assertEquals(header + 2 * (end - header), actual.getProgress().getBytesRead());
+        }
+        finally{
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void testInputStreamNotClosed() throws Exception{
+        OsmElement expected = OsmTestData.unmarshal(document, WayElementFilter.ANY_WAY);
+
+        for(Compression compression : Compression.values()){
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            try(OutputStream outputStream = compression.compress(data)){
+                outputStream.write(document.getBytes(StandardCharsets.UTF_8));
+            }
+
+            //the caller's stream is never closed, whether it is compressed or not
+            final AtomicBoolean closed = new AtomicBoolean();
+            OsmTestData.assertOsmElementEquals(expected, OsmUnmarshaller.unmarshal(
+                    createInputStream(data.toByteArray(), closed), WayElementFilter.ANY_WAY, false));
+            assertFalse(compression.name(), closed.get());
+
+            final AtomicInteger nodeCount = new AtomicInteger();
+            OsmUnmarshaller.unmarshal(createInputStream(data.toByteArray(), closed), WayElementFilter.ANY_WAY,
+                    new OsmElementHandler() {
+                @Override
+                public void handleNodeElement(NodeElement nodeElement){
+                    nodeCount.incrementAndGet();
+                }
+            });
+            assertEquals(compression.name(), 20 * 20 + 20, nodeCount.get());
+            assertFalse(compression.name(), closed.get());
+        }
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullFilter(){
+        UnmarshalOptions.create().setFilter(null);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSharedNodeElementStore() throws Exception{
+        OsmUnmarshaller.unmarshal(Collections.singleton(writeDocument()), UnmarshalOptions.create()
+                .setNodeElementStore(new ColumnarNodeElementStore()), null);
+    }
+
+
+    //returns a stream that records whether it was closed
+    private static InputStream createInputStream(byte[] data, final AtomicBoolean closed){
+        return new ByteArrayInputStream(data){
+            @Override
+            public void close(){
+                closed.set(true);
+            }
+        };
+    }
+
+
+    private File writeDocument() throws Exception{
+        return writeDocument(document);
+    }
+
+
+    private File writeDocument(String document) throws Exception{
+        File file = this.temporaryFolder.newFile();
+        try(OutputStream outputStream = new FileOutputStream(file)){
+            outputStream.write(document.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
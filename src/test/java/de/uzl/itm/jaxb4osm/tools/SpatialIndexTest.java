@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.BoundsElement;
+import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SpatialIndex}, i.e. comparing the results of its queries with a scan of all elements.
+ *
+ * @author Oliver Kleine
+ */
+public class SpatialIndexTest {
+
+    private static final int NODE_COUNT = 5000;
+
+    private static OsmElement osmElement;
+    private static SpatialIndex spatialIndex;
+
+    @BeforeClass
+    public static void createSpatialIndex(){
+        Random random = new Random(42);
+        osmElement = new OsmElement();
+        for(long id = 1; id <= NODE_COUNT; id++){
+            osmElement.addNodeElement(new NodeElement(id, null, null, null, null, null, null,
+                    53.8 + random.nextDouble() * 0.1, 10.6 + random.nextDouble() * 0.2));
+        }
+
+        //short ways, long (diagonal) ways crossing many cells, single nodes and ways with unknown nodes
+        for(long id = 1; id <= 2000; id++){
+            WayElement wayElement = new WayElement(id, null, null, null, null, null, null);
+            int nodeCount = id % 100 == 0 ? 1 : 2 + random.nextInt(id % 10 == 0 ? 3 : 8);
+            long nodeID = 1 + random.nextInt(NODE_COUNT);
+            for(int i = 0; i < nodeCount; i++){
+                wayElement.addNodeReference(id % 10 == 0 || i == 0 ? 1 + random.nextInt(NODE_COUNT) :
+                        Math.max(1, Math.min(NODE_COUNT, nodeID + random.nextInt(21) - 10)));
+            }
+            if(id % 50 == 0){
+                wayElement.addNodeReference(NODE_COUNT + id);
+            }
+            osmElement.addWayElement(wayElement);
+        }
+
+        //ways along the rows and columns of the grid
+        osmElement.addNodeElement(new NodeElement(NODE_COUNT + 1000000L, null, null, null, null, null, null,
+                53.85, 10.6));
+        osmElement.addNodeElement(new NodeElement(NODE_COUNT + 1000001L, null, null, null, null, null, null,
+                53.85, 10.8));
+        osmElement.addNodeElement(new NodeElement(NODE_COUNT + 1000002L, null, null, null, null, null, null,
+                53.8, 10.7));
+        WayElement horizontal = new WayElement(1000000L, null, null, null, null, null, null);
+        horizontal.addNodeReference(NODE_COUNT + 1000000L);
+        horizontal.addNodeReference(NODE_COUNT + 1000001L);
+        osmElement.addWayElement(horizontal);
+        WayElement vertical = new WayElement(1000001L, null, null, null, null, null, null);
+        vertical.addNodeReference(NODE_COUNT + 1000002L);
+        vertical.addNodeReference(1);
+        osmElement.addWayElement(vertical);
+
+        spatialIndex = SpatialIndex.create(osmElement);
+    }
+
+
+    @Test
+    public void testNodeIDs(){
+        Random random = new Random(1);
+        for(int i = 0; i < 200; i++){
+            BoundsElement bounds = nextBounds(random);
+
+            long[] expected = new long[0];
+            for(NodeElement nodeElement : osmElement.getNodeElementsView()){
+                if(contains(bounds, nodeElement)){
+                    expected = append(expected, nodeElement.getID());
+                }
+            }
+            assertSameIDs(expected, spatialIndex.getNodeIDs(bounds));
+        }
+    }
+
+
+    @Test
+    public void testWayIDs(){
+        Random random = new Random(2);
+        int crossingWays = 0;
+        for(int i = 0; i < 500; i++){
+            BoundsElement bounds = nextBounds(random);
+
+            long[] expected = new long[0];
+            for(WayElement wayElement : osmElement.getWayElementsView()){
+                boolean nodeInside = false;
+                NodeElement previous = null;
+                boolean intersects = false;
+                for(int j = 0; j < wayElement.getNodeReferenceCount(); j++){
+                    NodeElement nodeElement = osmElement.getNodeElement(wayElement.getNodeReference(j));
+                    if(nodeElement == null)
+                        continue;
+
+                    nodeInside |= contains(bounds, nodeElement);
+                    intersects |= intersects(bounds, previous != null ? previous : nodeElement, nodeElement);
+                    previous = nodeElement;
+                }
+
+                if(intersects){
+                    expected = append(expected, wayElement.getID());
+                    crossingWays += nodeInside ? 0 : 1;
+                }
+            }
+            assertSameIDs(expected, spatialIndex.getWayIDs(bounds));
+        }
+
+        //the ways crossing the bounds without any node inside are included
+        assertTrue(crossingWays > 0);
+    }
+
+
+    @Test
+    public void testBoundsOutsideGrid(){
+        assertEquals(0, spatialIndex.getNodeIDs(new BoundsElement(10, 11, 10, 11)).length);
+        assertEquals(0, spatialIndex.getWayIDs(new BoundsElement(10, 11, 10, 11)).length);
+    }
+
+
+    @Test
+    public void testNearestNodeIDs(){
+        Random random = new Random(3);
+        for(int i = 0; i < 50; i++){
+            double latitude = 53.79 + random.nextDouble() * 0.12;
+            double longitude = 10.59 + random.nextDouble() * 0.22;
+
+            long[] actual = spatialIndex.getNearestNodeIDs(latitude, longitude, 10);
+            assertEquals(10, actual.length);
+
+            //no other node is nearer than the farthest node returned
+            double scale = Math.cos(Math.toRadians(latitude));
+            double maxDistance = distance(osmElement.getNodeElement(actual[9]), latitude, longitude, scale);
+            int nearerNodes = 0;
+            for(NodeElement nodeElement : osmElement.getNodeElementsView()){
+                if(distance(nodeElement, latitude, longitude, scale) < maxDistance){
+                    nearerNodes++;
+                }
+            }
+            assertTrue(nearerNodes < 10);
+        }
+    }
+
+
+    private static BoundsElement nextBounds(Random random){
+        double latitude = 53.79 + random.nextDouble() * 0.12;
+        double longitude = 10.59 + random.nextDouble() * 0.22;
+        return new BoundsElement(latitude, latitude + 1e-4 + random.nextDouble() * 0.01, longitude,
+                longitude + 1e-4 + random.nextDouble() * 0.02);
+    }
+
+
+    private static boolean contains(BoundsElement bounds, NodeElement nodeElement){
+        return nodeElement.getLatitude() >= bounds.getMinLatitude()
+                && nodeElement.getLatitude() <= bounds.getMaxLatitude()
+                && nodeElement.getLongitude() >= bounds.getMinLongitude()
+                && nodeElement.getLongitude() <= bounds.getMaxLongitude();
+    }
+
+
+    private static boolean intersects(BoundsElement bounds, NodeElement nodeElement1, NodeElement nodeElement2){
+        Rectangle2D rectangle = new Rectangle2D.Double(bounds.getMinLongitude(), bounds.getMinLatitude(),
+                bounds.getMaxLongitude() - bounds.getMinLongitude(), bounds.getMaxLatitude() - bounds.getMinLatitude());
+        return new Line2D.Double(nodeElement1.getLongitude(), nodeElement1.getLatitude(),
+                nodeElement2.getLongitude(), nodeElement2.getLatitude()).intersects(rectangle);
+    }
+
+
+    private static double distance(NodeElement nodeElement, double latitude, double longitude, double scale){
+        double dLat = nodeElement.getLatitude() - latitude;
+        double dLon = (nodeElement.getLongitude() - longitude) * scale;
+        return dLat * dLat + dLon * dLon;
+    }
+
+
+    private static long[] append(long[] array, long value){
+        long[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+
+    private static void assertSameIDs(long[] expected, long[] actual){
+        Arrays.sort(actual);
+        Arrays.sort(expected);
+        assertArrayEquals(expected, actual);
+    }
+}
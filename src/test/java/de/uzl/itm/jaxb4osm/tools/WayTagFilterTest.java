@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.tools;
+
+import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.store.HashNodeElementStore;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link WayTagFilter}, i.e. the predefined tag filters and their combinations evaluated on the raw tags
+ * (by the {@link OsmStreamReader}) and on {@link WayElement}s.
+ *
+ * @author Oliver Kleine
+ */
+public class WayTagFilterTest {
+
+    private static String document;
+
+    @BeforeClass
+    public static void createDocument(){
+        document = OsmTestData.createDocument(20, 42);
+    }
+
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testPredefinedFilters() throws Exception{
+        assertEquals(WayElementFilter.getWayTagFilter(WayElementFilter.STREETS), WayTagFilter.STREETS);
+        assertEquals(WayElementFilter.getWayTagFilter(WayElementFilter.ALL_STREETS), WayTagFilter.ALL_STREETS);
+        assertEquals(WayElementFilter.getWayTagFilter(WayElementFilter.HIGHWAYS), WayTagFilter.HIGHWAYS);
+
+        //20 residential and 20 tertiary streets
+        assertEquals(40, read(WayTagFilter.STREETS).getWayElementsView().size());
+        assertEquals(40, read(WayElementFilter.STREETS).getWayElementsView().size());
+        assertEquals(20, read(WayTagFilter.HIGHWAYS).getWayElementsView().size());
+    }
+
+
+    @Test
+    public void testCombinedFilters() throws Exception{
+        WayTagFilter filter = WayTagFilter.and(WayTagFilter.STREETS,
+                WayTagFilter.not(WayTagFilter.hasTag("oneway", "yes", "-1")));
+        OsmElement osmElement = read(filter);
+
+        //every fourth row and every fifth column is a one-way street
+        assertEquals(40 - 5 - 4, osmElement.getWayElementsView().size());
+        for(WayElement wayElement : osmElement.getWayElementsView()){
+            assertNotNull(wayElement.getTagValue("highway"));
+            assertNull(wayElement.getTagValue("oneway"));
+            assertTrue(filter.matchesCriteria(wayElement));
+        }
+
+        //the building is neither a street nor a one-way street
+        WayTagFilter buildings = WayTagFilter.or(WayTagFilter.HIGHWAYS, WayTagFilter.hasTag("building"));
+        assertEquals(21, read(buildings).getWayElementsView().size());
+        assertFalse(WayTagFilter.ALL_STREETS.matchesCriteria(read(buildings).getWayElement(41)));
+    }
+
+
+    private static OsmElement read(WayElementFilter filter) throws Exception{
+        OsmElementBuilder builder = new OsmElementBuilder(new HashNodeElementStore());
+        new OsmStreamReader(builder, filter).read(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+        return builder.getOsmElement();
+    }
+}
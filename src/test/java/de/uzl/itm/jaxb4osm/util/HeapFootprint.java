@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Measures the heap memory retained by objects created in the tests, e.g. to check the footprint of the primitive
+ * collections against their {@link java.util} counterparts.
+ *
+ * @author Oliver Kleine
+ */
+public class HeapFootprint {
+
+    private static final List<Object> RETAINED = new ArrayList<>();
+
+    /**
+     * Returns the number of bytes retained by the object returned by the given {@link Callable}. The result is only
+     * meaningful for objects of several megabytes as the heap usage is not exact.
+     *
+     * @param factory the {@link Callable} creating the object to be measured
+     *
+     * @return the number of bytes retained by the object returned by the given {@link Callable}
+     *
+     * @throws Exception if the {@link Callable} threw an {@link Exception}
+     */
+    public static long measure(Callable<?> factory) throws Exception{
+        long before = getUsedHeap();
+        RETAINED.add(factory.call());
+        try{
+            return getUsedHeap() - before;
+        }
+        finally{
+            RETAINED.clear();
+        }
+    }
+
+
+    private static long getUsedHeap() throws InterruptedException{
+        long result = Long.MAX_VALUE;
+        for(int i = 0; i < 5; i++){
+            System.gc();
+            Thread.sleep(20);
+            result = Math.min(result, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LongHashSet}, i.e. random sequences of additions and removals compared to a
+ * {@link java.util.HashSet}, the value 0, the deletion by backward shifting, and the memory footprint.
+ *
+ * @author Oliver Kleine
+ */
+public class LongHashSetTest {
+
+    private static final int FOOTPRINT_SIZE = 1000000;
+
+    @Test
+    public void testRandomOperations(){
+        Random random = new Random(1);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+
+        //a small range of values causes many collisions, removals and re-additions (including 0 and negative values)
+        for(int i = 0; i < 200000; i++){
+            long value = nextValue(random, 3000);
+            if(random.nextInt(3) == 0){
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            else{
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.size(), set.size());
+
+            if(i % 10000 == 0){
+                assertEquals(expected, toSet(set));
+            }
+        }
+        for(long value = -1000; value < 3000; value++){
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+        assertEquals(expected, toSet(set));
+    }
+
+
+    @Test
+    public void testZero(){
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0));
+        assertFalse(set.remove(0));
+
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(1, set.size());
+        assertArrayEquals(new long[]{0}, set.toArray());
+
+        assertTrue(set.remove(0));
+        assertFalse(set.contains(0));
+        assertEquals(0, set.size());
+    }
+
+
+    @Test
+    public void testRemoveWithCollisions(){
+        //values with the same home slot in the initial table form one probe sequence
+        long[] values = findCollisions(16, 5);
+        LongHashSet set = new LongHashSet();
+        for(long value : values){
+            set.add(value);
+        }
+
+        //removing a value in the middle of the probe sequence must keep the following values reachable
+        assertTrue(set.remove(values[1]));
+        assertFalse(set.contains(values[1]));
+        for(int i = 0; i < values.length; i++){
+            assertEquals(i != 1, set.contains(values[i]));
+        }
+
+        assertTrue(set.remove(values[0]));
+        assertTrue(set.remove(values[4]));
+        assertTrue(set.contains(values[2]));
+        assertTrue(set.contains(values[3]));
+        assertEquals(2, set.size());
+    }
+
+
+    @Test
+    public void testRehash(){
+        LongHashSet set = new LongHashSet();
+        for(long value = 1; value <= 100000; value++){
+            assertTrue(set.add(value * 31));
+        }
+        assertEquals(100000, set.size());
+        for(long value = 1; value <= 100000; value++){
+            assertTrue(set.contains(value * 31));
+            assertFalse(set.contains(value * 31 + 1));
+        }
+
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(31));
+        assertEquals(0, set.toArray().length);
+    }
+
+
+    @Test
+    public void testFootprint() throws Exception{
+        final long[] values = createValues(FOOTPRINT_SIZE);
+
+        long bytes = HeapFootprint.measure(new Callable<LongHashSet>() {
+            @Override
+            public LongHashSet call(){
+                LongHashSet set = new LongHashSet();
+                for(long value : values){
+                    set.add(value);
+                }
+                return set;
+            }
+        });
+
+        long boxedBytes = HeapFootprint.measure(new Callable<Set<Long>>() {
+            @Override
+            public Set<Long> call(){
+                Set<Long> set = new HashSet<>();
+                for(long value : values){
+                    set.add(value);
+                }
+                return set;
+            }
+        });
+
+        //8 bytes per table slot at a load factor of 0.375 to 0.75 (see class documentation)
+        double bytesPerValue = (double) bytes / FOOTPRINT_SIZE;
+        assertTrue("Bytes per value: " + bytesPerValue, bytesPerValue <= 8 / 0.375 + 1);
+        assertTrue("Bytes per boxed value: " + boxedBytes / FOOTPRINT_SIZE, boxedBytes > 2 * bytes);
+    }
+
+
+    static long nextValue(Random random, int range){
+        //mostly consecutive values like OSM IDs plus some negative and very large ones
+        switch(random.nextInt(10)){
+            case 0:
+                return -random.nextInt(1000);
+            case 1:
+                return Long.MAX_VALUE - random.nextInt(100);
+            default:
+                return random.nextInt(range);
+        }
+    }
+
+
+    static long[] findCollisions(int tableSize, int count){
+        long[] result = new long[count];
+        int home = LongHashSet.mix(1) & (tableSize - 1);
+        int found = 0;
+        for(long value = 1; found < count; value++){
+            if((LongHashSet.mix(value) & (tableSize - 1)) == home){
+                result[found++] = value;
+            }
+        }
+        return result;
+    }
+
+
+    static long[] createValues(int count){
+        Random random = new Random(2);
+        long[] result = new long[count];
+        for(int i = 0; i < count; i++){
+            result[i] = 1 + i * 3 + random.nextInt(3);
+        }
+        return result;
+    }
+
+
+    private static Set<Long> toSet(LongHashSet set){
+        long[] values = set.toArray();
+        assertEquals(set.size(), values.length);
+
+        Set<Long> result = new HashSet<>();
+        for(long value : values){
+            result.add(value);
+        }
+        assertEquals("Duplicate values: " + Arrays.toString(values), values.length, result.size());
+        return result;
+    }
+}
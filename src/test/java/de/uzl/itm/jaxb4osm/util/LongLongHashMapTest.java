@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LongLongHashMap}, i.e. random sequences of insertions compared to a {@link java.util.HashMap} and
+ * the key 0.
+ *
+ * @author Oliver Kleine
+ */
+public class LongLongHashMapTest {
+
+    @Test
+    public void testRandomOperations(){
+        Random random = new Random(1);
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+
+        //a small range of keys causes many collisions and replaced values (including 0 and negative keys)
+        for(int i = 0; i < 200000; i++){
+            long key = random.nextInt(5000) - 1000;
+            long value = random.nextLong();
+            assertEquals(!expected.containsKey(key), map.put(key, value));
+            expected.put(key, value);
+            assertEquals(expected.size(), map.size());
+        }
+
+        for(long key = -2000; key < 5000; key++){
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+            assertEquals(expected.containsKey(key) ? expected.get(key) : Long.MIN_VALUE,
+                    map.get(key, Long.MIN_VALUE));
+        }
+    }
+
+
+    @Test
+    public void testZero(){
+        LongLongHashMap map = new LongLongHashMap();
+        assertFalse(map.containsKey(0));
+        assertEquals(-1, map.get(0, -1));
+
+        assertTrue(map.put(0, 42));
+        assertFalse(map.put(0, 43));
+        assertEquals(43, map.get(0, -1));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertFalse(map.containsKey(0));
+        assertEquals(0, map.size());
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.primitives.Longs;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LongLongMultimap}, i.e. random sequences of insertions and removals compared to a
+ * {@link java.util.HashMap} of {@link java.util.List}s, the rejection of duplicate key-value pairs, the key 0, the
+ * deletion by backward shifting, and the memory footprint.
+ *
+ * @author Oliver Kleine
+ */
+public class LongLongMultimapTest {
+
+    private static final int FOOTPRINT_SIZE = 1000000;
+
+    @Test
+    public void testRandomOperations(){
+        Random random = new Random(4);
+        LongLongMultimap multimap = new LongLongMultimap();
+        Map<Long, List<Long>> expected = new HashMap<>();
+
+        for(int i = 0; i < 200000; i++){
+            long key = LongHashSetTest.nextValue(random, 2000);
+            long value = random.nextInt(8);
+            List<Long> values = expected.get(key);
+
+            if(random.nextInt(3) == 0){
+                boolean removed = values != null && values.remove(value);
+                if(values != null && values.isEmpty()){
+                    expected.remove(key);
+                }
+                assertEquals(removed, multimap.remove(key, value));
+            }
+            else{
+                if(values == null){
+                    values = new ArrayList<>();
+                    expected.put(key, values);
+                }
+                boolean added = !values.contains(value) && values.add(value);
+                assertEquals(added, multimap.put(key, value));
+            }
+            assertEquals(expected.size(), multimap.size());
+        }
+
+        for(long key = -1000; key < 2000; key++){
+            List<Long> values = expected.get(key);
+            long[] expectedValues = values == null ? new long[0] : Longs.toArray(values);
+            assertArrayEquals(expectedValues, multimap.get(key));
+            assertEquals(expectedValues.length, multimap.count(key));
+            assertEquals(values != null, multimap.containsKey(key));
+        }
+    }
+
+
+    @Test
+    public void testDuplicatePairs(){
+        LongLongMultimap multimap = new LongLongMultimap();
+        assertTrue(multimap.put(5, 1));
+        assertTrue(multimap.put(5, 2));
+        assertFalse(multimap.put(5, 1));
+        assertFalse(multimap.put(5, 2));
+        assertTrue(multimap.put(6, 1));
+
+        assertArrayEquals(new long[]{1, 2}, multimap.get(5));
+        assertEquals(2, multimap.size());
+
+        assertTrue(multimap.remove(5, 1));
+        assertFalse(multimap.remove(5, 1));
+        assertTrue(multimap.put(5, 1));
+        assertArrayEquals(new long[]{2, 1}, multimap.get(5));
+    }
+
+
+    @Test
+    public void testZeroKey(){
+        LongLongMultimap multimap = new LongLongMultimap();
+        assertFalse(multimap.containsKey(0));
+        assertFalse(multimap.remove(0, 0));
+
+        assertTrue(multimap.put(0, 0));
+        assertTrue(multimap.put(0, 7));
+        assertFalse(multimap.put(0, 0));
+        assertEquals(1, multimap.size());
+        assertArrayEquals(new long[]{0, 7}, multimap.get(0));
+
+        assertTrue(multimap.remove(0, 0));
+        assertTrue(multimap.containsKey(0));
+        assertTrue(multimap.remove(0, 7));
+        assertFalse(multimap.containsKey(0));
+        assertEquals(0, multimap.size());
+    }
+
+
+    @Test
+    public void testRemoveWithCollisions(){
+        long[] keys = LongHashSetTest.findCollisions(16, 5);
+        LongLongMultimap multimap = new LongLongMultimap();
+        for(long key : keys){
+            multimap.put(key, key + 1);
+        }
+
+        //removing the last value of a key removes the key from the probe sequence
+        assertTrue(multimap.remove(keys[1], keys[1] + 1));
+        for(int i = 0; i < keys.length; i++){
+            assertEquals(i != 1, multimap.containsKey(keys[i]));
+        }
+
+        assertTrue(multimap.remove(keys[0], keys[0] + 1));
+        assertTrue(multimap.remove(keys[4], keys[4] + 1));
+        assertArrayEquals(new long[]{keys[2] + 1}, multimap.get(keys[2]));
+        assertArrayEquals(new long[]{keys[3] + 1}, multimap.get(keys[3]));
+        assertEquals(2, multimap.size());
+    }
+
+
+    @Test
+    public void testCopy(){
+        LongLongMultimap multimap = new LongLongMultimap();
+        for(long key = 0; key < 1000; key++){
+            multimap.put(key, 1);
+        }
+
+        LongLongMultimap copy = new LongLongMultimap(multimap);
+        copy.put(1, 2);
+        copy.remove(2, 1);
+        copy.put(0, 2);
+
+        assertArrayEquals(new long[]{1}, multimap.get(0));
+        assertArrayEquals(new long[]{1}, multimap.get(1));
+        assertArrayEquals(new long[]{1}, multimap.get(2));
+        assertArrayEquals(new long[]{1, 2}, copy.get(0));
+        assertArrayEquals(new long[]{1, 2}, copy.get(1));
+        assertFalse(copy.containsKey(2));
+    }
+
+
+    @Test
+    public void testFootprint() throws Exception{
+        final long[] keys = LongHashSetTest.createValues(FOOTPRINT_SIZE);
+
+        long bytes = HeapFootprint.measure(new Callable<LongLongMultimap>() {
+            @Override
+            public LongLongMultimap call(){
+                LongLongMultimap multimap = new LongLongMultimap();
+                for(long key : keys){
+                    multimap.put(key, key);
+                }
+                return multimap;
+            }
+        });
+
+        long boxedBytes = HeapFootprint.measure(new Callable<Multimap<Long, Long>>() {
+            @Override
+            public Multimap<Long, Long> call(){
+                Multimap<Long, Long> multimap = HashMultimap.create();
+                for(long key : keys){
+                    multimap.put(key, key);
+                }
+                return multimap;
+            }
+        });
+
+        //a slot of up to 16 bytes at a load factor of 0.375 to 0.75 plus an array of 24 bytes per key
+        double bytesPerKey = (double) bytes / FOOTPRINT_SIZE;
+        assertTrue("Bytes per key: " + bytesPerKey, bytesPerKey <= 16 / 0.375 + 24 + 1);
+        assertTrue("Bytes per boxed key: " + boxedBytes / FOOTPRINT_SIZE, boxedBytes > 3 * bytes);
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LongObjectHashMap}, i.e. random sequences of insertions and removals compared to a
+ * {@link java.util.HashMap}, the key 0, the deletion by backward shifting, copies, and the memory footprint.
+ *
+ * @author Oliver Kleine
+ */
+public class LongObjectHashMapTest {
+
+    private static final int FOOTPRINT_SIZE = 1000000;
+
+    @Test
+    public void testRandomOperations(){
+        Random random = new Random(3);
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        Map<Long, String> expected = new HashMap<>();
+
+        for(int i = 0; i < 200000; i++){
+            long key = LongHashSetTest.nextValue(random, 3000);
+            if(random.nextInt(3) == 0){
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            else{
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+
+            if(i % 10000 == 0){
+                assertEquals(sortedValues(expected.values()), sortedValues(map.values()));
+            }
+        }
+        for(long key = -1000; key < 3000; key++){
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        assertEquals(sortedValues(expected.values()), sortedValues(map.values()));
+    }
+
+
+    @Test
+    public void testZeroKey(){
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        assertNull(map.get(0));
+        assertNull(map.remove(0));
+
+        assertNull(map.put(0, "a"));
+        assertEquals("a", map.put(0, "b"));
+        assertEquals("b", map.get(0));
+        assertEquals(1, map.size());
+        assertEquals(Collections.singletonList("b"), sortedValues(map.values()));
+
+        assertEquals("b", map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertEquals(0, map.size());
+        assertTrue(map.values().isEmpty());
+    }
+
+
+    @Test
+    public void testRemoveWithCollisions(){
+        long[] keys = LongHashSetTest.findCollisions(16, 5);
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        for(long key : keys){
+            map.put(key, "v" + key);
+        }
+
+        assertEquals("v" + keys[1], map.remove(keys[1]));
+        for(int i = 0; i < keys.length; i++){
+            assertEquals(i == 1 ? null : "v" + keys[i], map.get(keys[i]));
+        }
+
+        assertEquals("v" + keys[0], map.remove(keys[0]));
+        assertEquals("v" + keys[4], map.remove(keys[4]));
+        assertEquals("v" + keys[2], map.get(keys[2]));
+        assertEquals("v" + keys[3], map.get(keys[3]));
+        assertEquals(2, map.size());
+    }
+
+
+    @Test
+    public void testCopy(){
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        for(long key = 0; key < 1000; key++){
+            map.put(key, "v" + key);
+        }
+
+        LongObjectHashMap<String> copy = new LongObjectHashMap<>(map);
+        copy.remove(0);
+        copy.remove(1);
+        copy.put(1000, "v1000");
+
+        assertEquals(1000, map.size());
+        assertEquals("v0", map.get(0));
+        assertEquals("v1", map.get(1));
+        assertNull(map.get(1000));
+        assertEquals(999, copy.size());
+        assertEquals("v999", copy.get(999));
+    }
+
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue(){
+        new LongObjectHashMap<String>().put(1, null);
+    }
+
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testValuesViewIsReadOnly(){
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        map.put(1, "a");
+        map.values().iterator().remove();
+    }
+
+
+    @Test
+    public void testFootprint() throws Exception{
+        final long[] keys = LongHashSetTest.createValues(FOOTPRINT_SIZE);
+        final Object value = new Object();
+
+        long bytes = HeapFootprint.measure(new Callable<LongObjectHashMap<Object>>() {
+            @Override
+            public LongObjectHashMap<Object> call(){
+                LongObjectHashMap<Object> map = new LongObjectHashMap<>();
+                for(long key : keys){
+                    map.put(key, value);
+                }
+                return map;
+            }
+        });
+
+        long boxedBytes = HeapFootprint.measure(new Callable<Map<Long, Object>>() {
+            @Override
+            public Map<Long, Object> call(){
+                Map<Long, Object> map = new HashMap<>();
+                for(long key : keys){
+                    map.put(key, value);
+                }
+                return map;
+            }
+        });
+
+        //8 bytes for the key and up to 8 bytes for the reference per slot at a load factor of 0.375 to 0.75
+        double bytesPerMapping = (double) bytes / FOOTPRINT_SIZE;
+        assertTrue("Bytes per mapping: " + bytesPerMapping, bytesPerMapping <= 16 / 0.375 + 1);
+        assertTrue("Bytes per boxed mapping: " + boxedBytes / FOOTPRINT_SIZE, boxedBytes > 2 * bytes);
+    }
+
+
+    private static List<String> sortedValues(Iterable<String> values){
+        List<String> result = new ArrayList<>();
+        for(String value : values){
+            result.add(value);
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
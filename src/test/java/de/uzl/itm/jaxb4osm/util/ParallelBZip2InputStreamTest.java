@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ParallelBZip2InputStream}, i.e. splitting bzip2 streams into their blocks (which start at
+ * arbitrary bit offsets) and decompressing them in parallel.
+ *
+ * @author Oliver Kleine
+ */
+public class ParallelBZip2InputStreamTest {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+    private ExecutorService executorService;
+
+    @Before
+    public void createExecutorService(){
+        this.executorService = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void shutdownExecutorService(){
+        this.executorService.shutdownNow();
+    }
+
+
+    @Test
+    public void testMultipleBlocks() throws Exception{
+        byte[] data = createData(700000, 1);
+        byte[] compressed = compress(data, 1);
+
+        //100 KB blocks, i.e. there are several blocks and at least one of them is not byte-aligned
+        List<Long> blockStarts = findMagic(compressed, BLOCK_MAGIC);
+        assertTrue(blockStarts.size() >= 7);
+        boolean unaligned = false;
+        for(long blockStart : blockStarts){
+            unaligned |= (blockStart & 7) != 0;
+        }
+        assertTrue(unaligned);
+
+        assertArrayEquals(data, decompress(compressed));
+    }
+
+
+    @Test
+    public void testCreateStreamAtEveryBitOffset() throws Exception{
+        byte[] data = createData(50000, 2);
+        byte[] compressed = compress(data, 1);
+
+        //the only block starts right after the stream header and ends with the end of stream marker
+        long blockStart = findMagic(compressed, BLOCK_MAGIC).get(0);
+        long blockEnd = findMagic(compressed, END_OF_STREAM_MAGIC).get(0);
+
+        for(int offset = 0; offset < 8; offset++){
+            byte[] buffer = shift(compressed, offset);
+            byte[] stream = ParallelBZip2InputStream.createStream(buffer, blockStart + offset, blockEnd + offset);
+            try(InputStream inputStream = new BZip2CompressorInputStream(new ByteArrayInputStream(stream))){
+                assertArrayEquals("Offset " + offset, data, ByteStreams.toByteArray(inputStream));
+            }
+        }
+    }
+
+
+    @Test
+    public void testConcatenatedStreams() throws Exception{
+        byte[] data1 = createData(250000, 3);
+        byte[] data2 = createData(120000, 4);
+        byte[] data3 = "tiny".getBytes(StandardCharsets.US_ASCII);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(compress(data1, 1));
+        compressed.write(compress(data2, 9));
+        compressed.write(compress(data3, 1));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(data1);
+        expected.write(data2);
+        expected.write(data3);
+
+        assertArrayEquals(expected.toByteArray(), decompress(compressed.toByteArray()));
+    }
+
+
+    @Test
+    public void testMagicWithinBlock() throws Exception{
+        byte[] data = createData(350000, 7);
+        byte[] compressed = compress(data, 1);
+
+        //simulate magics within the data of the first block (twice) and within the data of the last block
+        List<Long> blockStarts = findMagic(compressed, BLOCK_MAGIC);
+        long blockEnd = findMagic(compressed, END_OF_STREAM_MAGIC).get(0);
+        final Map<Long, Long> magics = new HashMap<>();
+        magics.put(blockStarts.get(0) + 1001, BLOCK_MAGIC);
+        magics.put(blockStarts.get(0) + 30007, END_OF_STREAM_MAGIC);
+        magics.put(blockEnd - 2003, BLOCK_MAGIC);
+
+        try(InputStream inputStream = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed),
+                this.executorService){
+            @Override
+            long getMagic(long value, long position){
+                return magics.containsKey(position) ? magics.get(position) : super.getMagic(value, position);
+            }
+        }){
+            assertArrayEquals(data, ByteStreams.toByteArray(inputStream));
+        }
+    }
+
+
+    @Test
+    public void testEmptyStream() throws Exception{
+        assertArrayEquals(new byte[0], decompress(compress(new byte[0], 9)));
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testTruncatedStream() throws Exception{
+        byte[] compressed = compress(createData(250000, 5), 1);
+        decompress(Arrays.copyOf(compressed, compressed.length / 2));
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testCorruptBlock() throws Exception{
+        byte[] compressed = compress(createData(250000, 6), 1);
+        compressed[compressed.length / 2] ^= 0x10;
+        decompress(compressed);
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testNoBZip2Stream() throws Exception{
+        decompress("no bzip2".getBytes(StandardCharsets.US_ASCII));
+    }
+
+
+    private byte[] decompress(byte[] compressed) throws IOException{
+        try(InputStream inputStream = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed),
+                this.executorService)){
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+
+
+    //returns (compressible) lines of random words
+    private static byte[] createData(int length, long seed){
+        Random random = new Random(seed);
+        String[] words = {"node", "way", "highway", "residential", "Wallstraße", "lat", "lon", "53.8", "10.6"};
+        StringBuilder builder = new StringBuilder(length + 16);
+        while(builder.length() < length){
+            builder.append(words[random.nextInt(words.length)]).append(random.nextInt(1000));
+            builder.append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        builder.setLength(length);
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static byte[] compress(byte[] data, int blockSize) throws IOException{
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try(OutputStream outputStream = new BZip2CompressorOutputStream(result, blockSize)){
+            outputStream.write(data);
+        }
+        return result.toByteArray();
+    }
+
+
+    //returns the bit positions of the given 48 bit magic
+    private static List<Long> findMagic(byte[] data, long magic){
+        List<Long> result = new ArrayList<>();
+        long window = 0;
+        for(long bit = 0; bit < (long) data.length * 8; bit++){
+            window = ((window << 1) | ((data[(int) (bit >>> 3)] >>> (7 - (bit & 7))) & 1)) & 0xFFFFFFFFFFFFL;
+            if(bit >= 47 && window == magic){
+                result.add(bit - 47);
+            }
+        }
+        return result;
+    }
+
+
+    //returns the given data preceded by the given number of (set) bits
+    private static byte[] shift(byte[] data, int offset){
+        byte[] result = new byte[data.length + 1];
+        result[0] = (byte) (0xFF << (8 - offset));
+        for(int i = 0; i < data.length; i++){
+            result[i] |= (data[i] & 0xFF) >>> offset;
+            result[i + 1] = (byte) (data[i] << (8 - offset));
+        }
+        return result;
+    }
+}
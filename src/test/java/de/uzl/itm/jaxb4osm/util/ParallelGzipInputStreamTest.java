@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2014, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.jaxb4osm.util;
+
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ParallelGzipInputStream}, i.e. decompressing block compressed (BGZF) members in parallel and
+ * ordinary gzip members sequentially.
+ *
+ * @author Oliver Kleine
+ */
+public class ParallelGzipInputStreamTest {
+
+    private static final int BGZF_BLOCK_SIZE = 65280;
+
+    private ExecutorService executorService;
+
+    @Before
+    public void createExecutorService(){
+        this.executorService = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void shutdownExecutorService(){
+        this.executorService.shutdownNow();
+    }
+
+
+    @Test
+    public void testBgzfMembers() throws Exception{
+        byte[] data = createData(1000000, 1);
+        byte[] compressed = compressBgzf(data);
+
+        assertTrue(ParallelGzipInputStream.isBlockCompressed(compressed, 18));
+        assertArrayEquals(data, decompress(compressed));
+    }
+
+
+    @Test
+    public void testGzipMembers() throws Exception{
+        byte[] data1 = createData(300000, 2);
+        byte[] data2 = createData(5000, 3);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(compressGzip(data1));
+        compressed.write(compressGzip(data2));
+        compressed.write(compressGzip(new byte[0]));
+
+        assertFalse(ParallelGzipInputStream.isBlockCompressed(compressed.toByteArray(), 18));
+        assertArrayEquals(concat(data1, data2), decompress(compressed.toByteArray()));
+    }
+
+
+    @Test
+    public void testBgzfMembersFollowedByGzipMember() throws Exception{
+        byte[] data1 = createData(200000, 4);
+        byte[] data2 = createData(100000, 5);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(compressBgzf(data1));
+        compressed.write(compressGzip(data2));
+
+        assertArrayEquals(concat(data1, data2), decompress(compressed.toByteArray()));
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testTruncatedBgzfMember() throws Exception{
+        byte[] compressed = compressBgzf(createData(200000, 6));
+        decompress(Arrays.copyOf(compressed, compressed.length - 100));
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testCorruptBgzfMember() throws Exception{
+        byte[] compressed = compressBgzf(createData(200000, 7));
+
+        //the CRC32 of the first member
+        int blockSize = (compressed[16] & 0xFF | (compressed[17] & 0xFF) << 8) + 1;
+        compressed[blockSize - 8] ^= 0x01;
+        decompress(compressed);
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testNoGzipMember() throws Exception{
+        decompress("no gzip member".getBytes(StandardCharsets.US_ASCII));
+    }
+
+
+    private byte[] decompress(byte[] compressed) throws IOException{
+        try(InputStream inputStream = new ParallelGzipInputStream(new ByteArrayInputStream(compressed),
+                this.executorService)){
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+
+
+    private static byte[] createData(int length, long seed){
+        Random random = new Random(seed);
+        String[] words = {"node", "way", "highway", "residential", "Wallstraße", "lat", "lon", "53.8", "10.6"};
+        StringBuilder builder = new StringBuilder(length + 16);
+        while(builder.length() < length){
+            builder.append(words[random.nextInt(words.length)]).append(random.nextInt(1000));
+            builder.append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        builder.setLength(length);
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static byte[] concat(byte[] data1, byte[] data2){
+        byte[] result = Arrays.copyOf(data1, data1.length + data2.length);
+        System.arraycopy(data2, 0, result, data1.length, data2.length);
+        return result;
+    }
+
+
+    private static byte[] compressGzip(byte[] data) throws IOException{
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try(OutputStream outputStream = new GZIPOutputStream(result)){
+            outputStream.write(data);
+        }
+        return result.toByteArray();
+    }
+
+
+    //writes the data as members with the size in the "BC" extra field like bgzip (including the empty last member)
+    private static byte[] compressBgzf(byte[] data){
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int position = 0;
+        do{
+            int length = Math.min(BGZF_BLOCK_SIZE, data.length - position);
+
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(data, position, length);
+            deflater.finish();
+            byte[] deflated = new byte[length + 1024];
+            int deflatedLength = 0;
+            while(!deflater.finished()){
+                deflatedLength += deflater.deflate(deflated, deflatedLength, deflated.length - deflatedLength);
+            }
+            deflater.end();
+
+            CRC32 crc = new CRC32();
+            crc.update(data, position, length);
+
+            int blockSize = 18 + deflatedLength + 8;
+            result.write(new byte[]{0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF, 6, 0, 'B', 'C', 2, 0}, 0, 16);
+            writeInt(result, blockSize - 1, 2);
+            result.write(deflated, 0, deflatedLength);
+            writeInt(result, (int) crc.getValue(), 4);
+            writeInt(result, length, 4);
+
+            position += length;
+        }
+        while(position < data.length || data.length == 0 && result.size() == 0);
+
+        return result.toByteArray();
+    }
+
+
+    private static void writeInt(ByteArrayOutputStream outputStream, int value, int length){
+        for(int i = 0; i < length; i++){
+            outputStream.write(value >>> (8 * i));
+        }
+    }
+}